@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.typesafe.config.ConfigFactory;
+
+import edu.jhuapl.dorset.agents.AgentRequest;
+import edu.jhuapl.dorset.agents.AgentResponse;
+
+/**
+ * Requests per second through ToDoListAgent.process, from parsing to the response,
+ * with four client threads sharing one list, with and without request metrics.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Threads(4)
+public class AgentThroughputBenchmark {
+
+    private static final String[] GET_REQUESTS = {"GET 42", "GET item 5001 of", "GET ALL dentist",
+        "GET ALL 01/02/2017-01/02/2017"};
+
+    @Param({"file", "database"})
+    public String backend;
+
+    @Param({"10000"})
+    public int listSize;
+
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    private String listName;
+    private ToDoListAgent agent;
+
+    @State(Scope.Thread)
+    public static class Client {
+        private int requestCount;
+    }
+
+    @Setup
+    public void setUp() throws IOException, ToDoListAccessException {
+        listName = "agent-" + backend + "-" + listSize;
+        BenchmarkLists.open(backend, listName, listSize).close();
+
+        HashMap<String, Object> config = new HashMap<String, Object>();
+        config.put("name", listName);
+        config.put("dataStorageType", backend);
+        config.put("metrics", metrics);
+        agent = new ToDoListAgent(ConfigFactory.parseMap(config));
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkLists.delete(listName);
+    }
+
+    @Benchmark
+    public AgentResponse getRequests(Client client) {
+        return agent.process(new AgentRequest(GET_REQUESTS[client.requestCount++ % GET_REQUESTS.length]));
+    }
+
+    @Benchmark
+    public AgentResponse addThenRemoveRequests(Client client) {
+        String task = "agent benchmark " + Thread.currentThread().getId() + "-" + client.requestCount++;
+        agent.process(new AgentRequest("ADD " + task));
+        return agent.process(new AgentRequest("REMOVE " + task));
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+
+/**
+ * Builds the lists the benchmarks run against.
+ *
+ * <p>Item n of a list has the task "item n of the list". One item in ten also
+ * mentions groceries and one in a thousand the dentist, so a keyword can be picked to
+ * match one item, a rare few, a common share or every item in the list. The items are
+ * spread in order over DAYS days from FIRST_DAY, so one day holds one item in DAYS.
+ */
+final class BenchmarkLists {
+
+    static final String FIRST_DAY = "01/01/2017";
+    static final int DAYS = 100;
+    static final String TIME = "1:00 PM";
+
+    private BenchmarkLists() {
+    }
+
+    /**
+     * Get the task of an item
+     *
+     * @param n  the item number
+     * @return the task
+     */
+    static String task(int n) {
+        String task = "item " + n + " of the list";
+        if (n % 10 == 1) {
+            task += " groceries";
+        }
+        if (n % 1000 == 1) {
+            task += " dentist";
+        }
+        return task;
+    }
+
+    /**
+     * Get the day an item was created
+     *
+     * @param n  the item number
+     * @param listSize  the number of items in the list
+     * @return the epoch milliseconds of the local midnight starting the day
+     */
+    static long day(int n, int listSize) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(DateIndex.parseDay(FIRST_DAY));
+        calendar.add(Calendar.DAY_OF_MONTH, (int) ((n - 1) * (long) DAYS / listSize));
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * Get a keyword that matches a given share of a list
+     *
+     * @param selectivity  one, rare (one item in a thousand), common (one in ten) or every
+     * @param listSize  the number of items in the list
+     * @return the keyword
+     */
+    static String keyword(String selectivity, int listSize) {
+        if (selectivity.equals("one")) {
+            return "item " + (listSize / 2 + 1) + " of";
+        } else if (selectivity.equals("rare")) {
+            return "dentist";
+        } else if (selectivity.equals("common")) {
+            return "groceries";
+        } else if (selectivity.equals("every")) {
+            return "of the list";
+        }
+        throw new IllegalArgumentException("Unknown selectivity: " + selectivity);
+    }
+
+    /**
+     * Open a list of a given size, replacing any list with the same name
+     *
+     * @param backend  file, database or memory
+     * @param listName  the list name
+     * @param listSize  the number of items
+     * @return the manager of the list
+     * @throws IOException  if the CSV file cannot be written
+     * @throws ToDoListAccessException  if the list cannot be opened
+     */
+    static ToDoListManager open(String backend, String listName, int listSize)
+                    throws IOException, ToDoListAccessException {
+        if (backend.equals("file")) {
+            writeCsv(listName, listSize);
+            return new FileManager(listName);
+        } else if (backend.equals("database")) {
+            DatabaseManager manager = new DatabaseManager(listName, true);
+            fillDatabase(manager, listSize);
+            return manager;
+        } else if (backend.equals("memory")) {
+            return new MemoryManager(fillStore(listSize));
+        }
+        throw new IllegalArgumentException("Unknown backend: " + backend);
+    }
+
+    /**
+     * Write a CSV list for the FileManager
+     *
+     * @param listName  the list name
+     * @param listSize  the number of items
+     * @throws IOException  if the file cannot be written
+     */
+    static void writeCsv(String listName, int listSize) throws IOException {
+        DateFormat format = new SimpleDateFormat(DateIndex.DATE_PATTERN);
+        try (BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter("./" + listName + ".csv"))) {
+            bufferedWriter.write(listName + " TODO List");
+            for (int n = 1; n <= listSize; n++) {
+                String date = format.format(new Date(day(n, listSize)));
+                bufferedWriter.write("\n" + n + ")," + date + "," + TIME + "," + task(n));
+            }
+        }
+    }
+
+    /**
+     * Replace the items of a database list, inserting them in one transaction
+     *
+     * @param manager  the manager of the list
+     * @param listSize  the number of items
+     */
+    static void fillDatabase(DatabaseManager manager, int listSize) {
+        DateFormat format = new SimpleDateFormat(DateIndex.DATE_PATTERN);
+        StatelessSession session = manager.getFactory().openStatelessSession();
+        try {
+            Transaction transaction = session.beginTransaction();
+            session.createQuery("DELETE FROM " + Item.class.getName() + " WHERE listId = :listId")
+                            .setString("listId", manager.getListId()).executeUpdate();
+            for (int n = 1; n <= listSize; n++) {
+                long day = day(n, listSize);
+                Item item = new Item(n, task(n), format.format(new Date(day)), TIME);
+                item.setListId(manager.getListId());
+                item.setCreatedAt(day);
+                session.insert(item);
+            }
+            transaction.commit();
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Build the store of a memory list, with every item created at TIME on its day
+     *
+     * @param listSize  the number of items
+     * @return the store
+     */
+    static CompactItemStore fillStore(int listSize) {
+        CompactItemStore store = new CompactItemStore();
+        Calendar calendar = Calendar.getInstance();
+        for (int n = 1; n <= listSize; n++) {
+            calendar.setTimeInMillis(day(n, listSize));
+            calendar.set(Calendar.HOUR_OF_DAY, 13);
+            store.add(calendar.getTimeInMillis(), task(n));
+        }
+        return store;
+    }
+
+    /**
+     * Remove the files of a list
+     *
+     * @param listName  the list name
+     */
+    static void delete(String listName) {
+        new File("./" + listName + ".csv").delete();
+    }
+}
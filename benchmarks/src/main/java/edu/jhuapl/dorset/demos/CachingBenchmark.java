@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * GETs skewed toward recent items and repeated keywords, with and without a CachingManager.
+ * Nine requests in ten get one of the last RECENT_ITEMS items by number, and the rest look
+ * up one of KEYWORDS keywords. skewedGetWithChanges also adds and removes an item every
+ * ADD_EVERY requests, which drops the cached answers for the last item numbers.
+ * A cacheSize of 0 runs against the list alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CachingBenchmark {
+
+    private static final int REQUESTS = 4096;
+    private static final int RECENT_ITEMS = 50;
+    private static final int KEYWORDS = 20;
+    private static final int ADD_EVERY = 100;
+
+    @Param({"file", "database"})
+    public String backend;
+
+    @Param({"10000"})
+    public int listSize;
+
+    @Param({"0", "1000"})
+    public int cacheSize;
+
+    private String listName;
+    private ToDoListManager manager;
+    private int[] itemNumbers;
+    private String[] keywords;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException, ToDoListAccessException {
+        listName = "caching-" + backend + "-" + listSize;
+        manager = BenchmarkLists.open(backend, listName, listSize);
+        if (cacheSize > 0) {
+            manager = new CachingManager(manager, cacheSize);
+        }
+
+        Random random = new Random(42);
+        itemNumbers = new int[REQUESTS];
+        keywords = new String[REQUESTS];
+        for (int n = 0; n < REQUESTS; n++) {
+            if (random.nextInt(10) < 9) {
+                itemNumbers[n] = listSize - random.nextInt(RECENT_ITEMS);
+            } else {
+                keywords[n] = "item " + (1 + random.nextInt(KEYWORDS) * (listSize / KEYWORDS)) + " of";
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws ToDoListAccessException {
+        manager.close();
+        BenchmarkLists.delete(listName);
+    }
+
+    @Benchmark
+    public String skewedGet() throws ToDoListAccessException {
+        int n = next;
+        next = (n + 1) % REQUESTS;
+        return keywords[n] == null ? manager.getItem(itemNumbers[n]) : manager.getItem(keywords[n]);
+    }
+
+    @Benchmark
+    public String skewedGetWithChanges() throws ToDoListAccessException {
+        if (next % ADD_EVERY == 0) {
+            manager.addItem("an added item");
+            manager.removeItem(listSize + 1);
+        }
+        return skewedGet();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.jhuapl.dorset.nlp.Tokenizer;
+import edu.jhuapl.dorset.nlp.WhiteSpaceTokenizer;
+
+/**
+ * Compare the ToDoCommand parser with the regex parsing ToDoListAgent used before it.
+ * The regex path is copied here as it was: String.matches against the action, digit,
+ * date and ALL patterns, a new WhiteSpaceTokenizer per call, and += to build the keyword.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CommandParserBenchmark {
+
+    private static final String ADD_REGEX = ".*(ADD).*";
+    private static final String REMOVE_REGEX = ".*(REMOVE).*";
+    private static final String GET_REGEX = ".*(GET).*";
+    private static final String ALL_REGEX = ".*(ALL).*";
+    private static final String DIGIT = "[0-9]";
+    private static final String DATE_FORMAT = DIGIT + DIGIT + "/" + DIGIT + DIGIT + "/" + DIGIT + DIGIT + DIGIT + DIGIT;
+    private static final String DATE_RANGE_FORMAT = DATE_FORMAT + "-" + DATE_FORMAT;
+
+    @Param({"ADD Buy supplies for the office", "REMOVE 12", "GET ALL", "GET ALL pay the phone bill",
+        "GET ALL 01/01/2017-01/31/2017"})
+    public String input;
+
+    @Benchmark
+    public void commandParser(Blackhole blackhole) {
+        ToDoCommand command = ToDoCommand.parse(input);
+        blackhole.consume(command.getAction());
+        blackhole.consume(command.getItemNumber());
+        blackhole.consume(command.getDateRange());
+        blackhole.consume(command.getDate());
+        blackhole.consume(command.isAll());
+        blackhole.consume(command.getKeyword());
+    }
+
+    @Benchmark
+    public void regexParser(Blackhole blackhole) {
+        String inputUpperCase = input.toUpperCase();
+        blackhole.consume(inputUpperCase.matches(ADD_REGEX) || inputUpperCase.matches(REMOVE_REGEX));
+        if (inputUpperCase.matches(ADD_REGEX)) {
+            blackhole.consume(removeAction(input, "ADD"));
+        } else if (inputUpperCase.matches(REMOVE_REGEX)) {
+            String text = removeAction(input, "REMOVE");
+            blackhole.consume(containsInt(text) ? getItemNumber(text) : 0);
+        } else if (inputUpperCase.matches(GET_REGEX)) {
+            String text = removeAction(input, "GET");
+            String[] tokenizedInput = tokenize(text);
+            blackhole.consume(containsInt(text) ? getItemNumber(text) : 0);
+            blackhole.consume(findToken(tokenizedInput, DATE_RANGE_FORMAT));
+            blackhole.consume(findToken(tokenizedInput, DATE_FORMAT));
+            blackhole.consume(text.toUpperCase().matches(ALL_REGEX));
+            blackhole.consume(getKeyword(tokenizedInput));
+        }
+    }
+
+    private static String removeAction(String input, String action) {
+        int indexToStart = input.indexOf(action) + action.length() + 1;
+        return indexToStart < input.length() ? input.substring(indexToStart) : "";
+    }
+
+    private static boolean containsInt(String input) {
+        return input.matches(DIGIT) || input.matches(DIGIT + DIGIT);
+    }
+
+    private static String[] tokenize(String input) {
+        Tokenizer tokenizer = new WhiteSpaceTokenizer();
+        return tokenizer.tokenize(input);
+    }
+
+    private static int getItemNumber(String input) {
+        String[] tokenizedInput = tokenize(input);
+        for (int n = 0; n < tokenizedInput.length; n++) {
+            if (tokenizedInput[n].matches(DIGIT) || input.matches(DIGIT + DIGIT)) {
+                return Integer.parseInt(tokenizedInput[n]);
+            }
+        }
+        return 0;
+    }
+
+    private static String findToken(String[] tokenizedInput, String format) {
+        String found = "";
+        for (int n = 0; n < tokenizedInput.length; n++) {
+            if (tokenizedInput[n].matches(format)) {
+                found = tokenizedInput[n];
+            }
+        }
+        return found;
+    }
+
+    private static String getKeyword(String[] tokenizedInput) {
+        String keyword = "";
+        for (int n = 0; n < tokenizedInput.length; n++) {
+            if (!tokenizedInput[n].matches(DIGIT) && !tokenizedInput[n].toUpperCase().matches(ALL_REGEX)) {
+                if (!keyword.isEmpty()) {
+                    keyword += " ";
+                }
+                keyword += tokenizedInput[n];
+            }
+        }
+        return keyword;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Database lists kept in an embedded H2 database, next to the same lists kept behind a network
+ * connection. With no MySQL server at hand, the networked database is H2 running as a TCP
+ * server on the loopback interface: every statement is a round trip over a socket, as it is to
+ * MySQL, though one without the network latency of a separate host.
+ * The embedded database keeps the lists in memory, or in a file under ./ with embedded-file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class EmbeddedDatabaseBenchmark {
+
+    private static final String SERVER_PORT = "9193";
+
+    @Param({"server", "embedded", "embedded-file"})
+    public String backend;
+
+    @Param({"1000"})
+    public int listSize;
+
+    private Server server;
+    private DatabaseManager manager;
+    private String keyword;
+    private int next;
+
+    @Setup
+    public void setUp() throws SQLException, ToDoListAccessException {
+        String url;
+        if (backend.equals("server")) {
+            server = Server.createTcpServer("-tcpPort", SERVER_PORT, "-ifNotExists").start();
+            url = "jdbc:h2:tcp://localhost:" + SERVER_PORT + "/mem:benchmark-server;DB_CLOSE_DELAY=-1";
+        } else if (backend.equals("embedded")) {
+            url = "jdbc:h2:mem:benchmark-embedded;DB_CLOSE_DELAY=-1";
+        } else {
+            url = "jdbc:h2:./benchmark-embedded";
+        }
+        manager = new DatabaseManager(DatabaseManager.getEmbeddedFactory(url), "embedded-" + listSize, true);
+        BenchmarkLists.fillDatabase(manager, listSize);
+        keyword = BenchmarkLists.keyword("one", listSize);
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.getFactory().close();
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Benchmark
+    public String getItemByNumber() {
+        next = next % listSize + 1;
+        return manager.getItem(next);
+    }
+
+    @Benchmark
+    public String getItemByKeyword() {
+        return manager.getItem(keyword);
+    }
+
+    @Benchmark
+    public String addAndRemove() {
+        manager.addItem("an added item");
+        return manager.removeItem(listSize + 1);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ADDS sequential adds to a FileManager list that starts out empty, opening the file for
+ * each add or keeping it open. The score is the time for all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@Warmup(iterations = 1, batchSize = FileAppendBenchmark.ADDS)
+@Measurement(iterations = 3, batchSize = FileAppendBenchmark.ADDS)
+public class FileAppendBenchmark {
+
+    static final int ADDS = 1000000;
+
+    @Param({"false", "true"})
+    public boolean keepOpen;
+
+    private String listName;
+    private FileManager manager;
+    private int count;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws ToDoListAccessException {
+        listName = "append-" + keepOpen;
+        BenchmarkLists.delete(listName);
+        manager = new FileManager(listName, FileManager.Durability.ATOMIC, keepOpen);
+        count = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        manager.close();
+        BenchmarkLists.delete(listName);
+    }
+
+    @Benchmark
+    public String add() throws ToDoListAccessException {
+        return manager.addItem(BenchmarkLists.task(++count));
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The writes of the FileManager for each durability: an add appends a line, and a remove
+ * writes the list to a temporary file and renames it over the list. The batch benchmark
+ * adds and removes BATCH_SIZE items in two batches, forcing the disk twice in all.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class FileDurabilityBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"ATOMIC", "SYNC"})
+    public FileManager.Durability durability;
+
+    @Param({"100", "10000"})
+    public int listSize;
+
+    private String listName;
+    private FileManager manager;
+
+    @Setup
+    public void setUp() throws IOException, ToDoListAccessException {
+        listName = "durability-" + durability + "-" + listSize;
+        BenchmarkLists.writeCsv(listName, listSize);
+        manager = new FileManager(listName, durability);
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.close();
+        BenchmarkLists.delete(listName);
+    }
+
+    @Benchmark
+    public String addThenRemove() throws ToDoListAccessException {
+        manager.addItem("benchmark durable write");
+        return manager.removeItem(listSize + 1);
+    }
+
+    @Benchmark
+    public void addThenRemoveInBatches() throws ToDoListAccessException {
+        manager.runBatch(new ToDoListBatch() {
+            public void run(ToDoListManager batchManager) throws ToDoListAccessException {
+                for (int n = 0; n < BATCH_SIZE; n++) {
+                    batchManager.addItem("benchmark durable write");
+                }
+            }
+        });
+        manager.runBatch(new ToDoListBatch() {
+            public void run(ToDoListManager batchManager) throws ToDoListAccessException {
+                for (int n = 0; n < BATCH_SIZE; n++) {
+                    batchManager.removeItem(listSize + 1);
+                }
+            }
+        });
+    }
+}
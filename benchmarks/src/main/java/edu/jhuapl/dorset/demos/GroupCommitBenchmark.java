@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.typesafe.config.ConfigFactory;
+
+/**
+ * Adds per second from sixteen client threads to one list, through ExecutorToDoListManager
+ * as the agent makes them, each add waiting until it is written. Without group commit each
+ * add is written on a worker thread on its own; with it, the adds are written in batches by
+ * one writer. File lists force each write to the disk (fileDurability = sync).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Threads(16)
+public class GroupCommitBenchmark {
+
+    @Param({"file", "database"})
+    public String backend;
+
+    @Param({"false", "true"})
+    public boolean groupCommit;
+
+    private String listName;
+    private ToDoListRegistry lists;
+    private ThreadPoolExecutor executor;
+    private GroupCommitWriter writer;
+
+    @Setup
+    public void setUp() throws ToDoListAccessException {
+        listName = "group-commit-" + backend + "-" + groupCommit;
+        BenchmarkLists.delete(listName);
+        HashMap<String, Object> config = new HashMap<String, Object>();
+        config.put("name", listName);
+        config.put("dataStorageType", backend);
+        config.put("fileDurability", "sync");
+        lists = new ToDoListRegistry(ConfigFactory.parseMap(config));
+        executor = ExecutorToDoListManager.createExecutor(ExecutorToDoListManager.DEFAULT_THREADS,
+                        ExecutorToDoListManager.DEFAULT_QUEUE_CAPACITY);
+        if (groupCommit) {
+            writer = new GroupCommitWriter(lists, GroupCommitWriter.DEFAULT_MAX_BATCH_SIZE);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        if (writer != null) {
+            writer.close();
+        }
+        executor.shutdown();
+        lists.close();
+        BenchmarkLists.delete(listName);
+    }
+
+    @Benchmark
+    public String add() throws InterruptedException, ExecutionException {
+        ExecutorToDoListManager manager = new ExecutorToDoListManager(lists, listName, executor, 0);
+        if (writer != null) {
+            manager.setGroupCommit(writer);
+        }
+        return manager.addItem("group commit benchmark item").get();
+    }
+}
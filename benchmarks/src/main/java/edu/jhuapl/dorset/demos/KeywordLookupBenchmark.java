@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Keyword lookups on a CSV list, which go through the KeywordIndex once it is built.
+ * One item in a thousand mentions the dentist; the last item is the only one with its number.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class KeywordLookupBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int listSize;
+
+    private String listName;
+    private FileManager fileManager;
+
+    @Setup
+    public void setUp() throws IOException, ToDoListAccessException {
+        listName = "keyword-benchmark-" + listSize;
+        new File("./" + listName + ".csv").delete();
+        try (BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter("./" + listName + ".csv"))) {
+            bufferedWriter.write(listName + " TODO List");
+            for (int n = 1; n <= listSize; n++) {
+                String task = n % 1000 == 0 ? "call the dentist about visit " + n : "benchmark item number " + n;
+                bufferedWriter.write("\n" + n + "),01/01/2017,1:00 PM," + task);
+            }
+        }
+        fileManager = new FileManager(listName);
+        fileManager.getItem("benchmark");
+    }
+
+    @TearDown
+    public void tearDown() {
+        new File("./" + listName + ".csv").delete();
+    }
+
+    @Benchmark
+    public String getItemBySelectiveKeyword() throws ToDoListAccessException {
+        return fileManager.getItem("number " + (listSize - 1));
+    }
+
+    @Benchmark
+    public Object getAllItemsWithRareKeyword() throws ToDoListAccessException {
+        return fileManager.getAllItemsWithKeyword("Dentist");
+    }
+
+    @Benchmark
+    public String getItemWithNoMatch() throws ToDoListAccessException {
+        return fileManager.getItem("groceries");
+    }
+}
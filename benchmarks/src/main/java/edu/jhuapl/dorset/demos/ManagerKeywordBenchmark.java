@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Keyword operations of each ToDoListManager backend, by list size and by the share of
+ * the list the keyword matches. The database backend runs on an in-memory H2 database.
+ * See BenchmarkLists for the lists and keywords.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ManagerKeywordBenchmark {
+
+    @Param({"file", "database", "memory"})
+    public String backend;
+
+    @Param({"100", "10000", "1000000"})
+    public int listSize;
+
+    @Param({"one", "rare", "common", "every"})
+    public String selectivity;
+
+    private String listName;
+    private String keyword;
+    private ToDoListManager manager;
+
+    @Setup
+    public void setUp() throws IOException, ToDoListAccessException {
+        listName = "keyword-" + backend + "-" + listSize;
+        keyword = BenchmarkLists.keyword(selectivity, listSize);
+        manager = BenchmarkLists.open(backend, listName, listSize);
+    }
+
+    @TearDown
+    public void tearDown() throws ToDoListAccessException {
+        manager.close();
+        BenchmarkLists.delete(listName);
+    }
+
+    @Benchmark
+    public String getItemByKeyword() throws ToDoListAccessException {
+        return manager.getItem(keyword);
+    }
+
+    @Benchmark
+    public ArrayList<String> getAllItemsWithKeyword() throws ToDoListAccessException {
+        return manager.getAllItemsWithKeyword(keyword);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The ToDoListManager operations that do not take a keyword, for each backend by list size.
+ * Each write benchmark undoes its own change so the list keeps its size: an add is
+ * followed by a remove, and a remove by an add. The batch benchmarks add BATCH_SIZE items
+ * and remove them again, in two batches or one call at a time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ManagerListBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+    private static final int PAGE_SIZE = ToDoListAgent.DEFAULT_PAGE_SIZE;
+
+    @Param({"file", "database", "memory"})
+    public String backend;
+
+    @Param({"100", "10000", "1000000"})
+    public int listSize;
+
+    private String listName;
+    private ToDoListManager manager;
+    private long middleDay;
+
+    @Setup
+    public void setUp() throws IOException, ToDoListAccessException {
+        listName = "list-" + backend + "-" + listSize;
+        manager = BenchmarkLists.open(backend, listName, listSize);
+        middleDay = BenchmarkLists.day(listSize / 2 + 1, listSize);
+    }
+
+    @TearDown
+    public void tearDown() throws ToDoListAccessException {
+        manager.close();
+        BenchmarkLists.delete(listName);
+    }
+
+    @Benchmark
+    public ArrayList<String> getAllText() throws ToDoListAccessException {
+        return manager.getAllText();
+    }
+
+    @Benchmark
+    public ArrayList<String> getMiddlePage() throws ToDoListAccessException {
+        return manager.getAllText(listSize / 2, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public String getItemByNumber() throws ToDoListAccessException {
+        return manager.getItem(listSize / 2 + 1);
+    }
+
+    @Benchmark
+    public ArrayList<String> getAllItemsCreatedOnOneDay() throws ToDoListAccessException {
+        return manager.getAllItemsCreatedBetween(middleDay, DateIndex.nextDay(middleDay));
+    }
+
+    @Benchmark
+    public String addItemThenRemoveByNumber() throws ToDoListAccessException {
+        manager.addItem("benchmark write");
+        return manager.removeItem(listSize + 1);
+    }
+
+    @Benchmark
+    public String addItemThenRemoveByKeyword() throws ToDoListAccessException {
+        manager.addItem("benchmark write");
+        return manager.removeItem("benchmark write");
+    }
+
+    @Benchmark
+    public void addBatchThenRemoveBatch() throws ToDoListAccessException {
+        manager.runBatch(new ToDoListBatch() {
+            public void run(ToDoListManager batchManager) throws ToDoListAccessException {
+                for (int n = 0; n < BATCH_SIZE; n++) {
+                    batchManager.addItem("benchmark batch write");
+                }
+            }
+        });
+        manager.runBatch(new ToDoListBatch() {
+            public void run(ToDoListManager batchManager) throws ToDoListAccessException {
+                for (int n = 0; n < BATCH_SIZE; n++) {
+                    batchManager.removeItem(listSize + 1);
+                }
+            }
+        });
+    }
+
+    @Benchmark
+    public void addThenRemoveOneAtATime() throws ToDoListAccessException {
+        for (int n = 0; n < BATCH_SIZE; n++) {
+            manager.addItem("benchmark batch write");
+        }
+        for (int n = 0; n < BATCH_SIZE; n++) {
+            manager.removeItem(listSize + 1);
+        }
+    }
+
+    @Benchmark
+    public String removeFirstItemThenAdd() throws ToDoListAccessException {
+        String removed = manager.removeItem(1);
+        manager.addItem("item moved to the end");
+        return removed;
+    }
+}
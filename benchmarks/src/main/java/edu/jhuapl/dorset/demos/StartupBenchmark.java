@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.typesafe.config.ConfigFactory;
+
+import edu.jhuapl.dorset.agents.AgentRequest;
+import edu.jhuapl.dorset.agents.AgentResponse;
+
+/**
+ * Cold start of ToDoListAgent: each fork is a fresh JVM that creates one agent, so nothing,
+ * the SessionFactory included, has been loaded or built before. createAgent times the
+ * constructor alone, which is what an application hosting the agent waits for, and
+ * createAgentAndAnswer the constructor and a first GET ALL, the time until the first user
+ * gets an answer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 10, jvmArgs = "-Xmx4g")
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class StartupBenchmark {
+
+    @Param({"file", "database"})
+    public String backend;
+
+    @Param({"eager", "lazy", "warm-up"})
+    public String startup;
+
+    @Param({"1000"})
+    public int listSize;
+
+    private String listName;
+    private HashMap<String, Object> config;
+
+    @Setup
+    public void setUp() throws IOException {
+        listName = "startup-" + backend + "-" + listSize;
+        if (backend.equals("file")) {
+            BenchmarkLists.writeCsv(listName, listSize);
+        }
+        config = new HashMap<String, Object>();
+        config.put("name", listName);
+        config.put("dataStorageType", backend);
+        config.put("startup", startup);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkLists.delete(listName);
+    }
+
+    @Benchmark
+    public ToDoListAgent createAgent() {
+        return new ToDoListAgent(ConfigFactory.parseMap(config));
+    }
+
+    @Benchmark
+    public AgentResponse createAgentAndAnswer() {
+        ToDoListAgent agent = new ToDoListAgent(ConfigFactory.parseMap(config));
+        return agent.process(new AgentRequest("GET ALL"));
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compare the CSV list (FileManager) with the memory-mapped binary list (MappedFileManager).
+ * Both lists are built from the same CSV file; the binary one through the CsvListConverter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class StorageFormatBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int listSize;
+
+    private String listName;
+    private FileManager fileManager;
+    private MappedFileManager mappedFileManager;
+    private Random random;
+
+    @Setup
+    public void setUp() throws IOException, ToDoListAccessException {
+        listName = "storage-benchmark-" + listSize;
+        deleteLists();
+        try (BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter("./" + listName + ".csv"))) {
+            bufferedWriter.write(listName + " TODO List");
+            for (int n = 1; n <= listSize; n++) {
+                bufferedWriter.write("\n" + n + "),01/01/2017,1:00 PM,benchmark item number " + n);
+            }
+        }
+        CsvListConverter.convert(listName);
+
+        fileManager = new FileManager(listName);
+        mappedFileManager = new MappedFileManager(listName);
+        random = new Random(42);
+    }
+
+    @TearDown
+    public void tearDown() throws ToDoListAccessException {
+        mappedFileManager.close();
+        deleteLists();
+    }
+
+    private void deleteLists() {
+        new File("./" + listName + ".csv").delete();
+        new File("./" + listName + ".todo").delete();
+    }
+
+    @Benchmark
+    public String csvGetItemByNumber() throws ToDoListAccessException {
+        return fileManager.getItem(1 + random.nextInt(listSize));
+    }
+
+    @Benchmark
+    public String binaryGetItemByNumber() {
+        return mappedFileManager.getItem(1 + random.nextInt(listSize));
+    }
+
+    @Benchmark
+    public Object csvGetAllText() throws ToDoListAccessException {
+        return fileManager.getAllText();
+    }
+
+    @Benchmark
+    public Object binaryGetAllText() {
+        return mappedFileManager.getAllText();
+    }
+
+    @Benchmark
+    public int binaryAppendAllText() {
+        StringBuilder text = new StringBuilder(listSize * 48);
+        mappedFileManager.appendAllText(text);
+        return text.length();
+    }
+
+    @Benchmark
+    public Object csvOpenAndGetAllText() throws ToDoListAccessException {
+        return new FileManager(listName).getAllText();
+    }
+
+    @Benchmark
+    public String binaryOpenAndGetItem() throws ToDoListAccessException {
+        MappedFileManager manager = new MappedFileManager(listName);
+        String item = manager.getItem(listSize);
+        manager.close();
+        return item;
+    }
+}
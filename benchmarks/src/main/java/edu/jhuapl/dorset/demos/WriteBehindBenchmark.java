@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The latency of adding to a database list behind a WriteBehindManager, for each durability.
+ * Sample time shows the adds that wait for a write as well as the buffered ones.
+ * Every iteration starts from an empty list, so the list does not keep growing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class WriteBehindBenchmark {
+
+    @Param({"SYNC", "GROUP_COMMIT", "ASYNC"})
+    public WriteBehindManager.Durability durability;
+
+    private WriteBehindManager manager;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws ToDoListAccessException {
+        DatabaseManager database = new DatabaseManager("write-behind-" + durability, true);
+        BenchmarkLists.fillDatabase(database, 0);
+        manager = new WriteBehindManager(database, durability, WriteBehindManager.DEFAULT_FLUSH_SIZE,
+                        WriteBehindManager.DEFAULT_FLUSH_MILLIS);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws ToDoListAccessException {
+        manager.close();
+    }
+
+    @Benchmark
+    public String addItem() throws ToDoListAccessException {
+        return manager.addItem("a buffered item");
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous version of ToDoListManager. Every method returns at once with a future
+ * that completes with the result of the matching ToDoListManager method, or completes
+ * exceptionally with a ToDoListAccessException if the operation fails, is refused
+ * because too many are waiting, or takes too long. Cancelling a future skips its
+ * operation if the operation has not started yet.
+ */
+public interface AsyncToDoListManager {
+
+    public CompletableFuture<String> addItem(String item);
+
+    public CompletableFuture<String> removeItem(int itemNumber);
+
+    public CompletableFuture<String> removeItem(String itemKeyword);
+
+    public CompletableFuture<ArrayList<String>> getAllText();
+
+    public CompletableFuture<ArrayList<String>> getAllText(int offset, int limit);
+
+    public CompletableFuture<Integer> appendAllText(StringBuilder text);
+
+    public CompletableFuture<ArrayList<String>> getAllItemsWithKeyword(String itemKeyword);
+
+    public CompletableFuture<ArrayList<String>> getAllItemsWithKeyword(String itemKeyword, int offset,
+                    int limit);
+
+    public CompletableFuture<ArrayList<String>> getAllItemsCreatedBetween(long from, long to);
+
+    public CompletableFuture<String> getItem(int itemNumber);
+
+    public CompletableFuture<String> getItem(String itemKeyword);
+
+    public CompletableFuture<Void> runBatch(ToDoListBatch batch);
+}
@@ -0,0 +1,476 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the answers to getItem and getAllItemsWithKeyword for the most recently
+ * used item numbers and keywords of a list.
+ *
+ * <p>Up to maxEntries answers are kept, the least recently used one making way for a new
+ * one. An answer is returned exactly as the list gave it, and it is dropped as soon as a
+ * change to the list could alter it:
+ * <ul>
+ * <li>an add appends an item, so it drops the keyword results, which it may join, and
+ * the answers that found nothing; an item found by number or as the first match of a
+ * keyword is still there under the same number</li>
+ * <li>a remove renumbers the items after the one removed, so it drops the answers that
+ * hold any of those items or the removed one, and the answers for a keyword with a digit
+ * or a ), which could match part of a renumbered list number</li>
+ * <li>a failed remove, or one whose answer does not start with a list number, drops
+ * everything but the item numbers that found nothing, and a batch drops everything</li>
+ * </ul>
+ *
+ * <p>Answers found while another thread changed the list are not kept.
+ */
+public class CachingManager implements ToDoListManager {
+
+    private static final Object NOTHING_FOUND = new Object();
+
+    private enum Kind {
+        NUMBER, FIRST_MATCH, ALL_MATCHES
+    }
+
+    /**
+     * The question an answer belongs to
+     */
+    private static final class Key {
+        private final Kind kind;
+        private final int itemNumber;
+        private final String keyword;
+
+        Key(Kind kind, int itemNumber, String keyword) {
+            this.kind = kind;
+            this.itemNumber = itemNumber;
+            this.keyword = keyword;
+        }
+
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return kind == key.kind && itemNumber == key.itemNumber
+                            && (keyword == null ? key.keyword == null : keyword.equals(key.keyword));
+        }
+
+        public int hashCode() {
+            return 31 * (31 * kind.hashCode() + itemNumber) + (keyword == null ? 0 : keyword.hashCode());
+        }
+    }
+
+    private ToDoListManager manager;
+    private LinkedHashMap<Key, Object> answers;
+    private long changes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Create a cache in front of a list
+     *
+     * @param manager  the manager of the list
+     * @param maxEntries  the number of answers to keep
+     */
+    public CachingManager(ToDoListManager manager, final int maxEntries) {
+        this.manager = manager;
+        this.answers = new LinkedHashMap<Key, Object>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+                if (size() <= maxEntries) {
+                    return false;
+                }
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Look up an answer
+     *
+     * @param key  the question
+     * @return the answer, NOTHING_FOUND for a null answer, or null if it is not kept
+     */
+    private synchronized Object lookUp(Key key) {
+        Object answer = answers.get(key);
+        if (answer == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return answer;
+    }
+
+    /**
+     * Keep an answer, unless the list changed since the question was asked
+     *
+     * @param key  the question
+     * @param answer  the answer, or null if nothing was found
+     * @param changesBefore  the number of changes when the question was asked
+     */
+    private synchronized void keep(Key key, Object answer, long changesBefore) {
+        if (changes == changesBefore) {
+            answers.put(key, answer == null ? NOTHING_FOUND : answer);
+        }
+    }
+
+    private synchronized long getChanges() {
+        return changes;
+    }
+
+    /**
+     * Add an item to the list
+     *
+     * @param item  the item to add
+     * @return the answer of the list
+     * @throws ToDoListAccessException  if the list cannot be accessed
+     */
+    public String addItem(String item) throws ToDoListAccessException {
+        try {
+            return manager.addItem(item);
+        } finally {
+            synchronized (this) {
+                changes++;
+                Iterator<Map.Entry<Key, Object>> entries = answers.entrySet().iterator();
+                while (entries.hasNext()) {
+                    Map.Entry<Key, Object> entry = entries.next();
+                    if (entry.getKey().kind == Kind.ALL_MATCHES || entry.getValue() == NOTHING_FOUND) {
+                        entries.remove();
+                        invalidations++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove an item based on its item number
+     *
+     * @param itemNumber  the number of the item to remove
+     * @return the item removed, or null if there is no such item
+     * @throws ToDoListAccessException  if the list cannot be accessed
+     */
+    public String removeItem(int itemNumber) throws ToDoListAccessException {
+        String removed;
+        try {
+            removed = manager.removeItem(itemNumber);
+        } catch (ToDoListAccessException | RuntimeException e) {
+            forgetFrom(1);
+            throw e;
+        }
+        if (removed != null) {
+            forgetFrom(itemNumber);
+        }
+        return removed;
+    }
+
+    /**
+     * Remove the first item containing a keyword
+     *
+     * @param itemKeyword  the keyword to find the item
+     * @return the item removed, or null if no item contains the keyword
+     * @throws ToDoListAccessException  if the list cannot be accessed
+     */
+    public String removeItem(String itemKeyword) throws ToDoListAccessException {
+        String removed;
+        try {
+            removed = manager.removeItem(itemKeyword);
+        } catch (ToDoListAccessException | RuntimeException e) {
+            forgetFrom(1);
+            throw e;
+        }
+        if (removed != null) {
+            forgetFrom(Math.max(1, getItemNumber(removed)));
+        }
+        return removed;
+    }
+
+    /**
+     * Drop the answers a remove may have changed
+     *
+     * @param itemNumber  the number of the item removed, or 1 if it is unknown
+     */
+    private synchronized void forgetFrom(int itemNumber) {
+        changes++;
+        Iterator<Map.Entry<Key, Object>> entries = answers.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Key, Object> entry = entries.next();
+            if (isChangedByRemove(entry.getKey(), entry.getValue(), itemNumber)) {
+                entries.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    /**
+     * Check whether removing an item may change an answer
+     *
+     * @param key  the question
+     * @param answer  the answer
+     * @param itemNumber  the number of the item removed
+     * @return whether the answer holds the removed item or one after it, or is for a keyword
+     *         that could match part of a list number
+     */
+    private static boolean isChangedByRemove(Key key, Object answer, int itemNumber) {
+        if (key.kind != Kind.NUMBER && mayMatchNumber(key.keyword)) {
+            return true;
+        } else if (answer == NOTHING_FOUND) {
+            return false;
+        } else if (answer instanceof String) {
+            return !isBefore((String) answer, itemNumber);
+        }
+        @SuppressWarnings("unchecked")
+        ArrayList<String> lines = (ArrayList<String>) answer;
+        for (String line : lines) {
+            if (!isBefore(line, itemNumber)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check whether an item comes before a given item number
+     *
+     * @param line  the item
+     * @param itemNumber  the item number
+     * @return whether the item starts with a list number lower than itemNumber
+     */
+    private static boolean isBefore(String line, int itemNumber) {
+        int lineNumber = getItemNumber(line);
+        return lineNumber >= 0 && lineNumber < itemNumber;
+    }
+
+    /**
+     * Check whether a keyword could match part of the list number in front of an item
+     *
+     * @param keyword  the keyword
+     * @return whether the keyword has a digit or a )
+     */
+    private static boolean mayMatchNumber(String keyword) {
+        for (int n = 0; n < keyword.length(); n++) {
+            char c = keyword.charAt(n);
+            if ((c >= '0' && c <= '9') || c == ')') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Read the list number in front of an item
+     *
+     * @param line  the item, formatted as: #),date,time,task
+     * @return the number, or -1 if the line does not start with one
+     */
+    static int getItemNumber(String line) {
+        int end = line.indexOf("),");
+        if (end < 1 || end > 9) {
+            return -1;
+        }
+        int number = 0;
+        for (int n = 0; n < end; n++) {
+            char c = line.charAt(n);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = 10 * number + (c - '0');
+        }
+        return number;
+    }
+
+    /**
+     * Get all text of the list; not cached
+     *
+     * @return text  a list of all items
+     * @throws ToDoListAccessException  if the list cannot be accessed
+     */
+    public ArrayList<String> getAllText() throws ToDoListAccessException {
+        return manager.getAllText();
+    }
+
+    /**
+     * Append all text of the list to a buffer; not cached
+     *
+     * @param text  where to append the lines
+     * @return the number of lines appended
+     * @throws ToDoListAccessException  if the list cannot be accessed
+     */
+    public int appendAllText(StringBuilder text) throws ToDoListAccessException {
+        return manager.appendAllText(text);
+    }
+
+    /**
+     * Get a page of the list; not cached
+     *
+     * @param offset  the number of items to skip
+     * @param limit  the most items to return
+     * @return text  a list of the items on the page
+     * @throws ToDoListAccessException  if the list cannot be accessed
+     */
+    public ArrayList<String> getAllText(int offset, int limit) throws ToDoListAccessException {
+        return manager.getAllText(offset, limit);
+    }
+
+    /**
+     * Get all the items with a keyword
+     *
+     * @param itemKeyword  the keyword to find the items
+     * @return itemsWithKeyword  a list of items with the keyword
+     * @throws ToDoListAccessException  if the list cannot be accessed
+     */
+    public ArrayList<String> getAllItemsWithKeyword(String itemKeyword) throws ToDoListAccessException {
+        Key key = new Key(Kind.ALL_MATCHES, 0, itemKeyword);
+        Object answer = lookUp(key);
+        if (answer == null) {
+            long changesBefore = getChanges();
+            ArrayList<String> itemsWithKeyword = manager.getAllItemsWithKeyword(itemKeyword);
+            keep(key, new ArrayList<String>(itemsWithKeyword), changesBefore);
+            return itemsWithKeyword;
+        }
+        @SuppressWarnings("unchecked")
+        ArrayList<String> itemsWithKeyword = new ArrayList<String>((ArrayList<String>) answer);
+        return itemsWithKeyword;
+    }
+
+    /**
+     * Get a page of the items with a keyword; not cached
+     *
+     * @param itemKeyword  the keyword to find the items
+     * @param offset  the number of matching items to skip
+     * @param limit  the most items to return
+     * @return itemsWithKeyword  a list of items with the keyword
+     * @throws ToDoListAccessException  if the list cannot be accessed
+     */
+    public ArrayList<String> getAllItemsWithKeyword(String itemKeyword, int offset, int limit)
+                    throws ToDoListAccessException {
+        return manager.getAllItemsWithKeyword(itemKeyword, offset, limit);
+    }
+
+    /**
+     * Get all items created in a time range; not cached
+     *
+     * @param from  the start of the range in epoch milliseconds, inclusive
+     * @param to  the end of the range in epoch milliseconds, exclusive
+     * @return the items created in the range
+     * @throws ToDoListAccessException  if the list cannot be accessed
+     */
+    public ArrayList<String> getAllItemsCreatedBetween(long from, long to) throws ToDoListAccessException {
+        return manager.getAllItemsCreatedBetween(from, to);
+    }
+
+    /**
+     * Get the item with an item number
+     *
+     * @param itemNumber  the number of the item
+     * @return the item, or null if there is no such item
+     * @throws ToDoListAccessException  if the list cannot be accessed
+     */
+    public String getItem(int itemNumber) throws ToDoListAccessException {
+        return getItem(new Key(Kind.NUMBER, itemNumber, null));
+    }
+
+    /**
+     * Get the first item containing a keyword
+     *
+     * @param itemKeyword  the keyword to find the item
+     * @return the item, or null if no item contains the keyword
+     * @throws ToDoListAccessException  if the list cannot be accessed
+     */
+    public String getItem(String itemKeyword) throws ToDoListAccessException {
+        return getItem(new Key(Kind.FIRST_MATCH, 0, itemKeyword));
+    }
+
+    /**
+     * Get one item, from the cache if it is kept
+     *
+     * @param key  the item number or keyword
+     * @return the item, or null if there is no such item
+     * @throws ToDoListAccessException  if the list cannot be accessed
+     */
+    private String getItem(Key key) throws ToDoListAccessException {
+        Object answer = lookUp(key);
+        if (answer == null) {
+            long changesBefore = getChanges();
+            String item = key.kind == Kind.NUMBER ? manager.getItem(key.itemNumber) : manager.getItem(key.keyword);
+            keep(key, item, changesBefore);
+            return item;
+        }
+        return answer == NOTHING_FOUND ? null : (String) answer;
+    }
+
+    /**
+     * Run a batch on the list, then drop every answer
+     *
+     * @param batch  the operations to run
+     * @throws ToDoListAccessException  if an operation fails
+     */
+    public void runBatch(ToDoListBatch batch) throws ToDoListAccessException {
+        try {
+            manager.runBatch(batch);
+        } finally {
+            clear();
+        }
+    }
+
+    /**
+     * Drop every answer
+     */
+    public synchronized void clear() {
+        changes++;
+        invalidations += answers.size();
+        answers.clear();
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized long getInvalidationCount() {
+        return invalidations;
+    }
+
+    public synchronized int size() {
+        return answers.size();
+    }
+
+    /**
+     * Close the list
+     *
+     * @throws ToDoListAccessException  if the list cannot be closed
+     */
+    public void close() throws ToDoListAccessException {
+        clear();
+        manager.close();
+    }
+}
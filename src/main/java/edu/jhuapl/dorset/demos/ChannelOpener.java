@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+
+/**
+ * Opens the channels a list file is written through, so a test can put a channel that
+ * fails partway through a write in place of the file's own
+ */
+interface ChannelOpener {
+
+    /**
+     * Opens the file itself
+     */
+    ChannelOpener FILES = new ChannelOpener() {
+        public FileChannel open(Path path, OpenOption... options) throws IOException {
+            return FileChannel.open(path, options);
+        }
+    };
+
+    /**
+     * Open a channel on a file
+     *
+     * @param path  the file
+     * @param options  how to open it
+     * @return the channel
+     * @throws IOException  if the file cannot be opened
+     */
+    FileChannel open(Path path, OpenOption... options) throws IOException;
+}
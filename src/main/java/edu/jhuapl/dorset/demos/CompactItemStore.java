@@ -0,0 +1,606 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.nio.charset.StandardCharsets;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * The items of a ToDo list held in columns of primitives rather than as objects.
+ *
+ * <p>An item is its creation time in a long array and the place of its task in an int
+ * array of starts and an int array of lengths. The tasks themselves are kept as UTF-8 in
+ * one byte arena shared by the list, so an item costs 16 bytes plus its text, and the list
+ * as a whole is five objects however many items it has. The list number of an item is
+ * its position in the columns, so a remove shifts the items after it down by one. The text
+ * of a removed item stays in the arena until more than half of the arena is dead text,
+ * and then the arena is copied without it. While the items are in the order they were
+ * created, as they are when they are added as they come, the items created in a range of
+ * days are found by a binary search on the creation times.
+ *
+ * <p>No String is made for an item until it is read: the item line, formatted as
+ * #),date,time,task like the other lists, is built when it is returned. A keyword made of
+ * ASCII characters is looked for in the UTF-8 bytes of each task directly; the line is only
+ * built for an item whose task is not all ASCII, or when the keyword could start in the
+ * number, date or time in front of the task.
+ *
+ * <p>Reads may run in parallel with each other. Adds and removes must not run alongside
+ * anything else.
+ */
+public class CompactItemStore {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int INITIAL_ARENA_SIZE = 1024;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+    private static final int MIN_DEAD_BYTES_TO_COMPACT = 64 * 1024;
+    private static final long MILLIS_PER_MINUTE = 60000;
+    private static final String UPPER_CASE_LETTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    private static final ThreadLocal<Stamps> STAMPS = new ThreadLocal<Stamps>() {
+        protected Stamps initialValue() {
+            return new Stamps();
+        }
+    };
+
+    private int size;
+    private long[] createdAt;
+    private int[] taskStarts;
+    private int[] taskLengths;
+    private byte[] arena;
+    private int arenaLength;
+    private int deadBytes;
+    private boolean inTimeOrder = true;
+    private ArrayList<long[]> undoLog;
+    private int batchArenaLength;
+    private int batchDeadBytes;
+
+    /**
+     * Create an empty store
+     */
+    public CompactItemStore() {
+        createdAt = new long[INITIAL_CAPACITY];
+        taskStarts = new int[INITIAL_CAPACITY];
+        taskLengths = new int[INITIAL_CAPACITY];
+        arena = new byte[INITIAL_ARENA_SIZE];
+    }
+
+    /**
+     * Get the number of items
+     *
+     * @return the number of items
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add an item at the end of the list
+     *
+     * @param time  the time the item was created, in epoch milliseconds
+     * @param task  the task
+     * @return the list number of the item
+     * @throws IllegalStateException  if the arena has no room left for the task
+     */
+    public int add(long time, String task) {
+        byte[] bytes = task.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_ARRAY_SIZE - arenaLength && undoLog == null) {
+            compact();
+        }
+        if (bytes.length > MAX_ARRAY_SIZE - arenaLength) {
+            throw new IllegalStateException("No room left for " + bytes.length + " bytes of text");
+        }
+        if (size == createdAt.length) {
+            grow();
+        }
+        ensureArena(arenaLength + bytes.length);
+
+        System.arraycopy(bytes, 0, arena, arenaLength, bytes.length);
+        if (size > 0 && time < createdAt[size - 1]) {
+            inTimeOrder = false;
+        }
+        createdAt[size] = time;
+        taskStarts[size] = arenaLength;
+        taskLengths[size] = bytes.length;
+        arenaLength += bytes.length;
+        size++;
+        if (undoLog != null) {
+            undoLog.add(new long[] {size});
+        }
+        return size;
+    }
+
+    /**
+     * Remove an item, moving the items after it up one number
+     *
+     * @param itemNumber  the list number of the item
+     * @return the item line removed or null if there is no such item
+     */
+    public String remove(int itemNumber) {
+        if (itemNumber < 1 || itemNumber > size) {
+            return null;
+        }
+        String removed = getLine(itemNumber);
+        int index = itemNumber - 1;
+        if (undoLog != null) {
+            undoLog.add(new long[] {itemNumber, createdAt[index], taskStarts[index], taskLengths[index]});
+        }
+        deadBytes += taskLengths[index];
+        int moved = size - itemNumber;
+        System.arraycopy(createdAt, index + 1, createdAt, index, moved);
+        System.arraycopy(taskStarts, index + 1, taskStarts, index, moved);
+        System.arraycopy(taskLengths, index + 1, taskLengths, index, moved);
+        size--;
+        if (undoLog == null && deadBytes >= MIN_DEAD_BYTES_TO_COMPACT && deadBytes > arenaLength / 2) {
+            compact();
+        }
+        return removed;
+    }
+
+    /**
+     * Start recording changes, so they can be undone together
+     */
+    public void beginBatch() {
+        undoLog = new ArrayList<long[]>();
+        batchArenaLength = arenaLength;
+        batchDeadBytes = deadBytes;
+    }
+
+    /**
+     * Keep the changes made since beginBatch
+     */
+    public void commitBatch() {
+        undoLog = null;
+    }
+
+    /**
+     * Undo the changes made since beginBatch, last first, leaving the items as they were
+     */
+    public void rollBackBatch() {
+        for (int n = undoLog.size() - 1; n >= 0; n--) {
+            long[] change = undoLog.get(n);
+            if (change.length == 1) {
+                size--;
+            } else {
+                insert((int) change[0] - 1, change[1], (int) change[2], (int) change[3]);
+            }
+        }
+        arenaLength = batchArenaLength;
+        deadBytes = batchDeadBytes;
+        undoLog = null;
+    }
+
+    /**
+     * Put a removed item back at its place
+     *
+     * @param index  the index of the item
+     * @param time  its creation time
+     * @param taskStart  the start of its task in the arena
+     * @param taskLength  the length of its task in bytes
+     */
+    private void insert(int index, long time, int taskStart, int taskLength) {
+        if (size == createdAt.length) {
+            grow();
+        }
+        int moved = size - index;
+        System.arraycopy(createdAt, index, createdAt, index + 1, moved);
+        System.arraycopy(taskStarts, index, taskStarts, index + 1, moved);
+        System.arraycopy(taskLengths, index, taskLengths, index + 1, moved);
+        createdAt[index] = time;
+        taskStarts[index] = taskStart;
+        taskLengths[index] = taskLength;
+        size++;
+    }
+
+    /**
+     * Get the item line with a list number
+     *
+     * @param itemNumber  the list number, from 1 to size
+     * @return the item line, formatted as: #),date,time,task
+     */
+    public String getLine(int itemNumber) {
+        return getLine(itemNumber, STAMPS.get());
+    }
+
+    private String getLine(int itemNumber, Stamps stamps) {
+        int index = itemNumber - 1;
+        return itemNumber + ")," + stamps.format(createdAt[index]) + "," + getTaskAt(index);
+    }
+
+    /**
+     * Get the task of an item
+     *
+     * @param itemNumber  the list number, from 1 to size
+     * @return the task
+     */
+    public String getTask(int itemNumber) {
+        return getTaskAt(itemNumber - 1);
+    }
+
+    private String getTaskAt(int index) {
+        return new String(arena, taskStarts[index], taskLengths[index], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the creation time of an item
+     *
+     * @param itemNumber  the list number, from 1 to size
+     * @return the time the item was created, in epoch milliseconds
+     */
+    public long getCreatedAt(int itemNumber) {
+        return createdAt[itemNumber - 1];
+    }
+
+    /**
+     * Get a page of item lines, in list order
+     *
+     * @param offset  the number of items to skip
+     * @param limit  the most items to return
+     * @return the item lines
+     */
+    public ArrayList<String> getLines(int offset, int limit) {
+        int from = Math.min(Math.max(0, offset), size);
+        int to = (int) Math.min((long) from + Math.max(0, limit), size);
+        Stamps stamps = STAMPS.get();
+        ArrayList<String> lines = new ArrayList<String>(to - from);
+        for (int n = from; n < to; n++) {
+            lines.add(getLine(n + 1, stamps));
+        }
+        return lines;
+    }
+
+    /**
+     * Append every item line to a buffer, each followed by a line break, without building
+     * a list of them first
+     *
+     * @param text  where to append the item lines
+     * @return the number of lines appended
+     */
+    public int appendLines(StringBuilder text) {
+        int count = size;
+        Stamps stamps = STAMPS.get();
+        for (int n = 1; n <= count; n++) {
+            text.append(getLine(n, stamps)).append('\n');
+        }
+        return count;
+    }
+
+    /**
+     * Get the list number of the first item whose line contains the keyword, ignoring case
+     *
+     * @param keyword  the keyword
+     * @return the list number or 0 if no item contains the keyword
+     */
+    public int find(String keyword) {
+        KeywordMatcher matcher = new KeywordMatcher(keyword);
+        for (int n = 0; n < size; n++) {
+            if (matcher.matches(n)) {
+                return n + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Get all the item lines containing the keyword, ignoring case
+     *
+     * @param keyword  the keyword
+     * @return the item lines, in list order
+     */
+    public ArrayList<String> findAll(String keyword) {
+        return findAll(keyword, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get a page of the item lines containing the keyword, ignoring case.
+     * Matching items before the page are counted but not turned into lines, and the search
+     * stops once the page is full.
+     *
+     * @param keyword  the keyword
+     * @param offset  the number of matching items to skip
+     * @param limit  the most lines to return
+     * @return the item lines, in list order
+     */
+    public ArrayList<String> findAll(String keyword, int offset, int limit) {
+        KeywordMatcher matcher = new KeywordMatcher(keyword);
+        ArrayList<String> lines = new ArrayList<String>();
+        int skip = Math.max(0, offset);
+        for (int n = 0; n < size && lines.size() < limit; n++) {
+            if (!matcher.matches(n)) {
+                continue;
+            } else if (skip > 0) {
+                skip--;
+                continue;
+            }
+            lines.add(getLine(n + 1, matcher.stamps));
+        }
+        return lines;
+    }
+
+    /**
+     * Get all the item lines created in a time range
+     *
+     * @param from  the start of the range in epoch milliseconds, inclusive
+     * @param to  the end of the range in epoch milliseconds, exclusive
+     * @return the item lines created on the days that start in the range, in list order
+     */
+    public ArrayList<String> findCreatedBetween(long from, long to) {
+        Stamps stamps = STAMPS.get();
+        ArrayList<String> lines = new ArrayList<String>();
+        if (inTimeOrder) {
+            int end = firstCreatedOnOrAfter(to, stamps);
+            for (int n = firstCreatedOnOrAfter(from, stamps); n < end; n++) {
+                lines.add(getLine(n + 1, stamps));
+            }
+            return lines;
+        }
+
+        for (int n = 0; n < size; n++) {
+            long day = stamps.dayOf(createdAt[n]);
+            if (day >= from && day < to) {
+                lines.add(getLine(n + 1, stamps));
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Find the first item whose day starts at or after a time, while the items are in time order
+     *
+     * @param time  the time in epoch milliseconds
+     * @param stamps  the formats of the calling thread
+     * @return the index of the item, or size if there is none
+     */
+    private int firstCreatedOnOrAfter(long time, Stamps stamps) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (stamps.dayOf(createdAt[middle]) < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Get the bytes held by the columns and the arena, counting their unused room
+     *
+     * @return the size of the arrays in bytes
+     */
+    public long getBytesUsed() {
+        return 8L * createdAt.length + 4L * taskStarts.length + 4L * taskLengths.length + arena.length;
+    }
+
+    /**
+     * Double the room in the columns
+     */
+    private void grow() {
+        int capacity = (int) Math.min((long) createdAt.length * 2, MAX_ARRAY_SIZE);
+        if (capacity == size) {
+            throw new IllegalStateException("No room left for another item");
+        }
+        long[] newCreatedAt = new long[capacity];
+        int[] newTaskStarts = new int[capacity];
+        int[] newTaskLengths = new int[capacity];
+        System.arraycopy(createdAt, 0, newCreatedAt, 0, size);
+        System.arraycopy(taskStarts, 0, newTaskStarts, 0, size);
+        System.arraycopy(taskLengths, 0, newTaskLengths, 0, size);
+        createdAt = newCreatedAt;
+        taskStarts = newTaskStarts;
+        taskLengths = newTaskLengths;
+    }
+
+    /**
+     * Make room in the arena, at least doubling it when it grows
+     *
+     * @param length  the number of bytes the arena must hold
+     */
+    private void ensureArena(int length) {
+        if (length <= arena.length) {
+            return;
+        }
+        byte[] newArena = new byte[(int) Math.min(Math.max((long) arena.length * 2, length), MAX_ARRAY_SIZE)];
+        System.arraycopy(arena, 0, newArena, 0, arenaLength);
+        arena = newArena;
+    }
+
+    /**
+     * Copy the tasks of the items into a new arena, leaving out the text of removed items
+     */
+    private void compact() {
+        int liveLength = arenaLength - deadBytes;
+        byte[] newArena = new byte[Math.max(INITIAL_ARENA_SIZE, liveLength + liveLength / 2)];
+        int position = 0;
+        for (int n = 0; n < size; n++) {
+            System.arraycopy(arena, taskStarts[n], newArena, position, taskLengths[n]);
+            taskStarts[n] = position;
+            position += taskLengths[n];
+        }
+        arena = newArena;
+        arenaLength = position;
+        deadBytes = 0;
+    }
+
+    /**
+     * Checks item lines for one keyword, ignoring case, building lines only when the task bytes cannot tell
+     */
+    private class KeywordMatcher {
+
+        private static final int NO_MATCH = 0;
+        private static final int MATCH = 1;
+        private static final int UNKNOWN = -1;
+
+        private final String lowerCaseKeyword;
+        private final byte[] asciiKeyword;
+        private final boolean mayStartBeforeTask;
+        private final Stamps stamps;
+
+        KeywordMatcher(String keyword) {
+            lowerCaseKeyword = keyword.toLowerCase();
+            stamps = STAMPS.get();
+            boolean asciiLowerCase = UPPER_CASE_LETTERS.toLowerCase()
+                            .equals(UPPER_CASE_LETTERS.toLowerCase(Locale.ROOT));
+            asciiKeyword = asciiLowerCase && isAscii(lowerCaseKeyword)
+                            ? lowerCaseKeyword.getBytes(StandardCharsets.US_ASCII) : null;
+            mayStartBeforeTask = lowerCaseKeyword.isEmpty()
+                            || stamps.mayAppearBeforeTask(lowerCaseKeyword.charAt(0));
+        }
+
+        /**
+         * Check whether the line of an item contains the keyword
+         *
+         * @param index  the index of the item
+         * @return whether it matches
+         */
+        boolean matches(int index) {
+            if (asciiKeyword != null) {
+                int found = findInTask(index);
+                if (found == MATCH) {
+                    return true;
+                } else if (found == NO_MATCH && !mayStartBeforeTask) {
+                    return false;
+                }
+            }
+            return getLine(index + 1, stamps).toLowerCase().contains(lowerCaseKeyword);
+        }
+
+        /**
+         * Look for the keyword in the UTF-8 bytes of a task, lower-casing ASCII letters
+         *
+         * @param index  the index of the item
+         * @return MATCH, NO_MATCH, or UNKNOWN if the task has a character that is not ASCII
+         */
+        private int findInTask(int index) {
+            byte[] keyword = asciiKeyword;
+            if (keyword.length == 0) {
+                return MATCH;
+            }
+            byte[] text = arena;
+            int end = taskStarts[index] + taskLengths[index];
+            byte first = keyword[0];
+            for (int start = taskStarts[index]; start < end; start++) {
+                byte b = text[start];
+                if (b < 0) {
+                    return UNKNOWN;
+                }
+                if (toLowerCase(b) != first || end - start < keyword.length) {
+                    continue;
+                }
+                int n = 1;
+                while (n < keyword.length && toLowerCase(text[start + n]) == keyword[n]) {
+                    n++;
+                }
+                if (n == keyword.length) {
+                    return MATCH;
+                }
+            }
+            return NO_MATCH;
+        }
+    }
+
+    private static byte toLowerCase(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private static boolean isAscii(String text) {
+        for (int n = 0; n < text.length(); n++) {
+            if (text.charAt(n) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Formats for the date and time in an item line, kept per thread since they are not thread-safe.
+     * The last minute formatted and the last day found are remembered, since items next to each
+     * other in a list are mostly created close together.
+     */
+    private static class Stamps {
+
+        private final DateFormat dateFormat = new SimpleDateFormat(DateIndex.DATE_PATTERN);
+        private final DateFormat timeFormat = DateFormat.getTimeInstance(DateFormat.SHORT);
+        private final Calendar calendar = Calendar.getInstance();
+        private final String charactersBeforeTask;
+        private long minute = Long.MIN_VALUE;
+        private String stamp;
+        private long dayStart = Long.MAX_VALUE;
+        private long dayEnd = Long.MIN_VALUE;
+
+        Stamps() {
+            calendar.clear();
+            calendar.set(2017, Calendar.DECEMBER, 31, 1, 0);
+            Date morning = calendar.getTime();
+            calendar.set(Calendar.HOUR_OF_DAY, 13);
+            Date afternoon = calendar.getTime();
+            charactersBeforeTask = ("),/," + dateFormat.format(morning) + timeFormat.format(morning)
+                            + timeFormat.format(afternoon)).toLowerCase();
+        }
+
+        /**
+         * Format a time as an item line does
+         *
+         * @param time  the time in epoch milliseconds
+         * @return the date and time, formatted as: MM/dd/yyyy,hh:mm AM/PM
+         */
+        String format(long time) {
+            long timeMinute = Math.floorDiv(time, MILLIS_PER_MINUTE);
+            if (timeMinute != minute) {
+                Date date = new Date(time);
+                stamp = dateFormat.format(date) + "," + timeFormat.format(date);
+                minute = timeMinute;
+            }
+            return stamp;
+        }
+
+        /**
+         * Get the day of a time
+         *
+         * @param time  the time in epoch milliseconds
+         * @return the epoch milliseconds of the local midnight starting its day
+         */
+        long dayOf(long time) {
+            if (time < dayStart || time >= dayEnd) {
+                calendar.setTimeInMillis(time);
+                calendar.set(Calendar.HOUR_OF_DAY, 0);
+                calendar.set(Calendar.MINUTE, 0);
+                calendar.set(Calendar.SECOND, 0);
+                calendar.set(Calendar.MILLISECOND, 0);
+                dayStart = calendar.getTimeInMillis();
+                dayEnd = DateIndex.nextDay(dayStart);
+            }
+            return dayStart;
+        }
+
+        /**
+         * Check whether a lower-case character may be part of the number, date or time in front of a task
+         *
+         * @param c  the character
+         * @return whether it may be
+         */
+        boolean mayAppearBeforeTask(char c) {
+            return Character.isDigit(c) || charactersBeforeTask.indexOf(c) >= 0;
+        }
+    }
+}
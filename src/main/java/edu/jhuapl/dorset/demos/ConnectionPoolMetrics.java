@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+/**
+ * A snapshot of the database connection pool, used to size the pool under load
+ */
+public class ConnectionPoolMetrics {
+
+    private int activeConnections;
+    private int idleConnections;
+    private int threadsWaiting;
+    private long connectionsAcquired;
+    private long totalWaitMillis;
+    private long maxWaitMillis;
+
+    /**
+     * Create a snapshot of the connection pool
+     *
+     * @param activeConnections  the connections checked out of the pool
+     * @param idleConnections  the connections in the pool ready for use, or -1 if unknown
+     * @param threadsWaiting  the threads waiting for a connection, or -1 if unknown
+     * @param connectionsAcquired  the connections checked out since the pool started
+     * @param totalWaitMillis  the time spent waiting for those connections
+     * @param maxWaitMillis  the longest wait for a single connection
+     */
+    public ConnectionPoolMetrics(int activeConnections, int idleConnections, int threadsWaiting,
+                    long connectionsAcquired, long totalWaitMillis, long maxWaitMillis) {
+        this.activeConnections = activeConnections;
+        this.idleConnections = idleConnections;
+        this.threadsWaiting = threadsWaiting;
+        this.connectionsAcquired = connectionsAcquired;
+        this.totalWaitMillis = totalWaitMillis;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public int getActiveConnections() {
+        return activeConnections;
+    }
+
+    public int getIdleConnections() {
+        return idleConnections;
+    }
+
+    public int getThreadsWaiting() {
+        return threadsWaiting;
+    }
+
+    public long getConnectionsAcquired() {
+        return connectionsAcquired;
+    }
+
+    public long getTotalWaitMillis() {
+        return totalWaitMillis;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * Get the average time spent waiting for a connection
+     *
+     * @return the average wait in milliseconds
+     */
+    public double getAverageWaitMillis() {
+        if (connectionsAcquired == 0) {
+            return 0;
+        }
+        return (double) totalWaitMillis / connectionsAcquired;
+    }
+
+    public String toString() {
+        return "active=" + activeConnections + ", idle=" + idleConnections + ", waiting=" + threadsWaiting
+                        + ", acquired=" + connectionsAcquired + ", averageWaitMillis=" + getAverageWaitMillis()
+                        + ", maxWaitMillis=" + maxWaitMillis;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * Convert a ToDo list written by the FileManager (./name.csv) into the binary
+ * format used by the MappedFileManager (./name.todo).
+ *
+ * <p>Usage: java edu.jhuapl.dorset.demos.CsvListConverter nameOfToDoList
+ */
+public class CsvListConverter {
+
+    /**
+     * Convert the lists named on the command line
+     *
+     * @param args  the names of the ToDo lists to convert
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: CsvListConverter nameOfToDoList...");
+            System.exit(1);
+        }
+        for (int n = 0; n < args.length; n++) {
+            try {
+                int itemCount = convert(args[n]);
+                System.out.println("Converted " + itemCount + " items from ./" + args[n] + ".csv");
+            } catch (ToDoListAccessException e) {
+                System.err.println("Could not convert " + args[n] + ": " + e.getMessage());
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * Convert a ToDo list from CSV to binary.
+     * The binary list must not exist yet; the CSV list is left in place.
+     * If the conversion fails, the partly written binary list is deleted.
+     *
+     * @param toDoListName  the name of the ToDo list
+     * @return the number of items converted
+     * @throws ToDoListAccessException  if either list cannot be accessed or an item is too long
+     */
+    public static int convert(String toDoListName) throws ToDoListAccessException {
+        File csv = new File("./" + toDoListName + ".csv");
+        File binary = new File("./" + toDoListName + ".todo");
+        if (binary.exists()) {
+            throw new ToDoListAccessException("Binary list already exists: " + binary);
+        }
+
+        MappedFileManager manager = new MappedFileManager(toDoListName);
+        int itemCount = 0;
+        boolean converted = false;
+        try (BufferedReader bufferedReader = new BufferedReader(new FileReader(csv))) {
+            // the first line is the title
+            String currentLine = bufferedReader.readLine();
+            while ((currentLine = bufferedReader.readLine()) != null) {
+                if (currentLine.isEmpty()) {
+                    continue;
+                }
+                String[] fields = currentLine.substring(currentLine.indexOf("),") + 2).split(",", 3);
+                if (fields.length < 3) {
+                    throw new ToDoListAccessException("Item could not be converted: " + currentLine);
+                }
+                manager.addItem(fields[2], fields[0], fields[1]);
+                itemCount++;
+            }
+            converted = true;
+        } catch (IOException e) {
+            throw new ToDoListAccessException("Could not retrieve text", e);
+        } finally {
+            manager.close();
+            if (!converted) {
+                binary.delete();
+            }
+        }
+        return itemCount;
+    }
+}
@@ -20,30 +20,193 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.hibernate.Criteria;
 import org.hibernate.HibernateException;
 import org.hibernate.Query;
-import org.hibernate.Session;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.LikeExpression;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Restrictions;
 
 public class DatabaseManager implements ToDoListManager {
 
+    private static final int FETCH_SIZE = 500;
+    private static final String DATE_FORMAT = "[0-9]{2}/[0-9]{2}/[0-9]{4}";
+
+    public static final String DEFAULT_LIST_ID = "default";
+
+    public static final String EMBEDDED_DRIVER = "org.h2.Driver";
+    public static final String EMBEDDED_DIALECT = "org.hibernate.dialect.H2Dialect";
+    public static final int EMBEDDED_POOL_SIZE = 20;
+
+    private static SessionFactory sharedFactory;
+    private static final HashMap<String, SessionFactory> embeddedFactories = new HashMap<String, SessionFactory>();
+    private static final AtomicLong sessionsOpened = new AtomicLong();
+    private static final AtomicLong factoryBuildNanos = new AtomicLong();
+
     private SessionFactory factory;
+    private String listId;
+    private boolean renumberOnRemove;
+    private StatelessSession batchSession;
+    private int batchNextListNumber;
+    private RankIndex ranks;
 
     /**
-     * Create a DB Manager
+     * Create a DB Manager that renumbers the items after a removed one.
+     * All DB Managers in the process share one SessionFactory, built by the first one.
      *
      * @throws ToDoListAccessException 
      */
     public DatabaseManager() throws ToDoListAccessException {
-        try {
-            Configuration configuration = new Configuration().configure();
-            factory = configuration.buildSessionFactory();
-        } catch (HibernateException e) {
-            throw new ToDoListAccessException("Invalid hibernate configuration. See sample.cfg.xml");
+        this(true);
+    }
+
+    /**
+     * Create a DB Manager.
+     * All DB Managers in the process share one SessionFactory, built by the first one.
+     *
+     * <p>If renumberOnRemove is false, list_number is only an ordering key: a remove deletes
+     * one row and nothing else, and the list number shown for an item is its rank by
+     * list_number. The list numbers in use are read in one ordered pass the first time a rank
+     * is needed and then kept in a RankIndex, so the list must only be changed through this
+     * manager while it is open.
+     *
+     * @param renumberOnRemove  whether to rewrite list_number of every later item on a remove
+     * @throws ToDoListAccessException  if the hibernate configuration is invalid
+     */
+    public DatabaseManager(boolean renumberOnRemove) throws ToDoListAccessException {
+        this(DEFAULT_LIST_ID, renumberOnRemove);
+    }
+
+    /**
+     * Create a DB Manager for one of the lists in the items table.
+     * Every query is restricted to the rows with the given list_id, so lists never see
+     * each other's items and list numbers run from 1 within each list.
+     *
+     * @param listId  the list_id of the rows this manager works on
+     * @param renumberOnRemove  whether to rewrite list_number of every later item on a remove
+     * @throws ToDoListAccessException  if the hibernate configuration is invalid
+     */
+    public DatabaseManager(String listId, boolean renumberOnRemove) throws ToDoListAccessException {
+        this(getSharedFactory(), listId, renumberOnRemove);
+    }
+
+    /**
+     * Create a DB Manager for one of the lists of a given database, such as an embedded one
+     * from getEmbeddedFactory
+     *
+     * @param factory  the SessionFactory of the database
+     * @param listId  the list_id of the rows this manager works on
+     * @param renumberOnRemove  whether to rewrite list_number of every later item on a remove
+     */
+    public DatabaseManager(SessionFactory factory, String listId, boolean renumberOnRemove) {
+        this.factory = factory;
+        this.listId = listId;
+        this.renumberOnRemove = renumberOnRemove;
+    }
+
+    /**
+     * Get the process-wide SessionFactory, building it from hibernate.cfg.xml the first time
+     *
+     * @return the shared SessionFactory
+     * @throws ToDoListAccessException  if the hibernate configuration is invalid
+     */
+    private static synchronized SessionFactory getSharedFactory() throws ToDoListAccessException {
+        if (sharedFactory == null) {
+            try {
+                long start = System.nanoTime();
+                Configuration configuration = new Configuration().configure();
+                sharedFactory = configuration.buildSessionFactory();
+                factoryBuildNanos.addAndGet(System.nanoTime() - start);
+                sharedFactory.getStatistics().setStatisticsEnabled(true);
+            } catch (HibernateException e) {
+                throw new ToDoListAccessException("Invalid hibernate configuration. See sample.cfg.xml");
+            }
+        }
+        return sharedFactory;
+    }
+
+    /**
+     * Get the SessionFactory of an embedded H2 database, building it the first time it is asked for.
+     * The database runs inside the process, so no call leaves it. It is set up in code rather
+     * than from hibernate.cfg.xml, with the same Item mapping, a pool of EMBEDDED_POOL_SIZE
+     * connections, and the items table created or brought up to date when the factory is built.
+     *
+     * @param url  the H2 JDBC url, such as jdbc:h2:./toDoList for a file or
+     *         jdbc:h2:mem:toDoList;DB_CLOSE_DELAY=-1 for memory
+     * @return the SessionFactory of the database
+     * @throws ToDoListAccessException  if the database cannot be opened
+     */
+    public static synchronized SessionFactory getEmbeddedFactory(String url) throws ToDoListAccessException {
+        SessionFactory factory = embeddedFactories.get(url);
+        if (factory == null) {
+            try {
+                long start = System.nanoTime();
+                Configuration configuration = new Configuration()
+                                .setProperty("hibernate.connection.driver_class", EMBEDDED_DRIVER)
+                                .setProperty("hibernate.connection.url", url)
+                                .setProperty("hibernate.connection.username", "sa")
+                                .setProperty("hibernate.connection.password", "")
+                                .setProperty("hibernate.connection.pool_size", String.valueOf(EMBEDDED_POOL_SIZE))
+                                .setProperty("hibernate.dialect", EMBEDDED_DIALECT)
+                                .setProperty("hibernate.hbm2ddl.auto", "update")
+                                .addAnnotatedClass(Item.class);
+                factory = configuration.buildSessionFactory();
+                factoryBuildNanos.addAndGet(System.nanoTime() - start);
+                factory.getStatistics().setStatisticsEnabled(true);
+            } catch (HibernateException e) {
+                throw new ToDoListAccessException("Could not open the embedded database " + url, e);
+            }
+            embeddedFactories.put(url, factory);
         }
+        return factory;
+    }
+
+    /**
+     * Get the SessionFactory this manager uses
+     *
+     * @return the SessionFactory
+     */
+    SessionFactory getFactory() {
+        return factory;
+    }
+
+    /**
+     * Get the list this manager works on
+     *
+     * @return the list_id
+     */
+    public String getListId() {
+        return listId;
+    }
+
+    /**
+     * Get the state of the connection pool
+     *
+     * @return the pool metrics or null if hibernate.cfg.xml does not use the MeteredConnectionProvider
+     *         or this manager does not work on the database set up there
+     */
+    public ConnectionPoolMetrics getPoolMetrics() {
+        synchronized (DatabaseManager.class) {
+            if (factory != sharedFactory) {
+                return null;
+            }
+        }
+        MeteredConnectionProvider provider = MeteredConnectionProvider.getCurrent();
+        if (provider == null) {
+            return null;
+        }
+        return provider.getMetrics();
     }
 
     /**
@@ -52,104 +215,275 @@ public class DatabaseManager implements ToDoListManager {
      * @return item  the item to add
      */
     public String addItem(String item) {        
-        Session session = getSession();
+        StatelessSession session = getSession();
 
-        Item todoItem = createItem(item);
-        session.save(todoItem);
+        Item todoItem = createItem(session, item);
+        session.insert(todoItem);
 
         endSession(session);
+        listNumberAdded(todoItem.getListNumber());
         return item; 
     }
     
     /**
-     * Create and get a new Session
+     * Create and get a new session with a transaction, or the session of the running batch
      *
-     * @return session  the new Session
+     * @return session  the session
      */
-    private Session getSession() {
-        Session session = factory.openSession();
+    private StatelessSession getSession() {
+        if (batchSession != null) {
+            return batchSession;
+        }
+        StatelessSession session = openSession(factory);
         session.beginTransaction();
         return session;
     }
 
     /**
-     * Commit and close current Session
+     * Open a session, counting it
+     *
+     * @param factory  the SessionFactory
+     * @return the session
+     */
+    private static StatelessSession openSession(SessionFactory factory) {
+        sessionsOpened.incrementAndGet();
+        return factory.openStatelessSession();
+    }
+
+    /**
+     * Get the number of sessions the DB Managers of the process have opened
+     *
+     * @return the number of sessions opened
+     */
+    public static long getSessionsOpened() {
+        return sessionsOpened.get();
+    }
+
+    /**
+     * Get the time the DB Managers of the process have spent building SessionFactories:
+     * reading the configuration and mappings, checking the schema and opening the first connections
+     *
+     * @return the nanoseconds spent
+     */
+    public static long getFactoryBuildNanos() {
+        return factoryBuildNanos.get();
+    }
+
+    /**
+     * Count the rows of every list in the items table
+     *
+     * @return the number of rows, or 0 if no DB Manager has been created
+     */
+    public static long countAllRows() {
+        SessionFactory factory;
+        synchronized (DatabaseManager.class) {
+            factory = sharedFactory;
+        }
+        if (factory == null) {
+            return 0;
+        }
+        return countAllRows(factory);
+    }
+
+    /**
+     * Count the rows of every list in the items table of a database
+     *
+     * @param factory  the SessionFactory of the database
+     * @return the number of rows
+     */
+    public static long countAllRows(SessionFactory factory) {
+        StatelessSession session = openSession(factory);
+        try {
+            String hql = "SELECT COUNT(item_id) FROM " + Item.class.getName();
+            return ((Number) session.createQuery(hql).uniqueResult()).longValue();
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Commit and close a session from getSession.
+     * The session of a running batch is left open until the batch ends.
      *
      * @param session  the session to close
      */
-    private void endSession(Session session) {
+    private void endSession(StatelessSession session) {
+        if (session == batchSession) {
+            return;
+        }
         session.getTransaction().commit();
         session.close();
     }
 
+    /**
+     * Open a session to read with, or get the session of the running batch
+     *
+     * @return session  the session
+     */
+    private StatelessSession openReadSession() {
+        if (batchSession != null) {
+            return batchSession;
+        }
+        return openSession(factory);
+    }
+
+    /**
+     * Close a session from openReadSession, unless it belongs to the running batch
+     *
+     * @param session  the session to close
+     */
+    private void closeReadSession(StatelessSession session) {
+        if (session != batchSession) {
+            session.close();
+        }
+    }
+
     /**
      * Create a new item with given task
      *
+     * @param session  the current session
      * @param task  the task for the new item
      * @return todoItem  the new item to be added
      */
-    private Item createItem(String task) {
-        Item todoItem = new Item();
-
-        int listNumber = getItemCount() + 1;
+    private Item createItem(StatelessSession session, String task) {
+        Item todoItem = newItem(task);
+        int listNumber = getNextListNumber(session);
         todoItem.setListNumber(listNumber);
-        todoItem.setTask(task);
-        todoItem.setDateCreated(getDate());
-        todoItem.setTimeCreated(getTime());
+        if (session == batchSession) {
+            batchNextListNumber = listNumber + 1;
+        }
+        return todoItem;
+    }
 
+    /**
+     * Create an item of this list, created now, without storing it.
+     * Its list number is set when it is stored with addItems.
+     *
+     * @param task  the task for the new item
+     * @return todoItem  the new item
+     */
+    public Item newItem(String task) {
+        Item todoItem = new Item();
+        todoItem.setListId(listId);
+        todoItem.setTask(task);
+        Date now = new Date();
+        todoItem.setDateCreated(getDate(now));
+        todoItem.setTimeCreated(getTime(now));
+        todoItem.setCreatedAt(now.getTime());
         return todoItem;
     }
 
     /**
-     * Get the number of items in the database
+     * Store items from newItem at the end of the list, in order, in one transaction
      *
-     * @return itemCount  the number of items in the database
+     * @param items  the items to store
+     * @throws ToDoListAccessException  if the items could not be stored, in which case none of them are
      */
-    private int getItemCount() {
-        Session session = getSession();
+    public void addItems(List<Item> items) throws ToDoListAccessException {
+        StatelessSession session = getSession();
+        try {
+            int listNumber = getNextListNumber(session);
+            for (Item item : items) {
+                item.setListNumber(listNumber++);
+                session.insert(item);
+            }
+            if (session == batchSession) {
+                batchNextListNumber = listNumber;
+            }
+            endSession(session);
+            for (Item item : items) {
+                listNumberAdded(item.getListNumber());
+            }
+        } catch (HibernateException e) {
+            if (session != batchSession) {
+                session.getTransaction().rollback();
+                session.close();
+            }
+            throw new ToDoListAccessException("Items could not be added", e);
+        }
+    }
 
-        String hql = "SELECT COUNT(item_id) FROM " + Item.class.getName();
-        Query query = session.createQuery(hql);
-        int itemCount = getQueryResponseItemCount(query);
-        
-        endSession(session);
-        return itemCount;
+    /**
+     * Get the list_number for an item added at the end of the list
+     *
+     * @param session  the current session
+     * @return the list_number
+     */
+    private int getNextListNumber(StatelessSession session) {
+        if (session == batchSession && batchNextListNumber > 0) {
+            return batchNextListNumber;
+        }
+        if (renumberOnRemove) {
+            return getItemCount(session) + 1;
+        }
+        return getLastListNumber(session) + 1;
+    }
+
+    /**
+     * Get the number of items in the list
+     *
+     * @return the number of items in the list
+     */
+    public int getItemCount() {
+        StatelessSession session = openReadSession();
+        try {
+            return getItemCount(session);
+        } finally {
+            closeReadSession(session);
+        }
     }
 
     /**
-     * Get response from query
+     * Get the number of items in the list
      *
-     * @param query  the query request
-     * @return itemCount  the query response
+     * @param session  the current session
+     * @return the number of items in the list
      */
-    private int getQueryResponseItemCount(Query query) {
-        String response = query.list().toString();
-        response = response.substring(1, response.indexOf("]"));
-        int itemCount = Integer.parseInt(response);
+    private int getItemCount(StatelessSession session) {
+        String hql = "SELECT COUNT(item_id) FROM " + Item.class.getName() + " WHERE listId = :listId";
+        Query query = session.createQuery(hql).setString("listId", listId);
+        return ((Number) query.uniqueResult()).intValue();
+    }
 
-        return itemCount;
+    /**
+     * Get the highest list_number in the list, or once the list numbers are indexed, the
+     * highest one handed out, so the number of a removed last item is not used again
+     *
+     * @param session  the current session
+     * @return the highest list_number or 0 if there are no items
+     */
+    private int getLastListNumber(StatelessSession session) {
+        synchronized (this) {
+            if (ranks != null) {
+                return ranks.slotCount();
+            }
+        }
+        String hql = "SELECT MAX(listNumber) FROM " + Item.class.getName() + " WHERE listId = :listId";
+        Query query = session.createQuery(hql).setString("listId", listId);
+        Number lastListNumber = (Number) query.uniqueResult();
+        return lastListNumber == null ? 0 : lastListNumber.intValue();
     }
 
     /**
-     * Get the current date
+     * Get the date of a time
      * Formatted as: MM/dd/yyyy
      *
-     * @return the current date
+     * @param now  the time
+     * @return the date
      */
-    private String getDate() {
-        Date now = new Date();
+    private String getDate(Date now) {
         DateFormat day = new SimpleDateFormat("MM/dd/yyyy");
         return day.format(now);
     }
 
     /**
-     * Get the current time
+     * Get the time of day of a time
      * Formatted as: hh:mm AM/PM
      *
-     * @return the current time
+     * @param now  the time
+     * @return the time of day
      */
-    private String getTime() {
-        Date now = new Date();
+    private String getTime(Date now) {
         DateFormat time = DateFormat.getTimeInstance(DateFormat.SHORT);
         return time.format(now);
     }
@@ -161,129 +495,475 @@ public class DatabaseManager implements ToDoListManager {
      * @return the item retrieved represented as a string
      */
     public String removeItem(int itemNumber) {
-        Session session = getSession();
+        if (itemNumber < 1) {
+            return null;
+        }
+        StatelessSession session = getSession();
+        batchNextListNumber = 0;
 
-        Item item = (Item) session.createCriteria(Item.class)
-                        .add(Restrictions.eq("listNumber", itemNumber)).uniqueResult();
+        Item item = (Item) restrictToNumber(session, listItems(session), itemNumber).uniqueResult();
         if (item == null) {
+            endSession(session);
             return null;
         }
         
         session.delete(item);
-        int listNumberDeleted = item.getListNumber();
-        updateNumbers(session, listNumberDeleted);
+        if (renumberOnRemove) {
+            updateNumbers(session, item.getListNumber());
+        }
         
         endSession(session);
-        return item.toString();
+        listNumberRemoved(item.getListNumber());
+        return item.toString(itemNumber);
+    }
+
+    /**
+     * Create a query on the items in this list
+     *
+     * @param session  the current stateless session
+     * @return the query
+     */
+    private Criteria listItems(StatelessSession session) {
+        return session.createCriteria(Item.class).add(Restrictions.eq("listId", listId));
+    }
+
+    /**
+     * Order a query on the items in this list by list number.
+     * Ordering by list_id first, though it is the same for every item, lets the database
+     * read the items in order from the (list_id, list_number) index instead of sorting them.
+     *
+     * @param criteria  the query on items
+     * @return the ordered query
+     */
+    private Criteria inListOrder(Criteria criteria) {
+        return criteria.addOrder(Order.asc("listId")).addOrder(Order.asc("listNumber"));
+    }
+
+    /**
+     * Restrict a query to the item with the given list number.
+     * When items are not renumbered on remove, the list_number of the item is looked up in
+     * the index of list numbers, so the item is still read with one seek.
+     *
+     * @param session  the current stateless session
+     * @param criteria  the query on items
+     * @param itemNumber  the list number, at least 1
+     * @return the restricted query
+     */
+    private Criteria restrictToNumber(StatelessSession session, Criteria criteria, int itemNumber) {
+        if (renumberOnRemove) {
+            return criteria.add(Restrictions.eq("listNumber", itemNumber));
+        }
+        int listNumber = getListNumberOfRank(session, itemNumber);
+        return criteria.add(Restrictions.eq("listNumber", listNumber));
+    }
+
+    /**
+     * Get the item as text with its list number
+     *
+     * @param session  the current stateless session
+     * @param item  the item
+     * @return the item text
+     */
+    private String describe(StatelessSession session, Item item) {
+        if (renumberOnRemove) {
+            return item.toString();
+        }
+        return item.toString(getRank(session, item.getListNumber()));
+    }
+
+    /**
+     * Get the index of the list numbers in use, reading them the first time in one pass over
+     * the (list_id, list_number) index. Slot n of the index stands for list_number n + 1.
+     *
+     * @param session  the current stateless session
+     * @return the index
+     */
+    private synchronized RankIndex getRanks(StatelessSession session) {
+        if (ranks == null) {
+            RankIndex index = new RankIndex();
+            String hql = "SELECT i.listNumber FROM " + Item.class.getName()
+                            + " i WHERE i.listId = :listId ORDER BY i.listId, i.listNumber";
+            ScrollableResults results = session.createQuery(hql)
+                            .setString("listId", listId)
+                            .setFetchSize(FETCH_SIZE)
+                            .scroll(ScrollMode.FORWARD_ONLY);
+            while (results.next()) {
+                addListNumber(index, ((Number) results.get(0)).intValue());
+            }
+            results.close();
+            ranks = index;
+        }
+        return ranks;
+    }
+
+    /**
+     * Put a list number after the others in an index of list numbers, leaving the numbers
+     * skipped on the way unused
+     *
+     * @param index  the index
+     * @param listNumber  the list number, higher than any in the index
+     */
+    private static void addListNumber(RankIndex index, int listNumber) {
+        while (index.slotCount() < listNumber - 1) {
+            index.remove(index.add());
+        }
+        index.add();
+    }
+
+    /**
+     * Get the rank of a list_number among the list numbers in use
+     *
+     * @param session  the current stateless session
+     * @param listNumber  a list_number in use
+     * @return the rank, starting at 1
+     */
+    private synchronized int getRank(StatelessSession session, int listNumber) {
+        return getRanks(session).rank(listNumber - 1);
+    }
+
+    /**
+     * Get the list_number with a rank among the list numbers in use
+     *
+     * @param session  the current stateless session
+     * @param rank  the rank, starting at 1
+     * @return the list_number, or 0 if no item has the rank
+     */
+    private synchronized int getListNumberOfRank(StatelessSession session, int rank) {
+        return getRanks(session).select(rank) + 1;
+    }
+
+    /**
+     * Note a stored add in the index of list numbers, if it has been read
+     *
+     * @param listNumber  the list_number of the added item
+     */
+    private synchronized void listNumberAdded(int listNumber) {
+        if (ranks == null) {
+            return;
+        }
+        if (listNumber <= ranks.slotCount()) {
+            ranks = null;
+            return;
+        }
+        addListNumber(ranks, listNumber);
+    }
+
+    /**
+     * Note a stored remove in the index of list numbers, if it has been read
+     *
+     * @param listNumber  the list_number of the removed item
+     */
+    private synchronized void listNumberRemoved(int listNumber) {
+        if (ranks != null) {
+            ranks.remove(listNumber - 1);
+        }
     }
     
     /**
-     * Remove an item from the database
+     * Remove an item from the database.
+     * If there are two or more items with the keyword, the first in the list will be removed.
      *
      * @param itemKeyword  the keyword to find the item
      * @return the item removed
      */
     public String removeItem(String itemKeyword) {
-        ArrayList<Item> items = getAllItems();
-        itemKeyword = itemKeyword.toLowerCase();
+        StatelessSession session = getSession();
+        batchNextListNumber = 0;
 
-        if (items.isEmpty()) {
+        Item item = (Item) inListOrder(listItems(session))
+                        .add(keywordRestriction(itemKeyword))
+                        .setMaxResults(1).uniqueResult();
+        if (item == null) {
+            endSession(session);
             return null;
         }
 
-        for (int n = 0; n < items.size(); n++) {
-            String itemLowerCase = items.get(n).toString().toLowerCase();
-            if (itemLowerCase.contains(itemKeyword)) {
-                Session session = getSession();
-                
-                Item item = items.get(n);
-                session.delete(item);
-                int listNumberDeleted = item.getListNumber();
-                updateNumbers(session, listNumberDeleted);
-
-                endSession(session);
-                return items.get(n).toString();
-            }
+        String removed = describe(session, item);
+        session.delete(item);
+        if (renumberOnRemove) {
+            updateNumbers(session, item.getListNumber());
         }
-        return null;
+
+        endSession(session);
+        listNumberRemoved(item.getListNumber());
+        return removed;
     }
 
     /**
-     * Update database values in list_number
+     * Update database values in list_number for the items of this list
      *
      * @param session  the current session
      * @param listNumberDeleted  the list_number deleted from the database
      */
-    public void updateNumbers(Session session, int listNumberDeleted) {
+    public void updateNumbers(StatelessSession session, int listNumberDeleted) {
         String hql = "UPDATE " + Item.class.getName() + " SET list_number = list_number -1 WHERE list_number > "
-                        + listNumberDeleted;
-        Query query = session.createQuery(hql);
+                        + listNumberDeleted + " AND listId = :listId";
+        Query query = session.createQuery(hql).setString("listId", listId);
         query.executeUpdate();
     }
 
     /**
-     * Get all items from database
+     * Get all text from database
      * 
-     * @return items  a list of items from database
+     * @return items  a list of text from database
      */
-    private ArrayList<Item> getAllItems() {
-        Session session = getSession();
-
-        ArrayList<Item> items = new ArrayList<Item>();
+    public ArrayList<String> getAllText() {
+        ArrayList<String> text = new ArrayList<String>();
 
-        for (int n = 1; n <= getItemCount(); n++) {
-            Item item = (Item) session.createCriteria(Item.class)
-                        .add(Restrictions.eq("listNumber", n)).uniqueResult();
-            if (item != null) {
-                items.add(item);
+        StatelessSession session = openReadSession();
+        try {
+            ScrollableResults results = scrollAllItems(session);
+            while (results.next()) {
+                text.add(((Item) results.get(0)).toString(text.size() + 1));
             }
+            results.close();
+        } finally {
+            closeReadSession(session);
         }
-
-        endSession(session);
-        return items;
+        return text;
     }
-    
+
     /**
-     * Get all text from database
-     * 
-     * @return items  a list of text from database
+     * Append all text from the database to a buffer, one item per line, with a single query
+     * whose rows are streamed into the buffer
+     *
+     * @param text  where to append the items
+     * @return the number of lines appended
      */
-    public ArrayList<String> getAllText() {
-        Session session = getSession();
+    public int appendAllText(StringBuilder text) {
+        int count = 0;
+        StatelessSession session = openReadSession();
+        try {
+            ScrollableResults results = scrollAllItems(session);
+            while (results.next()) {
+                count++;
+                text.append(((Item) results.get(0)).toString(count)).append('\n');
+            }
+            results.close();
+        } finally {
+            closeReadSession(session);
+        }
+        return count;
+    }
 
+    /**
+     * Get a page of text from the database with a single query
+     *
+     * @param offset  the number of items to skip
+     * @param limit  the most items to return
+     * @return items  a list of text from the page
+     */
+    public ArrayList<String> getAllText(int offset, int limit) {
         ArrayList<String> text = new ArrayList<String>();
+        if (limit <= 0) {
+            return text;
+        }
+        offset = Math.max(0, offset);
 
-        for (int n = 1; n <= getItemCount(); n++) {
-            Item item = (Item) session.createCriteria(Item.class)
-                        .add(Restrictions.eq("listNumber", n)).uniqueResult();
-            if (item != null) {
-                text.add(item.toString());
+        StatelessSession session = openReadSession();
+        try {
+            ScrollableResults results = restrictToPage(session, listItems(session), offset, limit)
+                            .setFetchSize(Math.min(limit, FETCH_SIZE))
+                            .setReadOnly(true)
+                            .scroll(ScrollMode.FORWARD_ONLY);
+            while (results.next()) {
+                text.add(((Item) results.get(0)).toString(offset + text.size() + 1));
             }
+            results.close();
+        } finally {
+            closeReadSession(session);
         }
-
-        endSession(session);
         return text;
     }
 
+    /**
+     * Restrict a query to a page of items in list order.
+     * The page is read from the (list_id, list_number) index from its first item on. When
+     * items are renumbered on remove, the list numbers of the page are known; otherwise the
+     * list_number of the last item before the page is looked up in the index of list numbers.
+     *
+     * @param session  the current stateless session
+     * @param criteria  the query on items
+     * @param offset  the number of items to skip
+     * @param limit  the most items to return
+     * @return the restricted query
+     */
+    private Criteria restrictToPage(StatelessSession session, Criteria criteria, int offset,
+                    int limit) {
+        inListOrder(criteria).setMaxResults(limit);
+        if (renumberOnRemove || offset == 0) {
+            return criteria.add(Restrictions.gt("listNumber", offset));
+        }
+        int before = getListNumberOfRank(session, offset);
+        return criteria.add(Restrictions.gt("listNumber", before > 0 ? before : Integer.MAX_VALUE));
+    }
+
+    /**
+     * Get all items in list order with a single query.
+     * The rows are streamed from the JDBC result set instead of being loaded at once,
+     * and a stateless session keeps no reference to the items already read.
+     *
+     * @param session  the stateless session to run the query in
+     * @return results  the items, one per row
+     */
+    private ScrollableResults scrollAllItems(StatelessSession session) {
+        return inListOrder(listItems(session))
+                        .setFetchSize(FETCH_SIZE)
+                        .setReadOnly(true)
+                        .scroll(ScrollMode.FORWARD_ONLY);
+    }
+
+    /**
+     * Get the number of JDBC statements prepared through the shared SessionFactory.
+     * Each statement is one round trip to the database.
+     *
+     * @return the number of statements prepared
+     */
+    public long getQueryCount() {
+        return factory.getStatistics().getPrepareStatementCount();
+    }
+
     /**
      * Get all the items with the keyword.
+     * A date (mm/dd/yyyy) is matched against the creation date; anything else
+     * is matched, ignoring case, against the task.
      *
      * @param itemKeyword  the keyword to find the items
      * @return itemsWithKeyword  a list of items with the keyword
      */
     public ArrayList<String> getAllItemsWithKeyword(String itemKeyword) {
-        ArrayList<String> allText = getAllText();
+        return getAllItems(keywordRestriction(itemKeyword));
+    }
+
+    /**
+     * Get a page of the items with the keyword with a single query, which skips the
+     * matching items before the page and stops at its end.
+     * A keyword is matched as in getAllItemsWithKeyword.
+     *
+     * @param itemKeyword  the keyword to find the items
+     * @param offset  the number of matching items to skip
+     * @param limit  the most items to return
+     * @return itemsWithKeyword  a list of items with the keyword
+     */
+    public ArrayList<String> getAllItemsWithKeyword(String itemKeyword, int offset, int limit) {
+        if (limit <= 0) {
+            return new ArrayList<String>();
+        }
+        offset = Math.max(0, offset);
+        return getAllItems(keywordRestriction(itemKeyword), offset, limit);
+    }
+
+    /**
+     * Get all the items created in a time range.
+     * The range is read with a seek on the (list_id, created_at) index.
+     *
+     * @param from  the start of the range in epoch milliseconds, inclusive
+     * @param to  the end of the range in epoch milliseconds, exclusive
+     * @return the items created in the range
+     */
+    public ArrayList<String> getAllItemsCreatedBetween(long from, long to) {
+        return getAllItems(Restrictions.and(Restrictions.ge("createdAt", from), Restrictions.lt("createdAt", to)));
+    }
+
+    /**
+     * Get all the items matching a restriction, in list order
+     *
+     * @param restriction  the restriction that selects the items
+     * @return itemsWithKeyword  a list of the matching items
+     */
+    private ArrayList<String> getAllItems(Criterion restriction) {
+        return getAllItems(restriction, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get a page of the items matching a restriction, in list order.
+     * When items are not renumbered on remove, each is numbered from the index of list
+     * numbers, which is read before the items so no other query runs while they are read.
+     *
+     * @param restriction  the restriction that selects the items
+     * @param offset  the number of matching items to skip
+     * @param limit  the most items to return
+     * @return itemsWithKeyword  a list of the matching items
+     */
+    private ArrayList<String> getAllItems(Criterion restriction, int offset, int limit) {
         ArrayList<String> itemsWithKeyword = new ArrayList<String>();
-        itemKeyword = itemKeyword.toLowerCase();
 
-        for (int n = 0; n < allText.size(); n++) {
-            if (allText.get(n).toLowerCase().contains(itemKeyword)) {
-                itemsWithKeyword.add(allText.get(n));
+        StatelessSession session = openReadSession();
+        try {
+            if (!renumberOnRemove) {
+                getRanks(session);
+            }
+            Criteria criteria = inListOrder(listItems(session)).add(restriction);
+            if (offset > 0) {
+                criteria.setFirstResult(offset);
+            }
+            if (limit < Integer.MAX_VALUE) {
+                criteria.setMaxResults(limit);
+            }
+            ScrollableResults results = criteria
+                            .setFetchSize(Math.min(limit, FETCH_SIZE))
+                            .setReadOnly(true)
+                            .scroll(ScrollMode.FORWARD_ONLY);
+            while (results.next()) {
+                itemsWithKeyword.add(describe(session, (Item) results.get(0)));
             }
+            results.close();
+        } finally {
+            closeReadSession(session);
         }
         return itemsWithKeyword;
     }
 
+    /**
+     * Escape the LIKE wildcards in a keyword, using ! as the escape character
+     *
+     * @param keyword  the keyword
+     * @return the keyword with its wildcards escaped
+     */
+    private static String escapeLike(String keyword) {
+        return keyword.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    /**
+     * Get the restriction that selects the items matching a keyword
+     *
+     * @param itemKeyword  the keyword, or a date formatted as mm/dd/yyyy
+     * @return the restriction to add to a query
+     */
+    private Criterion keywordRestriction(String itemKeyword) {
+        if (itemKeyword.matches(DATE_FORMAT)) {
+            return Restrictions.eq("dateCreated", itemKeyword);
+        }
+        return new TaskContains(itemKeyword);
+    }
+
+    /**
+     * Check whether an item matches a keyword the way keywordRestriction does
+     *
+     * @param item  the item
+     * @param itemKeyword  the keyword, or a date formatted as mm/dd/yyyy
+     * @return whether a query with the keyword would select the item
+     */
+    public static boolean matchesKeyword(Item item, String itemKeyword) {
+        if (itemKeyword.matches(DATE_FORMAT)) {
+            return itemKeyword.equals(item.getDateCreated());
+        }
+        return item.getTask().toLowerCase().contains(itemKeyword.toLowerCase());
+    }
+
+    /**
+     * Case-insensitive LIKE '%keyword%' on the task.
+     * LIKE wildcards in the keyword are escaped so they match literally.
+     */
+    private static class TaskContains extends LikeExpression {
+
+        private static final long serialVersionUID = 1L;
+
+        public TaskContains(String keyword) {
+            super("task", "%" + escapeLike(keyword) + "%", '!', true);
+        }
+    }
+
     /**
      * Get the item based on the item number
      *
@@ -291,7 +971,17 @@ public class DatabaseManager implements ToDoListManager {
      * @return the item with the given item number
      */
     public String getItem(int itemNumber) {
-        return getItem(itemNumber + "),");
+        if (itemNumber < 1) {
+            return null;
+        }
+        StatelessSession session = openReadSession();
+        try {
+            Item item = (Item) restrictToNumber(session, listItems(session), itemNumber)
+                            .uniqueResult();
+            return item == null ? null : item.toString(itemNumber);
+        } finally {
+            closeReadSession(session);
+        }
     }
 
     /**
@@ -302,14 +992,54 @@ public class DatabaseManager implements ToDoListManager {
      * @return the item containing the keyword
      */
     public String getItem(String itemKeyword) {
-        ArrayList<String> text = getAllText();
-        itemKeyword = itemKeyword.toLowerCase();
+        StatelessSession session = openReadSession();
+        try {
+            Item item = (Item) inListOrder(listItems(session))
+                            .add(keywordRestriction(itemKeyword))
+                            .setMaxResults(1).uniqueResult();
+            return item == null ? null : describe(session, item);
+        } finally {
+            closeReadSession(session);
+        }
+    }
 
-        for (int n = 0; n < text.size(); n++) {
-            if (text.get(n).toLowerCase().contains(itemKeyword)) {
-                return text.get(n);
+    /**
+     * Run a batch of operations in one session and one transaction.
+     * Every operation sees the changes of the ones before it, and the changes are committed
+     * together at the end, or rolled back together if an operation fails.
+     * Adds after the first work out their list number from the one before, until a remove.
+     * The caller must hold the write lock of the list.
+     *
+     * @param batch  the operations to run
+     * @throws ToDoListAccessException  if an operation fails
+     */
+    public void runBatch(ToDoListBatch batch) throws ToDoListAccessException {
+        if (batchSession != null) {
+            batch.run(this);
+            return;
+        }
+        batchSession = openSession(factory);
+        Transaction transaction = batchSession.beginTransaction();
+        try {
+            batch.run(this);
+            transaction.commit();
+        } catch (ToDoListAccessException | RuntimeException e) {
+            transaction.rollback();
+            synchronized (this) {
+                ranks = null;
             }
+            throw e;
+        } finally {
+            batchSession.close();
+            batchSession = null;
+            batchNextListNumber = 0;
         }
-        return null;
+    }
+
+    /**
+     * Close the DB Manager.
+     * Sessions are opened per call and the SessionFactory is shared, so there is nothing to release.
+     */
+    public void close() {
     }
 }
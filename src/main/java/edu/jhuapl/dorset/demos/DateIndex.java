@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+/**
+ * Sorted index from the day an item was created to the ids of the items created that day.
+ * A day is the epoch milliseconds of its local midnight, so the items created in a
+ * range of days are found with one seek into the map.
+ */
+public class DateIndex {
+
+    public static final String DATE_PATTERN = "MM/dd/yyyy";
+    private static final long UNKNOWN_DAY = Long.MIN_VALUE;
+
+    private TreeMap<Long, SortedIds> idsByDay;
+    private HashMap<String, Long> daysByDate;
+
+    /**
+     * Create an empty index
+     */
+    public DateIndex() {
+        idsByDay = new TreeMap<Long, SortedIds>();
+        daysByDate = new HashMap<String, Long>();
+    }
+
+    /**
+     * Index the creation date of an item
+     *
+     * @param id  the id of the item; ids should be added in increasing order
+     * @param date  the date the item was created, formatted as: MM/dd/yyyy
+     */
+    public void add(int id, String date) {
+        long day = getDay(date);
+        if (day == UNKNOWN_DAY) {
+            return;
+        }
+        SortedIds ids = idsByDay.get(day);
+        if (ids == null) {
+            ids = new SortedIds();
+            idsByDay.put(day, ids);
+        }
+        ids.add(id);
+    }
+
+    /**
+     * Remove the creation date of an item from the index
+     *
+     * @param id  the id of the item
+     * @param date  the date it was added with
+     */
+    public void remove(int id, String date) {
+        long day = getDay(date);
+        SortedIds ids = idsByDay.get(day);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.size() == 0) {
+                idsByDay.remove(day);
+            }
+        }
+    }
+
+    /**
+     * Get the items created in a time range
+     *
+     * @param from  the start of the range in epoch milliseconds, inclusive
+     * @param to  the end of the range in epoch milliseconds, exclusive
+     * @return the ids of the items created on the days that start in the range
+     */
+    public BitSet between(long from, long to) {
+        BitSet ids = new BitSet();
+        if (from < to) {
+            for (SortedIds dayIds : idsByDay.subMap(from, true, to, false).values()) {
+                dayIds.addTo(ids);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Get the day of a date, remembering it for the next item created the same day
+     *
+     * @param date  the date, formatted as: MM/dd/yyyy
+     * @return the local midnight starting the day, or UNKNOWN_DAY if the date cannot be read
+     */
+    private long getDay(String date) {
+        Long day = daysByDate.get(date);
+        if (day == null) {
+            day = parseDay(date);
+            daysByDate.put(date, day);
+        }
+        return day;
+    }
+
+    /**
+     * Read a date
+     *
+     * @param date  the date, formatted as: MM/dd/yyyy
+     * @return the epoch milliseconds of the local midnight starting the day, or Long.MIN_VALUE if
+     *         the date cannot be read
+     */
+    public static long parseDay(String date) {
+        DateFormat day = new SimpleDateFormat(DATE_PATTERN);
+        day.setLenient(false);
+        try {
+            return day.parse(date).getTime();
+        } catch (ParseException e) {
+            return UNKNOWN_DAY;
+        }
+    }
+
+    /**
+     * Get the start of the day after a day
+     *
+     * @param day  the epoch milliseconds of a local midnight
+     * @return the epoch milliseconds of the next local midnight
+     */
+    public static long nextDay(long day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(day);
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        return calendar.getTimeInMillis();
+    }
+}
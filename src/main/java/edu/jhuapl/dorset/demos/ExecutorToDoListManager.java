@@ -0,0 +1,396 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs the operations of a ToDo list on an executor, for any storage type.
+ *
+ * <p>An operation runs on an executor thread, which takes the lock of the list from the
+ * registry (the read lock to get items, the write lock to add or remove them or to run a
+ * batch) and gets the manager of the list while holding it. Use an executor from
+ * createExecutor, whose bounded queue refuses operations once it is full: their futures
+ * fail at once rather than wait, so a slow list sheds load instead of piling it up.
+ *
+ * <p>A future that is not done timeoutMillis after its operation was submitted fails
+ * with a ToDoListAccessException. A future that times out or is cancelled before its
+ * operation starts skips the operation and frees its place in the queue. An operation
+ * that has started is not interrupted, since an interrupt closes the file channels the
+ * managers keep open; it runs to the end and its result is dropped, so a change may
+ * still be made after its future has failed.
+ *
+ * <p>A manager created for a manager that is already open runs each operation on the
+ * calling thread instead, and returns futures that are already done.
+ *
+ * <p>After setGroupCommit, adds go to a GroupCommitWriter instead of the executor, which
+ * writes them together with the adds of other callers.
+ *
+ * <p>After measureTimes, the manager adds up how long its operations waited for a thread
+ * and the lock of the list, and how long they ran on the list.
+ */
+public class ExecutorToDoListManager implements AsyncToDoListManager {
+
+    public static final int DEFAULT_THREADS = 16;
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 10000;
+
+    private static final ScheduledThreadPoolExecutor timer = createTimer();
+
+    private ToDoListRegistry lists;
+    private String listName;
+    private ToDoListManager manager;
+    private Executor executor;
+    private long timeoutMillis;
+    private boolean timed;
+    private GroupCommitWriter groupCommit;
+    private AtomicLong queueNanos = new AtomicLong();
+    private AtomicLong managerNanos = new AtomicLong();
+
+    /**
+     * Create an asynchronous manager for a list of a registry
+     *
+     * @param lists  the registry that keeps the list
+     * @param listName  the list name
+     * @param executor  the executor to run operations on
+     * @param timeoutMillis  how long an operation may take, or 0 to wait as long as it takes
+     */
+    public ExecutorToDoListManager(ToDoListRegistry lists, String listName, Executor executor,
+                    long timeoutMillis) {
+        this.lists = lists;
+        this.listName = listName;
+        this.executor = executor;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Create an asynchronous manager that runs each operation on the calling thread,
+     * for a manager the caller has opened and locked, such as the one a batch is given
+     *
+     * @param manager  the manager
+     */
+    public ExecutorToDoListManager(ToDoListManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Create an executor for asynchronous managers, with daemon threads and a bounded queue
+     *
+     * @param threads  the number of threads, which is the number of operations run at once
+     * @param queueCapacity  the number of operations that may wait for a thread
+     * @return the executor
+     */
+    public static ThreadPoolExecutor createExecutor(int threads, int queueCapacity) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                String name = "todo-list-worker-" + threadCount.incrementAndGet();
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        ArrayBlockingQueue<Runnable> queue =
+                        new ArrayBlockingQueue<Runnable>(Math.max(1, queueCapacity));
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue,
+                        threadFactory);
+    }
+
+    /**
+     * Create the timer that fails futures that take too long
+     *
+     * @return the timer
+     */
+    private static ScheduledThreadPoolExecutor createTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "todo-list-timeout");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    /**
+     * Send adds to a writer that writes them in batches, rather than to the executor.
+     * Has no effect on a manager that runs operations on the calling thread.
+     *
+     * @param groupCommit  the writer
+     */
+    public void setGroupCommit(GroupCommitWriter groupCommit) {
+        this.groupCommit = groupCommit;
+    }
+
+    /**
+     * Start adding up the time the operations of this manager take
+     */
+    public void measureTimes() {
+        timed = true;
+    }
+
+    /**
+     * Get the time the operations waited for a worker thread and the lock of the list,
+     * once measureTimes has been called
+     *
+     * @return the total wait in nanoseconds
+     */
+    public long getQueueNanos() {
+        return queueNanos.get();
+    }
+
+    /**
+     * Get the time the operations ran on the list, once measureTimes has been called
+     *
+     * @return the total run time in nanoseconds
+     */
+    public long getManagerNanos() {
+        return managerNanos.get();
+    }
+
+    /**
+     * An operation on the manager of a list
+     *
+     * @param <T>  the type of the result
+     */
+    private interface Operation<T> {
+        public T run(ToDoListManager manager) throws ToDoListAccessException;
+    }
+
+    /**
+     * Submit an operation to the executor
+     *
+     * @param changesList  whether the operation adds or removes items, which needs the write lock
+     * @param operation  the operation
+     * @return the future result of the operation
+     */
+    private <T> CompletableFuture<T> submit(final boolean changesList,
+                    final Operation<T> operation) {
+        final CompletableFuture<T> result = new CompletableFuture<T>();
+        final long submittedAt = timed ? System.nanoTime() : 0;
+        if (manager != null) {
+            try {
+                result.complete(operation.run(manager));
+            } catch (ToDoListAccessException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+            if (timed) {
+                managerNanos.addAndGet(System.nanoTime() - submittedAt);
+            }
+            return result;
+        }
+        final Runnable task = new Runnable() {
+            public void run() {
+                if (result.isDone()) {
+                    return;
+                }
+                ReadWriteLock listLock = lists.getLock(listName);
+                Lock lock = changesList ? listLock.writeLock() : listLock.readLock();
+                lock.lock();
+                long lockedAt = timed ? System.nanoTime() : 0;
+                try {
+                    if (!result.isDone()) {
+                        T value = operation.run(lists.getManager(listName));
+                        recordTimes(submittedAt, lockedAt);
+                        result.complete(value);
+                    }
+                } catch (ToDoListAccessException | RuntimeException e) {
+                    recordTimes(submittedAt, lockedAt);
+                    result.completeExceptionally(e);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        };
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new ToDoListAccessException(
+                            "Too many requests are waiting for list " + listName, e));
+            return result;
+        }
+
+        final ScheduledFuture<?> timeout = timeoutMillis > 0 ? failAfterTimeout(result) : null;
+        result.whenComplete(new BiConsumer<T, Throwable>() {
+            public void accept(T value, Throwable failure) {
+                if (timeout != null) {
+                    timeout.cancel(false);
+                }
+                // a cancelled or timed out operation gives its place in the queue to the next one
+                if (failure != null && executor instanceof ThreadPoolExecutor) {
+                    ((ThreadPoolExecutor) executor).remove(task);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Add the times of an operation that ran on a worker thread, if times are measured.
+     * Called before the future is completed, so the waiting caller sees them.
+     *
+     * @param submittedAt  when the operation was submitted
+     * @param lockedAt  when it got the lock of the list
+     */
+    void recordTimes(long submittedAt, long lockedAt) {
+        if (timed) {
+            queueNanos.addAndGet(lockedAt - submittedAt);
+            managerNanos.addAndGet(System.nanoTime() - lockedAt);
+        }
+    }
+
+    /**
+     * Fail a future if it is not done by the timeout
+     *
+     * @param result  the future
+     * @return the scheduled timeout, to cancel when the future is done
+     */
+    private ScheduledFuture<?> failAfterTimeout(final CompletableFuture<?> result) {
+        return timer.schedule(new Runnable() {
+            public void run() {
+                result.completeExceptionally(new ToDoListAccessException("List " + listName
+                                + " did not answer within " + timeoutMillis + " ms"));
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public CompletableFuture<String> addItem(final String item) {
+        if (groupCommit != null && manager == null) {
+            CompletableFuture<String> result = groupCommit.addItem(listName, item, this);
+            if (timeoutMillis > 0 && !result.isDone()) {
+                final ScheduledFuture<?> timeout = failAfterTimeout(result);
+                result.whenComplete(new BiConsumer<String, Throwable>() {
+                    public void accept(String value, Throwable failure) {
+                        timeout.cancel(false);
+                    }
+                });
+            }
+            return result;
+        }
+        return submit(true, new Operation<String>() {
+            public String run(ToDoListManager manager) throws ToDoListAccessException {
+                return manager.addItem(item);
+            }
+        });
+    }
+
+    public CompletableFuture<String> removeItem(final int itemNumber) {
+        return submit(true, new Operation<String>() {
+            public String run(ToDoListManager manager) throws ToDoListAccessException {
+                return manager.removeItem(itemNumber);
+            }
+        });
+    }
+
+    public CompletableFuture<String> removeItem(final String itemKeyword) {
+        return submit(true, new Operation<String>() {
+            public String run(ToDoListManager manager) throws ToDoListAccessException {
+                return manager.removeItem(itemKeyword);
+            }
+        });
+    }
+
+    public CompletableFuture<ArrayList<String>> getAllText() {
+        return submit(false, new Operation<ArrayList<String>>() {
+            public ArrayList<String> run(ToDoListManager manager) throws ToDoListAccessException {
+                return manager.getAllText();
+            }
+        });
+    }
+
+    public CompletableFuture<Integer> appendAllText(final StringBuilder text) {
+        return submit(false, new Operation<Integer>() {
+            public Integer run(ToDoListManager manager) throws ToDoListAccessException {
+                return manager.appendAllText(text);
+            }
+        });
+    }
+
+    public CompletableFuture<ArrayList<String>> getAllText(final int offset, final int limit) {
+        return submit(false, new Operation<ArrayList<String>>() {
+            public ArrayList<String> run(ToDoListManager manager) throws ToDoListAccessException {
+                return manager.getAllText(offset, limit);
+            }
+        });
+    }
+
+    public CompletableFuture<ArrayList<String>> getAllItemsWithKeyword(final String itemKeyword) {
+        return submit(false, new Operation<ArrayList<String>>() {
+            public ArrayList<String> run(ToDoListManager manager) throws ToDoListAccessException {
+                return manager.getAllItemsWithKeyword(itemKeyword);
+            }
+        });
+    }
+
+    public CompletableFuture<ArrayList<String>> getAllItemsWithKeyword(final String itemKeyword,
+                    final int offset, final int limit) {
+        return submit(false, new Operation<ArrayList<String>>() {
+            public ArrayList<String> run(ToDoListManager manager) throws ToDoListAccessException {
+                return manager.getAllItemsWithKeyword(itemKeyword, offset, limit);
+            }
+        });
+    }
+
+    public CompletableFuture<ArrayList<String>> getAllItemsCreatedBetween(final long from,
+                    final long to) {
+        return submit(false, new Operation<ArrayList<String>>() {
+            public ArrayList<String> run(ToDoListManager manager) throws ToDoListAccessException {
+                return manager.getAllItemsCreatedBetween(from, to);
+            }
+        });
+    }
+
+    public CompletableFuture<String> getItem(final int itemNumber) {
+        return submit(false, new Operation<String>() {
+            public String run(ToDoListManager manager) throws ToDoListAccessException {
+                return manager.getItem(itemNumber);
+            }
+        });
+    }
+
+    public CompletableFuture<String> getItem(final String itemKeyword) {
+        return submit(false, new Operation<String>() {
+            public String run(ToDoListManager manager) throws ToDoListAccessException {
+                return manager.getItem(itemKeyword);
+            }
+        });
+    }
+
+    public CompletableFuture<Void> runBatch(final ToDoListBatch batch) {
+        return submit(true, new Operation<Void>() {
+            public Void run(ToDoListManager manager) throws ToDoListAccessException {
+                manager.runBatch(batch);
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,439 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+
+/**
+ * Resident copy of a ToDo list file.
+ * The file is read once and then kept in sync by the FileManager after every write.
+ * If the file is changed by someone else (detected by its modification time and size),
+ * it is read again on the next access.
+ *
+ * <p>Keyword and date lookups go through a KeywordIndex and a DateIndex, each built on
+ * its first lookup. Each line is given a slot in a RankIndex when it is read or appended,
+ * and the slot is its id in the indexes; the position of a line is the rank of its slot.
+ *
+ * <p>Reads may run in parallel with each other, including a reload of the file, which
+ * swaps in new contents as a whole. Appends and removes must not run alongside anything else.
+ */
+public class FileListCache {
+
+    private File file;
+    private volatile Contents contents;
+    private volatile long lastModified;
+    private volatile long length;
+
+    /**
+     * Create a cache for a ToDo list file.
+     * Nothing is read until the first call to refresh.
+     *
+     * @param file  the ToDo list file
+     */
+    public FileListCache(File file) {
+        this.file = file;
+        this.contents = new Contents("");
+        this.lastModified = -1;
+        this.length = -1;
+    }
+
+    /**
+     * Read the file again if it changed since it was last read or written
+     *
+     * @throws IOException  if the file cannot be read
+     */
+    public synchronized void refresh() throws IOException {
+        if (file.lastModified() == lastModified && file.length() == length) {
+            return;
+        }
+
+        Contents newContents;
+        try (BufferedReader bufferedReader = new BufferedReader(new FileReader(file))) {
+            String currentLine = bufferedReader.readLine();
+            newContents = new Contents(currentLine == null ? "" : currentLine);
+            while ((currentLine = bufferedReader.readLine()) != null) {
+                newContents.append(currentLine);
+            }
+        }
+
+        contents = newContents;
+        markSynced();
+    }
+
+    /**
+     * Record the current state of the file as matching the cache.
+     * Must be called after every write made through the cache owner.
+     */
+    public void markSynced() {
+        lastModified = file.lastModified();
+        length = file.length();
+    }
+
+    /**
+     * Forget the state of the file, so the next refresh reads it again.
+     * Used to drop changes made to the cache that were never written.
+     */
+    public void invalidate() {
+        lastModified = -1;
+        length = -1;
+    }
+
+    /**
+     * Get the number of items in the list
+     *
+     * @return the number of items
+     */
+    public int size() {
+        return contents.lines.size();
+    }
+
+    /**
+     * Get the item line at a position in the list
+     *
+     * @param position  the position of the item, starting at 1
+     * @return the item line
+     */
+    public String getLine(int position) {
+        return contents.lines.get(position - 1);
+    }
+
+    /**
+     * Get the position of the item with the given item number
+     *
+     * @param itemNumber  the number of the item
+     * @return the position of the item or 0 if there is no such item
+     */
+    public int positionOf(int itemNumber) {
+        String prefix = itemNumber + "),";
+        ArrayList<String> lines = contents.lines;
+        if (itemNumber >= 1 && itemNumber <= lines.size() && lines.get(itemNumber - 1).startsWith(prefix)) {
+            return itemNumber;
+        }
+
+        // the file was numbered by hand, fall back to looking for the number
+        for (int n = 0; n < lines.size(); n++) {
+            if (lines.get(n).startsWith(prefix)) {
+                return n + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Get the position of the first item containing the keyword
+     *
+     * @param itemKeyword  the keyword to find the item
+     * @return the position of the item or 0 if no item contains the keyword
+     */
+    public int positionOf(String itemKeyword) {
+        Contents contents = this.contents;
+        BitSet candidates = contents.getKeywords().candidates(itemKeyword);
+        itemKeyword = itemKeyword.toLowerCase();
+        ArrayList<String> lowerCaseLines = contents.lowerCaseLines;
+        if (candidates != null) {
+            for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+                int position = contents.ranks.rank(slot);
+                if (lowerCaseLines.get(position - 1).contains(itemKeyword)) {
+                    return position;
+                }
+            }
+            return 0;
+        }
+
+        for (int n = 0; n < lowerCaseLines.size(); n++) {
+            if (lowerCaseLines.get(n).contains(itemKeyword)) {
+                return n + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Get all the item lines containing the keyword
+     *
+     * @param itemKeyword  the keyword to find the items
+     * @return itemsWithKeyword  the item lines containing the keyword
+     */
+    public ArrayList<String> findAll(String itemKeyword) {
+        return findAll(itemKeyword, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get a page of the item lines containing the keyword, in file order.
+     * The search stops once the page is full.
+     *
+     * @param itemKeyword  the keyword to find the items
+     * @param offset  the number of matching items to skip
+     * @param limit  the most items to return
+     * @return itemsWithKeyword  the item lines containing the keyword
+     */
+    public ArrayList<String> findAll(String itemKeyword, int offset, int limit) {
+        Contents contents = this.contents;
+        BitSet candidates = contents.getKeywords().candidates(itemKeyword);
+        itemKeyword = itemKeyword.toLowerCase();
+        ArrayList<String> lines = contents.lines;
+        ArrayList<String> lowerCaseLines = contents.lowerCaseLines;
+        ArrayList<String> itemsWithKeyword = new ArrayList<String>();
+        int skip = Math.max(0, offset);
+        if (limit <= 0) {
+            return itemsWithKeyword;
+        }
+        if (candidates != null) {
+            for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+                int position = contents.ranks.rank(slot);
+                if (!lowerCaseLines.get(position - 1).contains(itemKeyword)) {
+                    continue;
+                } else if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                itemsWithKeyword.add(lines.get(position - 1));
+                if (itemsWithKeyword.size() == limit) {
+                    break;
+                }
+            }
+            return itemsWithKeyword;
+        }
+
+        for (int n = 0; n < lowerCaseLines.size(); n++) {
+            if (!lowerCaseLines.get(n).contains(itemKeyword)) {
+                continue;
+            } else if (skip > 0) {
+                skip--;
+                continue;
+            }
+            itemsWithKeyword.add(lines.get(n));
+            if (itemsWithKeyword.size() == limit) {
+                break;
+            }
+        }
+        return itemsWithKeyword;
+    }
+
+    /**
+     * Get all the item lines created in a time range
+     *
+     * @param from  the start of the range in epoch milliseconds, inclusive
+     * @param to  the end of the range in epoch milliseconds, exclusive
+     * @return the item lines created on the days that start in the range
+     */
+    public ArrayList<String> findCreatedBetween(long from, long to) {
+        Contents contents = this.contents;
+        BitSet slots = contents.getDates().between(from, to);
+        ArrayList<String> items = new ArrayList<String>(slots.cardinality());
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+            items.add(contents.lines.get(contents.ranks.rank(slot) - 1));
+        }
+        return items;
+    }
+
+    /**
+     * Get the title and all item lines, in file order
+     *
+     * @return text  a copy of the list text
+     */
+    public ArrayList<String> getAllText() {
+        Contents contents = this.contents;
+        ArrayList<String> text = new ArrayList<String>(contents.lines.size() + 1);
+        text.add(contents.title);
+        text.addAll(contents.lines);
+        return text;
+    }
+
+    /**
+     * Append the title and all item lines to a buffer, in file order, each followed by a
+     * line break
+     *
+     * @param text  where to append the lines
+     * @return the number of lines appended
+     */
+    public int appendAllText(StringBuilder text) {
+        Contents contents = this.contents;
+        text.append(contents.title).append('\n');
+        ArrayList<String> lines = contents.lines;
+        int count = lines.size();
+        for (int n = 0; n < count; n++) {
+            text.append(lines.get(n)).append('\n');
+        }
+        return count + 1;
+    }
+
+    /**
+     * Get a page of item lines, in file order
+     *
+     * @param offset  the number of items to skip
+     * @param limit  the most items to return
+     * @return the item lines, without the title
+     */
+    public ArrayList<String> getLines(int offset, int limit) {
+        ArrayList<String> lines = contents.lines;
+        int from = Math.min(Math.max(0, offset), lines.size());
+        int to = (int) Math.min((long) from + Math.max(0, limit), lines.size());
+        return new ArrayList<String>(lines.subList(from, to));
+    }
+
+    /**
+     * Add an item line after it has been appended to the file
+     *
+     * @param line  the item line
+     */
+    public void append(String line) {
+        contents.append(line);
+    }
+
+    /**
+     * Remove an item line after the file has been rewritten without it.
+     * The items that follow are renumbered the same way the file was.
+     *
+     * @param position  the position of the item removed
+     * @return the item line removed
+     */
+    public String remove(int position) {
+        ArrayList<String> lines = contents.lines;
+        ArrayList<String> lowerCaseLines = contents.lowerCaseLines;
+        String removed = lines.remove(position - 1);
+        lowerCaseLines.remove(position - 1);
+        contents.removeSlot(contents.ranks.select(position), removed);
+        for (int n = position - 1; n < lines.size(); n++) {
+            String line = renumber(lines.get(n), n + 1);
+            lines.set(n, line);
+            lowerCaseLines.set(n, line.toLowerCase());
+        }
+        return removed;
+    }
+
+    /**
+     * Get the creation date of an item line
+     *
+     * @param line  the item line, formatted as: #),date,time,task
+     * @return the date field
+     */
+    private static String dateOf(String line) {
+        String text = KeywordIndex.withoutNumber(line);
+        int end = text.indexOf(',');
+        return end < 0 ? text : text.substring(0, end);
+    }
+
+    /**
+     * Replace the number at the start of an item line
+     *
+     * @param line  the item line
+     * @param itemNumber  the new item number
+     * @return the renumbered item line
+     */
+    public static String renumber(String line, int itemNumber) {
+        return itemNumber + ")," + line.substring(line.indexOf("),") + 2);
+    }
+
+    /**
+     * The title and item lines read from the file and their indexes, replaced together on a reload
+     */
+    private static class Contents {
+
+        private final String title;
+        private final ArrayList<String> lines;
+        private final ArrayList<String> lowerCaseLines;
+        private final RankIndex ranks;
+        private volatile KeywordIndex keywords;
+        private volatile DateIndex dates;
+
+        public Contents(String title) {
+            this.title = title;
+            this.lines = new ArrayList<String>();
+            this.lowerCaseLines = new ArrayList<String>();
+            this.ranks = new RankIndex();
+        }
+
+        /**
+         * Add an item line at the end of the list
+         *
+         * @param line  the item line
+         */
+        public void append(String line) {
+            lines.add(line);
+            lowerCaseLines.add(line.toLowerCase());
+            int slot = ranks.add();
+            if (keywords != null) {
+                keywords.add(slot, KeywordIndex.withoutNumber(line));
+            }
+            if (dates != null) {
+                dates.add(slot, dateOf(line));
+            }
+        }
+
+        /**
+         * Free the slot of an item line that has been removed
+         *
+         * @param slot  the slot of the line
+         * @param line  the item line
+         */
+        public void removeSlot(int slot, String line) {
+            if (keywords != null) {
+                keywords.remove(slot, KeywordIndex.withoutNumber(line));
+            }
+            if (dates != null) {
+                dates.remove(slot, dateOf(line));
+            }
+            ranks.remove(slot);
+        }
+
+        /**
+         * Get the keyword index of the lines, building it the first time
+         *
+         * @return the keyword index
+         */
+        public synchronized KeywordIndex getKeywords() {
+            if (keywords == null) {
+                KeywordIndex index = new KeywordIndex();
+                int position = 0;
+                for (int slot = 0; slot < ranks.slotCount(); slot++) {
+                    if (ranks.isUsed(slot)) {
+                        index.add(slot, KeywordIndex.withoutNumber(lines.get(position)));
+                        position++;
+                    }
+                }
+                keywords = index;
+            }
+            return keywords;
+        }
+
+        /**
+         * Get the date index of the lines, building it the first time
+         *
+         * @return the date index
+         */
+        public synchronized DateIndex getDates() {
+            if (dates == null) {
+                DateIndex index = new DateIndex();
+                int position = 0;
+                for (int slot = 0; slot < ranks.slotCount(); slot++) {
+                    if (ranks.isUsed(slot)) {
+                        index.add(slot, dateOf(lines.get(position)));
+                        position++;
+                    }
+                }
+                dates = index;
+            }
+            return dates;
+        }
+    }
+}
@@ -16,101 +16,387 @@
  */
 package edu.jhuapl.dorset.demos;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 
+/**
+ * Keeps a ToDo list in a CSV file, ./[name].csv, with a title line and one line per item.
+ *
+ * <p>The file is never left half written. An add appends its line, and if the write fails
+ * the file is cut back to its old length. Any other change writes the whole list to
+ * ./[name].csv.tmp and moves it over the file in one atomic rename, so the file holds
+ * either the old list or the new one. With SYNC durability every write is also forced to
+ * the disk before it returns, the new file before the rename and the directory after it,
+ * so a change that returned survives a power failure; a batch forces the disk once.
+ * ATOMIC durability leaves that to the operating system, which may lose the latest
+ * changes on a power failure but never mixes two versions of the file.
+ *
+ * <p>By default the file is opened for each write and checked for changes made by others
+ * before each call. A FileManager created with keepOpen reads the file once and then keeps
+ * it open, appending each add with one positioned write from a reused direct buffer; the file
+ * must not be changed by anyone else while it is open. A remove or a batch that rewrites the
+ * file replaces it, so the file is opened again by the next add.
+ */
 public class FileManager implements ToDoListManager {
 
-    private static final int TITLE_LINE = 0;
+    public enum Durability {
+        ATOMIC, SYNC
+    }
+
+    private static final Charset CHARSET = Charset.defaultCharset();
+    private static final int APPEND_BUFFER_SIZE = 8192;
+    private static final long MILLIS_PER_MINUTE = 60000;
+
     private File file;
     private String toDoListName;
+    private Durability durability;
+    private FileListCache cache;
+    private boolean inBatch;
+    private boolean rewriteNeeded;
+    private StringBuilder pendingLines;
+    private boolean keepOpen;
+    private ChannelOpener channels;
+    private boolean loaded;
+    private FileChannel appendChannel;
+    private long appendPosition;
+    private ByteBuffer appendBuffer;
+    private CharsetEncoder appendEncoder;
+    private DateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy");
+    private DateFormat timeFormat = DateFormat.getTimeInstance(DateFormat.SHORT);
+    private long stampMinute = -1;
+    private String stamp;
 
     /**
-     * Create a FileManager
+     * Create a FileManager that leaves forcing writes to the disk to the operating system
      *
      * @param toDoListName  the name of the ToDo list
      * @throws ToDoListAccessException  if the file cannot be created or opened
      */
     public FileManager(String toDoListName) throws ToDoListAccessException {
+        this(toDoListName, Durability.ATOMIC);
+    }
+
+    /**
+     * Create a FileManager
+     *
+     * @param toDoListName  the name of the ToDo list
+     * @param durability  whether writes are forced to the disk before they return
+     * @throws ToDoListAccessException  if the file cannot be created or opened
+     */
+    public FileManager(String toDoListName, Durability durability) throws ToDoListAccessException {
+        this(toDoListName, durability, false);
+    }
+
+    /**
+     * Create a FileManager
+     *
+     * @param toDoListName  the name of the ToDo list
+     * @param durability  whether writes are forced to the disk before they return
+     * @param keepOpen  whether to keep the file open for appends and trust the cached list
+     *                  instead of checking the file for changes made by others
+     * @throws ToDoListAccessException  if the file cannot be created or opened
+     */
+    public FileManager(String toDoListName, Durability durability, boolean keepOpen) throws ToDoListAccessException {
+        this(toDoListName, durability, keepOpen, ChannelOpener.FILES);
+    }
+
+    /**
+     * Create a FileManager that writes the file through the channels an opener gives it
+     *
+     * @param toDoListName  the name of the ToDo list
+     * @param durability  whether writes are forced to the disk before they return
+     * @param keepOpen  whether to keep the file open for appends and trust the cached list
+     *                  instead of checking the file for changes made by others
+     * @param channels  opens the channels the file is written through
+     * @throws ToDoListAccessException  if the file cannot be created or opened
+     */
+    FileManager(String toDoListName, Durability durability, boolean keepOpen,
+                    ChannelOpener channels) throws ToDoListAccessException {
         file = new File("./" + toDoListName + ".csv");
         this.toDoListName = toDoListName;
+        this.durability = durability;
+        this.keepOpen = keepOpen;
+        this.channels = channels;
+        cache = new FileListCache(file);
 
         try {
             if (!file.exists()) {
-                file.createNewFile();
-                writeTitle(file);
+                writeTitle();
             }
-        } catch (IOException | ToDoListAccessException e) {
+        } catch (ToDoListAccessException e) {
             throw new ToDoListAccessException("Could not create file", e);
         }
     }
 
     /**
-     * Write the title of the file
+     * Write a new file with only the title
      *
-     * @param file  the toDo list file
-     * @throws ToDoListAccessException  if the file exists but is a directory rather than a file or cannot be opened
+     * @throws ToDoListAccessException  if the file cannot be written
      */
-    private void writeTitle(File file) throws ToDoListAccessException {
+    private void writeTitle() throws ToDoListAccessException {
         try {
-            BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(file));
-            bufferedWriter.write(toDoListName + " TODO List");
-            bufferedWriter.close();
+            ArrayList<String> text = new ArrayList<String>(1);
+            text.add(toDoListName + " TODO List");
+            replaceFile(text, 0);
         } catch (IOException e) {
             throw new ToDoListAccessException("Could not write title", e);
         }
     }
 
     /**
-     * Add an item to the ToDo list file
+     * Write the list to a temporary file and rename it over the list file
      *
-     * @param item  the item to add
-     * @throws ToDoListAccessException  if the toDo list cannot be accessed
+     * @param text  the title line followed by the items
+     * @param removedPosition  the position of an item to leave out, renumbering the items
+     *                         after it, or 0 to write the lines as they are
+     * @throws IOException  if the file cannot be written; the list file is left as it was
      */
-    public String addItem(String item) throws ToDoListAccessException {
-        int nextNumber;
+    private void replaceFile(ArrayList<String> text, int removedPosition) throws IOException {
+        Path target = file.toPath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        boolean moved = false;
         try {
-            nextNumber = getAllText().size();
-        } catch (ToDoListAccessException e) {
-            throw new ToDoListAccessException(e.getMessage(), e);
+            try (FileChannel channel = channels.open(temp, StandardOpenOption.CREATE,
+                            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                Writer writer = openWriter(channel);
+                writer.write(text.get(0));
+                int counter = 1;
+                for (int n = 1; n < text.size(); n++) {
+                    if (n == removedPosition) {
+                        continue;
+                    }
+                    writer.write('\n');
+                    writer.write(removedPosition == 0 ? text.get(n) : FileListCache.renumber(text.get(n), counter));
+                    counter++;
+                }
+                writer.flush();
+                if (durability == Durability.SYNC) {
+                    channel.force(true);
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            moved = true;
+            closeAppendChannel();
+            if (durability == Durability.SYNC) {
+                forceDirectory(target.toAbsolutePath().getParent());
+            }
+        } finally {
+            if (!moved) {
+                Files.deleteIfExists(temp);
+            }
         }
+    }
 
-        try (BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(file, true))) {
-            bufferedWriter.write("\n" + nextNumber + ")," + getDate() + "," + getTime() + "," + item);
-            return item;
+    /**
+     * Append lines to the list file, cutting it back to its old length if the write fails
+     *
+     * @param lines  the lines, each starting with a line break
+     * @throws IOException  if the lines cannot be written; the list file is left as it was
+     */
+    private void appendToFile(CharSequence lines) throws IOException {
+        if (keepOpen) {
+            appendToOpenFile(lines);
+            return;
+        }
+        try (FileChannel channel = channels.open(file.toPath(), StandardOpenOption.WRITE)) {
+            long length = channel.size();
+            channel.position(length);
+            try {
+                Writer writer = openWriter(channel);
+                writer.append(lines);
+                writer.flush();
+                if (durability == Durability.SYNC) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                channel.truncate(length);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Append lines to the list file through the channel kept open for appends, opening it
+     * if it is not open, and cut the file back to its old length if the write fails
+     *
+     * @param lines  the lines, each starting with a line break
+     * @throws IOException  if the lines cannot be written; the list file is left as it was
+     */
+    private void appendToOpenFile(CharSequence lines) throws IOException {
+        if (appendChannel == null) {
+            appendChannel = channels.open(file.toPath(), StandardOpenOption.WRITE);
+            appendPosition = appendChannel.size();
+        }
+        ByteBuffer buffer = encode(lines);
+        long length = appendPosition;
+        try {
+            while (buffer.hasRemaining()) {
+                appendPosition += appendChannel.write(buffer, appendPosition);
+            }
+            if (durability == Durability.SYNC) {
+                appendChannel.force(false);
+            }
         } catch (IOException e) {
-            throw new ToDoListAccessException("Item could not be added: " + item, e);
+            try {
+                appendChannel.truncate(length);
+            } finally {
+                closeAppendChannel();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Encode lines into the append buffer, growing it if they do not fit
+     *
+     * @param lines  the lines
+     * @return the buffer, ready to be written
+     * @throws CharacterCodingException  if the lines cannot be encoded
+     */
+    private ByteBuffer encode(CharSequence lines) throws CharacterCodingException {
+        if (appendEncoder == null) {
+            appendEncoder = CHARSET.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+        int maxBytes = (int) Math.ceil(lines.length() * (double) appendEncoder.maxBytesPerChar());
+        if (appendBuffer == null || appendBuffer.capacity() < maxBytes) {
+            appendBuffer = ByteBuffer.allocateDirect(Math.max(APPEND_BUFFER_SIZE, maxBytes));
+        }
+        appendBuffer.clear();
+        appendEncoder.reset();
+        CoderResult result = appendEncoder.encode(CharBuffer.wrap(lines), appendBuffer, true);
+        if (!result.isUnderflow()) {
+            result.throwException();
+        }
+        result = appendEncoder.flush(appendBuffer);
+        if (!result.isUnderflow()) {
+            result.throwException();
+        }
+        appendBuffer.flip();
+        return appendBuffer;
+    }
+
+    /**
+     * Close the channel kept open for appends, if it is open.
+     * It is opened again by the next append.
+     */
+    private void closeAppendChannel() {
+        if (appendChannel == null) {
+            return;
+        }
+        try {
+            appendChannel.close();
+        } catch (IOException e) {
+            // nothing is left to write through it
+        }
+        appendChannel = null;
+    }
+
+    /**
+     * Open a writer on a channel
+     *
+     * @param channel  the channel
+     * @return the writer, which is not closed so the channel can still be forced or cut back
+     */
+    private Writer openWriter(FileChannel channel) {
+        return new BufferedWriter(Channels.newWriter(channel, CHARSET.newEncoder(), -1));
+    }
+
+    /**
+     * Force the entries of a directory to the disk, so a rename in it survives a power failure.
+     * Some systems cannot open a directory; there the rename is left to the operating system.
+     *
+     * @param directory  the directory
+     */
+    static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // the rename is already done and stays, it is only not forced to the disk yet
+        }
+    }
+
+    /**
+     * Bring the cached list up to date with the file
+     *
+     * @throws ToDoListAccessException  if the toDo list cannot be accessed
+     */
+    private void refreshCache() throws ToDoListAccessException {
+        if (inBatch || (keepOpen && loaded)) {
+            return;
+        }
+        try {
+            cache.refresh();
+            loaded = true;
+        } catch (IOException e) {
+            throw new ToDoListAccessException("Could not retrieve text", e);
         }
     }
 
     /**
-     * Get the current date
-     * Formatted as: MM/dd/yyyy
+     * Add an item to the ToDo list file
      *
-     * @return the current date
+     * @param item  the item to add
+     * @throws ToDoListAccessException  if the toDo list cannot be accessed
      */
-    private String getDate() {
-        DateFormat day = new SimpleDateFormat("MM/dd/yyyy");
-        return day.format(new Date());
+    public String addItem(String item) throws ToDoListAccessException {
+        refreshCache();
+        int nextNumber = cache.size() + 1;
+        String line = nextNumber + ")," + getTimestamp() + "," + item;
+        if (inBatch) {
+            cache.append(line);
+            if (!rewriteNeeded) {
+                pendingLines.append('\n').append(line);
+            }
+            return item;
+        }
+
+        try {
+            appendToFile("\n" + line);
+        } catch (IOException e) {
+            throw new ToDoListAccessException("Item could not be added: " + item, e);
+        }
+
+        cache.append(line);
+        if (!keepOpen) {
+            cache.markSynced();
+        }
+        return item;
     }
 
     /**
-     * Get the current time
-     * Formatted as: hh:mm AM/PM
+     * Get the current date and time, formatting them again only when the minute changes
+     * Formatted as: MM/dd/yyyy,hh:mm AM/PM
      *
-     * @return the current time
+     * @return the current date and time
      */
-    private String getTime() {
-        DateFormat time = DateFormat.getTimeInstance(DateFormat.SHORT);
-        return time.format(new Date());
+    private String getTimestamp() {
+        long minute = System.currentTimeMillis() / MILLIS_PER_MINUTE;
+        if (minute != stampMinute) {
+            Date now = new Date();
+            stamp = dateFormat.format(now) + "," + timeFormat.format(now);
+            stampMinute = minute;
+        }
+        return stamp;
     }
 
 
@@ -122,114 +408,91 @@ public class FileManager implements ToDoListManager {
      * @throws ToDoListAccessException  if the item cannot be removed
      */
     public String removeItem(int itemNumber) throws ToDoListAccessException {
-        try {
-            return removeItem(itemNumber + "),");
-        } catch (ToDoListAccessException e) {
-            throw new ToDoListAccessException(e.getMessage(), e);
+        refreshCache();
+        int position = cache.positionOf(itemNumber);
+        if (position == 0) {
+            return null;
         }
+        return rewriteFileWithoutRemoved(position);
     }
 
     /**
-     * Remove an item from the ToDo list file
+     * Remove an item from the ToDo list file.
+     * If there are two or more items with the keyword, the first in the list will be removed.
      *
      * @param itemKeyword  the keyword to find the item
      * @return the item removed
      * @throws ToDoListAccessException  if the item cannot be removed
      */
     public String removeItem(String itemKeyword) throws ToDoListAccessException {
-        try {
-            ArrayList<String> text = getAllText();
-            return rewriteFileWithoutRemoved(text, itemKeyword);
-        } catch (ToDoListAccessException e) {
-            throw new ToDoListAccessException(e.getMessage(), e);
+        refreshCache();
+        int position = cache.positionOf(itemKeyword);
+        if (position == 0) {
+            return null;
         }
+        return rewriteFileWithoutRemoved(position);
     }
 
     /**
-     * Rewrite the ToDo list file without the item indicated by itemKeyword.
+     * Rewrite the ToDo list file without the item at the given position.
+     * The items after it are renumbered.
      *
-     * @param text  the text from the ToDo list file
-     * @param itemKeyword  the keyword to find the item
-     * @return lineRemoved  the line removed from the ToDo list file
+     * @param position  the position of the item to remove
+     * @return the line removed from the ToDo list file
      * @throws ToDoListAccessException  if the item cannot be removed
      */
-    private String rewriteFileWithoutRemoved(ArrayList<String> text, String itemKeyword) throws ToDoListAccessException {
-        int counter = 0;
-        String lineRemoved = "";
-        itemKeyword = itemKeyword.toLowerCase();
-
-        try (BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(file))) {
-            for (int n = 0; n < text.size(); n++) {
-                String itemN = text.get(n);
-                boolean textContains = itemN.toLowerCase().contains(itemKeyword);
-                if (!textContains) {
-                    rewriteItem(itemN, bufferedWriter, counter);
-                    counter++;
-                } else {
-                    lineRemoved = itemN;
-                }
-            }
+    private String rewriteFileWithoutRemoved(int position) throws ToDoListAccessException {
+        if (inBatch) {
+            rewriteNeeded = true;
+            return cache.remove(position);
+        }
 
-            if (lineRemoved.isEmpty()) {
-                return null;
-            }
+        try {
+            replaceFile(cache.getAllText(), position);
         } catch (IOException e) {
             throw new ToDoListAccessException("Item could not be removed", e);
         }
+
+        String lineRemoved = cache.remove(position);
+        cache.markSynced();
         return lineRemoved;
     }
 
     /**
-     * Write items back into file
+     * Get all the text from the ToDo list file
      *
-     * @param text  the item text to add
-     * @param bufferedWriter  writes the text to a character-output stream
-     * @param counter  the item number
-     * @throws ToDoListAccessException  if an error occurs while writing text
+     * @return text  the text from the ToDo list file
+     * @throws ToDoListAccessException  if the toDo list cannot be accessed
      */
-    private void rewriteItem(String text, BufferedWriter bufferedWriter, int counter) throws ToDoListAccessException {
-        try {
-            if (counter == TITLE_LINE) {
-                bufferedWriter.write(text);
-            } else {
-                int indexToStart = getIndexToStartItem(text);
-                String item = "\n" + counter + ")," + text.substring(indexToStart);
-                bufferedWriter.write(item);
-            }
-        } catch (IOException e) {
-            throw new ToDoListAccessException(e.getMessage(), e);
-        }
+    public ArrayList<String> getAllText() throws ToDoListAccessException {
+        refreshCache();
+        return cache.getAllText();
     }
 
     /**
-     * Get the index where the item text starts.
-     * Occurs after "#),"
+     * Append the title and every item line to a buffer, each followed by a line break,
+     * without copying the list first
      *
-     * @param item  the item
-     * @return the index where the item text starts
+     * @param text  where to append the lines
+     * @return the number of lines appended
+     * @throws ToDoListAccessException  if toDo list cannot be accessed
      */
-    private int getIndexToStartItem(String item) {
-        return item.indexOf("),") + 2;
+    public int appendAllText(StringBuilder text) throws ToDoListAccessException {
+        refreshCache();
+        return cache.appendAllText(text);
     }
 
     /**
-     * Get all the text from the ToDo list file
+     * Get a page of items from the file
      *
-     * @return text  the text from the ToDo list file
-     * @throws ToDoListAccessException  if the toDo list cannot be accessed
+     * @param offset  the number of items to skip
+     * @param limit  the most items to return
+     * @return text  the items, without the title line
+     * @throws ToDoListAccessException  if toDo list cannot be accessed
      */
-    public ArrayList<String> getAllText() throws ToDoListAccessException {
-        ArrayList<String> text = new ArrayList<String>();
-
-        try (BufferedReader bufferedReader = new BufferedReader(new FileReader(file))) {
-            String currentLine;
-            while ((currentLine = bufferedReader.readLine()) != null) {
-                text.add(currentLine);
-            }
-        } catch (IOException e) {
-            throw new ToDoListAccessException("Could not retrieve text");
-        }
-        return text;
+    public ArrayList<String> getAllText(int offset, int limit) throws ToDoListAccessException {
+        refreshCache();
+        return cache.getLines(offset, limit);
     }
 
     /**
@@ -240,24 +503,36 @@ public class FileManager implements ToDoListManager {
      * @throws ToDoListAccessException  if toDo list cannot be accessed
      */
     public ArrayList<String> getAllItemsWithKeyword(String itemKeyword) throws ToDoListAccessException {
-        itemKeyword = itemKeyword.toLowerCase();  
-        
-        ArrayList<String> allText;
-        try {
-            allText = getAllText();
-        } catch (ToDoListAccessException e) {
-            throw new ToDoListAccessException(e.getMessage(), e);
-        }
-        ArrayList<String> itemsWithKeyword = new ArrayList<String>();
+        refreshCache();
+        return cache.findAll(itemKeyword);
+    }
 
-        for (int n = 1; n < allText.size(); n++) {
-            String currentLine = allText.get(n).toLowerCase();
-            if (currentLine.contains(itemKeyword)) {
-                itemsWithKeyword.add(allText.get(n));
-            }
-        }
+    /**
+     * Get a page of the items with the keyword
+     *
+     * @param itemKeyword  the keyword to find the items
+     * @param offset  the number of matching items to skip
+     * @param limit  the most items to return
+     * @return itemsWithKeyword  a list of items with the keyword
+     * @throws ToDoListAccessException  if toDo list cannot be accessed
+     */
+    public ArrayList<String> getAllItemsWithKeyword(String itemKeyword, int offset, int limit)
+                    throws ToDoListAccessException {
+        refreshCache();
+        return cache.findAll(itemKeyword, offset, limit);
+    }
 
-        return itemsWithKeyword;
+    /**
+     * Get all the items created in a time range
+     *
+     * @param from  the start of the range in epoch milliseconds, inclusive
+     * @param to  the end of the range in epoch milliseconds, exclusive
+     * @return the items created on the days that start in the range
+     * @throws ToDoListAccessException  if toDo list cannot be accessed
+     */
+    public ArrayList<String> getAllItemsCreatedBetween(long from, long to) throws ToDoListAccessException {
+        refreshCache();
+        return cache.findCreatedBetween(from, to);
     }
 
     /**
@@ -268,11 +543,12 @@ public class FileManager implements ToDoListManager {
      * @throws ToDoListAccessException  if the item cannot be retrieved
      */
     public String getItem(int itemNumber) throws ToDoListAccessException {
-        try {
-            return getItem(itemNumber + "),");
-        } catch (ToDoListAccessException e) {
-            throw new ToDoListAccessException(e.getMessage(), e);
-        } 
+        refreshCache();
+        int position = cache.positionOf(itemNumber);
+        if (position == 0) {
+            return null;
+        }
+        return cache.getLine(position);
     }
 
     /**
@@ -284,21 +560,72 @@ public class FileManager implements ToDoListManager {
      * @throws ToDoListAccessException  if the toDo list cannot be accessed
      */
     public String getItem(String itemKeyword) throws ToDoListAccessException {
-        itemKeyword = itemKeyword.toLowerCase();  
-        
-        ArrayList<String> allText;
+        refreshCache();
+        int position = cache.positionOf(itemKeyword);
+        if (position == 0) {
+            return null;
+        }
+        return cache.getLine(position);
+    }
+
+    /**
+     * Run a batch of operations, writing the file once at the end.
+     * The operations work on the cached list; if the batch only adds items, their lines are
+     * appended in one write, and otherwise the whole file is rewritten once. If an operation
+     * fails, nothing is written and the cache is read again from the file.
+     * The caller must hold the write lock of the list.
+     *
+     * @param batch  the operations to run
+     * @throws ToDoListAccessException  if an operation fails or the file cannot be written
+     */
+    public void runBatch(ToDoListBatch batch) throws ToDoListAccessException {
+        if (inBatch) {
+            batch.run(this);
+            return;
+        }
+        refreshCache();
+        inBatch = true;
+        rewriteNeeded = false;
+        pendingLines = new StringBuilder();
         try {
-            allText = getAllText();
-        } catch (ToDoListAccessException e) {
-            throw new ToDoListAccessException("Could not retrieve text", e);
+            batch.run(this);
+            inBatch = false;
+            writeBatch();
+        } catch (ToDoListAccessException | RuntimeException e) {
+            cache.invalidate();
+            loaded = false;
+            throw e;
+        } finally {
+            inBatch = false;
+            pendingLines = null;
         }
+    }
 
-        for (int n = 0; n < allText.size(); n++) {
-            String currentLine = allText.get(n).toLowerCase();
-            if (currentLine.contains(itemKeyword)) {
-                return allText.get(n);
+    /**
+     * Write the changes of a batch to the file
+     *
+     * @throws ToDoListAccessException  if the file cannot be written
+     */
+    private void writeBatch() throws ToDoListAccessException {
+        if (!rewriteNeeded && pendingLines.length() == 0) {
+            return;
+        }
+        try {
+            if (rewriteNeeded) {
+                replaceFile(cache.getAllText(), 0);
+            } else {
+                appendToFile(pendingLines);
             }
+        } catch (IOException e) {
+            throw new ToDoListAccessException("Batch could not be written", e);
         }
-        return null;
+        cache.markSynced();
+    }
+
+    /**
+     * Close the ToDo list, and the file if it is kept open for appends
+     */
+    public void close() {
+        closeAppendChannel();
     }
 }
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes the adds of many callers together, on one writer thread, for any storage type.
+ *
+ * <p>Callers put their adds on a lock-free queue and wake the writer. The writer takes
+ * every add that is waiting, up to maxBatchSize, and for each list among them takes the
+ * write lock of the list and runs the adds as one batch: one append and, with sync file
+ * durability, one force to the disk for a file or journal list, or one transaction for a
+ * database list. A binary list is only forced to the disk when it grows or is closed, and a
+ * memory list writes nothing, so for those types a batch saves lock hand-offs, not forces.
+ * The future of each add completes once its batch has been written, so an add that has
+ * answered is as durable as one written alone. While a batch is being written, the next
+ * adds queue up behind it, so the busier the lists, the larger the batches.
+ *
+ * <p>If a batch fails, every storage type undoes it, so nothing in it was written, and its
+ * adds are tried again one at a time, so one bad add does not fail the others. An add
+ * whose future is already done, because it timed out or was cancelled, is skipped.
+ */
+public class GroupCommitWriter {
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
+    private ToDoListRegistry lists;
+    private int maxBatchSize;
+    private ConcurrentLinkedQueue<PendingAdd> queue;
+    private Thread writer;
+    private volatile boolean closed;
+    private AtomicLong batchCount = new AtomicLong();
+    private AtomicLong addCount = new AtomicLong();
+
+    /**
+     * An add waiting for the writer
+     */
+    private static class PendingAdd {
+        private String listName;
+        private String item;
+        private CompletableFuture<String> result;
+        private ExecutorToDoListManager caller;
+        private long submittedAt;
+
+        PendingAdd(String listName, String item, ExecutorToDoListManager caller) {
+            this.listName = listName;
+            this.item = item;
+            this.result = new CompletableFuture<String>();
+            this.caller = caller;
+            this.submittedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Create a writer for the lists of a registry and start its thread
+     *
+     * @param lists  the registry that keeps the lists
+     * @param maxBatchSize  the most adds written in one batch
+     */
+    public GroupCommitWriter(ToDoListRegistry lists, int maxBatchSize) {
+        this.lists = lists;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        queue = new ConcurrentLinkedQueue<PendingAdd>();
+        writer = new Thread(new Runnable() {
+            public void run() {
+                writeUntilClosed();
+            }
+        }, "todo-group-commit");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Add an item to a list in the next batch
+     *
+     * @param listName  the list name
+     * @param item  the item to add
+     * @return the future result of the add, done once the batch has been written
+     */
+    public CompletableFuture<String> addItem(String listName, String item) {
+        return addItem(listName, item, null);
+    }
+
+    /**
+     * Add an item to a list in the next batch, adding up the time it takes for the caller
+     *
+     * @param listName  the list name
+     * @param item  the item to add
+     * @param caller  the manager that measures the times of its operations, or null
+     * @return the future result of the add, done once the batch has been written
+     */
+    CompletableFuture<String> addItem(String listName, String item, ExecutorToDoListManager caller) {
+        PendingAdd add = new PendingAdd(listName, item, caller);
+        if (closed) {
+            add.result.completeExceptionally(new ToDoListAccessException("The group commit writer is closed"));
+            return add.result;
+        }
+        queue.offer(add);
+        LockSupport.unpark(writer);
+        if (closed && queue.remove(add)) {
+            // the writer may have stopped before the add was queued
+            add.result.completeExceptionally(new ToDoListAccessException("The group commit writer is closed"));
+        }
+        return add.result;
+    }
+
+    /**
+     * Write batches as adds arrive, until the writer is closed and every add is written
+     */
+    private void writeUntilClosed() {
+        while (true) {
+            PendingAdd add = queue.poll();
+            if (add == null) {
+                if (closed) {
+                    return;
+                }
+                LockSupport.park(this);
+                continue;
+            }
+
+            LinkedHashMap<String, ArrayList<PendingAdd>> addsByList =
+                            new LinkedHashMap<String, ArrayList<PendingAdd>>();
+            for (int n = 0; add != null; add = n < maxBatchSize ? queue.poll() : null) {
+                if (!add.result.isDone()) {
+                    ArrayList<PendingAdd> adds = addsByList.get(add.listName);
+                    if (adds == null) {
+                        adds = new ArrayList<PendingAdd>();
+                        addsByList.put(add.listName, adds);
+                    }
+                    adds.add(add);
+                    n++;
+                }
+            }
+            for (Map.Entry<String, ArrayList<PendingAdd>> entry : addsByList.entrySet()) {
+                writeBatch(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Write the adds to one list in one batch, or one at a time if the batch fails
+     *
+     * @param listName  the list name
+     * @param adds  the adds
+     */
+    private void writeBatch(String listName, final ArrayList<PendingAdd> adds) {
+        Lock lock = lists.getLock(listName).writeLock();
+        lock.lock();
+        long lockedAt = System.nanoTime();
+        try {
+            ToDoListManager manager = lists.getManager(listName);
+            final ArrayList<String> results = new ArrayList<String>(adds.size());
+            try {
+                manager.runBatch(new ToDoListBatch() {
+                    public void run(ToDoListManager batchManager) throws ToDoListAccessException {
+                        for (PendingAdd add : adds) {
+                            results.add(batchManager.addItem(add.item));
+                        }
+                    }
+                });
+            } catch (ToDoListAccessException | RuntimeException e) {
+                if (adds.size() > 1) {
+                    writeOneAtATime(manager, adds, lockedAt);
+                    return;
+                }
+                fail(adds, e, lockedAt);
+                return;
+            }
+            batchCount.incrementAndGet();
+            addCount.addAndGet(adds.size());
+            for (int n = 0; n < adds.size(); n++) {
+                complete(adds.get(n), results.get(n), lockedAt);
+            }
+        } catch (ToDoListAccessException | RuntimeException e) {
+            fail(adds, e, lockedAt);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write adds one at a time, after the batch they were in failed
+     *
+     * @param manager  the manager of their list
+     * @param adds  the adds
+     * @param lockedAt  when the writer got the lock of the list
+     */
+    private void writeOneAtATime(ToDoListManager manager, ArrayList<PendingAdd> adds, long lockedAt) {
+        for (PendingAdd add : adds) {
+            try {
+                String result = manager.addItem(add.item);
+                batchCount.incrementAndGet();
+                addCount.incrementAndGet();
+                complete(add, result, lockedAt);
+            } catch (ToDoListAccessException | RuntimeException e) {
+                add.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void complete(PendingAdd add, String result, long lockedAt) {
+        if (add.caller != null) {
+            add.caller.recordTimes(add.submittedAt, lockedAt);
+        }
+        add.result.complete(result);
+    }
+
+    private void fail(ArrayList<PendingAdd> adds, Exception e, long lockedAt) {
+        for (PendingAdd add : adds) {
+            if (add.caller != null) {
+                add.caller.recordTimes(add.submittedAt, lockedAt);
+            }
+            add.result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Get the number of batches written, counting each add written alone after a failed
+     * batch as a batch
+     *
+     * @return the number of batches
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * Get the number of adds written
+     *
+     * @return the number of adds
+     */
+    public long getAddCount() {
+        return addCount.get();
+    }
+
+    /**
+     * Stop taking adds, and wait for the writer to write the ones already queued
+     *
+     * @throws InterruptedException  if interrupted while waiting
+     */
+    public void close() throws InterruptedException {
+        closed = true;
+        LockSupport.unpark(writer);
+        writer.join();
+    }
+}
@@ -22,15 +22,23 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Index;
+
 @Entity
 @Table(name = "items")
+@org.hibernate.annotations.Table(appliesTo = "items", indexes = {
+    @Index(name = "idx_items_list_number", columnNames = {"list_id", "list_number"}),
+    @Index(name = "idx_items_date_created", columnNames = {"list_id", "date_created"}),
+    @Index(name = "idx_items_created_at", columnNames = {"list_id", "created_at"})})
 public class Item implements java.io.Serializable {
 
     private int itemId;
+    private String listId;
     private int listNumber;
     private String task;
     private String dateCreated;
     private String timeCreated;
+    private long createdAt;
 
     /**
      * Create an empty Item for a database
@@ -67,6 +75,15 @@ public class Item implements java.io.Serializable {
         this.itemId = itemId;
     }
     
+    @Column(name = "list_id", nullable = false, length = 100)
+    public String getListId() {
+        return this.listId;
+    }
+
+    public void setListId(String listId) {
+        this.listId = listId;
+    }
+
     @Column(name = "list_number", nullable = false)
     public int getListNumber() {
         return this.listNumber;
@@ -102,9 +119,29 @@ public class Item implements java.io.Serializable {
     public void setTimeCreated(String timeCreated) {
         this.timeCreated = timeCreated;
     }
+
+    @Column(name = "created_at", nullable = false)
+    public long getCreatedAt() {
+        return this.createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
     
     public String toString() {
-        return listNumber + ")," + dateCreated + "," + timeCreated + "," + task;
+        return toString(listNumber);
+    }
+
+    /**
+     * Get the item as text with the given list number in place of the stored one.
+     * Used when list numbers are computed at read time rather than stored.
+     *
+     * @param displayNumber  the list number to show
+     * @return the item formatted as: #),date,time,task
+     */
+    public String toString(int displayNumber) {
+        return displayNumber + ")," + dateCreated + "," + timeCreated + "," + task;
     }
 
 }
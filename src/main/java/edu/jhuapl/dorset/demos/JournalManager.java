@@ -0,0 +1,911 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * ToDo list manager that stores the list as an append-only journal.
+ *
+ * <p>Every add and remove is appended to ./name.journal as one record, so a remove
+ * never rewrites the list. Each record is one line and carries a CRC32, so a task may
+ * not hold a line break. If a write fails, the journal is cut back to its last whole
+ * record before anything else is appended, and a record that was only partly written
+ * when the process died is dropped from the end of the journal the next time it is read.
+ * A bad record with good records after it cannot come from either; the journal is then
+ * reported as corrupt and left as it is, rather than cut back and its later changes lost.
+ * List numbers are not stored; they are the rank of an item among the live items,
+ * kept in a RankIndex so that a remove does not shift anything. Keyword
+ * and date lookups go through a KeywordIndex and a DateIndex over the live items,
+ * each built on its first lookup.
+ *
+ * <p>Once the share of dead records (removed items and the removes themselves)
+ * passes the compaction threshold, the journal is rewritten in the background
+ * with only the live items.
+ *
+ * <p>With SYNC durability each change is forced to the disk before it returns, and a batch
+ * forces the disk once for all its records; a compacted journal is forced before it replaces
+ * the old one. ATOMIC durability leaves forcing to the operating system, so a power failure
+ * may lose the latest changes, though never more than whole records at the end.
+ */
+public class JournalManager implements ToDoListManager {
+    private static final Logger logger = LoggerFactory.getLogger(JournalManager.class);
+
+    public static final double DEFAULT_COMPACTION_THRESHOLD = 0.5;
+    private static final int MIN_RECORDS_TO_COMPACT = 64;
+
+    private static final String ADD = "A";
+    private static final String REMOVE = "R";
+
+    private File file;
+    private double compactionThreshold;
+    private FileManager.Durability durability;
+    private ChannelOpener channels;
+    private FileChannel journalChannel;
+    private OutputStream journal;
+    private long journalLength;
+    private long unflushedLength;
+    private RankIndex ranks;
+    private ArrayList<Item> itemsBySlot;
+    private HashMap<Integer, Integer> slotsById;
+    private KeywordIndex keywords;
+    private DateIndex dates;
+    private int nextItemId;
+    private int recordCount;
+    private int deadRecordCount;
+    private boolean inBatch;
+
+    private ExecutorService compactor;
+    private boolean compacting;
+    private ArrayList<String> recordsDuringCompaction;
+
+    /**
+     * Create a JournalManager with the default compaction threshold
+     *
+     * @param toDoListName  the name of the ToDo list
+     * @throws ToDoListAccessException  if the journal cannot be created or read
+     */
+    public JournalManager(String toDoListName) throws ToDoListAccessException {
+        this(toDoListName, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * Create a JournalManager
+     *
+     * @param toDoListName  the name of the ToDo list
+     * @param compactionThreshold  the share of dead records (0 to 1) that triggers compaction
+     * @throws ToDoListAccessException  if the journal cannot be created or read
+     */
+    public JournalManager(String toDoListName, double compactionThreshold) throws ToDoListAccessException {
+        this(toDoListName, compactionThreshold, FileManager.Durability.ATOMIC);
+    }
+
+    /**
+     * Create a JournalManager
+     *
+     * @param toDoListName  the name of the ToDo list
+     * @param compactionThreshold  the share of dead records (0 to 1) that triggers compaction
+     * @param durability  whether changes are forced to the disk before they return
+     * @throws ToDoListAccessException  if the journal cannot be created or read
+     */
+    public JournalManager(String toDoListName, double compactionThreshold,
+                    FileManager.Durability durability) throws ToDoListAccessException {
+        this(toDoListName, compactionThreshold, durability, ChannelOpener.FILES);
+    }
+
+    /**
+     * Create a JournalManager that appends to the journal through the channels an opener gives it
+     *
+     * @param toDoListName  the name of the ToDo list
+     * @param compactionThreshold  the share of dead records (0 to 1) that triggers compaction
+     * @param durability  whether changes are forced to the disk before they return
+     * @param channels  opens the channels the journal is appended through
+     * @throws ToDoListAccessException  if the journal cannot be created or read
+     */
+    JournalManager(String toDoListName, double compactionThreshold,
+                    FileManager.Durability durability, ChannelOpener channels)
+                    throws ToDoListAccessException {
+        this.file = new File("./" + toDoListName + ".journal");
+        this.compactionThreshold = compactionThreshold;
+        this.durability = durability;
+        this.channels = channels;
+        this.ranks = new RankIndex();
+        this.itemsBySlot = new ArrayList<Item>();
+        this.slotsById = new HashMap<Integer, Integer>();
+        this.nextItemId = 1;
+        this.compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "todo-journal-compactor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        try {
+            if (!file.exists()) {
+                file.createNewFile();
+            }
+            replay();
+            openJournal();
+        } catch (IOException e) {
+            throw new ToDoListAccessException("Could not open journal", e);
+        }
+    }
+
+    /**
+     * Open the journal for appends, after whatever it holds
+     *
+     * @throws IOException  if the journal cannot be opened
+     */
+    private void openJournal() throws IOException {
+        journalChannel = channels.open(file.toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        journal = new BufferedOutputStream(Channels.newOutputStream(journalChannel));
+        journalLength = journalChannel.size();
+        unflushedLength = 0;
+    }
+
+    /**
+     * Rebuild the live items from the journal.
+     * Records that are incomplete or fail their checksum at the end of the journal are
+     * a write cut short, and the journal is cut back to the last good record.
+     *
+     * @throws IOException  if the journal cannot be read
+     * @throws ToDoListAccessException  if a bad record is followed by good ones
+     */
+    private void replay() throws IOException, ToDoListAccessException {
+        long goodLength = 0;
+        long badRecordAt = -1;
+        long offset = 0;
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+
+        try (BufferedInputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            int b;
+            while ((b = in.read()) != -1) {
+                offset++;
+                if (b != '\n') {
+                    record.write(b);
+                    continue;
+                }
+                boolean applied = applyRecord(new String(record.toByteArray(), StandardCharsets.UTF_8));
+                record.reset();
+                if (applied && badRecordAt >= 0) {
+                    throw new ToDoListAccessException("Journal " + file + " has a corrupt record at byte "
+                                    + badRecordAt + " followed by good records; it was left as it is");
+                } else if (applied) {
+                    goodLength = offset;
+                } else if (badRecordAt < 0) {
+                    badRecordAt = goodLength;
+                }
+            }
+        }
+
+        if (goodLength < file.length()) {
+            logger.warn("Dropping incomplete journal records after byte " + goodLength + " of " + file);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(goodLength);
+            }
+        }
+    }
+
+    /**
+     * Apply one journal line to the live items
+     *
+     * @param line  the journal line, without its line break
+     * @return whether the line was a valid record
+     */
+    private boolean applyRecord(String line) {
+        int comma = line.indexOf(',');
+        if (comma < 0) {
+            return false;
+        }
+        String body = line.substring(comma + 1);
+        if (!line.substring(0, comma).equals(checksum(body))) {
+            return false;
+        }
+
+        String[] fields = body.split(",", 5);
+        try {
+            int itemId = Integer.parseInt(fields[1]);
+            if (fields[0].equals(ADD) && fields.length == 5) {
+                Item item = new Item(0, fields[4], fields[2], fields[3]);
+                item.setItemId(itemId);
+                addLive(item);
+                nextItemId = Math.max(nextItemId, itemId + 1);
+                recordCount++;
+                return true;
+            } else if (fields[0].equals(REMOVE)) {
+                Integer slot = slotsById.get(itemId);
+                if (slot != null) {
+                    removeLive(slot);
+                    deadRecordCount++;
+                }
+                recordCount++;
+                deadRecordCount++;
+                return true;
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            return false;
+        }
+        return false;
+    }
+
+    /**
+     * Get the checksum written in front of a record
+     *
+     * @param body  the record body
+     * @return the CRC32 of the body in hex
+     */
+    private static String checksum(String body) {
+        CRC32 crc = new CRC32();
+        crc.update(body.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * Append a record to the journal
+     *
+     * @param body  the record body
+     * @throws IOException  if the record cannot be written
+     */
+    private void appendRecord(String body) throws IOException {
+        String line = checksum(body) + "," + body + "\n";
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        try {
+            journal.write(bytes);
+        } catch (IOException e) {
+            discardUnwritten();
+            throw e;
+        }
+        unflushedLength += bytes.length;
+        if (!inBatch) {
+            flushJournal();
+        }
+        recordCount++;
+        if (compacting) {
+            recordsDuringCompaction.add(line);
+        }
+    }
+
+    /**
+     * Write the records waiting in the buffer to the journal, forcing them to the disk
+     * with SYNC durability
+     *
+     * @throws IOException  if they cannot be written; the journal is cut back to the
+     *         records written before them
+     */
+    private void flushJournal() throws IOException {
+        if (unflushedLength == 0) {
+            return;
+        }
+        try {
+            journal.flush();
+            if (durability == FileManager.Durability.SYNC) {
+                journalChannel.force(false);
+            }
+        } catch (IOException e) {
+            discardUnwritten();
+            throw e;
+        }
+        journalLength += unflushedLength;
+        unflushedLength = 0;
+    }
+
+    /**
+     * Drop the records not yet written in full after a failed write: cut the journal back to
+     * the end of its last whole record, so no torn record is left in front of later ones,
+     * and open it again for appends
+     *
+     * @throws IOException  if the journal cannot be cut back or opened again
+     */
+    private void discardUnwritten() throws IOException {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            // the journal is cut back below whatever the close managed to write
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(journalLength);
+        }
+        openJournal();
+    }
+
+    /**
+     * Add an item to the journal
+     *
+     * @param item  the item to add, without line breaks
+     * @return the item added
+     * @throws ToDoListAccessException  if the item holds a line break or the journal cannot be written
+     */
+    public synchronized String addItem(String item) throws ToDoListAccessException {
+        if (item.indexOf('\n') >= 0) {
+            throw new ToDoListAccessException("Item could not be added, it holds a line break: " + item);
+        }
+        Item todoItem = new Item(0, item, getDate(), getTime());
+        todoItem.setItemId(nextItemId);
+
+        try {
+            appendRecord(ADD + "," + todoItem.getItemId() + "," + todoItem.getDateCreated() + ","
+                            + todoItem.getTimeCreated() + "," + todoItem.getTask());
+        } catch (IOException e) {
+            throw new ToDoListAccessException("Item could not be added: " + item, e);
+        }
+
+        nextItemId++;
+        addLive(todoItem);
+        return item;
+    }
+
+    /**
+     * Put an item at the end of the live items
+     *
+     * @param item  the item
+     */
+    private void addLive(Item item) {
+        int slot = ranks.add();
+        itemsBySlot.add(item);
+        slotsById.put(item.getItemId(), slot);
+        if (keywords != null) {
+            keywords.add(slot, indexedText(item));
+        }
+        if (dates != null) {
+            dates.add(slot, item.getDateCreated());
+        }
+    }
+
+    /**
+     * Take an item out of the live items
+     *
+     * @param slot  the slot of the item
+     * @return the item removed
+     */
+    private Item removeLive(int slot) {
+        Item item = itemsBySlot.set(slot, null);
+        ranks.remove(slot);
+        slotsById.remove(item.getItemId());
+        if (keywords != null) {
+            keywords.remove(slot, indexedText(item));
+        }
+        if (dates != null) {
+            dates.remove(slot, item.getDateCreated());
+        }
+        return item;
+    }
+
+    /**
+     * Get the keyword index of the live items, building it the first time
+     *
+     * @return the keyword index
+     */
+    private KeywordIndex getKeywords() {
+        if (keywords == null) {
+            keywords = new KeywordIndex();
+            for (int slot = 0; slot < itemsBySlot.size(); slot++) {
+                if (itemsBySlot.get(slot) != null) {
+                    keywords.add(slot, indexedText(itemsBySlot.get(slot)));
+                }
+            }
+        }
+        return keywords;
+    }
+
+    /**
+     * Get the date index of the live items, building it the first time
+     *
+     * @return the date index
+     */
+    private DateIndex getDates() {
+        if (dates == null) {
+            dates = new DateIndex();
+            for (int slot = 0; slot < itemsBySlot.size(); slot++) {
+                if (itemsBySlot.get(slot) != null) {
+                    dates.add(slot, itemsBySlot.get(slot).getDateCreated());
+                }
+            }
+        }
+        return dates;
+    }
+
+    /**
+     * Get the text of an item that goes in the keyword index
+     *
+     * @param item  the item
+     * @return the item text without its list number
+     */
+    private static String indexedText(Item item) {
+        return item.getDateCreated() + "," + item.getTimeCreated() + "," + item.getTask();
+    }
+
+    /**
+     * Get the live items in list order
+     *
+     * @return the live items
+     */
+    private ArrayList<Item> getLiveItems() {
+        ArrayList<Item> liveItems = new ArrayList<Item>(ranks.size());
+        for (int slot = 0; slot < itemsBySlot.size(); slot++) {
+            if (itemsBySlot.get(slot) != null) {
+                liveItems.add(itemsBySlot.get(slot));
+            }
+        }
+        return liveItems;
+    }
+
+    /**
+     * Get the current date
+     * Formatted as: MM/dd/yyyy
+     *
+     * @return the current date
+     */
+    private String getDate() {
+        DateFormat day = new SimpleDateFormat("MM/dd/yyyy");
+        return day.format(new Date());
+    }
+
+    /**
+     * Get the current time
+     * Formatted as: hh:mm AM/PM
+     *
+     * @return the current time
+     */
+    private String getTime() {
+        DateFormat time = DateFormat.getTimeInstance(DateFormat.SHORT);
+        return time.format(new Date());
+    }
+
+    /**
+     * Remove an item from the journal based on its item number
+     *
+     * @param itemNumber  the number of the item to be removed
+     * @return the item removed or null if there is no such item
+     * @throws ToDoListAccessException  if the journal cannot be written
+     */
+    public synchronized String removeItem(int itemNumber) throws ToDoListAccessException {
+        if (itemNumber < 1 || itemNumber > ranks.size()) {
+            return null;
+        }
+        return removeAt(itemNumber);
+    }
+
+    /**
+     * Remove the first item containing the keyword from the journal
+     *
+     * @param itemKeyword  the keyword to find the item
+     * @return the item removed or null if no item contains the keyword
+     * @throws ToDoListAccessException  if the journal cannot be written
+     */
+    public synchronized String removeItem(String itemKeyword) throws ToDoListAccessException {
+        int itemNumber = findFirst(itemKeyword);
+        if (itemNumber == 0) {
+            return null;
+        }
+        return removeAt(itemNumber);
+    }
+
+    /**
+     * Append a remove record for the item with the given number
+     *
+     * @param itemNumber  the number of the item to remove
+     * @return the item removed
+     * @throws ToDoListAccessException  if the journal cannot be written
+     */
+    private String removeAt(int itemNumber) throws ToDoListAccessException {
+        int slot = ranks.select(itemNumber);
+        Item item = itemsBySlot.get(slot);
+        String removed = item.toString(itemNumber);
+
+        try {
+            appendRecord(REMOVE + "," + item.getItemId());
+        } catch (IOException e) {
+            throw new ToDoListAccessException("Item could not be removed", e);
+        }
+
+        removeLive(slot);
+        deadRecordCount += 2;
+        compactIfNeeded();
+        return removed;
+    }
+
+    /**
+     * Get the number of the first item containing the keyword
+     *
+     * @param itemKeyword  the keyword to find the item
+     * @return the item number or 0 if no item contains the keyword
+     */
+    private int findFirst(String itemKeyword) {
+        BitSet candidates = getKeywords().candidates(itemKeyword);
+        itemKeyword = itemKeyword.toLowerCase();
+        if (candidates != null) {
+            for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+                int itemNumber = ranks.rank(slot);
+                if (itemsBySlot.get(slot).toString(itemNumber).toLowerCase().contains(itemKeyword)) {
+                    return itemNumber;
+                }
+            }
+            return 0;
+        }
+
+        int itemNumber = 0;
+        for (int slot = 0; slot < itemsBySlot.size(); slot++) {
+            Item item = itemsBySlot.get(slot);
+            if (item != null) {
+                itemNumber++;
+                if (item.toString(itemNumber).toLowerCase().contains(itemKeyword)) {
+                    return itemNumber;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Get all text from the journal
+     *
+     * @return text  a list of the live items
+     */
+    public synchronized ArrayList<String> getAllText() {
+        ArrayList<Item> liveItems = getLiveItems();
+        ArrayList<String> text = new ArrayList<String>(liveItems.size());
+        for (int n = 0; n < liveItems.size(); n++) {
+            text.add(liveItems.get(n).toString(n + 1));
+        }
+        return text;
+    }
+
+    /**
+     * Append every live item to a buffer, one per line, walking the slots in list order
+     *
+     * @param text  where to append the items
+     * @return the number of lines appended
+     */
+    public synchronized int appendAllText(StringBuilder text) {
+        int itemNumber = 0;
+        for (int slot = 0; slot < itemsBySlot.size(); slot++) {
+            Item item = itemsBySlot.get(slot);
+            if (item != null) {
+                itemNumber++;
+                text.append(item.toString(itemNumber)).append('\n');
+            }
+        }
+        return itemNumber;
+    }
+
+    /**
+     * Get a page of items from the journal, walking the slots from the first item of the page
+     *
+     * @param offset  the number of items to skip
+     * @param limit  the most items to return
+     * @return text  a list of the live items on the page
+     */
+    public synchronized ArrayList<String> getAllText(int offset, int limit) {
+        ArrayList<String> text = new ArrayList<String>();
+        int itemNumber = Math.max(0, offset) + 1;
+        if (limit <= 0 || itemNumber > ranks.size()) {
+            return text;
+        }
+        for (int slot = ranks.select(itemNumber); slot < itemsBySlot.size() && text.size() < limit; slot++) {
+            Item item = itemsBySlot.get(slot);
+            if (item != null) {
+                text.add(item.toString(itemNumber++));
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Get all the items with the keyword.
+     *
+     * @param itemKeyword  the keyword to find the items
+     * @return itemsWithKeyword  a list of items with the keyword
+     */
+    public synchronized ArrayList<String> getAllItemsWithKeyword(String itemKeyword) {
+        return getAllItemsWithKeyword(itemKeyword, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get a page of the items with the keyword, walking the candidates of the keyword index
+     * in list order and stopping once the page is full
+     *
+     * @param itemKeyword  the keyword to find the items
+     * @param offset  the number of matching items to skip
+     * @param limit  the most items to return
+     * @return itemsWithKeyword  a list of items with the keyword
+     */
+    public synchronized ArrayList<String> getAllItemsWithKeyword(String itemKeyword, int offset,
+                    int limit) {
+        BitSet candidates = getKeywords().candidates(itemKeyword);
+        itemKeyword = itemKeyword.toLowerCase();
+        ArrayList<String> itemsWithKeyword = new ArrayList<String>();
+        int skip = Math.max(0, offset);
+        if (limit <= 0) {
+            return itemsWithKeyword;
+        }
+        if (candidates != null) {
+            for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+                String text = itemsBySlot.get(slot).toString(ranks.rank(slot));
+                if (!text.toLowerCase().contains(itemKeyword)) {
+                    continue;
+                } else if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                itemsWithKeyword.add(text);
+                if (itemsWithKeyword.size() == limit) {
+                    break;
+                }
+            }
+            return itemsWithKeyword;
+        }
+
+        int itemNumber = 0;
+        for (int slot = 0; slot < itemsBySlot.size(); slot++) {
+            Item item = itemsBySlot.get(slot);
+            if (item == null) {
+                continue;
+            }
+            String text = item.toString(++itemNumber);
+            if (!text.toLowerCase().contains(itemKeyword)) {
+                continue;
+            } else if (skip > 0) {
+                skip--;
+                continue;
+            }
+            itemsWithKeyword.add(text);
+            if (itemsWithKeyword.size() == limit) {
+                break;
+            }
+        }
+        return itemsWithKeyword;
+    }
+
+    /**
+     * Get all the items created in a time range
+     *
+     * @param from  the start of the range in epoch milliseconds, inclusive
+     * @param to  the end of the range in epoch milliseconds, exclusive
+     * @return the items created on the days that start in the range
+     */
+    public synchronized ArrayList<String> getAllItemsCreatedBetween(long from, long to) {
+        BitSet slots = getDates().between(from, to);
+        ArrayList<String> items = new ArrayList<String>(slots.cardinality());
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+            items.add(itemsBySlot.get(slot).toString(ranks.rank(slot)));
+        }
+        return items;
+    }
+
+    /**
+     * Get the item based on the item number
+     *
+     * @param itemNumber  the number of the item to be retrieved
+     * @return the item with the given item number
+     */
+    public synchronized String getItem(int itemNumber) {
+        if (itemNumber < 1 || itemNumber > ranks.size()) {
+            return null;
+        }
+        return itemsBySlot.get(ranks.select(itemNumber)).toString(itemNumber);
+    }
+
+    /**
+     * Get the item based on a keyword.
+     * If there are two or more items with the keyword, the first in the list will be returned.
+     *
+     * @param itemKeyword  a keyword to find the items
+     * @return the item containing the keyword
+     */
+    public synchronized String getItem(String itemKeyword) {
+        int itemNumber = findFirst(itemKeyword);
+        if (itemNumber == 0) {
+            return null;
+        }
+        return getItem(itemNumber);
+    }
+
+    /**
+     * Start a background compaction if enough of the journal is dead records
+     */
+    private void compactIfNeeded() {
+        if (inBatch || compacting || recordCount < MIN_RECORDS_TO_COMPACT
+                        || (double) deadRecordCount / recordCount < compactionThreshold) {
+            return;
+        }
+
+        final ArrayList<Item> snapshot = getLiveItems();
+        compacting = true;
+        recordsDuringCompaction = new ArrayList<String>();
+        compactor.execute(new Runnable() {
+            public void run() {
+                compact(snapshot);
+            }
+        });
+    }
+
+    /**
+     * Rewrite the journal with only the live items.
+     * The snapshot is written without holding the lock; records appended meanwhile
+     * are copied over before the new journal replaces the old one.
+     *
+     * @param snapshot  the live items when compaction started
+     */
+    private void compact(ArrayList<Item> snapshot) {
+        File compacted = new File(file.getPath() + ".compact");
+        try {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(compacted))) {
+                for (int n = 0; n < snapshot.size(); n++) {
+                    Item item = snapshot.get(n);
+                    String body = ADD + "," + item.getItemId() + "," + item.getDateCreated() + ","
+                                    + item.getTimeCreated() + "," + item.getTask();
+                    out.write((checksum(body) + "," + body + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            finishCompaction(compacted, snapshot.size());
+        } catch (IOException e) {
+            logger.error("Could not compact journal " + file, e);
+            synchronized (this) {
+                compacting = false;
+                recordsDuringCompaction = null;
+            }
+            compacted.delete();
+        }
+    }
+
+    /**
+     * Copy over the records appended during compaction and swap in the compacted journal
+     *
+     * @param compacted  the compacted journal
+     * @param snapshotSize  the number of records written from the snapshot
+     * @throws IOException  if the compacted journal cannot be completed or moved
+     */
+    private synchronized void finishCompaction(File compacted, int snapshotSize) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(compacted, true)) {
+            for (int n = 0; n < recordsDuringCompaction.size(); n++) {
+                out.write(recordsDuringCompaction.get(n).getBytes(StandardCharsets.UTF_8));
+            }
+            if (durability == FileManager.Durability.SYNC) {
+                out.getChannel().force(false);
+            }
+        }
+
+        Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+        if (durability == FileManager.Durability.SYNC) {
+            FileManager.forceDirectory(file.toPath().toAbsolutePath().getParent());
+        }
+        journal.close();
+        openJournal();
+
+        recordCount = snapshotSize + recordsDuringCompaction.size();
+        deadRecordCount = recordCount - ranks.size();
+
+        // drop the slots of removed items along with their records
+        ArrayList<Item> liveItems = getLiveItems();
+        ranks = new RankIndex();
+        itemsBySlot = new ArrayList<Item>(liveItems.size());
+        slotsById.clear();
+        keywords = null;
+        dates = null;
+        for (int n = 0; n < liveItems.size(); n++) {
+            addLive(liveItems.get(n));
+        }
+        compacting = false;
+        recordsDuringCompaction = null;
+    }
+
+    /**
+     * Run a batch of operations, writing their records to the journal together at the end.
+     * If an operation fails or the records cannot be written, the journal is cut back to
+     * where the batch started and the live items are read from it again, so nothing of the
+     * batch is left. Compaction waits until the batch has been written.
+     *
+     * @param batch  the operations to run
+     * @throws ToDoListAccessException  if an operation fails or the journal cannot be written
+     */
+    public synchronized void runBatch(ToDoListBatch batch) throws ToDoListAccessException {
+        if (inBatch) {
+            batch.run(this);
+            return;
+        }
+        inBatch = true;
+        int compactionMark = compacting ? recordsDuringCompaction.size() : 0;
+        try {
+            batch.run(this);
+            flushJournal();
+        } catch (IOException e) {
+            rollBackBatch(compactionMark);
+            throw new ToDoListAccessException("Batch could not be written", e);
+        } catch (ToDoListAccessException | RuntimeException e) {
+            rollBackBatch(compactionMark);
+            throw e;
+        } finally {
+            inBatch = false;
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Undo a failed batch: cut the journal back to the end of the last record written
+     * before it and rebuild the live items from the journal
+     *
+     * @param compactionMark  the number of records appended during compaction before the batch
+     */
+    private void rollBackBatch(int compactionMark) {
+        try {
+            discardUnwritten();
+            if (compacting) {
+                int appended = recordsDuringCompaction.size();
+                recordsDuringCompaction.subList(compactionMark, appended).clear();
+            }
+            ranks = new RankIndex();
+            itemsBySlot = new ArrayList<Item>();
+            slotsById.clear();
+            keywords = null;
+            dates = null;
+            nextItemId = 1;
+            recordCount = 0;
+            deadRecordCount = 0;
+            replay();
+        } catch (IOException | ToDoListAccessException e) {
+            logger.error("Could not undo a failed batch on " + file, e);
+        }
+    }
+
+    /**
+     * Wait for any running compaction and close the journal
+     *
+     * @throws ToDoListAccessException  if the journal cannot be closed
+     */
+    public void close() throws ToDoListAccessException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+            synchronized (this) {
+                journal.close();
+            }
+        } catch (IOException | InterruptedException e) {
+            throw new ToDoListAccessException("Could not close journal", e);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+
+import edu.jhuapl.dorset.nlp.Tokenizer;
+import edu.jhuapl.dorset.nlp.WhiteSpaceTokenizer;
+
+/**
+ * Inverted index from the words of the items in a list to the ids of those items.
+ *
+ * <p>The text of an item is lower-cased and split into terms with the same
+ * WhiteSpaceTokenizer the agent uses, and each token is split again at commas,
+ * the field separator. A keyword is split the same way. Any item whose text contains
+ * the keyword has, for every piece of the keyword, a term containing that piece,
+ * so the items found that way are a superset of the matches. Callers check each
+ * candidate against its full text, which keeps the results the same as a scan.
+ *
+ * <p>Terms containing a piece are found through the trigrams of the terms: a piece
+ * of three or more characters is looked up by its rarest trigram and the terms
+ * listed there are checked for the whole piece. Shorter pieces match too many terms
+ * to narrow anything down and are skipped.
+ *
+ * <p>The list number in front of an item is not indexed, since it changes whenever
+ * an earlier item is removed. A keyword that may fall within a list number gets no
+ * candidates, and the caller scans the list instead.
+ */
+public class KeywordIndex {
+
+    private static final int GRAM_LENGTH = 3;
+    private static final String NUMBER_PIECE = "[0-9]*\\)?";
+
+    private Tokenizer tokenizer;
+    private HashMap<String, SortedIds> idsByTerm;
+    private HashMap<String, ArrayList<String>> termsByGram;
+
+    /**
+     * Create an empty index
+     */
+    public KeywordIndex() {
+        tokenizer = new WhiteSpaceTokenizer();
+        idsByTerm = new HashMap<String, SortedIds>();
+        termsByGram = new HashMap<String, ArrayList<String>>();
+    }
+
+    /**
+     * Index the text of an item
+     *
+     * @param id  the id of the item; ids should be added in increasing order
+     * @param text  the item text without its list number
+     */
+    public void add(int id, String text) {
+        for (String term : split(text)) {
+            SortedIds ids = idsByTerm.get(term);
+            if (ids == null) {
+                ids = new SortedIds();
+                idsByTerm.put(term, ids);
+                addGrams(term);
+            }
+            ids.add(id);
+        }
+    }
+
+    /**
+     * Remove the text of an item from the index.
+     * Terms left without items stay in the trigram table and are skipped by lookups.
+     *
+     * @param id  the id of the item
+     * @param text  the item text it was added with
+     */
+    public void remove(int id, String text) {
+        for (String term : split(text)) {
+            SortedIds ids = idsByTerm.get(term);
+            if (ids != null) {
+                ids.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Get the items that may contain a keyword, ignoring case
+     *
+     * @param keyword  the keyword
+     * @return the ids of the candidate items or null if the index cannot narrow them down
+     */
+    public BitSet candidates(String keyword) {
+        String lowerCaseKeyword = keyword.toLowerCase();
+        ArrayList<String> pieces = split(lowerCaseKeyword);
+        if (pieces.isEmpty() || (lowerCaseKeyword.startsWith(pieces.get(0)) && pieces.get(0).matches(NUMBER_PIECE))) {
+            return null;
+        }
+
+        ArrayList<ArrayList<SortedIds>> matchesByPiece = new ArrayList<ArrayList<SortedIds>>();
+        for (String piece : pieces) {
+            if (piece.length() >= GRAM_LENGTH) {
+                ArrayList<SortedIds> matches = new ArrayList<SortedIds>();
+                for (String term : getTermsContaining(piece)) {
+                    matches.add(idsByTerm.get(term));
+                }
+                matchesByPiece.add(matches);
+            }
+        }
+        if (matchesByPiece.isEmpty()) {
+            return null;
+        }
+
+        // start from the rarest piece and only look up the others for the items already found
+        Collections.sort(matchesByPiece, new Comparator<ArrayList<SortedIds>>() {
+            public int compare(ArrayList<SortedIds> first, ArrayList<SortedIds> second) {
+                return Long.compare(countIds(first), countIds(second));
+            }
+        });
+        BitSet candidates = new BitSet();
+        for (SortedIds ids : matchesByPiece.get(0)) {
+            ids.addTo(candidates);
+        }
+        for (int n = 1; n < matchesByPiece.size() && !candidates.isEmpty(); n++) {
+            for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+                if (!containsId(matchesByPiece.get(n), id)) {
+                    candidates.clear(id);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Count the ids of some terms, counting an id once for each term it is listed under
+     *
+     * @param matches  the ids of the terms matching one piece of a keyword
+     * @return the number of ids
+     */
+    private static long countIds(ArrayList<SortedIds> matches) {
+        long count = 0;
+        for (SortedIds ids : matches) {
+            count += ids.size();
+        }
+        return count;
+    }
+
+    /**
+     * Check whether an id is listed under any of some terms
+     *
+     * @param matches  the ids of the terms matching one piece of a keyword
+     * @param id  the id
+     * @return whether one of the terms has the id
+     */
+    private static boolean containsId(ArrayList<SortedIds> matches, int id) {
+        for (SortedIds ids : matches) {
+            if (ids.contains(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the terms that contain a piece of a keyword
+     *
+     * @param piece  the piece, at least three characters long
+     * @return the terms
+     */
+    private ArrayList<String> getTermsContaining(String piece) {
+        ArrayList<String> rarest = null;
+        for (int n = 0; n + GRAM_LENGTH <= piece.length(); n++) {
+            ArrayList<String> terms = termsByGram.get(piece.substring(n, n + GRAM_LENGTH));
+            if (terms == null) {
+                return new ArrayList<String>();
+            }
+            if (rarest == null || terms.size() < rarest.size()) {
+                rarest = terms;
+            }
+        }
+
+        ArrayList<String> termsContaining = new ArrayList<String>();
+        for (String term : rarest) {
+            if (term.contains(piece)) {
+                termsContaining.add(term);
+            }
+        }
+        return termsContaining;
+    }
+
+    /**
+     * List a new term under each of its trigrams
+     *
+     * @param term  the term
+     */
+    private void addGrams(String term) {
+        for (int n = 0; n + GRAM_LENGTH <= term.length(); n++) {
+            String gram = term.substring(n, n + GRAM_LENGTH);
+            ArrayList<String> terms = termsByGram.get(gram);
+            if (terms == null) {
+                terms = new ArrayList<String>(2);
+                termsByGram.put(gram, terms);
+            }
+            if (terms.isEmpty() || terms.get(terms.size() - 1) != term) {
+                terms.add(term);
+            }
+        }
+    }
+
+    /**
+     * Split text into lower-case terms at white space and commas
+     *
+     * @param text  the text
+     * @return the terms, in order, without empty ones
+     */
+    private ArrayList<String> split(String text) {
+        ArrayList<String> terms = new ArrayList<String>();
+        for (String token : tokenizer.tokenize(text.toLowerCase())) {
+            int start = 0;
+            for (int end = token.indexOf(','); start <= token.length(); end = token.indexOf(',', start)) {
+                if (end < 0) {
+                    end = token.length();
+                }
+                if (end > start) {
+                    terms.add(token.substring(start, end));
+                }
+                start = end + 1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Get the text of a list line without the list number in front of it
+     *
+     * @param line  the line, formatted as: #),date,time,task
+     * @return the line from the date on, or the whole line if it does not start with a list number
+     */
+    public static String withoutNumber(String line) {
+        int end = line.indexOf("),");
+        if (end < 1) {
+            return line;
+        }
+        for (int n = 0; n < end; n++) {
+            if (!Character.isDigit(line.charAt(n))) {
+                return line;
+            }
+        }
+        return line.substring(end + 2);
+    }
+}
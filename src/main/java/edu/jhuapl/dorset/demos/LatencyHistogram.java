@@ -0,0 +1,149 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies in buckets that are never wider than 1/SUB_BUCKETS of the values in
+ * them, in the manner of an HDR histogram, so any percentile is read to within about 3%.
+ *
+ * <p>Values below SUB_BUCKETS each get a bucket of their own. Above that, every power of two
+ * is split into SUB_BUCKETS buckets of equal width. The whole range of long values takes
+ * under 2000 counters, and recording a value is a few atomic increments with no locking,
+ * so many threads can record into one histogram at once.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS;
+
+    private AtomicLongArray counts;
+    private AtomicLong count;
+    private AtomicLong sum;
+    private AtomicLong max;
+
+    /**
+     * Create an empty histogram
+     */
+    public LatencyHistogram() {
+        counts = new AtomicLongArray(BUCKETS);
+        count = new AtomicLong();
+        sum = new AtomicLong();
+        max = new AtomicLong();
+    }
+
+    /**
+     * Count a value
+     *
+     * @param value  the value, usually in nanoseconds; negative values count as 0
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long highest = max.get();
+        while (value > highest && !max.compareAndSet(highest, value)) {
+            highest = max.get();
+        }
+    }
+
+    /**
+     * Get the bucket of a value
+     *
+     * @param value  the value, not negative
+     * @return the index of its bucket
+     */
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Get the lowest value of a bucket
+     *
+     * @param index  the index of the bucket
+     * @return the lowest value counted in it
+     */
+    private static long lowestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >> SUB_BUCKET_BITS) - 1;
+        return (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+    }
+
+    /**
+     * Get the value below which a share of the values fall
+     *
+     * @param percentile  the share, from 0 to 100
+     * @return the highest value of the bucket holding that share, but no more than the
+     *         largest value counted, or 0 if nothing was counted
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long wanted = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * total));
+        long seen = 0;
+        for (int index = 0; index < BUCKETS; index++) {
+            seen += counts.get(index);
+            if (seen >= wanted) {
+                long highest = index + 1 < BUCKETS ? lowestValueOf(index + 1) - 1 : Long.MAX_VALUE;
+                return Math.min(highest, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Get the number of values counted
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Get the largest value counted
+     *
+     * @return the largest value, or 0 if nothing was counted
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get the average of the values counted
+     *
+     * @return the mean, or 0 if nothing was counted
+     */
+    public double getMean() {
+        long total = count.get();
+        return total == 0 ? 0 : (double) sum.get() / total;
+    }
+}
@@ -0,0 +1,723 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+
+/**
+ * ToDo list manager that keeps the list in a memory-mapped binary file, ./name.todo.
+ *
+ * <p>The file holds a header, an offset table and fixed-width records:
+ * <pre>
+ * header (32 bytes)  magic, record size, capacity, item count, slot count, next item id
+ * offset table       capacity ints; entry n is the record slot of list item n + 1
+ * records            capacity slots of RECORD_SIZE bytes
+ * </pre>
+ * Getting an item by number is a read of the offset table and a seek into the records.
+ * Removing an item shifts the offset table but never moves a record; the freed slot is
+ * reused by the next add. When the table is full the list is copied into a file of twice
+ * the capacity, ./name.todo.tmp, which is forced to the disk and renamed over the list, so
+ * a crash while growing leaves either the old file or the new one.
+ *
+ * <p>Changes are made in the mapping and left to the operating system to write back; they
+ * are only forced to the disk when the list grows or is closed. The binary type gives no
+ * durability between closes: a crash or power failure may lose recent changes, or leave
+ * one half written.
+ */
+public class MappedFileManager implements ToDoListManager {
+
+    private static final int MAGIC = 0x54444F31;
+    private static final int HEADER_SIZE = 32;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int RECORD_SIZE_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int ITEM_COUNT_OFFSET = 12;
+    private static final int SLOT_COUNT_OFFSET = 16;
+    private static final int NEXT_ITEM_ID_OFFSET = 20;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    public static final int RECORD_SIZE = 256;
+    private static final int ID_FIELD = 0;
+    private static final int DATE_FIELD = 4;
+    private static final int DATE_LENGTH = 10;
+    private static final int TIME_FIELD = 14;
+    private static final int TIME_LENGTH = 15;
+    private static final int TASK_LENGTH_FIELD = 30;
+    private static final int TASK_FIELD = 32;
+    public static final int MAX_TASK_BYTES = RECORD_SIZE - TASK_FIELD;
+
+    private File file;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private MappedByteBuffer mapping;
+    private int capacity;
+    private int itemCount;
+    private int slotCount;
+    private ArrayDeque<Integer> freeSlots;
+    private boolean inBatch;
+    private int batchItemCount;
+    private int batchSlotCount;
+    private int batchNextItemId;
+    private int[] batchTable;
+    private ArrayList<Integer> batchFreedSlots;
+    private DateIndex dates;
+    private int[] numbersBySlot;
+
+    /**
+     * Create a MappedFileManager
+     *
+     * @param toDoListName  the name of the ToDo list
+     * @throws ToDoListAccessException  if the file cannot be created, opened or is not a ToDo list
+     */
+    public MappedFileManager(String toDoListName) throws ToDoListAccessException {
+        file = new File("./" + toDoListName + ".todo");
+        try {
+            boolean isNew = !file.exists() || file.length() == 0;
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            channel = randomAccessFile.getChannel();
+            if (isNew) {
+                capacity = INITIAL_CAPACITY;
+                mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(capacity));
+                mapping.putInt(MAGIC_OFFSET, MAGIC);
+                mapping.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+                mapping.putInt(CAPACITY_OFFSET, capacity);
+                mapping.putInt(NEXT_ITEM_ID_OFFSET, 1);
+            } else {
+                mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                if (mapping.getInt(MAGIC_OFFSET) != MAGIC || mapping.getInt(RECORD_SIZE_OFFSET) != RECORD_SIZE) {
+                    throw new ToDoListAccessException("Not a binary ToDo list: " + file);
+                }
+                capacity = mapping.getInt(CAPACITY_OFFSET);
+            }
+        } catch (IOException e) {
+            throw new ToDoListAccessException("Could not open file", e);
+        }
+
+        itemCount = mapping.getInt(ITEM_COUNT_OFFSET);
+        slotCount = mapping.getInt(SLOT_COUNT_OFFSET);
+        findFreeSlots();
+    }
+
+    /**
+     * Get the size of a file with the given capacity
+     *
+     * @param capacity  the number of items the file can hold
+     * @return the size in bytes
+     */
+    private static long fileSize(int capacity) {
+        return HEADER_SIZE + (long) capacity * 4 + (long) capacity * RECORD_SIZE;
+    }
+
+    /**
+     * Collect the slots below the slot count that no list item points to
+     */
+    private void findFreeSlots() {
+        BitSet usedSlots = new BitSet(slotCount);
+        for (int n = 0; n < itemCount; n++) {
+            usedSlots.set(slotOf(n + 1));
+        }
+        freeSlots = new ArrayDeque<Integer>();
+        for (int slot = usedSlots.nextClearBit(0); slot < slotCount; slot = usedSlots.nextClearBit(slot + 1)) {
+            freeSlots.push(slot);
+        }
+    }
+
+    /**
+     * Get the record slot of a list item from the offset table
+     *
+     * @param itemNumber  the list number of the item
+     * @return the record slot
+     */
+    private int slotOf(int itemNumber) {
+        return mapping.getInt(HEADER_SIZE + (itemNumber - 1) * 4);
+    }
+
+    /**
+     * Get the byte offset of a record slot
+     *
+     * @param slot  the record slot
+     * @return the offset of the record in the file
+     */
+    private int recordOffset(int slot) {
+        return HEADER_SIZE + capacity * 4 + slot * RECORD_SIZE;
+    }
+
+    /**
+     * Add an item to the list
+     *
+     * @param item  the item to add
+     * @return the item added
+     * @throws ToDoListAccessException  if the item is too long or the file cannot grow
+     */
+    public synchronized String addItem(String item) throws ToDoListAccessException {
+        return addItem(item, getDate(), getTime());
+    }
+
+    /**
+     * Add an item to the list with the given creation date and time
+     *
+     * @param item  the item to add
+     * @param dateCreated  the date the item was created
+     * @param timeCreated  the time the item was created
+     * @return the item added
+     * @throws ToDoListAccessException  if the item is too long or the file cannot grow
+     */
+    synchronized String addItem(String item, String dateCreated, String timeCreated) throws ToDoListAccessException {
+        byte[] task = item.getBytes(StandardCharsets.UTF_8);
+        byte[] date = dateCreated.getBytes(StandardCharsets.UTF_8);
+        byte[] time = timeCreated.getBytes(StandardCharsets.UTF_8);
+        if (task.length > MAX_TASK_BYTES || date.length > DATE_LENGTH || time.length > TIME_LENGTH) {
+            throw new ToDoListAccessException("Item could not be added, it is longer than " + MAX_TASK_BYTES
+                            + " bytes: " + item);
+        }
+        if (itemCount == capacity) {
+            grow();
+        }
+
+        int slot;
+        if (freeSlots.isEmpty()) {
+            slot = slotCount;
+            slotCount++;
+        } else {
+            slot = freeSlots.pop();
+        }
+
+        int itemId = mapping.getInt(NEXT_ITEM_ID_OFFSET);
+        int offset = recordOffset(slot);
+        mapping.putInt(offset + ID_FIELD, itemId);
+        putPadded(offset + DATE_FIELD, date, DATE_LENGTH);
+        mapping.put(offset + TIME_FIELD, (byte) time.length);
+        putPadded(offset + TIME_FIELD + 1, time, TIME_LENGTH);
+        mapping.putShort(offset + TASK_LENGTH_FIELD, (short) task.length);
+        putPadded(offset + TASK_FIELD, task, task.length);
+
+        mapping.putInt(HEADER_SIZE + itemCount * 4, slot);
+        itemCount++;
+        if (dates != null) {
+            dates.add(slot, dateCreated);
+            numbersBySlot[slot] = itemCount;
+        }
+        mapping.putInt(ITEM_COUNT_OFFSET, itemCount);
+        mapping.putInt(SLOT_COUNT_OFFSET, slotCount);
+        mapping.putInt(NEXT_ITEM_ID_OFFSET, itemId + 1);
+        return item;
+    }
+
+    /**
+     * Write bytes into the mapping, filling the rest of the field with zeros
+     *
+     * @param offset  where the field starts
+     * @param bytes  the bytes to write
+     * @param fieldLength  the length of the field
+     */
+    private void putPadded(int offset, byte[] bytes, int fieldLength) {
+        for (int n = 0; n < fieldLength; n++) {
+            mapping.put(offset + n, n < bytes.length ? bytes[n] : 0);
+        }
+    }
+
+    /**
+     * Double the capacity of the file.
+     * The list is copied into a new file with a larger offset table, the records moved up
+     * to make room for it, and the new file is forced to the disk before it is renamed over
+     * the list. The list file is never changed in place, so it always matches its header.
+     *
+     * @throws ToDoListAccessException  if the new file cannot be written or mapped; the list
+     *         is left as it was
+     */
+    private void grow() throws ToDoListAccessException {
+        int newCapacity = capacity * 2;
+        if (fileSize(newCapacity) > Integer.MAX_VALUE) {
+            throw new ToDoListAccessException("Binary ToDo list is full");
+        }
+
+        Path target = file.toPath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (FileChannel grownChannel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                            StandardOpenOption.WRITE)) {
+                MappedByteBuffer grown = grownChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                fileSize(newCapacity));
+                copy(grown, 0, 0, HEADER_SIZE + itemCount * 4);
+                grown.putInt(CAPACITY_OFFSET, newCapacity);
+                copy(grown, recordOffset(0), HEADER_SIZE + newCapacity * 4, slotCount * RECORD_SIZE);
+                grown.force();
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException deleteFailure) {
+                // the next grow truncates it
+            }
+            throw new ToDoListAccessException("Could not grow file", e);
+        }
+        FileManager.forceDirectory(target.toAbsolutePath().getParent());
+
+        try {
+            channel.close();
+            randomAccessFile.close();
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            channel = randomAccessFile.getChannel();
+            mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(newCapacity));
+        } catch (IOException e) {
+            throw new ToDoListAccessException("Could not open grown file", e);
+        }
+        capacity = newCapacity;
+        if (numbersBySlot != null) {
+            numbersBySlot = Arrays.copyOf(numbersBySlot, capacity);
+        }
+    }
+
+    /**
+     * Copy bytes from the mapping of the list into the mapping of a new file
+     *
+     * @param to  the mapping of the new file
+     * @param from  where the bytes start in the list
+     * @param toOffset  where they go in the new file
+     * @param length  the number of bytes
+     */
+    private void copy(MappedByteBuffer to, int from, int toOffset, int length) {
+        byte[] chunk = new byte[64 * RECORD_SIZE];
+        for (int done = 0; done < length; done += chunk.length) {
+            int chunkLength = Math.min(chunk.length, length - done);
+            mapping.position(from + done);
+            mapping.get(chunk, 0, chunkLength);
+            to.position(toOffset + done);
+            to.put(chunk, 0, chunkLength);
+        }
+    }
+
+    /**
+     * Get the current date
+     * Formatted as: MM/dd/yyyy
+     *
+     * @return the current date
+     */
+    private String getDate() {
+        DateFormat day = new SimpleDateFormat("MM/dd/yyyy");
+        return day.format(new Date());
+    }
+
+    /**
+     * Get the current time
+     * Formatted as: hh:mm AM/PM
+     *
+     * @return the current time
+     */
+    private String getTime() {
+        DateFormat time = DateFormat.getTimeInstance(DateFormat.SHORT);
+        return time.format(new Date());
+    }
+
+    /**
+     * Remove an item from the list based on its item number
+     *
+     * @param itemNumber  the number of the item to be removed
+     * @return the item removed or null if there is no such item
+     */
+    public synchronized String removeItem(int itemNumber) {
+        if (itemNumber < 1 || itemNumber > itemCount) {
+            return null;
+        }
+        return removeAt(itemNumber);
+    }
+
+    /**
+     * Remove the first item containing the keyword
+     *
+     * @param itemKeyword  the keyword to find the item
+     * @return the item removed or null if no item contains the keyword
+     */
+    public synchronized String removeItem(String itemKeyword) {
+        int itemNumber = findFirst(itemKeyword);
+        if (itemNumber == 0) {
+            return null;
+        }
+        return removeAt(itemNumber);
+    }
+
+    /**
+     * Remove the item with the given number by closing the gap in the offset table
+     *
+     * @param itemNumber  the number of the item to remove
+     * @return the item removed
+     */
+    private String removeAt(int itemNumber) {
+        String removed = describe(itemNumber);
+        int slot = slotOf(itemNumber);
+        if (inBatch && batchTable == null) {
+            batchTable = new int[batchItemCount];
+            for (int n = 0; n < batchItemCount; n++) {
+                batchTable[n] = slotOf(n + 1);
+            }
+        }
+        if (dates != null) {
+            dates.remove(slot, dateOf(slot));
+        }
+        for (int n = itemNumber; n < itemCount; n++) {
+            int movedSlot = slotOf(n + 1);
+            mapping.putInt(HEADER_SIZE + (n - 1) * 4, movedSlot);
+            if (numbersBySlot != null) {
+                numbersBySlot[movedSlot] = n;
+            }
+        }
+        itemCount--;
+        mapping.putInt(ITEM_COUNT_OFFSET, itemCount);
+        if (inBatch) {
+            batchFreedSlots.add(slot);
+        } else {
+            freeSlots.push(slot);
+        }
+        return removed;
+    }
+
+    /**
+     * Get the item as text
+     *
+     * @param itemNumber  the list number of the item
+     * @return the item text formatted as: #),date,time,task
+     */
+    private String describe(int itemNumber) {
+        StringBuilder text = new StringBuilder(64);
+        appendItem(text, itemNumber);
+        return text.toString();
+    }
+
+    /**
+     * Append the text of an item straight from the mapping
+     *
+     * @param text  where to append the item
+     * @param itemNumber  the list number of the item
+     */
+    private void appendItem(StringBuilder text, int itemNumber) {
+        int offset = recordOffset(slotOf(itemNumber));
+        text.append(itemNumber).append("),");
+        appendBytes(text, offset + DATE_FIELD, dateLength(offset));
+        text.append(',');
+        appendBytes(text, offset + TIME_FIELD + 1, mapping.get(offset + TIME_FIELD));
+        text.append(',');
+        appendBytes(text, offset + TASK_FIELD, mapping.getShort(offset + TASK_LENGTH_FIELD));
+    }
+
+    /**
+     * Get the length of the zero-padded date field of a record
+     *
+     * @param offset  the offset of the record
+     * @return the length of the date
+     */
+    private int dateLength(int offset) {
+        int length = 0;
+        while (length < DATE_LENGTH && mapping.get(offset + DATE_FIELD + length) != 0) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Append UTF-8 bytes from the mapping.
+     * ASCII is copied a character at a time; anything else is decoded as a whole.
+     *
+     * @param text  where to append the characters
+     * @param offset  where the bytes start
+     * @param length  the number of bytes
+     */
+    private void appendBytes(StringBuilder text, int offset, int length) {
+        for (int n = 0; n < length; n++) {
+            byte b = mapping.get(offset + n);
+            if (b < 0) {
+                byte[] bytes = new byte[length];
+                for (int m = 0; m < length; m++) {
+                    bytes[m] = mapping.get(offset + m);
+                }
+                text.setLength(text.length() - n);
+                text.append(new String(bytes, StandardCharsets.UTF_8));
+                return;
+            }
+            text.append((char) b);
+        }
+    }
+
+    /**
+     * Get the number of the first item containing the keyword
+     *
+     * @param itemKeyword  the keyword to find the item
+     * @return the item number or 0 if no item contains the keyword
+     */
+    private int findFirst(String itemKeyword) {
+        itemKeyword = itemKeyword.toLowerCase();
+        StringBuilder text = new StringBuilder(64);
+        for (int n = 1; n <= itemCount; n++) {
+            text.setLength(0);
+            appendItem(text, n);
+            if (text.toString().toLowerCase().contains(itemKeyword)) {
+                return n;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Append every item to a buffer, one per line, without building a String per item
+     *
+     * @param text  where to append the items
+     * @return the number of lines appended
+     */
+    public synchronized int appendAllText(StringBuilder text) {
+        for (int n = 1; n <= itemCount; n++) {
+            appendItem(text, n);
+            text.append('\n');
+        }
+        return itemCount;
+    }
+
+    /**
+     * Get all text from the list
+     *
+     * @return text  a list of all items
+     */
+    public synchronized ArrayList<String> getAllText() {
+        ArrayList<String> text = new ArrayList<String>(itemCount);
+        for (int n = 1; n <= itemCount; n++) {
+            text.add(describe(n));
+        }
+        return text;
+    }
+
+    /**
+     * Get a page of text from the list
+     *
+     * @param offset  the number of items to skip
+     * @param limit  the most items to return
+     * @return text  a list of the items on the page
+     */
+    public synchronized ArrayList<String> getAllText(int offset, int limit) {
+        int first = Math.max(0, offset) + 1;
+        int last = (int) Math.min((long) first + Math.max(0, limit) - 1, itemCount);
+        ArrayList<String> text = new ArrayList<String>(Math.max(0, last - first + 1));
+        for (int n = first; n <= last; n++) {
+            text.add(describe(n));
+        }
+        return text;
+    }
+
+    /**
+     * Get all the items with the keyword.
+     *
+     * @param itemKeyword  the keyword to find the items
+     * @return itemsWithKeyword  a list of items with the keyword
+     */
+    public synchronized ArrayList<String> getAllItemsWithKeyword(String itemKeyword) {
+        return getAllItemsWithKeyword(itemKeyword, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get a page of the items with the keyword, reading records only until the page is full
+     *
+     * @param itemKeyword  the keyword to find the items
+     * @param offset  the number of matching items to skip
+     * @param limit  the most items to return
+     * @return itemsWithKeyword  a list of items with the keyword
+     */
+    public synchronized ArrayList<String> getAllItemsWithKeyword(String itemKeyword, int offset,
+                    int limit) {
+        itemKeyword = itemKeyword.toLowerCase();
+        ArrayList<String> itemsWithKeyword = new ArrayList<String>();
+        int skip = Math.max(0, offset);
+        for (int n = 1; n <= itemCount && itemsWithKeyword.size() < limit; n++) {
+            String text = describe(n);
+            if (!text.toLowerCase().contains(itemKeyword)) {
+                continue;
+            } else if (skip > 0) {
+                skip--;
+                continue;
+            }
+            itemsWithKeyword.add(text);
+        }
+        return itemsWithKeyword;
+    }
+
+    /**
+     * Get all the items created in a time range, through a DateIndex over the record slots
+     *
+     * @param from  the start of the range in epoch milliseconds, inclusive
+     * @param to  the end of the range in epoch milliseconds, exclusive
+     * @return the items created on the days that start in the range
+     */
+    public synchronized ArrayList<String> getAllItemsCreatedBetween(long from, long to) {
+        BitSet slots = getDates().between(from, to);
+        int[] itemNumbers = new int[slots.cardinality()];
+        int found = 0;
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+            itemNumbers[found++] = numbersBySlot[slot];
+        }
+        Arrays.sort(itemNumbers);
+        ArrayList<String> items = new ArrayList<String>(itemNumbers.length);
+        for (int itemNumber : itemNumbers) {
+            items.add(describe(itemNumber));
+        }
+        return items;
+    }
+
+    /**
+     * Get the index from creation day to record slot, building it on first use along with
+     * the list number of each slot, which removes keep up to date as they shift the table
+     *
+     * @return the date index
+     */
+    private DateIndex getDates() {
+        if (dates == null) {
+            DateIndex index = new DateIndex();
+            numbersBySlot = new int[capacity];
+            for (int n = 1; n <= itemCount; n++) {
+                int slot = slotOf(n);
+                index.add(slot, dateOf(slot));
+                numbersBySlot[slot] = n;
+            }
+            dates = index;
+        }
+        return dates;
+    }
+
+    /**
+     * Get the creation date of the record in a slot
+     *
+     * @param slot  the record slot
+     * @return the date, formatted as: MM/dd/yyyy
+     */
+    private String dateOf(int slot) {
+        int offset = recordOffset(slot);
+        StringBuilder date = new StringBuilder(DATE_LENGTH);
+        appendBytes(date, offset + DATE_FIELD, dateLength(offset));
+        return date.toString();
+    }
+
+    /**
+     * Get the item based on the item number
+     *
+     * @param itemNumber  the number of the item to be retrieved
+     * @return the item with the given item number
+     */
+    public synchronized String getItem(int itemNumber) {
+        if (itemNumber < 1 || itemNumber > itemCount) {
+            return null;
+        }
+        return describe(itemNumber);
+    }
+
+    /**
+     * Get the item based on a keyword.
+     * If there are two or more items with the keyword, the first in the list will be returned.
+     *
+     * @param itemKeyword  a keyword to find the items
+     * @return the item containing the keyword
+     */
+    public synchronized String getItem(String itemKeyword) {
+        int itemNumber = findFirst(itemKeyword);
+        if (itemNumber == 0) {
+            return null;
+        }
+        return describe(itemNumber);
+    }
+
+    /**
+     * Run a batch of operations while holding the list.
+     * Changes go straight into the mapped file and are flushed to disk by the operating
+     * system or on close, so there is nothing to group. If an operation fails the list is
+     * put back as it was before the batch: slots freed in the batch are not reused until it
+     * ends, so the records of the items it removed are still there to point back to.
+     *
+     * @param batch  the operations to run
+     * @throws ToDoListAccessException  if an operation fails
+     */
+    public synchronized void runBatch(ToDoListBatch batch) throws ToDoListAccessException {
+        if (inBatch) {
+            batch.run(this);
+            return;
+        }
+        inBatch = true;
+        batchItemCount = itemCount;
+        batchSlotCount = slotCount;
+        batchNextItemId = mapping.getInt(NEXT_ITEM_ID_OFFSET);
+        batchTable = null;
+        batchFreedSlots = new ArrayList<Integer>();
+        try {
+            batch.run(this);
+            for (int slot : batchFreedSlots) {
+                freeSlots.push(slot);
+            }
+        } catch (ToDoListAccessException | RuntimeException e) {
+            rollBackBatch();
+            throw e;
+        } finally {
+            inBatch = false;
+            batchTable = null;
+            batchFreedSlots = null;
+        }
+    }
+
+    /**
+     * Put the offset table and header back as they were when the batch started
+     */
+    private void rollBackBatch() {
+        if (batchTable != null) {
+            for (int n = 0; n < batchItemCount; n++) {
+                mapping.putInt(HEADER_SIZE + n * 4, batchTable[n]);
+            }
+        }
+        itemCount = batchItemCount;
+        slotCount = batchSlotCount;
+        mapping.putInt(ITEM_COUNT_OFFSET, itemCount);
+        mapping.putInt(SLOT_COUNT_OFFSET, slotCount);
+        mapping.putInt(NEXT_ITEM_ID_OFFSET, batchNextItemId);
+        findFreeSlots();
+        dates = null;
+        numbersBySlot = null;
+    }
+
+    /**
+     * Flush the mapping to disk and close the file
+     *
+     * @throws ToDoListAccessException  if the file cannot be closed
+     */
+    public synchronized void close() throws ToDoListAccessException {
+        try {
+            mapping.force();
+            channel.close();
+            randomAccessFile.close();
+        } catch (IOException e) {
+            throw new ToDoListAccessException("Could not close file", e);
+        }
+    }
+}
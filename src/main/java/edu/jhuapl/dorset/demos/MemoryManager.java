@@ -0,0 +1,214 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.util.ArrayList;
+
+/**
+ * ToDo list manager that keeps the list only in memory, in a CompactItemStore.
+ *
+ * <p>Nothing is written anywhere, so the list lasts as long as its store; the registry keeps
+ * the store of each list for the life of the agent, and hands it to a new manager when a
+ * list that was closed is opened again. Items are numbered by their place in the list, so
+ * the items after a removed one move up a number, as in a CSV list. As in a journal list, a
+ * task may not hold a line break, since the list is read back one line per item.
+ *
+ * <p>Reads may run in parallel with each other. Adds, removes and batches must not run
+ * alongside anything else.
+ */
+public class MemoryManager implements ToDoListManager {
+
+    private CompactItemStore store;
+    private boolean inBatch;
+
+    /**
+     * Create a manager for a list held in a store
+     *
+     * @param store  the items of the list
+     */
+    public MemoryManager(CompactItemStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Add an item to the list
+     *
+     * @param item  the item to add, without line breaks
+     * @return the item added
+     * @throws ToDoListAccessException  if the item holds a line break or the store has no room
+     *         left for it
+     */
+    public String addItem(String item) throws ToDoListAccessException {
+        if (item.indexOf('\n') >= 0) {
+            throw new ToDoListAccessException("Item could not be added, it holds a line break: "
+                            + item);
+        }
+        try {
+            store.add(System.currentTimeMillis(), item);
+        } catch (IllegalStateException e) {
+            throw new ToDoListAccessException("Item could not be added: " + item, e);
+        }
+        return item;
+    }
+
+    /**
+     * Remove an item from the list based on its item number
+     *
+     * @param itemNumber  the number of the item to be removed
+     * @return the item removed or null if there is no such item
+     */
+    public String removeItem(int itemNumber) {
+        return store.remove(itemNumber);
+    }
+
+    /**
+     * Remove the first item containing the keyword from the list
+     *
+     * @param itemKeyword  the keyword to find the item
+     * @return the item removed or null if no item contains the keyword
+     */
+    public String removeItem(String itemKeyword) {
+        int itemNumber = store.find(itemKeyword);
+        if (itemNumber == 0) {
+            return null;
+        }
+        return store.remove(itemNumber);
+    }
+
+    /**
+     * Get all the items
+     *
+     * @return text  the item lines
+     */
+    public ArrayList<String> getAllText() {
+        return store.getLines(0, store.size());
+    }
+
+    /**
+     * Append all the items to a buffer, one per line
+     *
+     * @param text  where to append the item lines
+     * @return the number of lines appended
+     */
+    public int appendAllText(StringBuilder text) {
+        return store.appendLines(text);
+    }
+
+    /**
+     * Get a page of items
+     *
+     * @param offset  the number of items to skip
+     * @param limit  the most items to return
+     * @return text  the item lines
+     */
+    public ArrayList<String> getAllText(int offset, int limit) {
+        return store.getLines(offset, limit);
+    }
+
+    /**
+     * Get all the items with the keyword
+     *
+     * @param itemKeyword  the keyword to find the items
+     * @return itemsWithKeyword  a list of items with the keyword
+     */
+    public ArrayList<String> getAllItemsWithKeyword(String itemKeyword) {
+        return store.findAll(itemKeyword);
+    }
+
+    /**
+     * Get a page of the items with the keyword
+     *
+     * @param itemKeyword  the keyword to find the items
+     * @param offset  the number of matching items to skip
+     * @param limit  the most items to return
+     * @return itemsWithKeyword  a list of items with the keyword
+     */
+    public ArrayList<String> getAllItemsWithKeyword(String itemKeyword, int offset, int limit) {
+        return store.findAll(itemKeyword, offset, limit);
+    }
+
+    /**
+     * Get all the items created in a time range
+     *
+     * @param from  the start of the range in epoch milliseconds, inclusive
+     * @param to  the end of the range in epoch milliseconds, exclusive
+     * @return the items created on the days that start in the range
+     */
+    public ArrayList<String> getAllItemsCreatedBetween(long from, long to) {
+        return store.findCreatedBetween(from, to);
+    }
+
+    /**
+     * Get the item based on the item number
+     *
+     * @param itemNumber  the number of the item to be retrieved
+     * @return the item with the given item number or null if there is no such item
+     */
+    public String getItem(int itemNumber) {
+        if (itemNumber < 1 || itemNumber > store.size()) {
+            return null;
+        }
+        return store.getLine(itemNumber);
+    }
+
+    /**
+     * Get the item based on a keyword.
+     * If there are two or more items with the keyword, the first in the list will be returned.
+     *
+     * @param itemKeyword  a keyword to find the items
+     * @return the item containing the keyword or null if no item contains it
+     */
+    public String getItem(String itemKeyword) {
+        int itemNumber = store.find(itemKeyword);
+        if (itemNumber == 0) {
+            return null;
+        }
+        return store.getLine(itemNumber);
+    }
+
+    /**
+     * Run a batch of operations. If an operation fails, the changes made by the
+     * operations before it are undone, so the list is left as it was.
+     * The caller must hold the write lock of the list.
+     *
+     * @param batch  the operations to run
+     * @throws ToDoListAccessException  if an operation fails
+     */
+    public void runBatch(ToDoListBatch batch) throws ToDoListAccessException {
+        if (inBatch) {
+            batch.run(this);
+            return;
+        }
+        inBatch = true;
+        store.beginBatch();
+        try {
+            batch.run(this);
+            store.commitBatch();
+        } catch (ToDoListAccessException | RuntimeException e) {
+            store.rollBackBatch();
+            throw e;
+        } finally {
+            inBatch = false;
+        }
+    }
+
+    /**
+     * Close the manager; the items stay in the store
+     */
+    public void close() {
+    }
+}
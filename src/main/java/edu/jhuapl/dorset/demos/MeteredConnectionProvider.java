@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.HibernateException;
+import org.hibernate.connection.C3P0ConnectionProvider;
+
+import com.mchange.v2.c3p0.C3P0Registry;
+import com.mchange.v2.c3p0.PooledDataSource;
+
+/**
+ * c3p0 connection pool that also measures how it is used.
+ * Select it in hibernate.cfg.xml with hibernate.connection.provider_class;
+ * see sample.cfg.xml for the pool size and validation settings.
+ */
+public class MeteredConnectionProvider extends C3P0ConnectionProvider {
+
+    private static volatile MeteredConnectionProvider current;
+
+    private PooledDataSource pool;
+    private AtomicInteger activeConnections = new AtomicInteger();
+    private AtomicLong connectionsAcquired = new AtomicLong();
+    private AtomicLong totalWaitNanos = new AtomicLong();
+    private AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * Configure the c3p0 pool and remember it so its idle count can be read
+     *
+     * @param props  the hibernate connection properties
+     * @throws HibernateException  if the pool cannot be created
+     */
+    @SuppressWarnings("unchecked")
+    public void configure(Properties props) throws HibernateException {
+        Set<PooledDataSource> before = new HashSet<PooledDataSource>(C3P0Registry.getPooledDataSources());
+        super.configure(props);
+        Set<PooledDataSource> after = new HashSet<PooledDataSource>(C3P0Registry.getPooledDataSources());
+        after.removeAll(before);
+        if (!after.isEmpty()) {
+            pool = after.iterator().next();
+        }
+        current = this;
+    }
+
+    /**
+     * Check a connection out of the pool, timing how long it took
+     *
+     * @return a pooled connection
+     * @throws SQLException  if no connection can be obtained
+     */
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = super.getConnection();
+        long waitNanos = System.nanoTime() - start;
+
+        activeConnections.incrementAndGet();
+        connectionsAcquired.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        long max = maxWaitNanos.get();
+        while (waitNanos > max && !maxWaitNanos.compareAndSet(max, waitNanos)) {
+            max = maxWaitNanos.get();
+        }
+        return connection;
+    }
+
+    /**
+     * Return a connection to the pool
+     *
+     * @param connection  the connection to return
+     * @throws SQLException  if the connection cannot be returned
+     */
+    public void closeConnection(Connection connection) throws SQLException {
+        activeConnections.decrementAndGet();
+        super.closeConnection(connection);
+    }
+
+    /**
+     * Close the pool
+     */
+    public void close() {
+        if (current == this) {
+            current = null;
+        }
+        super.close();
+    }
+
+    /**
+     * Get the current state of the pool
+     *
+     * @return the pool metrics
+     */
+    public ConnectionPoolMetrics getMetrics() {
+        int idleConnections = -1;
+        int threadsWaiting = -1;
+        if (pool != null) {
+            try {
+                idleConnections = pool.getNumIdleConnectionsDefaultUser();
+                threadsWaiting = pool.getNumThreadsAwaitingCheckoutDefaultUser();
+            } catch (SQLException e) {
+                // leave the pool counts unknown
+            }
+        }
+        return new ConnectionPoolMetrics(activeConnections.get(), idleConnections, threadsWaiting,
+                        connectionsAcquired.get(), totalWaitNanos.get() / 1000000, maxWaitNanos.get() / 1000000);
+    }
+
+    /**
+     * Get the pool that is in use, if the SessionFactory was configured with this provider
+     *
+     * @return the provider or null if connections are not pooled through it
+     */
+    public static MeteredConnectionProvider getCurrent() {
+        return current;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.util.BitSet;
+
+/**
+ * Order-statistic index over slots handed out in list order.
+ *
+ * <p>Each item gets a slot when it is added and keeps it until it is removed, so its
+ * slot works as a stable id. The list number of an item is its rank among the slots
+ * still in use. Adding, removing, finding the rank of a slot and finding the slot
+ * with a given rank all take O(log n) time; no other slot changes on a remove.
+ * The counts are kept in a Fenwick tree.
+ */
+public class RankIndex {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] tree;
+    private BitSet used;
+    private int slotCount;
+    private int size;
+
+    /**
+     * Create an empty index
+     */
+    public RankIndex() {
+        tree = new int[INITIAL_CAPACITY + 1];
+        used = new BitSet(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Get the number of slots in use
+     *
+     * @return the number of items in the list
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of slots handed out, including removed ones
+     *
+     * @return the number of slots
+     */
+    public int slotCount() {
+        return slotCount;
+    }
+
+    /**
+     * Check whether a slot is in use
+     *
+     * @param slot  the slot
+     * @return whether the slot holds an item
+     */
+    public boolean isUsed(int slot) {
+        return used.get(slot);
+    }
+
+    /**
+     * Add an item at the end of the list
+     *
+     * @return the slot of the new item
+     */
+    public int add() {
+        if (slotCount == tree.length - 1) {
+            grow();
+        }
+        int slot = slotCount;
+        slotCount++;
+        used.set(slot);
+        update(slot, 1);
+        size++;
+        return slot;
+    }
+
+    /**
+     * Remove the item in a slot
+     *
+     * @param slot  the slot to free
+     */
+    public void remove(int slot) {
+        if (!used.get(slot)) {
+            return;
+        }
+        used.clear(slot);
+        update(slot, -1);
+        size--;
+    }
+
+    /**
+     * Get the list number of the item in a slot
+     *
+     * @param slot  a slot in use
+     * @return the rank of the slot, starting at 1
+     */
+    public int rank(int slot) {
+        int count = 0;
+        for (int n = slot + 1; n > 0; n -= n & -n) {
+            count += tree[n];
+        }
+        return count;
+    }
+
+    /**
+     * Get the slot of the item with a list number
+     *
+     * @param rank  the list number, from 1 to size
+     * @return the slot or -1 if there is no such item
+     */
+    public int select(int rank) {
+        if (rank < 1 || rank > size) {
+            return -1;
+        }
+        int position = 0;
+        int step = Integer.highestOneBit(tree.length - 1);
+        for (; step > 0; step >>= 1) {
+            int next = position + step;
+            if (next < tree.length && tree[next] < rank) {
+                position = next;
+                rank -= tree[next];
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Add a value to the count of a slot
+     *
+     * @param slot  the slot
+     * @param delta  the change in its count
+     */
+    private void update(int slot, int delta) {
+        for (int n = slot + 1; n < tree.length; n += n & -n) {
+            tree[n] += delta;
+        }
+    }
+
+    /**
+     * Double the number of slots and rebuild the tree in linear time
+     */
+    private void grow() {
+        int capacity = (tree.length - 1) * 2;
+        tree = new int[capacity + 1];
+        for (int slot = used.nextSetBit(0); slot >= 0; slot = used.nextSetBit(slot + 1)) {
+            tree[slot + 1] = 1;
+        }
+        for (int n = 1; n <= capacity; n++) {
+            int parent = n + (n & -n);
+            if (parent <= capacity) {
+                tree[parent] += tree[n];
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Sorted set of item ids kept in an int array, used for the entries of the list indexes.
+ * Items are added in id order, so an add is almost always an append.
+ */
+public class SortedIds {
+
+    private int[] ids = new int[1];
+    private int size;
+
+    /**
+     * Get the number of ids
+     *
+     * @return the number of ids
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add an id, which is usually larger than all the others
+     *
+     * @param id  the id
+     */
+    public void add(int id) {
+        if (size > 0 && ids[size - 1] == id) {
+            return;
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        int position = size;
+        if (size > 0 && ids[size - 1] > id) {
+            position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+        }
+        ids[position] = id;
+        size++;
+    }
+
+    /**
+     * Remove an id
+     *
+     * @param id  the id
+     */
+    public void remove(int id) {
+        int position = Arrays.binarySearch(ids, 0, size, id);
+        if (position < 0) {
+            return;
+        }
+        System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+        size--;
+    }
+
+    /**
+     * Check whether an id is in the set
+     *
+     * @param id  the id
+     * @return whether the id is in the set
+     */
+    public boolean contains(int id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    /**
+     * Set the bits of all the ids
+     *
+     * @param bits  the set to add the ids to
+     */
+    public void addTo(BitSet bits) {
+        for (int n = 0; n < size; n++) {
+            bits.set(ids[n]);
+        }
+    }
+}
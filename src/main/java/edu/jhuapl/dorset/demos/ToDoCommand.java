@@ -0,0 +1,386 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+/**
+ * A user's request to the ToDoList Agent, parsed into its parts.
+ *
+ * <p>The action is the first of ADD, REMOVE and GET found anywhere in the request,
+ * ignoring case, and the text is whatever follows the action word and the character
+ * after it. The text is read once, a word at a time: a text of one or two digits is an
+ * item number, a word formatted as mm/dd/yyyy is a date, one formatted as
+ * mm/dd/yyyy-mm/dd/yyyy is a date range, and a word containing ALL sets the all flag.
+ * PAGE, LIMIT or OFFSET followed by a number asks for part of the items.
+ * The keyword is the words left over, other than single digits, joined by spaces.
+ */
+public class ToDoCommand {
+
+    public enum Action {
+        ADD, REMOVE, GET, UNKNOWN
+    }
+
+    private static final String ALL = "ALL";
+    private static final int DATE_LENGTH = 10;
+    private static final String[] PAGE_WORDS = {"PAGE", "LIMIT", "OFFSET"};
+    private static final int MAX_NUMBER_LENGTH = 9;
+
+    private Action action;
+    private String text;
+    private int itemNumber;
+    private boolean hasItemNumber;
+    private String date;
+    private String dateRange;
+    private String keyword;
+    private boolean all;
+    private int page = -1;
+    private int limit = -1;
+    private int offset = -1;
+
+    /**
+     * Create a command; use parse to read one from a request
+     *
+     * @param action  the action
+     * @param text  the text after the action word
+     */
+    private ToDoCommand(Action action, String text) {
+        this.action = action;
+        this.text = text;
+        this.date = "";
+        this.dateRange = "";
+        this.keyword = "";
+    }
+
+    /**
+     * Parse a request
+     *
+     * @param input  the user's request
+     * @return the command
+     */
+    public static ToDoCommand parse(String input) {
+        Action action = Action.UNKNOWN;
+        int actionEnd = -1;
+        int index;
+        if ((index = indexOfIgnoreCase(input, "ADD", 0, input.length())) >= 0) {
+            action = Action.ADD;
+            actionEnd = index + 3;
+        } else if ((index = indexOfIgnoreCase(input, "REMOVE", 0, input.length())) >= 0) {
+            action = Action.REMOVE;
+            actionEnd = index + 6;
+        } else if ((index = indexOfIgnoreCase(input, "GET", 0, input.length())) >= 0) {
+            action = Action.GET;
+            actionEnd = index + 3;
+        }
+        if (action == Action.UNKNOWN) {
+            return new ToDoCommand(action, input);
+        }
+
+        String text = actionEnd + 1 < input.length() ? input.substring(actionEnd + 1) : "";
+        ToDoCommand command = new ToDoCommand(action, text);
+        command.readText();
+        return command;
+    }
+
+    /**
+     * Read the item number, dates, keyword and all flag from the text
+     */
+    private void readText() {
+        int length = text.length();
+        if ((length == 1 || length == 2) && isDigit(text.charAt(0)) && isDigit(text.charAt(length - 1))) {
+            itemNumber = Integer.parseInt(text);
+            hasItemNumber = true;
+        }
+
+        StringBuilder words = null;
+        int pageWordStart = -1;
+        int pageWordEnd = -1;
+        int start = 0;
+        while (start < length) {
+            while (start < length && isSpace(text.charAt(start))) {
+                start++;
+            }
+            int end = start;
+            while (end < length && !isSpace(text.charAt(end))) {
+                end++;
+            }
+            if (end == start) {
+                break;
+            }
+
+            if (pageWordStart >= 0) {
+                boolean isNumber = readPageNumber(pageWordStart, pageWordEnd, start, end);
+                if (!isNumber) {
+                    words = appendWord(words, pageWordStart, pageWordEnd);
+                }
+                pageWordStart = -1;
+                if (isNumber) {
+                    start = end;
+                    continue;
+                }
+            }
+            if (isPageWord(start, end)) {
+                pageWordStart = start;
+                pageWordEnd = end;
+                start = end;
+                continue;
+            }
+
+            int wordLength = end - start;
+            if (isDate(start)) {
+                if (wordLength == DATE_LENGTH) {
+                    date = text.substring(start, end);
+                } else if (wordLength == 2 * DATE_LENGTH + 1 && text.charAt(start + DATE_LENGTH) == '-'
+                                && isDate(start + DATE_LENGTH + 1)) {
+                    dateRange = text.substring(start, end);
+                }
+            }
+            boolean containsAll = indexOfIgnoreCase(text, ALL, start, end) >= 0;
+            all |= containsAll;
+            if (!containsAll && !(wordLength == 1 && isDigit(text.charAt(start)))) {
+                words = appendWord(words, start, end);
+            }
+            start = end;
+        }
+        if (pageWordStart >= 0) {
+            words = appendWord(words, pageWordStart, pageWordEnd);
+        }
+        if (words != null) {
+            keyword = words.toString();
+        }
+    }
+
+    /**
+     * Add a word of the text to the keyword
+     *
+     * @param words  the keyword so far, or null if it has no words yet
+     * @param start  the index of the word
+     * @param end  the index after the word
+     * @return the keyword
+     */
+    private StringBuilder appendWord(StringBuilder words, int start, int end) {
+        if (words == null) {
+            words = new StringBuilder(text.length());
+        } else {
+            words.append(' ');
+        }
+        return words.append(text, start, end);
+    }
+
+    /**
+     * Check whether a word of the text is PAGE, LIMIT or OFFSET, ignoring case
+     *
+     * @param start  the index of the word
+     * @param end  the index after the word
+     * @return whether the word asks for part of the items
+     */
+    private boolean isPageWord(int start, int end) {
+        for (String pageWord : PAGE_WORDS) {
+            if (end - start == pageWord.length() && text.regionMatches(true, start, pageWord, 0, pageWord.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Read the number that follows PAGE, LIMIT or OFFSET
+     *
+     * @param wordStart  the index of the PAGE, LIMIT or OFFSET word
+     * @param wordEnd  the index after it
+     * @param start  the index of the word after it
+     * @param end  the index after that word
+     * @return whether the word after it is a number
+     */
+    private boolean readPageNumber(int wordStart, int wordEnd, int start, int end) {
+        if (end - start > MAX_NUMBER_LENGTH) {
+            return false;
+        }
+        for (int n = start; n < end; n++) {
+            if (!isDigit(text.charAt(n))) {
+                return false;
+            }
+        }
+
+        int number = Integer.parseInt(text.substring(start, end));
+        char first = Character.toUpperCase(text.charAt(wordStart));
+        if (first == 'P') {
+            page = number;
+        } else if (first == 'L') {
+            limit = number;
+        } else {
+            offset = number;
+        }
+        return true;
+    }
+
+    /**
+     * Check whether the text has a date formatted as mm/dd/yyyy at an index
+     *
+     * @param start  the index
+     * @return whether the ten characters from the index make a date
+     */
+    private boolean isDate(int start) {
+        if (start + DATE_LENGTH > text.length()) {
+            return false;
+        }
+        for (int n = 0; n < DATE_LENGTH; n++) {
+            char c = text.charAt(start + n);
+            if (n == 2 || n == 5 ? c != '/' : !isDigit(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find a word in text, ignoring case
+     *
+     * @param text  the text to search
+     * @param word  the upper case word to find
+     * @param from  the index to start from
+     * @param to  the index the word must end by
+     * @return the index of the word or -1 if it is not found
+     */
+    private static int indexOfIgnoreCase(String text, String word, int from, int to) {
+        for (int n = from; n + word.length() <= to; n++) {
+            if (text.regionMatches(true, n, word, 0, word.length())) {
+                return n;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isSpace(char c) {
+        return c <= ' ';
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    /**
+     * Get whether the command adds or removes items
+     *
+     * @return whether the action is ADD or REMOVE
+     */
+    public boolean changesList() {
+        return action == Action.ADD || action == Action.REMOVE;
+    }
+
+    /**
+     * Get the text after the action word, or the whole request if there is no action word
+     *
+     * @return the text
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Get the item number
+     *
+     * @return the item number, or 0 if the text is not one or two digits
+     */
+    public int getItemNumber() {
+        return itemNumber;
+    }
+
+    /**
+     * Get whether the text is an item number
+     *
+     * @return whether the text is one or two digits
+     */
+    public boolean hasItemNumber() {
+        return hasItemNumber;
+    }
+
+    /**
+     * Get the last date in the text
+     *
+     * @return the date formatted as mm/dd/yyyy, or an empty string
+     */
+    public String getDate() {
+        return date;
+    }
+
+    /**
+     * Get the last date range in the text
+     *
+     * @return the date range formatted as mm/dd/yyyy-mm/dd/yyyy, or an empty string
+     */
+    public String getDateRange() {
+        return dateRange;
+    }
+
+    /**
+     * Get the keyword
+     *
+     * @return the words of the text other than single digits, words containing ALL and page
+     *         numbers, or an empty string
+     */
+    public String getKeyword() {
+        return keyword;
+    }
+
+    /**
+     * Get whether the command asks for part of the items, with PAGE, LIMIT or OFFSET
+     *
+     * @return whether the text has PAGE, LIMIT or OFFSET followed by a number
+     */
+    public boolean isPaged() {
+        return page >= 0 || limit >= 0 || offset >= 0;
+    }
+
+    /**
+     * Get the page number
+     *
+     * @return the number after PAGE, or -1 if there is none
+     */
+    public int getPage() {
+        return page;
+    }
+
+    /**
+     * Get the largest number of items to return
+     *
+     * @return the number after LIMIT, or -1 if there is none
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Get the number of items to skip
+     *
+     * @return the number after OFFSET, or -1 if there is none
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Get whether any word of the text contains ALL, ignoring case
+     *
+     * @return the all flag
+     */
+    public boolean isAll() {
+        return all;
+    }
+}
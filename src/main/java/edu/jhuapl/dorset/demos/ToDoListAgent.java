@@ -17,6 +17,12 @@
 package edu.jhuapl.dorset.demos;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import javax.management.JMException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,88 +34,318 @@ import edu.jhuapl.dorset.ResponseStatus.Code;
 import edu.jhuapl.dorset.agents.AbstractAgent;
 import edu.jhuapl.dorset.agents.AgentRequest;
 import edu.jhuapl.dorset.agents.AgentResponse;
-import edu.jhuapl.dorset.nlp.Tokenizer;
-import edu.jhuapl.dorset.nlp.WhiteSpaceTokenizer;
 
 public class ToDoListAgent extends AbstractAgent {
     private static final Logger logger = LoggerFactory.getLogger(ToDoListAgent.class);
 
-    private static final String ADD_REGEX = ".*(ADD).*";
-    private static final String REMOVE_REGEX = ".*(REMOVE).*";
-    private static final String GET_REGEX = ".*(GET).*";
-    private static final String ALL_REGEX = ".*(ALL).*";
-    private static final String DIGIT = "[0-9]";
-    private static final String DATE_FORMAT = DIGIT + DIGIT + "/" + DIGIT + DIGIT + "/" + DIGIT + DIGIT + DIGIT + DIGIT;
-
+    private static final String WORKER_THREADS_KEY = "workerThreads";
+    private static final String WORKER_QUEUE_CAPACITY_KEY = "workerQueueCapacity";
+    private static final String REQUEST_TIMEOUT_MILLIS_KEY = "requestTimeoutMillis";
+    private static final String PAGE_SIZE_KEY = "pageSize";
+    private static final String METRICS_KEY = "metrics";
+    private static final String GROUP_COMMIT_KEY = "groupCommit";
+    private static final String GROUP_COMMIT_MAX_BATCH_KEY = "groupCommitMaxBatch";
     private static final String NAME_KEY = "name";
-    private static final String DATA_STORAGE_TYPE_KEY = "dataStorageType";
 
-    private String name;
-    private String dataStorageType;
-    private ToDoListManager manager;    
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final String[] STARTUP_PHASES = {"registry", "defaultList", "sessionFactory", "executor",
+        "metrics", "total"};
+
+    private ToDoListRegistry lists;
+    private ThreadPoolExecutor executor;
+    private long timeoutMillis = ExecutorToDoListManager.DEFAULT_TIMEOUT_MILLIS;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private ToDoListMetrics metrics;
+    private GroupCommitWriter groupCommit;
+    private long registryNanos;
+    private long executorNanos;
+    private long metricsNanos;
+    private long totalNanos;
 
     /**
      * Create a ToDoList Agent.
      * This agent creates and manipulates a user's to do list.
      * A user can add to, remove from, and get items from the to do list.
+     * Each user gets a list of their own; requests without a user share the list named in the config.
+     * The lists are read and changed on a pool of workerThreads threads, with up to
+     * workerQueueCapacity operations waiting for a thread and requestTimeoutMillis to answer.
+     * GET ALL PAGE n returns the nth page of pageSize items.
+     * With groupCommit set to true, ADDs are written in batches of up to groupCommitMaxBatch
+     * by one writer thread; see GroupCommitWriter.
+     * With metrics set to true, the agent counts and times its requests and publishes
+     * them over JMX; see ToDoListMetrics.
+     * With startup set to lazy or warm-up, the agent's list is not opened before the agent is
+     * created; see ToDoListRegistry. The time each step took is logged; see getStartupTimes.
      *
      * @param config  the configuration values
      */
     public ToDoListAgent(Config config) {
-        name = config.getString(NAME_KEY);
-        dataStorageType = config.getString(DATA_STORAGE_TYPE_KEY);
-
-        if (dataStorageType.equals("database")) {
-            try {
-                manager = new DatabaseManager();
-            } catch (ToDoListAccessException e) {
-                manager = null;
-            }
-        } else if (dataStorageType.equals("file")) {
-            try {
-                manager = new FileManager(name);
-            } catch (ToDoListAccessException e) {
-                manager = null;
+        long start = System.nanoTime();
+        try {
+            lists = new ToDoListRegistry(config);
+        } catch (ToDoListAccessException e) {
+            lists = null;
+        }
+        long registryCreated = System.nanoTime();
+
+        int threads = ExecutorToDoListManager.DEFAULT_THREADS;
+        if (config.hasPath(WORKER_THREADS_KEY)) {
+            threads = config.getInt(WORKER_THREADS_KEY);
+        }
+        int queueCapacity = ExecutorToDoListManager.DEFAULT_QUEUE_CAPACITY;
+        if (config.hasPath(WORKER_QUEUE_CAPACITY_KEY)) {
+            queueCapacity = config.getInt(WORKER_QUEUE_CAPACITY_KEY);
+        }
+        if (config.hasPath(REQUEST_TIMEOUT_MILLIS_KEY)) {
+            timeoutMillis = config.getLong(REQUEST_TIMEOUT_MILLIS_KEY);
+        }
+        if (config.hasPath(PAGE_SIZE_KEY)) {
+            pageSize = Math.min(Math.max(1, config.getInt(PAGE_SIZE_KEY)), MAX_PAGE_SIZE);
+        }
+        executor = ExecutorToDoListManager.createExecutor(Math.max(1, threads), queueCapacity);
+        if (lists != null && config.hasPath(GROUP_COMMIT_KEY) && config.getBoolean(GROUP_COMMIT_KEY)) {
+            int maxBatchSize = GroupCommitWriter.DEFAULT_MAX_BATCH_SIZE;
+            if (config.hasPath(GROUP_COMMIT_MAX_BATCH_KEY)) {
+                maxBatchSize = config.getInt(GROUP_COMMIT_MAX_BATCH_KEY);
             }
-        } else {
-            manager = null;
+            groupCommit = new GroupCommitWriter(lists, maxBatchSize);
+        }
+        long executorCreated = System.nanoTime();
+        if (config.hasPath(METRICS_KEY) && config.getBoolean(METRICS_KEY)) {
+            startMetrics(config.getString(NAME_KEY));
+        }
+        long end = System.nanoTime();
+
+        registryNanos = registryCreated - start;
+        executorNanos = executorCreated - registryCreated;
+        metricsNanos = end - executorCreated;
+        totalNanos = end - start;
+        logger.info("Started in " + totalNanos / 1000000 + " ms: " + getStartupTimes());
+    }
+
+    /**
+     * Get how long each step of starting the agent took, in nanoseconds: creating the registry,
+     * which opens the agent's list unless startup is lazy or warm-up; opening the agent's list
+     * by itself, or -1 if it is not open yet or was opened by a request; building the
+     * SessionFactories of the database types, which happens when the first database list is
+     * opened; creating the worker threads; starting the metrics; and the whole constructor
+     *
+     * @return the nanoseconds of each of STARTUP_PHASES, in that order
+     */
+    public LinkedHashMap<String, Long> getStartupTimes() {
+        LinkedHashMap<String, Long> times = new LinkedHashMap<String, Long>();
+        times.put("registry", registryNanos);
+        times.put("defaultList", lists == null ? -1 : lists.getDefaultListOpenNanos());
+        times.put("sessionFactory", DatabaseManager.getFactoryBuildNanos());
+        times.put("executor", executorNanos);
+        times.put("metrics", metricsNanos);
+        times.put("total", totalNanos);
+        return times;
+    }
+
+    /**
+     * Start counting and timing requests, and publish the metrics over JMX along with the
+     * startup times, in microseconds
+     *
+     * @param name  the name of the agent's list
+     */
+    private void startMetrics(String name) {
+        metrics = new ToDoListMetrics();
+        if (lists != null) {
+            lists.addGauges(metrics);
+        }
+        if (groupCommit != null) {
+            metrics.addGauge("groupCommit.batches", new ToDoListMetrics.Gauge() {
+                public long getValue() {
+                    return groupCommit.getBatchCount();
+                }
+            });
+            metrics.addGauge("groupCommit.adds", new ToDoListMetrics.Gauge() {
+                public long getValue() {
+                    return groupCommit.getAddCount();
+                }
+            });
+        }
+        for (final String phase : STARTUP_PHASES) {
+            metrics.addGauge("startup." + phase, new ToDoListMetrics.Gauge() {
+                public long getValue() {
+                    long nanos = getStartupTimes().get(phase);
+                    return nanos < 0 ? -1 : nanos / 1000;
+                }
+            });
+        }
+        try {
+            metrics.register(name);
+        } catch (JMException e) {
+            logger.error("Metrics could not be published over JMX", e);
         }
-        
     }
 
     /**
-     * Process the user's request and determine what to do with it
+     * Get the metrics of the agent
+     *
+     * @return the metrics, or null unless metrics is set to true in the configuration
+     */
+    public ToDoListMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Process the user's request and determine what to do with it.
+     * A request of several lines is a batch with one request per line; see processBatch.
+     * The user's list is read and changed on the agent's worker threads, which hold the
+     * lock of the list while they use it; see ExecutorToDoListManager. The request waits
+     * for the workers, but no longer than requestTimeoutMillis.
      * 
      * @param request  the user's request
      */
     public AgentResponse process(AgentRequest request) {
-        if (manager == null) {
-            logger.error("Could not set up manager");
-            String responseMessage = "Error: Agent could not set up to do list manager";
-            Code responseCode = getAgentResponseStatusCode(responseMessage);
-            return createAgentResponse(responseCode, responseMessage);
+        if (lists == null) {
+            return createManagerErrorResponse();
         }
 
-        String input = request.getText();
-        String inputUpperCase = input.toUpperCase();
+        long start = metrics == null ? 0 : System.nanoTime();
+        ArrayList<ToDoCommand> commands = parseCommands(request.getText());
+        long parsed = metrics == null ? 0 : System.nanoTime();
+        String listName = lists.getListName(request.getUser());
+        ExecutorToDoListManager manager = new ExecutorToDoListManager(lists, listName, executor, timeoutMillis);
+        if (metrics != null) {
+            manager.measureTimes();
+        }
+        if (groupCommit != null) {
+            manager.setGroupCommit(groupCommit);
+        }
 
-        if (inputUpperCase.matches(ADD_REGEX)) {
-            input = removeAction(input, "ADD");
-            return addItem(input);
-        } else if (inputUpperCase.matches(REMOVE_REGEX)) {
-            input = removeAction(input, "REMOVE");
-            return removeItem(input);
-        } else if (inputUpperCase.matches(GET_REGEX)) {
-            input = removeAction(input, "GET");
-            return get(input);
+        AgentResponse response;
+        if (commands.size() == 1) {
+            response = process(manager, commands.get(0));
         } else {
-            logger.error("Request could not be understood: " + input);
-            String responseMessage = "Error: Your request could not be understood. "
-                            + "Please use one of the following in your requests: \"ADD\", \"REMOVE\", or \"GET\"";
-            Code responseCode = getAgentResponseStatusCode(responseMessage);
-            return createAgentResponse(responseCode, responseMessage);
+            response = processBatch(manager, commands);
+        }
+
+        if (metrics != null) {
+            String kind = commands.size() == 1 ? commands.get(0).getAction().name().toLowerCase() : "batch";
+            metrics.recordRequest(kind, response.getStatus().isSuccess(), parsed - start, manager.getQueueNanos(),
+                            manager.getManagerNanos(), System.nanoTime() - start);
+        }
+        return response;
+    }
+
+    /**
+     * Parse a request into one command per line, skipping blank lines
+     *
+     * @param input  the user's input
+     * @return the commands, at least one
+     */
+    private ArrayList<ToDoCommand> parseCommands(String input) {
+        ArrayList<ToDoCommand> commands = new ArrayList<ToDoCommand>(1);
+        if (input.indexOf('\n') >= 0) {
+            for (String line : input.split("\r?\n")) {
+                if (!line.trim().isEmpty()) {
+                    commands.add(ToDoCommand.parse(line));
+                }
+            }
+        }
+        if (commands.isEmpty()) {
+            commands.add(ToDoCommand.parse(input));
+        }
+        return commands;
+    }
+
+    /**
+     * Run the commands of a multi-line request as one batch on the user's list, so their
+     * changes are written together: one file write or one database transaction.
+     * The response has the result of each command in order, one after another.
+     *
+     * @param manager  the manager of the user's list
+     * @param commands  the commands, one per line of the request
+     * @return the AgentResponse for the request
+     */
+    private AgentResponse processBatch(AsyncToDoListManager manager, final ArrayList<ToDoCommand> commands) {
+        final ArrayList<AgentResponse> responses = new ArrayList<AgentResponse>(commands.size());
+        try {
+            await(manager.runBatch(new ToDoListBatch() {
+                public void run(ToDoListManager batchManager) {
+                    AsyncToDoListManager callingThreadManager = new ExecutorToDoListManager(batchManager);
+                    for (ToDoCommand command : commands) {
+                        responses.add(process(callingThreadManager, command));
+                    }
+                }
+            }));
+        } catch (ToDoListAccessException e) {
+            logger.error("Batch could not be saved", e);
+            return createAgentResponse(Code.AGENT_INTERNAL_ERROR, "Error: Your requests could not be saved");
+        }
+
+        StringBuilder responseMessage = new StringBuilder();
+        for (AgentResponse response : responses) {
+            String text = response.getStatus().isSuccess() ? response.getText() : response.getStatus().getMessage();
+            responseMessage.append(text);
+            if (!text.endsWith("\n")) {
+                responseMessage.append('\n');
+            }
+        }
+        return createAgentResponse(Code.SUCCESS, responseMessage.toString());
+    }
+
+    /**
+     * Determine what to do with the user's request and do it
+     *
+     * @param manager  the manager of the user's list
+     * @param command  the user's request
+     * @return the AgentResponse for the request
+     */
+    private AgentResponse process(AsyncToDoListManager manager, ToDoCommand command) {
+        switch (command.getAction()) {
+            case ADD:
+                return addItem(manager, command.getText());
+            case REMOVE:
+                return removeItem(manager, command);
+            case GET:
+                return get(manager, command);
+            default:
+                logger.error("Request could not be understood: " + command.getText());
+                String responseMessage = "Error: Your request could not be understood. "
+                                + "Please use one of the following in your requests: \"ADD\", \"REMOVE\", or \"GET\"";
+                Code responseCode = getAgentResponseStatusCode(responseMessage);
+                return createAgentResponse(responseCode, responseMessage);
+        }
+    }
+
+    /**
+     * Wait for the result of an operation on the user's list
+     *
+     * @param result  the future result
+     * @return the result
+     * @throws ToDoListAccessException  if the operation failed, was refused or timed out,
+     *         with a message that makes the response an internal error
+     */
+    private <T> T await(CompletableFuture<T> result) throws ToDoListAccessException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new ToDoListAccessException("Error: Interrupted while waiting for the to do list manager", e);
+        } catch (ExecutionException e) {
+            logger.error("To do list operation failed", e.getCause());
+            throw new ToDoListAccessException("Error: The to do list manager could not answer: "
+                            + e.getCause().getMessage(), e.getCause());
         }
     }
+
+    /**
+     * Create the response for a list that could not be opened
+     *
+     * @return AgentResponse containing the error
+     */
+    private AgentResponse createManagerErrorResponse() {
+        logger.error("Could not set up manager");
+        String responseMessage = "Error: Agent could not set up to do list manager";
+        Code responseCode = getAgentResponseStatusCode(responseMessage);
+        return createAgentResponse(responseCode, responseMessage);
+    }
     
     /**
      * Get Agent Response Status Code
@@ -146,29 +382,17 @@ public class ToDoListAgent extends AbstractAgent {
         }
     }
 
-    /**
-     * Remove the action word (GET, REMOVE, or ADD) from the user's input
-     *
-     * @param input  the user's input
-     * @param action  the action word
-     * @return input  the input without the action word
-     */
-    private String removeAction(String input, String action) {
-        int indexToStart = input.indexOf(action) + action.length() + 1;
-        input = input.substring(indexToStart);
-        return input;
-    }
-
     /**
      * Add an item to the to do list
      *
+     * @param manager  the manager of the user's list
      * @param input  the item to add
      * @return AgentResponse containing the item added to the to do list
      */
-    private AgentResponse addItem(String input) {
+    private AgentResponse addItem(AsyncToDoListManager manager, String input) {
         String managerResponse;
         try {
-            managerResponse = manager.addItem(input);
+            managerResponse = await(manager.addItem(input));
         } catch (ToDoListAccessException e) {
             managerResponse = e.getMessage();
         }
@@ -185,40 +409,15 @@ public class ToDoListAgent extends AbstractAgent {
         return createAgentResponse(responseCode, responseMessage);
     }
 
-    /**
-     * Return whether the input contains an integer
-     *
-     * @param input  the input to check
-     * @return whether the input contains an integer or not
-     */
-    private boolean containsInt(String input) {
-        if (input.matches(DIGIT) || input.matches(DIGIT + DIGIT)) {
-            return true;
-        } else {
-            return false;
-        }
-    }
-
-    /**
-     * Split the input by its white spaces
-     *
-     * @param input  the input to be split
-     * @return tokenizedInput  the split up input
-     */
-    private String[] tokenize(String input) {
-        Tokenizer tokenizer = new WhiteSpaceTokenizer();
-        String[] tokenizedInput = tokenizer.tokenize(input);
-        return tokenizedInput;
-    }
-
     /**
      * Remove an item from the to do list
      *
-     * @param input  the item to remove
+     * @param manager  the manager of the user's list
+     * @param command  the request naming the item to remove
      * @return AgentResponse containing the item removed from the to do list
      */
-    private AgentResponse removeItem(String input) {
-        String managerResponse = getResponseAndRemoveItem(input);
+    private AgentResponse removeItem(AsyncToDoListManager manager, ToDoCommand command) {
+        String managerResponse = getResponseAndRemoveItem(manager, command);
         
         Code responseCode = getAgentResponseStatusCode(managerResponse);
         String responseMessage;
@@ -234,64 +433,56 @@ public class ToDoListAgent extends AbstractAgent {
     /**
      * Get manager response from removing an item
      *
-     * @param input  the input to remove
+     * @param manager  the manager of the user's list
+     * @param command  the request naming the item to remove
      * @return the manager response message
      */
-    private String getResponseAndRemoveItem(String input) {
+    private String getResponseAndRemoveItem(AsyncToDoListManager manager, ToDoCommand command) {
         try {
-            if (containsInt(input)) {
-                return manager.removeItem(getitemNumber(input));
+            if (command.hasItemNumber()) {
+                return await(manager.removeItem(command.getItemNumber()));
             } else {
-                return manager.removeItem(input);
+                return await(manager.removeItem(command.getText()));
             }
         } catch (ToDoListAccessException e) {
             return e.getMessage();
         }
     }
 
-    /**
-     * Get the item number
-     *
-     * @param input  the input to retrieve the item number from
-     * @return the item number
-     */
-    private int getitemNumber(String input) {
-        String[] tokenizedInput = tokenize(input);
-        for (int n = 0; n < tokenizedInput.length; n++) {
-            if (tokenizedInput[n].matches(DIGIT) || input.matches(DIGIT + DIGIT)) {
-                return Integer.parseInt(tokenizedInput[n]);
-            }
-        }
-        return 0;
-    }
-
     /**
      * Determine what is to be retrieved from the to do list and get it
      *
-     * @param input  what to get from the to do list
+     * @param manager  the manager of the user's list
+     * @param command  the request saying what to get from the to do list
      * @return AgentResponse containing the item retrieved from the to do list
      */
-    private AgentResponse get(String input) {   
-        String[] tokenizedInput = tokenize(input);
-        boolean containsInt = containsInt(input);
-        String date = getDate(tokenizedInput);
+    private AgentResponse get(AsyncToDoListManager manager, ToDoCommand command) {
+        String dateRange = command.getDateRange();
+        String date = command.getDate();
         boolean dateIsEmpty = date.isEmpty();
-        boolean containsAll = containsAll(input);
-        String keyword = getKeyword(tokenizedInput);
+        boolean containsInt = command.hasItemNumber();
+        boolean containsAll = command.isAll();
+        String keyword = command.getKeyword();
         boolean keywordIsEmpty = keyword.isEmpty();
 
-        if (!dateIsEmpty) {
-            return getAllItemsWithKeyword(date);
+        if (!dateRange.isEmpty()) {
+            return getAllItemsCreatedBetween(manager, dateRange);
+        } else if (!dateIsEmpty) {
+            return getAllItemsCreatedOn(manager, date);
         } else if (containsInt) {
-            return getItem(getitemNumber(input));
+            return getItem(manager, command.getItemNumber());
+        } else if (containsAll && !keywordIsEmpty && command.isPaged()) {
+            return getAllItemsWithKeyword(manager, keyword, getPageOffset(command), getPageLimit(command));
         } else if (containsAll && !keywordIsEmpty) {
-            return getAllItemsWithKeyword(keyword);
+            return getAllItemsWithKeyword(manager, keyword, 0, Integer.MAX_VALUE);
+        } else if (containsAll && command.isPaged()) {
+            return getPage(manager, getPageOffset(command), getPageLimit(command));
         } else if (containsAll) {
-            return getAllText();
+            return getAllText(manager);
         } else if (!keywordIsEmpty) {
-            return getItem(keyword);
+            return getItem(manager, keyword);
         } else {
-            logger.error("Request could not be understood: " + input); 
+            logger.error("Request could not be understood: " + command.getText());
             String responseMessage = "Error: Your request could not be understood.";
             Code responseCode = getAgentResponseStatusCode(responseMessage);
             return createAgentResponse(responseCode, responseMessage);
@@ -299,64 +490,71 @@ public class ToDoListAgent extends AbstractAgent {
     }
 
     /**
-     * Return whether the input contains "ALL"
+     * Get all the text from the todo list, which the manager appends straight into the
+     * response rather than returning it as a list of lines
      *
-     * @param input  the input to check
-     * @return whether the input contains "ALL"
+     * @param manager  the manager of the user's list
+     * @return AgentResponse containing the text
      */
-    private boolean containsAll(String input) {
-        if (input.toUpperCase().matches(ALL_REGEX)) {
-            return true;
+    private AgentResponse getAllText(AsyncToDoListManager manager) {
+        String managerResponse;
+        try {
+            StringBuilder text = new StringBuilder();
+            await(manager.appendAllText(text));
+            managerResponse = text.toString();
+        } catch (ToDoListAccessException e) {
+            managerResponse = e.getMessage();
+        }
+        Code responseCode = getAgentResponseStatusCode(managerResponse);
+        String responseMessage;
+        if (responseCode.equals(Code.SUCCESS)) {
+            responseMessage = managerResponse;
+        } else {
+            logger.error("Could not retrieve text");
+            responseMessage = "Error: Could not retrieve text";
         }
-        return false;
+
+        return createAgentResponse(responseCode, responseMessage);
     }
 
     /**
-     * Get the date from the tokenized input
+     * Get the number of items a paged request skips
      *
-     * @param tokenizedInput  the input to check
-     * @return date  the date from the input or an empty string
+     * @param command  the request, with PAGE, LIMIT or OFFSET
+     * @return the items before the page asked for
      */
-    private String getDate(String[] tokenizedInput) {
-        String date = "";
-        for (int n = 0; n < tokenizedInput.length; n++) {
-            if (tokenizedInput[n].matches(DATE_FORMAT)) {
-                date = tokenizedInput[n];
-            }
+    private int getPageOffset(ToDoCommand command) {
+        if (command.getPage() >= 0) {
+            return (int) Math.min((Math.max(1, command.getPage()) - 1L) * pageSize, Integer.MAX_VALUE);
         }
-        return date;
+        return Math.max(0, command.getOffset());
     }
 
     /**
-     * Get the keyword from the tokenized input
+     * Get the number of items a paged request returns at most
      *
-     * @param tokenizedInput  the input to check
-     * @return keyword  the keyword from the input or an empty string
+     * @param command  the request, with PAGE, LIMIT or OFFSET
+     * @return the size of the page asked for, at most MAX_PAGE_SIZE
      */
-    private String getKeyword(String[] tokenizedInput) {
-        String keyword = "";
-        for (int n = 0; n < tokenizedInput.length; n++) {
-            if (!tokenizedInput[n].matches(DIGIT) && !tokenizedInput[n].toUpperCase().matches(ALL_REGEX)) {
-                if (!keyword.isEmpty()) {
-                    keyword += " ";
-                }
-                keyword += tokenizedInput[n];
-            }
+    private int getPageLimit(ToDoCommand command) {
+        if (command.getPage() < 0 && command.getLimit() >= 0) {
+            return Math.min(command.getLimit(), MAX_PAGE_SIZE);
         }
-        return keyword;
+        return pageSize;
     }
 
     /**
-     * Get all the text from the todo list
+     * Get a page of the todo list
      *
-     * @return AgentResponse containing the text
+     * @param manager  the manager of the user's list
+     * @param offset  the number of items to skip
+     * @param limit  the most items to return
+     * @return AgentResponse containing the items on the page
      */
-    private AgentResponse getAllText() {
-        ArrayList<String> managerResponseList;
+    private AgentResponse getPage(AsyncToDoListManager manager, int offset, int limit) {
         String managerResponse;
         try {
-            managerResponseList = manager.getAllText();
-            managerResponse = joinList(managerResponseList);
+            managerResponse = joinList(await(manager.getAllText(offset, limit)));
         } catch (ToDoListAccessException e) {
             managerResponse = e.getMessage();
         }
@@ -365,38 +563,49 @@ public class ToDoListAgent extends AbstractAgent {
         if (responseCode.equals(Code.SUCCESS)) {
             responseMessage = managerResponse;
         } else {
-            logger.error("Could not retrieve text");
-            responseMessage = "Error: Could not retrieve text";
+            responseMessage = "Error: There are no items on that page";
         }
 
         return createAgentResponse(responseCode, responseMessage);
     }
 
     /**
-     * Combine the contents of an ArrayList into one string
+     * Combine the contents of an ArrayList into one string, one line per element,
+     * copying each element once into a buffer sized for all of them
      *
      * @param list  the Arraylist to be combined
      * @return text  the contents of the combined Arraylist
      */
     private String joinList(ArrayList<String> list) {
-        String text = "";
+        int length = 0;
         for (int n = 0; n < list.size(); n++) {
-            text += list.get(n) + "\n";
+            length += list.get(n).length() + 1;
         }
-        return text;
+        StringBuilder text = new StringBuilder(length);
+        for (int n = 0; n < list.size(); n++) {
+            text.append(list.get(n)).append('\n');
+        }
+        return text.toString();
     }
 
     /**
-     * Get all items containing a keyword
+     * Get all items containing a keyword, or a page of them
      *
+     * @param manager  the manager of the user's list
      * @param keyword  the keyword to find the items
+     * @param offset  the number of matching items to skip
+     * @param limit  the most items to return
      * @return AgentResponse containing the items retrieved
      */
-    private AgentResponse getAllItemsWithKeyword(String keyword) {
+    private AgentResponse getAllItemsWithKeyword(AsyncToDoListManager manager, String keyword, int offset, int limit) {
         ArrayList<String> managerResponseList;
         String managerResponse;
         try {
-            managerResponseList = manager.getAllItemsWithKeyword(keyword);
+            if (offset > 0 || limit < Integer.MAX_VALUE) {
+                managerResponseList = await(manager.getAllItemsWithKeyword(keyword, offset, limit));
+            } else {
+                managerResponseList = await(manager.getAllItemsWithKeyword(keyword));
+            }
             managerResponse = joinList(managerResponseList);
         } catch (ToDoListAccessException e) {
             managerResponse = e.getMessage();
@@ -413,16 +622,85 @@ public class ToDoListAgent extends AbstractAgent {
         return createAgentResponse(responseCode, responseMessage);
     }
 
+    /**
+     * Get all items created from the first date of a range through the last.
+     * A range that is not made of two real dates is searched for as a keyword.
+     *
+     * @param manager  the manager of the user's list
+     * @param dateRange  the date range, formatted as mm/dd/yyyy-mm/dd/yyyy
+     * @return AgentResponse containing the items retrieved
+     */
+    private AgentResponse getAllItemsCreatedBetween(AsyncToDoListManager manager, String dateRange) {
+        int separator = dateRange.indexOf('-');
+        long from = DateIndex.parseDay(dateRange.substring(0, separator));
+        long last = DateIndex.parseDay(dateRange.substring(separator + 1));
+        if (from == Long.MIN_VALUE || last == Long.MIN_VALUE) {
+            return getAllItemsWithKeyword(manager, dateRange, 0, Integer.MAX_VALUE);
+        }
+        return getAllItemsCreatedBetween(manager, from, DateIndex.nextDay(last),
+                        "Error: No items were created in that date range");
+    }
+
+    /**
+     * Get all items created on a date, through the date index of the list rather than by
+     * matching the date against the text of every item.
+     * A date that is not a real day is searched for as a keyword.
+     *
+     * @param manager  the manager of the user's list
+     * @param date  the date, formatted as mm/dd/yyyy
+     * @return AgentResponse containing the items retrieved
+     */
+    private AgentResponse getAllItemsCreatedOn(AsyncToDoListManager manager, String date) {
+        long day = DateIndex.parseDay(date);
+        if (day == Long.MIN_VALUE) {
+            return getAllItemsWithKeyword(manager, date, 0, Integer.MAX_VALUE);
+        }
+        return getAllItemsCreatedBetween(manager, day, DateIndex.nextDay(day),
+                        "Error: No items were created on that date");
+    }
+
+    /**
+     * Get all items created in a time range
+     *
+     * @param manager  the manager of the user's list
+     * @param from  the start of the range in epoch milliseconds, inclusive
+     * @param to  the end of the range in epoch milliseconds, exclusive
+     * @param errorMessage  the message to answer with if no items were created in the range
+     * @return AgentResponse containing the items retrieved
+     */
+    private AgentResponse getAllItemsCreatedBetween(AsyncToDoListManager manager, long from,
+                    long to, String errorMessage) {
+        ArrayList<String> managerResponseList;
+        String managerResponse;
+        try {
+            managerResponseList = await(manager.getAllItemsCreatedBetween(from, to));
+            managerResponse = joinList(managerResponseList);
+        } catch (ToDoListAccessException e) {
+            managerResponse = e.getMessage();
+        }
+
+        Code responseCode = getAgentResponseStatusCode(managerResponse);
+        String responseMessage;
+        if (responseCode.equals(Code.SUCCESS)) {
+            responseMessage = managerResponse;
+        } else {
+            responseMessage = errorMessage;
+        }
+
+        return createAgentResponse(responseCode, responseMessage);
+    }
+
     /**
      * Get the item number with the appropriate item number
      *
+     * @param manager  the manager of the user's list
      * @param itemNumber  the number of the item to be retrieved
      * @return AgentResponse containing the item retrieved
      */
-    private AgentResponse getItem(int itemNumber) {
+    private AgentResponse getItem(AsyncToDoListManager manager, int itemNumber) {
         String managerResponse;
         try {
-            managerResponse = manager.getItem(itemNumber);
+            managerResponse = await(manager.getItem(itemNumber));
         } catch (ToDoListAccessException e) {
             managerResponse = e.getMessage();
         }
@@ -441,13 +719,14 @@ public class ToDoListAgent extends AbstractAgent {
     /**
      * Get the item containing the keyword
      *
+     * @param manager  the manager of the user's list
      * @param input  the keyword of the item to be retrieved
      * @return AgentResponse containing the item retrieved
      */
-    private AgentResponse getItem(String input) {
+    private AgentResponse getItem(AsyncToDoListManager manager, String input) {
         String managerResponse;
         try {
-            managerResponse = manager.getItem(input);
+            managerResponse = await(manager.getItem(input));
         } catch (ToDoListAccessException e) {
             managerResponse = e.getMessage();
         }
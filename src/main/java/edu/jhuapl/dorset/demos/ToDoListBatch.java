@@ -0,0 +1,33 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+/**
+ * A sequence of operations on one ToDo list, run with ToDoListManager.runBatch.
+ * The operations are the usual ToDoListManager calls made on the manager passed in;
+ * the manager writes their changes together when the batch ends.
+ */
+public interface ToDoListBatch {
+
+    /**
+     * Run the operations of the batch
+     *
+     * @param manager  the manager to run the operations on
+     * @throws ToDoListAccessException  if an operation fails, which ends the batch
+     */
+    public void run(ToDoListManager manager) throws ToDoListAccessException;
+}
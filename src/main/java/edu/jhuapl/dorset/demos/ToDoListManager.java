@@ -27,10 +27,23 @@ public interface ToDoListManager {
     public String removeItem(String itemKeyword) throws ToDoListAccessException;
     
     public ArrayList<String> getAllText() throws ToDoListAccessException;
+
+    public ArrayList<String> getAllText(int offset, int limit) throws ToDoListAccessException;
+
+    public int appendAllText(StringBuilder text) throws ToDoListAccessException;
     
     public ArrayList<String> getAllItemsWithKeyword(String itemKeyword) throws ToDoListAccessException;
+
+    public ArrayList<String> getAllItemsWithKeyword(String itemKeyword, int offset, int limit)
+                    throws ToDoListAccessException;
+
+    public ArrayList<String> getAllItemsCreatedBetween(long from, long to) throws ToDoListAccessException;
     
     public String getItem(int itemNumber) throws ToDoListAccessException;
     
     public String getItem(String itemKeyword) throws ToDoListAccessException;
+
+    public void runBatch(ToDoListBatch batch) throws ToDoListAccessException;
+
+    public void close() throws ToDoListAccessException;
 }
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Counts the requests of the ToDoList Agent and times where they spend their time.
+ *
+ * <p>Every request is counted under its kind: add, remove, get, unknown, or batch for a
+ * request of several lines. Each kind also counts its failed requests and times whole
+ * requests. The time of every request is split into four phases:
+ * <ul>
+ * <li>parse: reading the request into commands</li>
+ * <li>queue: waiting for a worker thread and the lock of the list</li>
+ * <li>manager: running the operations on the list; this is the file I/O or the Hibernate
+ * calls</li>
+ * <li>response: the rest, mostly building the response</li>
+ * </ul>
+ *
+ * <p>Gauges are read when the metrics are read. The registry adds gauges for its open
+ * lists and their storage.
+ *
+ * <p>The metrics are published over JMX as one MBean with a long attribute for each value,
+ * named as in snapshot. Latencies are in microseconds.
+ */
+public class ToDoListMetrics implements DynamicMBean {
+
+    public static final String[] KINDS = {"add", "remove", "get", "unknown", "batch"};
+    public static final String[] PHASES = {"parse", "queue", "manager", "response"};
+
+    private static final double[] PERCENTILES = {50, 99};
+
+    /**
+     * A value read when the metrics are read
+     */
+    public interface Gauge {
+        long getValue();
+    }
+
+    private LinkedHashMap<String, AtomicLong> counts;
+    private LinkedHashMap<String, AtomicLong> errors;
+    private LinkedHashMap<String, LatencyHistogram> latencies;
+    private LinkedHashMap<String, LatencyHistogram> phases;
+    private LinkedHashMap<String, Gauge> gauges;
+    private ObjectName objectName;
+
+    /**
+     * Create metrics with nothing counted
+     */
+    public ToDoListMetrics() {
+        counts = new LinkedHashMap<String, AtomicLong>();
+        errors = new LinkedHashMap<String, AtomicLong>();
+        latencies = new LinkedHashMap<String, LatencyHistogram>();
+        for (String kind : KINDS) {
+            counts.put(kind, new AtomicLong());
+            errors.put(kind, new AtomicLong());
+            latencies.put(kind, new LatencyHistogram());
+        }
+        phases = new LinkedHashMap<String, LatencyHistogram>();
+        for (String phase : PHASES) {
+            phases.put(phase, new LatencyHistogram());
+        }
+        gauges = new LinkedHashMap<String, Gauge>();
+    }
+
+    /**
+     * Count a request
+     *
+     * @param kind  one of KINDS
+     * @param success  whether the request succeeded
+     * @param parseNanos  the time spent parsing it
+     * @param queueNanos  the time its operations waited for a worker thread and the list
+     * @param managerNanos  the time its operations ran on the list
+     * @param totalNanos  the time it took from start to end
+     */
+    public void recordRequest(String kind, boolean success, long parseNanos, long queueNanos, long managerNanos,
+                    long totalNanos) {
+        counts.get(kind).incrementAndGet();
+        if (!success) {
+            errors.get(kind).incrementAndGet();
+        }
+        latencies.get(kind).record(totalNanos);
+        phases.get("parse").record(parseNanos);
+        phases.get("queue").record(queueNanos);
+        phases.get("manager").record(managerNanos);
+        phases.get("response").record(totalNanos - parseNanos - queueNanos - managerNanos);
+    }
+
+    /**
+     * Add a gauge, replacing any gauge with the same name
+     *
+     * @param name  the name of the gauge
+     * @param gauge  the gauge
+     */
+    public synchronized void addGauge(String name, Gauge gauge) {
+        gauges.put(name, gauge);
+    }
+
+    public long getCount(String kind) {
+        return counts.get(kind).get();
+    }
+
+    public long getErrorCount(String kind) {
+        return errors.get(kind).get();
+    }
+
+    public LatencyHistogram getLatency(String kind) {
+        return latencies.get(kind);
+    }
+
+    public LatencyHistogram getPhase(String phase) {
+        return phases.get(phase);
+    }
+
+    /**
+     * Read every value
+     *
+     * @return the values by name: [kind].count, [kind].errors, [kind].p50Micros,
+     *         [kind].p99Micros and [kind].maxMicros for each kind, phase.[phase].p50Micros
+     *         and so on for each phase, and the gauges by their names
+     */
+    public LinkedHashMap<String, Long> snapshot() {
+        LinkedHashMap<String, Long> values = new LinkedHashMap<String, Long>();
+        for (String kind : KINDS) {
+            values.put(kind + ".count", getCount(kind));
+            values.put(kind + ".errors", getErrorCount(kind));
+            putLatency(values, kind, latencies.get(kind));
+        }
+        for (String phase : PHASES) {
+            putLatency(values, "phase." + phase, phases.get(phase));
+        }
+        LinkedHashMap<String, Gauge> gaugesNow;
+        synchronized (this) {
+            gaugesNow = new LinkedHashMap<String, Gauge>(gauges);
+        }
+        for (Map.Entry<String, Gauge> gauge : gaugesNow.entrySet()) {
+            values.put(gauge.getKey(), gauge.getValue().getValue());
+        }
+        return values;
+    }
+
+    private static void putLatency(LinkedHashMap<String, Long> values, String prefix, LatencyHistogram histogram) {
+        for (double percentile : PERCENTILES) {
+            values.put(prefix + ".p" + (int) percentile + "Micros", histogram.getValueAtPercentile(percentile) / 1000);
+        }
+        values.put(prefix + ".maxMicros", histogram.getMax() / 1000);
+    }
+
+    /**
+     * Publish the metrics over JMX, replacing any metrics published under the same name
+     *
+     * @param name  the name of the agent's list
+     * @throws JMException  if the metrics cannot be published
+     */
+    public void register(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        objectName = new ObjectName("edu.jhuapl.dorset.demos:type=ToDoListMetrics,name=" + ObjectName.quote(name));
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+        server.registerMBean(this, objectName);
+    }
+
+    /**
+     * Stop publishing the metrics over JMX
+     *
+     * @throws JMException  if the metrics cannot be withdrawn
+     */
+    public void unregister() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (objectName != null && server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+    }
+
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Long value = snapshot().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    public AttributeList getAttributes(String[] attributes) {
+        LinkedHashMap<String, Long> values = snapshot();
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            if (values.containsKey(attribute)) {
+                list.add(new Attribute(attribute, values.get(attribute)));
+            }
+        }
+        return list;
+    }
+
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics cannot be set: " + attribute.getName());
+    }
+
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName),
+                        "Metrics have no operations: " + actionName);
+    }
+
+    public MBeanInfo getMBeanInfo() {
+        LinkedHashMap<String, Long> values = snapshot();
+        MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[values.size()];
+        int n = 0;
+        for (String name : values.keySet()) {
+            attributes[n++] = new MBeanAttributeInfo(name, "long", name, true, false, false);
+        }
+        return new MBeanInfo(getClass().getName(), "Requests of the ToDoList Agent", attributes, null,
+                        new MBeanOperationInfo[0], new MBeanNotificationInfo[0]);
+    }
+}
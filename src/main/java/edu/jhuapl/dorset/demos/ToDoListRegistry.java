@@ -0,0 +1,672 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.io.File;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.typesafe.config.Config;
+
+import edu.jhuapl.dorset.users.User;
+
+/**
+ * Keeps one ToDo list per user and the most recently used lists open.
+ *
+ * <p>Every list is stored apart from the others: the file, binary and journal types
+ * use a file per list, named after the list, and the database type keeps all lists in
+ * the items table under their own list_id. The memory type keeps each list in a
+ * CompactItemStore for the life of the registry and writes nothing. When more than
+ * maxOpenLists lists are open, the least recently used one is closed; it is opened again
+ * on its next request.
+ *
+ * <p>Concurrency model: every list is guarded by a read/write lock, taken from a fixed
+ * set of lockStripes locks by the hash of the list name. Callers hold the read lock of a
+ * list while they get items from it and the write lock while they add or remove items,
+ * so reads of one list run in parallel, changes to one list run one at a time, and
+ * different lists are independent unless they share a stripe. The lock must be held from
+ * before getManager until the manager is no longer used: a list is only closed when its
+ * write lock can be taken without waiting, so a list in use is never closed under its
+ * caller. Such a list stays open past maxOpenLists until a later request can close it.
+ * The registry itself is never locked while a list is closed, so a slow close holds up
+ * no other list.
+ *
+ * <p>With startup = "eager", the default, the list named in the configuration is opened
+ * by the constructor, building the SessionFactory for the database types. "lazy" leaves
+ * every list, and the database, to be opened by its first request, and "warm-up" opens the
+ * named list on a background thread so the constructor returns at once.
+ */
+public class ToDoListRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(ToDoListRegistry.class);
+
+    public enum Startup {
+        EAGER, LAZY, WARM_UP
+    }
+
+    public static final int DEFAULT_MAX_OPEN_LISTS = 1000;
+    public static final int DEFAULT_LOCK_STRIPES = 64;
+
+    private static final String NAME_KEY = "name";
+    private static final String DATA_STORAGE_TYPE_KEY = "dataStorageType";
+    private static final String JOURNAL_COMPACTION_THRESHOLD_KEY = "journalCompactionThreshold";
+    private static final String RENUMBER_ON_REMOVE_KEY = "renumberOnRemove";
+    private static final String MAX_OPEN_LISTS_KEY = "maxOpenLists";
+    private static final String LOCK_STRIPES_KEY = "lockStripes";
+    private static final String FILE_DURABILITY_KEY = "fileDurability";
+    private static final String FILE_KEEP_OPEN_KEY = "fileKeepOpen";
+    private static final String CACHE_SIZE_KEY = "cacheSize";
+    private static final String WRITE_BEHIND_KEY = "writeBehind";
+    private static final String WRITE_BEHIND_FLUSH_SIZE_KEY = "writeBehindFlushSize";
+    private static final String WRITE_BEHIND_FLUSH_MILLIS_KEY = "writeBehindFlushMillis";
+    private static final String EMBEDDED_DATABASE_URL_KEY = "embeddedDatabaseUrl";
+    private static final String STARTUP_KEY = "startup";
+    private static final String[] DATA_STORAGE_TYPES = {"file", "binary", "journal", "database", "embedded", "memory"};
+
+    private String name;
+    private String dataStorageType;
+    private double compactionThreshold = JournalManager.DEFAULT_COMPACTION_THRESHOLD;
+    private boolean renumberOnRemove = true;
+    private FileManager.Durability fileDurability = FileManager.Durability.ATOMIC;
+    private boolean fileKeepOpen;
+    private int cacheSize;
+    private WriteBehindManager.Durability writeBehind = WriteBehindManager.Durability.SYNC;
+    private int writeBehindFlushSize = WriteBehindManager.DEFAULT_FLUSH_SIZE;
+    private long writeBehindFlushMillis = WriteBehindManager.DEFAULT_FLUSH_MILLIS;
+    private String embeddedDatabaseUrl;
+    private Startup startup = Startup.EAGER;
+    private volatile long defaultListOpenNanos = -1;
+    private LinkedHashMap<String, ToDoListManager> openLists =
+                    new LinkedHashMap<String, ToDoListManager>(16, 0.75f, true);
+    private int maxOpenLists = DEFAULT_MAX_OPEN_LISTS;
+    private HashMap<String, CompletableFuture<ToDoListManager>> openingLists =
+                    new HashMap<String, CompletableFuture<ToDoListManager>>();
+    private HashMap<String, CompactItemStore> memoryLists = new HashMap<String, CompactItemStore>();
+    private ReadWriteLock[] locks;
+    private ChannelOpener channels;
+
+    /**
+     * Create a registry from the agent configuration and, unless startup is lazy or warm-up,
+     * open the default list, so a bad configuration is found at start up
+     *
+     * @param config  the configuration values
+     * @throws ToDoListAccessException  if the storage type, startup, file durability or write-behind
+     *         durability is unknown or the default list cannot be opened
+     */
+    public ToDoListRegistry(Config config) throws ToDoListAccessException {
+        this(config, ChannelOpener.FILES);
+    }
+
+    /**
+     * Create a registry whose file lists are written through the channels an opener gives them
+     *
+     * @param config  the configuration values
+     * @param channels  opens the channels file lists are written through
+     * @throws ToDoListAccessException  if the storage type, startup, file durability or
+     *         write-behind durability is unknown or the default list cannot be opened
+     */
+    ToDoListRegistry(Config config, ChannelOpener channels) throws ToDoListAccessException {
+        this.channels = channels;
+        name = config.getString(NAME_KEY);
+        dataStorageType = config.getString(DATA_STORAGE_TYPE_KEY);
+        if (!Arrays.asList(DATA_STORAGE_TYPES).contains(dataStorageType)) {
+            throw new ToDoListAccessException("Unknown data storage type: " + dataStorageType);
+        }
+        if (config.hasPath(STARTUP_KEY)) {
+            startup = parseStartup(config.getString(STARTUP_KEY));
+        }
+        if (config.hasPath(JOURNAL_COMPACTION_THRESHOLD_KEY)) {
+            compactionThreshold = config.getDouble(JOURNAL_COMPACTION_THRESHOLD_KEY);
+        }
+        if (config.hasPath(RENUMBER_ON_REMOVE_KEY)) {
+            renumberOnRemove = config.getBoolean(RENUMBER_ON_REMOVE_KEY);
+        }
+        if (config.hasPath(FILE_DURABILITY_KEY)) {
+            fileDurability = parseFileDurability(config.getString(FILE_DURABILITY_KEY));
+        }
+        if (config.hasPath(FILE_KEEP_OPEN_KEY)) {
+            fileKeepOpen = config.getBoolean(FILE_KEEP_OPEN_KEY);
+        }
+        if (config.hasPath(CACHE_SIZE_KEY)) {
+            cacheSize = config.getInt(CACHE_SIZE_KEY);
+        }
+        if (config.hasPath(WRITE_BEHIND_KEY)) {
+            writeBehind = parseDurability(config.getString(WRITE_BEHIND_KEY));
+        }
+        if (config.hasPath(WRITE_BEHIND_FLUSH_SIZE_KEY)) {
+            writeBehindFlushSize = config.getInt(WRITE_BEHIND_FLUSH_SIZE_KEY);
+        }
+        if (config.hasPath(WRITE_BEHIND_FLUSH_MILLIS_KEY)) {
+            writeBehindFlushMillis = config.getLong(WRITE_BEHIND_FLUSH_MILLIS_KEY);
+        }
+        embeddedDatabaseUrl = "jdbc:h2:./" + name;
+        if (config.hasPath(EMBEDDED_DATABASE_URL_KEY)) {
+            embeddedDatabaseUrl = config.getString(EMBEDDED_DATABASE_URL_KEY);
+        }
+        if (config.hasPath(MAX_OPEN_LISTS_KEY)) {
+            maxOpenLists = Math.max(1, config.getInt(MAX_OPEN_LISTS_KEY));
+        }
+        int lockStripes = DEFAULT_LOCK_STRIPES;
+        if (config.hasPath(LOCK_STRIPES_KEY)) {
+            lockStripes = config.getInt(LOCK_STRIPES_KEY);
+        }
+        locks = new ReadWriteLock[Math.max(1, lockStripes)];
+        for (int n = 0; n < locks.length; n++) {
+            locks[n] = new ReentrantReadWriteLock();
+        }
+        if (startup == Startup.EAGER) {
+            openDefaultList();
+        } else if (startup == Startup.WARM_UP) {
+            startWarmUp();
+        }
+    }
+
+    /**
+     * Read when lists are opened
+     *
+     * @param startup  eager, lazy or warm-up, ignoring case
+     * @return the startup
+     * @throws ToDoListAccessException  if the startup is unknown
+     */
+    static Startup parseStartup(String startup) throws ToDoListAccessException {
+        try {
+            return Startup.valueOf(startup.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new ToDoListAccessException("Unknown startup: " + startup);
+        }
+    }
+
+    /**
+     * Open the list named in the configuration, timing how long it takes
+     *
+     * @throws ToDoListAccessException  if the list cannot be opened
+     */
+    private void openDefaultList() throws ToDoListAccessException {
+        Lock lock = getLock(name).readLock();
+        lock.lock();
+        try {
+            long start = System.nanoTime();
+            getManager(name);
+            defaultListOpenNanos = System.nanoTime() - start;
+        } finally {
+            lock.unlock();
+        }
+        logger.info("Opened list " + name + " in " + defaultListOpenNanos / 1000000 + " ms");
+    }
+
+    /**
+     * Open the list named in the configuration on a daemon thread.
+     * A failure is logged, and the first request to the list tries again.
+     */
+    private void startWarmUp() {
+        Thread warmUp = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    openDefaultList();
+                } catch (ToDoListAccessException | RuntimeException e) {
+                    logger.error("Could not warm up list " + name, e);
+                }
+            }
+        }, "todo-warm-up");
+        warmUp.setDaemon(true);
+        warmUp.start();
+    }
+
+    /**
+     * Get how long opening the list named in the configuration took, at start up or on
+     * the warm-up thread
+     *
+     * @return the nanoseconds taken, or -1 if it was not opened that way or has not been opened yet
+     */
+    public long getDefaultListOpenNanos() {
+        return defaultListOpenNanos;
+    }
+
+    /**
+     * Read the write-behind durability of database lists
+     *
+     * @param durability  sync, group-commit or async, ignoring case
+     * @return the durability
+     * @throws ToDoListAccessException  if the durability is unknown
+     */
+    static WriteBehindManager.Durability parseDurability(String durability) throws ToDoListAccessException {
+        try {
+            return WriteBehindManager.Durability.valueOf(durability.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new ToDoListAccessException("Unknown write behind durability: " + durability);
+        }
+    }
+
+    /**
+     * Read the durability of file lists
+     *
+     * @param durability  atomic or sync, ignoring case
+     * @return the durability
+     * @throws ToDoListAccessException  if the durability is unknown
+     */
+    static FileManager.Durability parseFileDurability(String durability) throws ToDoListAccessException {
+        try {
+            return FileManager.Durability.valueOf(durability.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ToDoListAccessException("Unknown file durability: " + durability);
+        }
+    }
+
+    /**
+     * Get the name of the list that belongs to a user.
+     * Requests without a user share the list named in the configuration.
+     *
+     * @param user  the user making the request, or null
+     * @return the list name
+     */
+    public String getListName(User user) {
+        if (user == null || user.getUserName() == null || user.getUserName().isEmpty()) {
+            return name;
+        }
+        return name + "-" + encode(user.getUserName());
+    }
+
+    /**
+     * Encode a user name so it can be used in a file name or list_id.
+     * Letters, digits and - are kept; every other character becomes _ and its hex code,
+     * so two different user names never share a list.
+     *
+     * @param userName  the user name
+     * @return the encoded user name
+     */
+    static String encode(String userName) {
+        StringBuilder encoded = new StringBuilder(userName.length());
+        for (int n = 0; n < userName.length(); n++) {
+            char c = userName.charAt(n);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-') {
+                encoded.append(c);
+            } else {
+                encoded.append('_').append(Integer.toHexString(c)).append('_');
+            }
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * Get the lock that guards a list
+     *
+     * @param listName  the list name
+     * @return the read/write lock of the list
+     */
+    public ReadWriteLock getLock(String listName) {
+        return locks[(listName.hashCode() & Integer.MAX_VALUE) % locks.length];
+    }
+
+    /**
+     * Get the manager of a list, opening the list if it is not open.
+     * The caller must hold the read or write lock of the list.
+     * The registry is only locked to look the list up and to record it once open; the list
+     * is opened outside it, so a slow open holds up no other list. A caller that asks for a
+     * list while another is opening it waits for that open rather than opening it again.
+     *
+     * @param listName  the list name
+     * @return the manager of the list
+     * @throws ToDoListAccessException  if the list cannot be opened
+     */
+    public ToDoListManager getManager(String listName) throws ToDoListAccessException {
+        CompletableFuture<ToDoListManager> opening;
+        synchronized (this) {
+            ToDoListManager manager = openLists.get(listName);
+            if (manager != null) {
+                return manager;
+            }
+            opening = openingLists.get(listName);
+            if (opening == null) {
+                openingLists.put(listName, new CompletableFuture<ToDoListManager>());
+            }
+        }
+        if (opening != null) {
+            return waitForOpen(listName, opening);
+        }
+        return open(listName);
+    }
+
+    /**
+     * Open a list, record it among the open lists and hand it to the callers waiting for it
+     *
+     * @param listName  the list name
+     * @return the manager of the list
+     * @throws ToDoListAccessException  if the list cannot be opened
+     */
+    private ToDoListManager open(String listName) throws ToDoListAccessException {
+        ToDoListManager manager;
+        try {
+            manager = openManager(listName);
+        } catch (ToDoListAccessException | RuntimeException e) {
+            CompletableFuture<ToDoListManager> opening;
+            synchronized (this) {
+                opening = openingLists.remove(listName);
+            }
+            opening.completeExceptionally(e);
+            throw e;
+        }
+        CompletableFuture<ToDoListManager> opening;
+        synchronized (this) {
+            openLists.put(listName, manager);
+            opening = openingLists.remove(listName);
+        }
+        opening.complete(manager);
+        closeLeastRecentlyUsed();
+        return manager;
+    }
+
+    /**
+     * Close the least recently used lists past maxOpenLists.
+     * They are picked while the registry is locked and closed after it is unlocked, each under
+     * its write lock, the way close does. A list whose write lock cannot be taken without
+     * waiting is in use, or shares a lock with the caller, and is left open.
+     */
+    private void closeLeastRecentlyUsed() {
+        ArrayList<Map.Entry<String, ToDoListManager>> eldest =
+                        new ArrayList<Map.Entry<String, ToDoListManager>>();
+        synchronized (this) {
+            int excess = openLists.size() - maxOpenLists;
+            for (Map.Entry<String, ToDoListManager> entry : openLists.entrySet()) {
+                if (eldest.size() >= excess) {
+                    break;
+                }
+                eldest.add(new AbstractMap.SimpleImmutableEntry<String, ToDoListManager>(entry));
+            }
+        }
+        for (Map.Entry<String, ToDoListManager> entry : eldest) {
+            Lock lock = getLock(entry.getKey()).writeLock();
+            if (!lock.tryLock()) {
+                continue;
+            }
+            try {
+                synchronized (this) {
+                    if (openLists.get(entry.getKey()) != entry.getValue()) {
+                        continue;
+                    }
+                    openLists.remove(entry.getKey());
+                }
+                closeManager(entry.getKey(), entry.getValue());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Wait for another caller to open a list
+     *
+     * @param listName  the list name
+     * @param opening  the manager of the list, once it is open
+     * @return the manager of the list
+     * @throws ToDoListAccessException  if the list could not be opened
+     */
+    private ToDoListManager waitForOpen(String listName, CompletableFuture<ToDoListManager> opening)
+                    throws ToDoListAccessException {
+        try {
+            return opening.get();
+        } catch (ExecutionException e) {
+            throw new ToDoListAccessException("Could not open list " + listName, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ToDoListAccessException("Interrupted while waiting for list " + listName, e);
+        }
+    }
+
+    /**
+     * Open a list, behind a cache if cacheSize is set
+     *
+     * @param listName  the list name
+     * @return a manager for the list
+     * @throws ToDoListAccessException  if the storage type is unknown or the list cannot be opened
+     */
+    private ToDoListManager openManager(String listName) throws ToDoListAccessException {
+        ToDoListManager manager = openStorage(listName);
+        return cacheSize > 0 ? new CachingManager(manager, cacheSize) : manager;
+    }
+
+    /**
+     * Open the storage of a list
+     *
+     * @param listName  the list name
+     * @return a manager for the list
+     * @throws ToDoListAccessException  if the storage type is unknown or the list cannot be opened
+     */
+    private ToDoListManager openStorage(String listName) throws ToDoListAccessException {
+        if (dataStorageType.equals("database") || dataStorageType.equals("embedded")) {
+            DatabaseManager database;
+            if (dataStorageType.equals("embedded")) {
+                database = new DatabaseManager(DatabaseManager.getEmbeddedFactory(embeddedDatabaseUrl), listName,
+                                renumberOnRemove);
+            } else {
+                database = new DatabaseManager(listName, renumberOnRemove);
+            }
+            if (writeBehind == WriteBehindManager.Durability.SYNC) {
+                return database;
+            }
+            return new WriteBehindManager(database, writeBehind, writeBehindFlushSize, writeBehindFlushMillis);
+        } else if (dataStorageType.equals("file")) {
+            return new FileManager(listName, fileDurability, fileKeepOpen, channels);
+        } else if (dataStorageType.equals("binary")) {
+            return new MappedFileManager(listName);
+        } else if (dataStorageType.equals("journal")) {
+            return new JournalManager(listName, compactionThreshold, fileDurability, channels);
+        } else if (dataStorageType.equals("memory")) {
+            CompactItemStore store;
+            synchronized (this) {
+                store = memoryLists.get(listName);
+                if (store == null) {
+                    store = new CompactItemStore();
+                    memoryLists.put(listName, store);
+                }
+            }
+            return new MemoryManager(store);
+        } else {
+            throw new ToDoListAccessException("Unknown data storage type: " + dataStorageType);
+        }
+    }
+
+    /**
+     * Close a list, logging rather than passing on a failure
+     *
+     * @param listName  the list name
+     * @param manager  the manager of the list
+     */
+    private void closeManager(String listName, ToDoListManager manager) {
+        try {
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            logger.error("Could not close list " + listName, e);
+        }
+    }
+
+    /**
+     * Add gauges for the open lists and their storage to the agent metrics:
+     * lists.open; database.sessionsOpened and database.rows for the database and embedded types, or
+     * memory.bytes, the size of the stores of the lists, for the memory type;
+     * storage.bytes, the size of the files of the open lists, for the others; and
+     * cache.hits, cache.misses and cache.evictions, added up over the open lists, when
+     * cacheSize is set
+     *
+     * @param metrics  the agent metrics
+     */
+    public void addGauges(ToDoListMetrics metrics) {
+        metrics.addGauge("lists.open", new ToDoListMetrics.Gauge() {
+            public long getValue() {
+                return getOpenListCount();
+            }
+        });
+        if (dataStorageType.equals("database") || dataStorageType.equals("embedded")) {
+            metrics.addGauge("database.sessionsOpened", new ToDoListMetrics.Gauge() {
+                public long getValue() {
+                    return DatabaseManager.getSessionsOpened();
+                }
+            });
+            metrics.addGauge("database.rows", new ToDoListMetrics.Gauge() {
+                public long getValue() {
+                    return countDatabaseRows();
+                }
+            });
+        } else if (dataStorageType.equals("memory")) {
+            metrics.addGauge("memory.bytes", new ToDoListMetrics.Gauge() {
+                public long getValue() {
+                    return getMemoryBytes();
+                }
+            });
+        } else {
+            metrics.addGauge("storage.bytes", new ToDoListMetrics.Gauge() {
+                public long getValue() {
+                    long bytes = 0;
+                    for (String listName : getOpenListNames()) {
+                        bytes += getListFile(listName).length();
+                    }
+                    return bytes;
+                }
+            });
+        }
+        if (cacheSize > 0) {
+            metrics.addGauge("cache.hits", new CacheGauge() {
+                long getValue(CachingManager cache) {
+                    return cache.getHitCount();
+                }
+            });
+            metrics.addGauge("cache.misses", new CacheGauge() {
+                long getValue(CachingManager cache) {
+                    return cache.getMissCount();
+                }
+            });
+            metrics.addGauge("cache.evictions", new CacheGauge() {
+                long getValue(CachingManager cache) {
+                    return cache.getEvictionCount();
+                }
+            });
+        }
+    }
+
+    /**
+     * Add up the bytes held by the stores of the memory lists
+     *
+     * @return the bytes of their columns and arenas
+     */
+    private synchronized long getMemoryBytes() {
+        long bytes = 0;
+        for (CompactItemStore store : memoryLists.values()) {
+            bytes += store.getBytesUsed();
+        }
+        return bytes;
+    }
+
+    /**
+     * Count the rows of every list in the database the lists are kept in
+     *
+     * @return the number of rows, or 0 if the database has not been opened
+     */
+    private long countDatabaseRows() {
+        if (!dataStorageType.equals("embedded")) {
+            return DatabaseManager.countAllRows();
+        }
+        try {
+            return DatabaseManager.countAllRows(DatabaseManager.getEmbeddedFactory(embeddedDatabaseUrl));
+        } catch (ToDoListAccessException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * A gauge that adds up a count over the caches of the open lists
+     */
+    private abstract class CacheGauge implements ToDoListMetrics.Gauge {
+        abstract long getValue(CachingManager cache);
+
+        public long getValue() {
+            long total = 0;
+            for (ToDoListManager manager : getOpenManagers()) {
+                if (manager instanceof CachingManager) {
+                    total += getValue((CachingManager) manager);
+                }
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Get the file a list of one of the file storage types is kept in
+     *
+     * @param listName  the list name
+     * @return the file
+     */
+    private File getListFile(String listName) {
+        if (dataStorageType.equals("binary")) {
+            return new File("./" + listName + ".todo");
+        } else if (dataStorageType.equals("journal")) {
+            return new File("./" + listName + ".journal");
+        }
+        return new File("./" + listName + ".csv");
+    }
+
+    private synchronized ArrayList<String> getOpenListNames() {
+        return new ArrayList<String>(openLists.keySet());
+    }
+
+    private synchronized ArrayList<ToDoListManager> getOpenManagers() {
+        return new ArrayList<ToDoListManager>(openLists.values());
+    }
+
+    /**
+     * Get the number of lists that are open
+     *
+     * @return the number of open lists
+     */
+    public synchronized int getOpenListCount() {
+        return openLists.size();
+    }
+
+    /**
+     * Close every open list, waiting for the requests using each one to finish
+     */
+    public void close() {
+        HashMap<String, ToDoListManager> listsToClose;
+        synchronized (this) {
+            listsToClose = new HashMap<String, ToDoListManager>(openLists);
+        }
+        for (Map.Entry<String, ToDoListManager> entry : listsToClose.entrySet()) {
+            Lock lock = getLock(entry.getKey()).writeLock();
+            lock.lock();
+            try {
+                synchronized (this) {
+                    if (openLists.get(entry.getKey()) != entry.getValue()) {
+                        continue;
+                    }
+                    openLists.remove(entry.getKey());
+                }
+                closeManager(entry.getKey(), entry.getValue());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,587 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Buffers the items added to a database list and writes them in batches.
+ *
+ * <p>With SYNC durability every add is written before it returns, as with the
+ * DatabaseManager alone. Otherwise an add is acknowledged once it is buffered, and the
+ * buffered items are written in one transaction when flushSize of them are waiting or
+ * flushMillis after the first of them was added, whichever comes first, on a background
+ * thread. The two buffered modes differ in how far the buffer may grow while a write is
+ * slow or failing: with GROUP_COMMIT an add waits for a write once flushSize items are
+ * waiting, so at most that many items beyond the write in progress can be lost; with
+ * ASYNC adds only wait once ASYNC_BUFFER_FLUSHES times as many are waiting.
+ *
+ * <p>Buffered items come after the stored ones, and reads merge them in, so the list reads
+ * the same as if every add had been written. Removing a buffered item takes it out of the
+ * buffer, and it is never written. Removing a stored item goes straight to the database.
+ *
+ * <p>Buffered items are written when the manager is closed, and when the JVM shuts down
+ * normally for managers that are still open. Items buffered when the JVM is killed are lost.
+ *
+ * <p>Writes to the database, the background ones included, hold the write lock of the
+ * manager and reads of the database hold its read lock, so a read never sees a write half
+ * done. Adds only hold the monitor of the manager, so they do not wait for a background write.
+ */
+public class WriteBehindManager implements ToDoListManager {
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindManager.class);
+
+    public enum Durability {
+        SYNC, GROUP_COMMIT, ASYNC
+    }
+
+    public static final int DEFAULT_FLUSH_SIZE = 100;
+    public static final long DEFAULT_FLUSH_MILLIS = 50;
+    public static final int ASYNC_BUFFER_FLUSHES = 100;
+
+    private static final ScheduledThreadPoolExecutor flusher = createFlusher();
+    private static final LinkedHashSet<WriteBehindManager> openManagers = new LinkedHashSet<WriteBehindManager>();
+
+    private DatabaseManager database;
+    private Durability durability;
+    private int flushSize;
+    private long flushMillis;
+    private ReadWriteLock databaseLock;
+    private ArrayList<Item> pending;
+    private int storedCount;
+    private ScheduledFuture<?> scheduledFlush;
+
+    /**
+     * Create a write-behind manager for a database list
+     *
+     * @param database  the manager of the list
+     * @param durability  when an add is written
+     * @param flushSize  the number of buffered items that starts a write
+     * @param flushMillis  how long an item may stay buffered before a write starts
+     */
+    public WriteBehindManager(DatabaseManager database, Durability durability, int flushSize, long flushMillis) {
+        this.database = database;
+        this.durability = durability;
+        this.flushSize = Math.max(1, flushSize);
+        this.flushMillis = Math.max(0, flushMillis);
+        this.databaseLock = new ReentrantReadWriteLock();
+        this.pending = new ArrayList<Item>();
+        this.storedCount = -1;
+        synchronized (openManagers) {
+            openManagers.add(this);
+        }
+    }
+
+    /**
+     * Create the thread that writes buffered items, and the shutdown hook that writes the
+     * items still buffered when the JVM exits
+     *
+     * @return the flusher
+     */
+    private static ScheduledThreadPoolExecutor createFlusher() {
+        ScheduledThreadPoolExecutor flusher = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "todo-write-behind");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        flusher.setRemoveOnCancelPolicy(true);
+
+        Runtime.getRuntime().addShutdownHook(new Thread("todo-write-behind-shutdown") {
+            public void run() {
+                ArrayList<WriteBehindManager> managers;
+                synchronized (openManagers) {
+                    managers = new ArrayList<WriteBehindManager>(openManagers);
+                }
+                for (WriteBehindManager manager : managers) {
+                    try {
+                        manager.flush();
+                    } catch (ToDoListAccessException e) {
+                        logger.error("Buffered items of list " + manager.database.getListId() + " were lost", e);
+                    }
+                }
+            }
+        });
+        return flusher;
+    }
+
+    /**
+     * Add an item to the list
+     *
+     * @param item  the item to add
+     * @return the item added
+     * @throws ToDoListAccessException  if the item, or the buffer it had to wait for, could not be written
+     */
+    public String addItem(String item) throws ToDoListAccessException {
+        if (durability == Durability.SYNC) {
+            databaseLock.writeLock().lock();
+            try {
+                flush();
+                String added = database.addItem(item);
+                synchronized (this) {
+                    if (storedCount >= 0) {
+                        storedCount++;
+                    }
+                }
+                return added;
+            } finally {
+                databaseLock.writeLock().unlock();
+            }
+        }
+
+        int maxBuffered = durability == Durability.GROUP_COMMIT ? flushSize : flushSize * ASYNC_BUFFER_FLUSHES;
+        boolean bufferFull;
+        synchronized (this) {
+            bufferFull = pending.size() >= maxBuffered;
+        }
+        if (bufferFull) {
+            flush();
+        }
+
+        synchronized (this) {
+            pending.add(database.newItem(item));
+            if (pending.size() == flushSize) {
+                scheduleFlush(0);
+            } else if (scheduledFlush == null) {
+                scheduleFlush(flushMillis);
+            }
+        }
+        return item;
+    }
+
+    /**
+     * Start a background write of the buffered items after a delay, replacing the one
+     * already scheduled. The caller must hold the monitor.
+     *
+     * @param delayMillis  the delay
+     */
+    private void scheduleFlush(long delayMillis) {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+        }
+        scheduledFlush = flusher.schedule(new Runnable() {
+            public void run() {
+                try {
+                    flush();
+                } catch (ToDoListAccessException e) {
+                    logger.error("Could not write buffered items of list " + database.getListId() + ", will retry", e);
+                    synchronized (WriteBehindManager.this) {
+                        if (scheduledFlush == null && !pending.isEmpty()) {
+                            scheduleFlush(flushMillis);
+                        }
+                    }
+                }
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Write the buffered items in one transaction.
+     * Items added while the write runs stay buffered for the next one.
+     *
+     * @throws ToDoListAccessException  if the items could not be written; they stay buffered
+     */
+    public void flush() throws ToDoListAccessException {
+        databaseLock.writeLock().lock();
+        try {
+            ArrayList<Item> flushing;
+            synchronized (this) {
+                if (scheduledFlush != null) {
+                    scheduledFlush.cancel(false);
+                    scheduledFlush = null;
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                flushing = pending;
+                pending = new ArrayList<Item>();
+            }
+
+            try {
+                database.addItems(flushing);
+            } catch (ToDoListAccessException e) {
+                synchronized (this) {
+                    flushing.addAll(pending);
+                    pending = flushing;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                if (storedCount >= 0) {
+                    storedCount += flushing.size();
+                }
+            }
+        } finally {
+            databaseLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get the number of items written to the database, counting them the first time.
+     * The caller must hold the read or write lock.
+     *
+     * @return the number of stored items
+     */
+    private int getStoredCount() {
+        synchronized (this) {
+            if (storedCount >= 0) {
+                return storedCount;
+            }
+        }
+        int count = database.getItemCount();
+        synchronized (this) {
+            storedCount = count;
+        }
+        return count;
+    }
+
+    /**
+     * Change the count of stored items, if it is known
+     *
+     * @param change  the number of items added, or removed if negative
+     */
+    private synchronized void changeStoredCount(int change) {
+        if (storedCount >= 0) {
+            storedCount += change;
+        }
+    }
+
+    /**
+     * Remove an item based on its item number
+     *
+     * @param itemNumber  the number of the item to remove
+     * @return the item removed, or null if there is no such item
+     * @throws ToDoListAccessException  if the list cannot be accessed
+     */
+    public String removeItem(int itemNumber) throws ToDoListAccessException {
+        databaseLock.writeLock().lock();
+        try {
+            int stored = getStoredCount();
+            if (itemNumber > stored) {
+                synchronized (this) {
+                    int index = itemNumber - stored - 1;
+                    return index < pending.size() ? pending.remove(index).toString(itemNumber) : null;
+                }
+            }
+            String removed = database.removeItem(itemNumber);
+            if (removed != null) {
+                changeStoredCount(-1);
+            }
+            return removed;
+        } finally {
+            databaseLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove the first item containing a keyword
+     *
+     * @param itemKeyword  the keyword to find the item
+     * @return the item removed, or null if no item contains the keyword
+     * @throws ToDoListAccessException  if the list cannot be accessed
+     */
+    public String removeItem(String itemKeyword) throws ToDoListAccessException {
+        databaseLock.writeLock().lock();
+        try {
+            String removed = database.removeItem(itemKeyword);
+            if (removed != null) {
+                changeStoredCount(-1);
+                return removed;
+            }
+            int stored = getStoredCount();
+            synchronized (this) {
+                for (int n = 0; n < pending.size(); n++) {
+                    if (DatabaseManager.matchesKeyword(pending.get(n), itemKeyword)) {
+                        return pending.remove(n).toString(stored + n + 1);
+                    }
+                }
+            }
+            return null;
+        } finally {
+            databaseLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get all text of the list, buffered items included
+     *
+     * @return text  a list of all items
+     * @throws ToDoListAccessException  if the list cannot be accessed
+     */
+    public ArrayList<String> getAllText() throws ToDoListAccessException {
+        databaseLock.readLock().lock();
+        try {
+            ArrayList<String> text = database.getAllText();
+            synchronized (this) {
+                storedCount = text.size();
+                for (Item item : pending) {
+                    text.add(item.toString(text.size() + 1));
+                }
+            }
+            return text;
+        } finally {
+            databaseLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Append the whole list to a buffer, one item per line, buffered items included
+     *
+     * @param text  where to append the items
+     * @return the number of lines appended
+     * @throws ToDoListAccessException  if the list cannot be accessed
+     */
+    public int appendAllText(StringBuilder text) throws ToDoListAccessException {
+        databaseLock.readLock().lock();
+        try {
+            int count = database.appendAllText(text);
+            synchronized (this) {
+                storedCount = count;
+                for (Item item : pending) {
+                    count++;
+                    text.append(item.toString(count)).append('\n');
+                }
+            }
+            return count;
+        } finally {
+            databaseLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get a page of the list, buffered items included
+     *
+     * @param offset  the number of items to skip
+     * @param limit  the most items to return
+     * @return text  a list of the items on the page
+     * @throws ToDoListAccessException  if the list cannot be accessed
+     */
+    public ArrayList<String> getAllText(int offset, int limit) throws ToDoListAccessException {
+        databaseLock.readLock().lock();
+        try {
+            ArrayList<String> text = database.getAllText(offset, limit);
+            if (text.size() < limit) {
+                int stored = getStoredCount();
+                synchronized (this) {
+                    for (int n = Math.max(0, offset - stored); n < pending.size() && text.size() < limit; n++) {
+                        text.add(pending.get(n).toString(stored + n + 1));
+                    }
+                }
+            }
+            return text;
+        } finally {
+            databaseLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get all the items with a keyword, buffered items included
+     *
+     * @param itemKeyword  the keyword to find the items
+     * @return itemsWithKeyword  a list of items with the keyword
+     * @throws ToDoListAccessException  if the list cannot be accessed
+     */
+    public ArrayList<String> getAllItemsWithKeyword(String itemKeyword) throws ToDoListAccessException {
+        databaseLock.readLock().lock();
+        try {
+            ArrayList<String> itemsWithKeyword = database.getAllItemsWithKeyword(itemKeyword);
+            int stored = hasPending() ? getStoredCount() : 0;
+            synchronized (this) {
+                for (int n = 0; n < pending.size(); n++) {
+                    if (DatabaseManager.matchesKeyword(pending.get(n), itemKeyword)) {
+                        itemsWithKeyword.add(pending.get(n).toString(stored + n + 1));
+                    }
+                }
+            }
+            return itemsWithKeyword;
+        } finally {
+            databaseLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get a page of the items with a keyword, buffered items included.
+     * The page is read from the database first; buffered items that match fill the rest.
+     *
+     * @param itemKeyword  the keyword to find the items
+     * @param offset  the number of matching items to skip
+     * @param limit  the most items to return
+     * @return itemsWithKeyword  a list of items with the keyword
+     * @throws ToDoListAccessException  if the list cannot be accessed
+     */
+    public ArrayList<String> getAllItemsWithKeyword(String itemKeyword, int offset, int limit)
+                    throws ToDoListAccessException {
+        databaseLock.readLock().lock();
+        try {
+            ArrayList<String> itemsWithKeyword =
+                            database.getAllItemsWithKeyword(itemKeyword, offset, limit);
+            if (itemsWithKeyword.size() >= limit || !hasPending()) {
+                return itemsWithKeyword;
+            }
+            int storedMatches;
+            if (itemsWithKeyword.isEmpty() && offset > 0) {
+                // the page starts past the stored matches, so count them to know what to skip
+                storedMatches = database.getAllItemsWithKeyword(itemKeyword).size();
+            } else {
+                storedMatches = Math.max(0, offset) + itemsWithKeyword.size();
+            }
+            int skip = Math.max(0, offset - storedMatches);
+            int stored = getStoredCount();
+            synchronized (this) {
+                for (int n = 0; n < pending.size() && itemsWithKeyword.size() < limit; n++) {
+                    if (!DatabaseManager.matchesKeyword(pending.get(n), itemKeyword)) {
+                        continue;
+                    } else if (skip > 0) {
+                        skip--;
+                        continue;
+                    }
+                    itemsWithKeyword.add(pending.get(n).toString(stored + n + 1));
+                }
+            }
+            return itemsWithKeyword;
+        } finally {
+            databaseLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get all items created in a time range, buffered items included
+     *
+     * @param from  the start of the range in epoch milliseconds, inclusive
+     * @param to  the end of the range in epoch milliseconds, exclusive
+     * @return the items created in the range
+     * @throws ToDoListAccessException  if the list cannot be accessed
+     */
+    public ArrayList<String> getAllItemsCreatedBetween(long from, long to) throws ToDoListAccessException {
+        databaseLock.readLock().lock();
+        try {
+            ArrayList<String> items = database.getAllItemsCreatedBetween(from, to);
+            int stored = hasPending() ? getStoredCount() : 0;
+            synchronized (this) {
+                for (int n = 0; n < pending.size(); n++) {
+                    long createdAt = pending.get(n).getCreatedAt();
+                    if (createdAt >= from && createdAt < to) {
+                        items.add(pending.get(n).toString(stored + n + 1));
+                    }
+                }
+            }
+            return items;
+        } finally {
+            databaseLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the item with an item number
+     *
+     * @param itemNumber  the number of the item
+     * @return the item, or null if there is no such item
+     * @throws ToDoListAccessException  if the list cannot be accessed
+     */
+    public String getItem(int itemNumber) throws ToDoListAccessException {
+        databaseLock.readLock().lock();
+        try {
+            int stored = hasPending() ? getStoredCount() : Integer.MAX_VALUE;
+            if (itemNumber <= stored) {
+                return database.getItem(itemNumber);
+            }
+            synchronized (this) {
+                int index = itemNumber - stored - 1;
+                return index < pending.size() ? pending.get(index).toString(itemNumber) : null;
+            }
+        } finally {
+            databaseLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the first item containing a keyword
+     *
+     * @param itemKeyword  the keyword to find the item
+     * @return the item, or null if no item contains the keyword
+     * @throws ToDoListAccessException  if the list cannot be accessed
+     */
+    public String getItem(String itemKeyword) throws ToDoListAccessException {
+        databaseLock.readLock().lock();
+        try {
+            String item = database.getItem(itemKeyword);
+            if (item != null || !hasPending()) {
+                return item;
+            }
+            int stored = getStoredCount();
+            synchronized (this) {
+                for (int n = 0; n < pending.size(); n++) {
+                    if (DatabaseManager.matchesKeyword(pending.get(n), itemKeyword)) {
+                        return pending.get(n).toString(stored + n + 1);
+                    }
+                }
+            }
+            return null;
+        } finally {
+            databaseLock.readLock().unlock();
+        }
+    }
+
+    private synchronized boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Write the buffered items, then run a batch in one database transaction
+     *
+     * @param batch  the operations to run
+     * @throws ToDoListAccessException  if the buffered items could not be written or an operation fails
+     */
+    public void runBatch(ToDoListBatch batch) throws ToDoListAccessException {
+        databaseLock.writeLock().lock();
+        try {
+            flush();
+            synchronized (this) {
+                storedCount = -1;
+            }
+            database.runBatch(batch);
+        } finally {
+            databaseLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Write the buffered items and close the list
+     *
+     * @throws ToDoListAccessException  if the buffered items could not be written; they are lost
+     */
+    public void close() throws ToDoListAccessException {
+        synchronized (openManagers) {
+            openManagers.remove(this);
+        }
+        try {
+            flush();
+        } finally {
+            database.close();
+        }
+    }
+}
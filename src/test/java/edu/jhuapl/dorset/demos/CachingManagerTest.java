@@ -0,0 +1,192 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachingManagerTest {
+
+    private static final String LIST_NAME = "CachingTest";
+
+    @Before
+    public void setUp() {
+        new File("./" + LIST_NAME + ".journal").delete();
+        new File("./" + LIST_NAME + ".csv").delete();
+    }
+
+    @After
+    public void tearDown() {
+        new File("./" + LIST_NAME + ".journal").delete();
+        new File("./" + LIST_NAME + ".csv").delete();
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        try {
+            CachingManager manager = new CachingManager(new JournalManager(LIST_NAME), 10);
+            manager.addItem("Buy milk");
+            manager.addItem("Buy bread");
+
+            assertTrue(manager.getItem(1).contains("Buy milk"));
+            assertTrue(manager.getItem(1).contains("Buy milk"));
+            assertTrue(manager.getItem("bread").startsWith("2),"));
+            assertEquals(2, manager.getAllItemsWithKeyword("Buy").size());
+            assertEquals(2, manager.getAllItemsWithKeyword("Buy").size());
+            assertTrue(manager.getItem("cheese") == null);
+            assertTrue(manager.getItem("cheese") == null);
+            assertEquals(3, manager.getHitCount());
+            assertEquals(4, manager.getMissCount());
+
+            manager.getAllItemsWithKeyword("Buy").clear();
+            assertEquals(2, manager.getAllItemsWithKeyword("Buy").size());
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testAddKeepsFoundItems() {
+        try {
+            CachingManager manager = new CachingManager(new JournalManager(LIST_NAME), 10);
+            manager.addItem("Buy milk");
+            manager.getItem(1);
+            manager.getItem("milk");
+            manager.getItem(2);
+            manager.getAllItemsWithKeyword("Buy");
+
+            manager.addItem("Buy bread");
+            assertEquals(2, manager.size());
+            assertEquals(2, manager.getInvalidationCount());
+            assertTrue(manager.getItem(2).contains("Buy bread"));
+            assertEquals(2, manager.getAllItemsWithKeyword("Buy").size());
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testRemoveDropsRenumberedItems() {
+        try {
+            CachingManager manager = new CachingManager(new JournalManager(LIST_NAME), 10);
+            manager.addItem("First task");
+            manager.addItem("Second task");
+            manager.addItem("Third task");
+            manager.getItem(1);
+            manager.getItem(3);
+            manager.getItem("First");
+            manager.getItem("Third");
+            manager.getAllItemsWithKeyword("task");
+            manager.getItem(7);
+
+            assertTrue(manager.removeItem("Second").contains("Second task"));
+            assertEquals(3, manager.size());
+            assertTrue(manager.getItem(3) == null);
+            assertTrue(manager.getItem("Third").startsWith("2),"));
+            assertEquals(2, manager.getAllItemsWithKeyword("task").size());
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testRemoveDropsKeywordsWithNumbers() {
+        try {
+            try (BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter("./" + LIST_NAME + ".csv"))) {
+                bufferedWriter.write(LIST_NAME + " TODO List");
+                bufferedWriter.write("\n1),10/16/2017,1:00 PM,first");
+                bufferedWriter.write("\n2),10/16/2017,1:00 PM,second");
+                bufferedWriter.write("\n3),10/17/2017,1:00 PM,third");
+            }
+            CachingManager manager = new CachingManager(new FileManager(LIST_NAME), 10);
+            assertTrue(manager.getItem("2),10/17") == null);
+            assertTrue(manager.getAllItemsWithKeyword("2),10/17").isEmpty());
+
+            manager.removeItem(1);
+            assertTrue(manager.getItem("2),10/17").contains("third"));
+            assertEquals(1, manager.getAllItemsWithKeyword("2),10/17").size());
+            manager.close();
+        } catch (ToDoListAccessException | IOException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testEviction() {
+        try {
+            CachingManager manager = new CachingManager(new JournalManager(LIST_NAME), 2);
+            manager.addItem("An item");
+            manager.getItem(1);
+            manager.getItem(2);
+            manager.getItem(1);
+            manager.getItem(3);
+            assertEquals(1, manager.getEvictionCount());
+
+            long missesBefore = manager.getMissCount();
+            manager.getItem(1);
+            assertEquals(missesBefore, manager.getMissCount());
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testAnswersMatchTheList() {
+        try {
+            FileManager list = new FileManager(LIST_NAME);
+            CachingManager manager = new CachingManager(list, 50);
+            String[] keywords = {"apples", "pears", "task 1", "2", "),", "none"};
+            Random random = new Random(17);
+            for (int n = 0; n < 2000; n++) {
+                int choice = random.nextInt(10);
+                String keyword = keywords[random.nextInt(keywords.length)];
+                int itemNumber = random.nextInt(15);
+                if (choice == 0) {
+                    manager.addItem("task " + n + " " + keyword);
+                } else if (choice == 1) {
+                    manager.removeItem(itemNumber);
+                } else if (choice == 2) {
+                    manager.removeItem(keyword);
+                } else if (choice < 5) {
+                    assertEquals(list.getItem(itemNumber), manager.getItem(itemNumber));
+                } else if (choice < 7) {
+                    assertEquals(list.getItem(keyword), manager.getItem(keyword));
+                } else {
+                    assertEquals(list.getAllItemsWithKeyword(keyword), manager.getAllItemsWithKeyword(keyword));
+                }
+            }
+            assertTrue(manager.getHitCount() > 0);
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+
+import org.junit.Test;
+
+public class CompactItemStoreTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private static String stamp(long time) {
+        Date date = new Date(time);
+        return new SimpleDateFormat("MM/dd/yyyy").format(date) + ","
+                        + DateFormat.getTimeInstance(DateFormat.SHORT).format(date);
+    }
+
+    @Test
+    public void testAddGetAndRemove() {
+        CompactItemStore store = new CompactItemStore();
+        long now = System.currentTimeMillis();
+        assertEquals(1, store.add(now, "first"));
+        assertEquals(2, store.add(now, "second"));
+        assertEquals(3, store.add(now, "third"));
+
+        assertEquals("2)," + stamp(now) + ",second", store.getLine(2));
+        assertEquals("2)," + stamp(now) + ",second", store.remove(2));
+        assertEquals(2, store.size());
+        assertEquals("2)," + stamp(now) + ",third", store.getLine(2));
+        assertEquals(now, store.getCreatedAt(2));
+        assertTrue(store.remove(3) == null);
+        assertTrue(store.remove(0) == null);
+    }
+
+    @Test
+    public void testTasksAreKeptAsUtf8() {
+        CompactItemStore store = new CompactItemStore();
+        store.add(System.currentTimeMillis(), "Caf\u00e9 cr\u00e8me");
+        store.add(System.currentTimeMillis(), "\u65e5\u672c\u8a9e");
+
+        assertEquals("Caf\u00e9 cr\u00e8me", store.getTask(1));
+        assertEquals("\u65e5\u672c\u8a9e", store.getTask(2));
+        assertEquals(1, store.find("CR\u00c8ME"));
+        assertEquals(1, store.find("caf"));
+        assertEquals(2, store.find("\u672c"));
+        assertEquals(0, store.find("cafe"));
+    }
+
+    @Test
+    public void testKeywordsMatchTheWholeLine() {
+        CompactItemStore store = new CompactItemStore();
+        long time = System.currentTimeMillis() - 3 * DAY;
+        String[] tasks = {"Buy milk", "buy BREAD", "Call 2) the bank", "pick up 1:00 ticket", "\u00c9clair"};
+        ArrayList<String> lines = new ArrayList<String>();
+        for (int n = 0; n < tasks.length; n++) {
+            store.add(time + n * DAY, tasks[n]);
+            lines.add((n + 1) + ")," + stamp(time + n * DAY) + "," + tasks[n]);
+        }
+
+        String[] keywords = {"BUY", "milk", "2)", "2),", "1:", stamp(time + DAY), stamp(time).substring(11) + ",buy",
+            ",", "", "bread", "\u00e9clair", "CALL 2", "x", "m"};
+        for (String keyword : keywords) {
+            ArrayList<String> expected = new ArrayList<String>();
+            for (String line : lines) {
+                if (line.toLowerCase().contains(keyword.toLowerCase())) {
+                    expected.add(line);
+                }
+            }
+            assertEquals(keyword, expected, store.findAll(keyword));
+            assertEquals(keyword, expected.isEmpty() ? 0 : lines.indexOf(expected.get(0)) + 1, store.find(keyword));
+        }
+    }
+
+    @Test
+    public void testFindCreatedBetween() {
+        CompactItemStore store = new CompactItemStore();
+        long today = DateIndex.parseDay(new SimpleDateFormat(DateIndex.DATE_PATTERN).format(new Date()));
+        long yesterday = DateIndex.parseDay(new SimpleDateFormat(DateIndex.DATE_PATTERN)
+                        .format(new Date(today - DAY / 2)));
+        store.add(yesterday + 1000, "yesterday");
+        store.add(today, "today at midnight");
+        store.add(today + DAY / 2, "today at noon");
+
+        ArrayList<String> found = store.findCreatedBetween(today, DateIndex.nextDay(today));
+        assertEquals(2, found.size());
+        assertTrue(found.get(0).startsWith("2),") && found.get(1).endsWith("today at noon"));
+        assertEquals(3, store.findCreatedBetween(yesterday, DateIndex.nextDay(today)).size());
+        assertEquals(0, store.findCreatedBetween(today, today).size());
+
+        store.add(yesterday, "added late");
+        found = store.findCreatedBetween(yesterday, today);
+        assertEquals(2, found.size());
+        assertTrue(found.get(0).endsWith("yesterday") && found.get(1).startsWith("4),"));
+        assertEquals(2, store.findCreatedBetween(today, DateIndex.nextDay(today)).size());
+    }
+
+    @Test
+    public void testRemovedTextIsCompactedAway() {
+        CompactItemStore store = new CompactItemStore();
+        StringBuilder longTask = new StringBuilder();
+        for (int n = 0; n < 1000; n++) {
+            longTask.append('x');
+        }
+        for (int n = 0; n < 1000; n++) {
+            store.add(n, longTask + " " + n);
+        }
+        long bytesBefore = store.getBytesUsed();
+        for (int n = 0; n < 900; n++) {
+            store.remove(1);
+        }
+
+        assertTrue(store.getBytesUsed() < bytesBefore / 2);
+        assertEquals(100, store.size());
+        assertEquals(longTask + " 900", store.getTask(1));
+        assertEquals(longTask + " 999", store.getTask(100));
+        assertEquals(1, store.find("x 900"));
+    }
+
+    @Test
+    public void testRollBackBatch() {
+        CompactItemStore store = new CompactItemStore();
+        long now = System.currentTimeMillis();
+        store.add(now, "first");
+        store.add(now, "second");
+        store.remove(1);
+        ArrayList<String> before = store.getLines(0, store.size());
+
+        store.beginBatch();
+        store.add(now, "third");
+        store.remove(1);
+        store.add(now, "fourth");
+        store.remove(1);
+        assertEquals(1, store.size());
+        store.rollBackBatch();
+        assertEquals(before, store.getLines(0, store.size()));
+
+        store.beginBatch();
+        store.add(now, "fifth");
+        store.commitBatch();
+        assertEquals(2, store.size());
+        assertEquals("fifth", store.getTask(2));
+    }
+}
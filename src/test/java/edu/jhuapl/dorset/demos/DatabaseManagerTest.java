@@ -16,13 +16,16 @@
  */
 package edu.jhuapl.dorset.demos;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 
+import org.hibernate.stat.Statistics;
 import org.junit.Test;
 
 public class DatabaseManagerTest {
@@ -218,4 +221,305 @@ public class DatabaseManagerTest {
             assertTrue(false);
         }
     }
+
+    @Test
+    public void testGetAllTextIsOneQuery() {
+        try {
+            DatabaseManager manager = new DatabaseManager();
+            manager.addItem("First bulk item");
+            manager.addItem("Second bulk item");
+
+            long queriesBefore = manager.getQueryCount();
+            ArrayList<String> response = manager.getAllText();
+            assertEquals(1, manager.getQueryCount() - queriesBefore);
+            assertTrue(response.get(response.size() - 1).contains("Second bulk item"));
+
+            queriesBefore = manager.getQueryCount();
+            StringBuilder appended = new StringBuilder();
+            assertEquals(response.size(), manager.appendAllText(appended));
+            assertEquals(1, manager.getQueryCount() - queriesBefore);
+            assertTrue(appended.toString().endsWith(response.get(response.size() - 1) + "\n"));
+
+            manager.removeItem("First bulk item");
+            manager.removeItem("Second bulk item");
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testSessionFactoryIsShared() {
+        try {
+            DatabaseManager first = new DatabaseManager();
+            DatabaseManager second = new DatabaseManager();
+            assertSame(first.getFactory(), second.getFactory());
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testRemoveWithoutRenumbering() {
+        try {
+            DatabaseManager manager = new DatabaseManager(false);
+            int itemCount = manager.getAllText().size();
+            manager.addItem("Ranked first");
+            manager.addItem("Ranked second");
+            manager.addItem("Ranked third");
+            // the list numbers are read once, on the first lookup by number
+            assertTrue(manager.getItem(itemCount + 3).contains("Ranked third"));
+
+            long queriesBefore = manager.getQueryCount();
+            String response = manager.removeItem(itemCount + 1);
+            assertEquals(2, manager.getQueryCount() - queriesBefore);
+            assertTrue(response.startsWith((itemCount + 1) + "),") && response.contains("Ranked first"));
+
+            assertTrue(manager.getItem(itemCount + 1).contains("Ranked second"));
+            assertTrue(manager.getItem("Ranked third").startsWith((itemCount + 2) + "),"));
+            assertTrue(manager.getAllItemsWithKeyword("Ranked").get(1).startsWith((itemCount + 2) + "),"));
+
+            manager.removeItem("Ranked second");
+            manager.removeItem("Ranked third");
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testRanksOfALargeListAreReadOnce() {
+        try {
+            DatabaseManager manager = new DatabaseManager("ranked-large", false);
+            ArrayList<Item> items = new ArrayList<Item>();
+            for (int n = 1; n <= 2000; n++) {
+                items.add(manager.newItem((n % 100 == 0 ? "Ranked needle " : "Ranked hay ") + n));
+            }
+            manager.addItems(items);
+            // removes every odd item, leaving 2, 4, ... 2000 numbered 1 to 1000
+            manager.runBatch(new ToDoListBatch() {
+                public void run(ToDoListManager batchManager) throws ToDoListAccessException {
+                    for (int n = 1; n <= 1000; n++) {
+                        batchManager.removeItem(n);
+                    }
+                }
+            });
+            Statistics statistics = manager.getFactory().getStatistics();
+
+            long queriesBefore = manager.getQueryCount();
+            long rowsBefore = statistics.getEntityLoadCount();
+            String item = manager.getItem(1000);
+            assertEquals(1, manager.getQueryCount() - queriesBefore);
+            assertEquals(1, statistics.getEntityLoadCount() - rowsBefore);
+            assertTrue(item.startsWith("1000),") && item.endsWith("Ranked needle 2000"));
+
+            queriesBefore = manager.getQueryCount();
+            rowsBefore = statistics.getEntityLoadCount();
+            ArrayList<String> needles = manager.getAllItemsWithKeyword("needle");
+            assertEquals(1, manager.getQueryCount() - queriesBefore);
+            assertEquals(20, statistics.getEntityLoadCount() - rowsBefore);
+            assertEquals(20, needles.size());
+            assertTrue(needles.get(0).startsWith("50),") && needles.get(0).endsWith("needle 100"));
+            assertTrue(needles.get(19).startsWith("1000),"));
+
+            queriesBefore = manager.getQueryCount();
+            rowsBefore = statistics.getEntityLoadCount();
+            ArrayList<String> page = manager.getAllText(900, 10);
+            assertEquals(1, manager.getQueryCount() - queriesBefore);
+            assertEquals(10, statistics.getEntityLoadCount() - rowsBefore);
+            assertTrue(page.get(0).startsWith("901),") && page.get(0).endsWith("Ranked hay 1802"));
+
+            manager.addItem("Ranked after the removes");
+            assertTrue(manager.getItem(1001).contains("Ranked after the removes"));
+            DatabaseManager reopened = new DatabaseManager("ranked-large", false);
+            assertEquals(manager.getAllText(), reopened.getAllText());
+
+            while (manager.removeItem(1) != null) {
+                continue;
+            }
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testListsAreIsolated() {
+        try {
+            DatabaseManager first = new DatabaseManager("isolation-first", true);
+            DatabaseManager second = new DatabaseManager("isolation-second", true);
+            first.addItem("Only in the first list");
+
+            assertEquals(1, first.getAllText().size());
+            assertTrue(first.getItem(1).startsWith("1),"));
+            assertTrue(second.getAllText().isEmpty());
+            assertTrue(second.getItem("first list") == null);
+            assertTrue(second.removeItem(1) == null);
+
+            first.removeItem(1);
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testGetAllItemsCreatedBetween() {
+        try {
+            DatabaseManager manager = new DatabaseManager("created-between", false);
+            manager.addItem("Created first");
+            manager.addItem("Created second");
+            manager.removeItem(1);
+            long today = DateIndex.parseDay(new SimpleDateFormat("MM/dd/yyyy").format(new Date()));
+
+            ArrayList<String> response = manager.getAllItemsCreatedBetween(today, DateIndex.nextDay(today));
+            assertEquals(1, response.size());
+            assertTrue(response.get(0).startsWith("1),") && response.get(0).contains("Created second"));
+            assertTrue(manager.getAllItemsCreatedBetween(0, today).isEmpty());
+
+            manager.removeItem(1);
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testRunBatch() {
+        try {
+            DatabaseManager manager = new DatabaseManager("batch", true);
+            manager.runBatch(new ToDoListBatch() {
+                public void run(ToDoListManager batchManager) throws ToDoListAccessException {
+                    batchManager.addItem("Batch first");
+                    batchManager.addItem("Batch second");
+                    assertTrue(batchManager.removeItem(1).contains("Batch first"));
+                    assertTrue(batchManager.getItem(1).contains("Batch second"));
+                }
+            });
+            assertEquals(1, manager.getAllText().size());
+            assertTrue(manager.getItem(1).contains("Batch second"));
+
+            try {
+                manager.runBatch(new ToDoListBatch() {
+                    public void run(ToDoListManager batchManager) throws ToDoListAccessException {
+                        batchManager.addItem("Rolled back");
+                        throw new ToDoListAccessException("stop the batch");
+                    }
+                });
+                assertTrue(false);
+            } catch (ToDoListAccessException e) {
+                assertEquals("stop the batch", e.getMessage());
+            }
+            assertEquals(1, manager.getAllText().size());
+
+            manager.removeItem(1);
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testGetAllTextPage() {
+        try {
+            for (boolean renumberOnRemove : new boolean[] {true, false}) {
+                DatabaseManager manager = new DatabaseManager("paged", renumberOnRemove);
+                manager.addItem("Paged first");
+                manager.addItem("Paged second");
+                manager.addItem("Paged third");
+                manager.removeItem(1);
+
+                long queriesBefore = manager.getQueryCount();
+                ArrayList<String> page = manager.getAllText(1, 5);
+                assertEquals(1, manager.getQueryCount() - queriesBefore);
+                assertEquals(1, page.size());
+                assertTrue(page.get(0).startsWith("2),") && page.get(0).contains("Paged third"));
+                assertEquals(manager.getAllText().subList(0, 1), manager.getAllText(0, 1));
+
+                manager.removeItem(1);
+                manager.removeItem(1);
+            }
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testGetAllItemsWithKeywordPage() {
+        try {
+            for (boolean renumberOnRemove : new boolean[] {true, false}) {
+                DatabaseManager manager = new DatabaseManager("paged-keyword", renumberOnRemove);
+                manager.addItem("Paged buy first");
+                manager.addItem("Paged call");
+                manager.addItem("Paged buy second");
+                manager.addItem("Paged buy third");
+                manager.removeItem(2);
+
+                long queriesBefore = manager.getQueryCount();
+                ArrayList<String> page = manager.getAllItemsWithKeyword("buy", 1, 1);
+                assertEquals(1, manager.getQueryCount() - queriesBefore);
+                assertEquals(1, page.size());
+                assertTrue(page.get(0).startsWith("2),"));
+                assertTrue(page.get(0).contains("Paged buy second"));
+                assertEquals(manager.getAllItemsWithKeyword("buy").subList(1, 3),
+                                manager.getAllItemsWithKeyword("buy", 1, 5));
+                assertTrue(manager.getAllItemsWithKeyword("buy", 3, 5).isEmpty());
+
+                while (manager.removeItem(1) != null) {
+                    continue;
+                }
+            }
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testEmbeddedDatabase() {
+        try {
+            String url = "jdbc:h2:mem:embedded-test;DB_CLOSE_DELAY=-1";
+            assertSame(DatabaseManager.getEmbeddedFactory(url), DatabaseManager.getEmbeddedFactory(url));
+            DatabaseManager embedded = new DatabaseManager(DatabaseManager.getEmbeddedFactory(url), "embedded", true);
+            DatabaseManager shared = new DatabaseManager("embedded", true);
+            assertTrue(embedded.getFactory() != shared.getFactory());
+            assertTrue(embedded.getPoolMetrics() == null);
+
+            embedded.addItem("Only in the embedded database");
+            embedded.addItem("Second embedded item");
+            assertEquals(2, embedded.getAllText().size());
+            assertTrue(shared.getAllText().isEmpty());
+            assertEquals(2, DatabaseManager.countAllRows(embedded.getFactory()));
+            assertTrue(embedded.removeItem(1).contains("Only in the embedded"));
+            assertTrue(embedded.getItem(1).startsWith("1),") && embedded.getItem(1).contains("Second"));
+
+            embedded.removeItem(1);
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testRunBatchNumbersAdds() {
+        try {
+            for (boolean renumberOnRemove : new boolean[] {true, false}) {
+                DatabaseManager manager = new DatabaseManager("batch-numbers", renumberOnRemove);
+                manager.addItem("Before the batch");
+                manager.runBatch(new ToDoListBatch() {
+                    public void run(ToDoListManager batchManager) throws ToDoListAccessException {
+                        batchManager.addItem("Batch add 1");
+                        batchManager.addItem("Batch add 2");
+                        batchManager.removeItem(1);
+                        batchManager.addItem("Batch add 3");
+                        batchManager.addItem("Batch add 4");
+                    }
+                });
+                ArrayList<String> items = manager.getAllText();
+                assertEquals(4, items.size());
+                for (int n = 1; n <= 4; n++) {
+                    assertTrue(items.get(n - 1).startsWith(n + "),") && items.get(n - 1).contains("Batch add " + n));
+                }
+                manager.addItem("After the batch");
+                assertTrue(manager.getItem(5).contains("After the batch"));
+                for (int n = 0; n < 5; n++) {
+                    manager.removeItem(1);
+                }
+            }
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
 }
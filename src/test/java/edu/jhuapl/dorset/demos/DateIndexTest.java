@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+
+import org.junit.Test;
+
+public class DateIndexTest {
+
+    @Test
+    public void testBetween() {
+        DateIndex index = new DateIndex();
+        index.add(0, "12/31/2016");
+        index.add(1, "01/01/2017");
+        index.add(2, "01/15/2017");
+        index.add(3, "01/31/2017");
+        index.add(4, "02/01/2017");
+
+        BitSet ids = index.between(DateIndex.parseDay("01/01/2017"), DateIndex.nextDay(DateIndex.parseDay("01/31/2017")));
+        assertEquals(3, ids.cardinality());
+        assertTrue(ids.get(1) && ids.get(2) && ids.get(3));
+
+        index.remove(2, "01/15/2017");
+        ids = index.between(DateIndex.parseDay("01/01/2017"), DateIndex.parseDay("02/01/2017"));
+        assertEquals(2, ids.cardinality());
+        assertTrue(index.between(DateIndex.parseDay("02/01/2017"), DateIndex.parseDay("01/01/2017")).isEmpty());
+    }
+
+    @Test
+    public void testUnreadableDates() {
+        DateIndex index = new DateIndex();
+        index.add(0, "13/45/2017");
+        index.add(1, "not a date");
+        assertTrue(index.between(Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+        assertEquals(Long.MIN_VALUE, DateIndex.parseDay("02/30/2017"));
+    }
+
+    @Test
+    public void testNextDay() {
+        assertEquals(DateIndex.parseDay("03/01/2016"), DateIndex.nextDay(DateIndex.parseDay("02/29/2016")));
+        assertEquals(DateIndex.parseDay("01/01/2017"), DateIndex.nextDay(DateIndex.parseDay("12/31/2016")));
+    }
+}
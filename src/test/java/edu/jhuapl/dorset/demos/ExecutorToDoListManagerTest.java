@@ -0,0 +1,170 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.typesafe.config.ConfigFactory;
+
+public class ExecutorToDoListManagerTest {
+
+    private static final String LIST_NAME = "AsyncTest";
+
+    private ToDoListRegistry registry;
+    private ThreadPoolExecutor executor;
+
+    @Before
+    public void setUp() throws ToDoListAccessException {
+        new File("./" + LIST_NAME + ".journal").delete();
+        HashMap<String, Object> values = new HashMap<String, Object>();
+        values.put("name", LIST_NAME);
+        values.put("dataStorageType", "journal");
+        registry = new ToDoListRegistry(ConfigFactory.parseMap(values));
+        executor = ExecutorToDoListManager.createExecutor(1, 1);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        registry.close();
+        new File("./" + LIST_NAME + ".journal").delete();
+    }
+
+    /**
+     * Wait until the single worker has taken every queued operation
+     */
+    private void waitForWorker() throws InterruptedException {
+        while (!executor.getQueue().isEmpty() || executor.getActiveCount() == 0) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testOperations() {
+        try {
+            ExecutorToDoListManager manager = new ExecutorToDoListManager(registry, LIST_NAME, executor, 0);
+            assertTrue(manager.addItem("Asynchronous item").get().contains("Asynchronous item"));
+            assertTrue(manager.getItem(1).get().startsWith("1),"));
+            assertEquals(1, manager.getAllItemsWithKeyword("asynchronous").get().size());
+            assertTrue(manager.removeItem("Asynchronous").get().contains("Asynchronous item"));
+            assertTrue(manager.getAllText().get().isEmpty());
+        } catch (InterruptedException | ExecutionException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testFullQueueRefusesOperations() {
+        try {
+            ExecutorToDoListManager manager = new ExecutorToDoListManager(registry, LIST_NAME, executor, 0);
+            CompletableFuture<String> running;
+            CompletableFuture<String> queued;
+            CompletableFuture<String> refused;
+            Lock lock = registry.getLock(LIST_NAME).writeLock();
+            lock.lock();
+            try {
+                running = manager.addItem("Running item");
+                waitForWorker();
+                queued = manager.addItem("Queued item");
+                refused = manager.addItem("Refused item");
+
+                assertFalse(running.isDone());
+                assertFalse(queued.isDone());
+                assertTrue(refused.isCompletedExceptionally());
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                refused.get();
+                assertTrue(false);
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof ToDoListAccessException);
+            }
+            assertTrue(running.get().contains("Running item"));
+            assertTrue(queued.get().contains("Queued item"));
+            assertEquals(2, manager.getAllText().get().size());
+        } catch (InterruptedException | ExecutionException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testCancelledOperationsAreSkipped() {
+        try {
+            ExecutorToDoListManager manager = new ExecutorToDoListManager(registry, LIST_NAME, executor, 0);
+            CompletableFuture<String> waitingForLock;
+            CompletableFuture<String> queued;
+            Lock lock = registry.getLock(LIST_NAME).writeLock();
+            lock.lock();
+            try {
+                waitingForLock = manager.addItem("Cancelled while waiting");
+                waitForWorker();
+                queued = manager.addItem("Cancelled in the queue");
+                assertTrue(waitingForLock.cancel(true));
+                assertTrue(queued.cancel(true));
+                assertTrue(executor.getQueue().isEmpty());
+            } finally {
+                lock.unlock();
+            }
+
+            assertTrue(manager.getAllText().get().isEmpty());
+        } catch (InterruptedException | ExecutionException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testTimeout() {
+        try {
+            ExecutorToDoListManager manager = new ExecutorToDoListManager(registry, LIST_NAME, executor, 50);
+            CompletableFuture<String> timedOut;
+            Lock lock = registry.getLock(LIST_NAME).writeLock();
+            lock.lock();
+            try {
+                timedOut = manager.addItem("Timed out item");
+                try {
+                    timedOut.get();
+                    assertTrue(false);
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof ToDoListAccessException);
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            ArrayList<String> items = manager.getAllText().get();
+            assertTrue(items.isEmpty());
+        } catch (InterruptedException | ExecutionException e) {
+            assertTrue(false);
+        }
+    }
+}
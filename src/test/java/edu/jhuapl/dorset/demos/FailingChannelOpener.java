@@ -0,0 +1,170 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+
+/**
+ * Opens files through channels that can be made to fail partway through a write, as a crash
+ * would, for testing how a list file holds up
+ */
+class FailingChannelOpener implements ChannelOpener {
+    private volatile long failWritesAfter = -1;
+
+    public FileChannel open(Path path, OpenOption... options) throws IOException {
+        return new FailingChannel(FileChannel.open(path, options));
+    }
+
+    /**
+     * Make every write of more bytes than a number, through any channel this opened, write only
+     * that number of bytes and then fail
+     *
+     * @param bytes  the bytes a write may write, or -1 to stop failing
+     */
+    void failWritesAfter(long bytes) {
+        failWritesAfter = bytes;
+    }
+
+    /**
+     * A channel that writes through a file's own channel until a write is too long
+     */
+    private class FailingChannel extends FileChannel {
+        private FileChannel channel;
+
+        FailingChannel(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Cut a write short if it is too long
+         *
+         * @param source  the bytes to write
+         * @return the limit to put back after the write, or -1 if the write is whole
+         */
+        private int cutShort(ByteBuffer source) {
+            long allowed = failWritesAfter;
+            if (allowed < 0 || allowed >= source.remaining()) {
+                return -1;
+            }
+            int limit = source.limit();
+            source.limit(source.position() + (int) allowed);
+            return limit;
+        }
+
+        public int write(ByteBuffer source) throws IOException {
+            int limit = cutShort(source);
+            int written = 0;
+            while (source.hasRemaining()) {
+                written += channel.write(source);
+            }
+            if (limit >= 0) {
+                source.limit(limit);
+                throw new IOException("Write failed on purpose");
+            }
+            return written;
+        }
+
+        public int write(ByteBuffer source, long position) throws IOException {
+            int limit = cutShort(source);
+            int written = 0;
+            while (source.hasRemaining()) {
+                written += channel.write(source, position + written);
+            }
+            if (limit >= 0) {
+                source.limit(limit);
+                throw new IOException("Write failed on purpose");
+            }
+            return written;
+        }
+
+        public long write(ByteBuffer[] sources, int offset, int length) throws IOException {
+            long written = 0;
+            for (int n = offset; n < offset + length; n++) {
+                written += write(sources[n]);
+            }
+            return written;
+        }
+
+        public int read(ByteBuffer destination) throws IOException {
+            return channel.read(destination);
+        }
+
+        public long read(ByteBuffer[] destinations, int offset, int length) throws IOException {
+            return channel.read(destinations, offset, length);
+        }
+
+        public int read(ByteBuffer destination, long position) throws IOException {
+            return channel.read(destination, position);
+        }
+
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        public FileChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        public FileChannel truncate(long size) throws IOException {
+            channel.truncate(size);
+            return this;
+        }
+
+        public void force(boolean metaData) throws IOException {
+            channel.force(metaData);
+        }
+
+        public long transferTo(long position, long count, WritableByteChannel target)
+                        throws IOException {
+            return channel.transferTo(position, count, target);
+        }
+
+        public long transferFrom(ReadableByteChannel source, long position, long count)
+                        throws IOException {
+            return channel.transferFrom(source, position, count);
+        }
+
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return channel.map(mode, position, size);
+        }
+
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return channel.lock(position, size, shared);
+        }
+
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return channel.tryLock(position, size, shared);
+        }
+
+        protected void implCloseChannel() throws IOException {
+            channel.close();
+        }
+    }
+}
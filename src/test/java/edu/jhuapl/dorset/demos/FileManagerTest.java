@@ -18,9 +18,17 @@ package edu.jhuapl.dorset.demos;
 
 import static org.junit.Assert.*;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -214,4 +222,269 @@ public class FileManagerTest {
             assertTrue(false);
         }
     }
+
+    @Test
+    public void testExternalEditDetected() {
+        try {
+            FileManager manager = new FileManager("Nicole");
+            int itemCount = manager.getAllText().size();
+
+            try (BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter("./Nicole.csv", true))) {
+                bufferedWriter.write("\n" + itemCount + "),01/01/2017,1:00 PM,added by hand with some padding");
+            }
+
+            String response = manager.getItem(itemCount);
+            assertTrue(response.contains("added by hand"));
+
+            manager.removeItem("added by hand");
+        } catch (ToDoListAccessException | IOException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testGetAllItemsCreatedBetween() {
+        try {
+            FileManager manager = new FileManager("Nicole");
+            manager.addItem("Created today");
+            long today = DateIndex.parseDay(new SimpleDateFormat("MM/dd/yyyy").format(new Date()));
+
+            ArrayList<String> response = manager.getAllItemsCreatedBetween(today, DateIndex.nextDay(today));
+            assertTrue(response.get(response.size() - 1).contains("Created today"));
+            assertTrue(manager.getAllItemsCreatedBetween(DateIndex.nextDay(today), Long.MAX_VALUE).isEmpty());
+
+            manager.removeItem("Created today");
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testRunBatch() {
+        try {
+            FileManager manager = new FileManager("Nicole");
+            final int itemCount = manager.getAllText().size() - 1;
+            manager.runBatch(new ToDoListBatch() {
+                public void run(ToDoListManager batchManager) throws ToDoListAccessException {
+                    batchManager.addItem("batch first");
+                    batchManager.addItem("batch second");
+                    batchManager.addItem("batch third");
+                    assertTrue(batchManager.removeItem(itemCount + 1).contains("batch first"));
+                    assertTrue(batchManager.getItem(itemCount + 2).contains("batch third"));
+                }
+            });
+
+            FileManager reopened = new FileManager("Nicole");
+            assertTrue(reopened.getItem(itemCount + 1).startsWith((itemCount + 1) + "),"));
+            assertTrue(reopened.getItem(itemCount + 1).contains("batch second"));
+            assertTrue(reopened.getItem(itemCount + 2).contains("batch third"));
+
+            try {
+                manager.runBatch(new ToDoListBatch() {
+                    public void run(ToDoListManager batchManager) throws ToDoListAccessException {
+                        batchManager.removeItem("batch second");
+                        throw new ToDoListAccessException("stop the batch");
+                    }
+                });
+                assertTrue(false);
+            } catch (ToDoListAccessException e) {
+                assertEquals("stop the batch", e.getMessage());
+            }
+            assertTrue(manager.getItem("batch second") != null);
+
+            manager.removeItem("batch second");
+            manager.removeItem("batch third");
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testGetAllTextPage() {
+        new File("./PagedTest.csv").delete();
+        try {
+            FileManager manager = new FileManager("PagedTest");
+            manager.addItem("Paged first");
+            manager.addItem("Paged second");
+            manager.addItem("Paged third");
+            ArrayList<String> text = manager.getAllText();
+
+            ArrayList<String> page = manager.getAllText(2, 5);
+            assertEquals(1, page.size());
+            assertTrue(page.get(0).startsWith("3),") && page.get(0).contains("Paged third"));
+            assertEquals(text.subList(1, 3), manager.getAllText(0, 2));
+            assertTrue(manager.getAllText(3, 5).isEmpty());
+
+            StringBuilder appended = new StringBuilder();
+            assertEquals(4, manager.appendAllText(appended));
+            assertEquals(text.get(0) + "\n" + text.get(1) + "\n" + text.get(2) + "\n" + text.get(3)
+                            + "\n", appended.toString());
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        } finally {
+            new File("./PagedTest.csv").delete();
+        }
+    }
+
+    @Test
+    public void testFailedWritesLeaveTheFileWhole() {
+        new File("./FaultTest.csv").delete();
+        try {
+            for (int mode = 0; mode < 2 * FileManager.Durability.values().length; mode++) {
+                FileManager.Durability durability = FileManager.Durability.values()[mode / 2];
+                FailingChannelOpener channels = new FailingChannelOpener();
+                FileManager manager = new FileManager("FaultTest", durability, mode % 2 == 1,
+                                channels);
+                for (int n = 1; n <= 20; n++) {
+                    manager.addItem("item " + n + " that may be lost");
+                }
+                byte[] whole = Files.readAllBytes(Paths.get("./FaultTest.csv"));
+
+                Random random = new Random(20);
+                for (int attempt = 0; attempt < 50; attempt++) {
+                    try {
+                        if (attempt % 3 == 0) {
+                            channels.failWritesAfter(random.nextInt(20));
+                            manager.addItem("item that is never added");
+                        } else {
+                            channels.failWritesAfter(random.nextInt(whole.length / 2));
+                            manager.removeItem(1 + random.nextInt(20));
+                        }
+                        assertTrue(false);
+                    } catch (ToDoListAccessException e) {
+                        assertTrue(Arrays.equals(whole, Files.readAllBytes(Paths.get("./FaultTest.csv"))));
+                        assertFalse(new File("./FaultTest.csv.tmp").exists());
+                    }
+                }
+
+                channels.failWritesAfter(-1);
+                assertEquals(20, manager.getAllText().size() - 1);
+                assertEquals(20, new FileManager("FaultTest").getAllText().size() - 1);
+                assertTrue(manager.removeItem(1).contains("item 1 "));
+                assertTrue(manager.getItem(1).startsWith("1),") && manager.getItem(1).contains("item 2 "));
+                new File("./FaultTest.csv").delete();
+            }
+        } catch (ToDoListAccessException | IOException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testFailedOpenAppendIsCutBack() {
+        new File("./FaultTest.csv").delete();
+        try {
+            FailingChannelOpener channels = new FailingChannelOpener();
+            FileManager manager = new FileManager("FaultTest", FileManager.Durability.ATOMIC, true,
+                            channels);
+            for (int n = 1; n <= 10; n++) {
+                channels.failWritesAfter(n % 2 == 0 ? 5 : -1);
+                try {
+                    manager.addItem("appended item " + n);
+                    assertTrue(n % 2 == 1);
+                } catch (ToDoListAccessException e) {
+                    assertTrue(n % 2 == 0);
+                }
+            }
+            channels.failWritesAfter(-1);
+            assertEquals(5, manager.getAllText().size() - 1);
+            FileManager reopened = new FileManager("FaultTest");
+            assertEquals(5, reopened.getAllText().size() - 1);
+            assertTrue(reopened.getItem(5).startsWith("5),"));
+            assertTrue(reopened.getItem(5).contains("appended item 9"));
+            new File("./FaultTest.csv").delete();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testFailedBatchLeavesTheFileWhole() {
+        new File("./FaultTest.csv").delete();
+        try {
+            FailingChannelOpener channels = new FailingChannelOpener();
+            FileManager manager = new FileManager("FaultTest", FileManager.Durability.SYNC, false,
+                            channels);
+            manager.addItem("kept item");
+            byte[] whole = Files.readAllBytes(Paths.get("./FaultTest.csv"));
+
+            channels.failWritesAfter(10);
+            try {
+                manager.runBatch(new ToDoListBatch() {
+                    public void run(ToDoListManager batchManager) throws ToDoListAccessException {
+                        batchManager.removeItem(1);
+                        batchManager.addItem("replacement item");
+                    }
+                });
+                assertTrue(false);
+            } catch (ToDoListAccessException e) {
+                assertTrue(Arrays.equals(whole, Files.readAllBytes(Paths.get("./FaultTest.csv"))));
+            }
+            channels.failWritesAfter(-1);
+            assertTrue(manager.getItem(1).contains("kept item"));
+            new File("./FaultTest.csv").delete();
+        } catch (ToDoListAccessException | IOException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testKeepOpenAppends() {
+        new File("./KeepOpenTest.csv").delete();
+        try {
+            FileManager manager = new FileManager("KeepOpenTest", FileManager.Durability.ATOMIC, true);
+            for (int n = 1; n <= 100; n++) {
+                manager.addItem("kept open item " + n + " today");
+                if (n % 10 == 0) {
+                    assertTrue(manager.removeItem(n / 10).contains("item " + (n / 10 * 2 - 1) + " "));
+                }
+            }
+            manager.runBatch(new ToDoListBatch() {
+                public void run(ToDoListManager batchManager) throws ToDoListAccessException {
+                    batchManager.addItem("batch item 1");
+                    batchManager.addItem("batch item 2");
+                }
+            });
+
+            FileManager reader = new FileManager("KeepOpenTest");
+            assertEquals(manager.getAllText(), reader.getAllText());
+            assertEquals(92, reader.getAllText().size() - 1);
+            assertTrue(reader.getItem(92).startsWith("92),") && reader.getItem(92).contains("batch item 2"));
+            assertTrue(reader.getItem(1).contains("kept open item 2 today"));
+
+            manager.close();
+            manager = new FileManager("KeepOpenTest", FileManager.Durability.SYNC, true);
+            manager.addItem("after reopening");
+            assertTrue(new FileManager("KeepOpenTest").getItem(93).contains("after reopening"));
+            manager.close();
+            new File("./KeepOpenTest.csv").delete();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testGetAllItemsWithKeywordPage() {
+        new File("./PagedTest.csv").delete();
+        try {
+            FileManager manager = new FileManager("PagedTest");
+            manager.addItem("Paged keyword one");
+            manager.addItem("Other item");
+            manager.addItem("Paged keyword two");
+            manager.addItem("Paged keyword three");
+
+            ArrayList<String> all = manager.getAllItemsWithKeyword("paged keyword");
+            assertEquals(3, all.size());
+            assertEquals(all.subList(1, 2), manager.getAllItemsWithKeyword("paged keyword", 1, 1));
+            assertEquals(all.subList(1, 3), manager.getAllItemsWithKeyword("paged keyword", 1, 5));
+            assertTrue(manager.getAllItemsWithKeyword("paged keyword", 3, 5).isEmpty());
+            assertTrue(manager.getAllItemsWithKeyword("paged keyword", 0, 0).isEmpty());
+            // too short for the keyword index, so every line is searched
+            ArrayList<String> shortMatches = manager.getAllItemsWithKeyword("ee");
+            assertEquals(shortMatches.subList(0, 1), manager.getAllItemsWithKeyword("ee", 0, 1));
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        } finally {
+            new File("./PagedTest.csv").delete();
+        }
+    }
 }
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.typesafe.config.ConfigFactory;
+
+public class GroupCommitWriterTest {
+
+    private static final String LIST_NAME = "GroupCommitTest";
+    private static final String TOO_LONG_FOR_DATABASE =
+                    "longer than the fifty characters a database task may hold";
+
+    @Before
+    public void setUp() {
+        deleteFiles();
+    }
+
+    @After
+    public void tearDown() {
+        deleteFiles();
+    }
+
+    private void deleteFiles() {
+        new File("./" + LIST_NAME + ".csv").delete();
+        new File("./" + LIST_NAME + ".todo").delete();
+        new File("./" + LIST_NAME + ".journal").delete();
+    }
+
+    private ToDoListRegistry createRegistry(String dataStorageType) throws ToDoListAccessException {
+        return createRegistry(dataStorageType, ChannelOpener.FILES);
+    }
+
+    /**
+     * Create a registry whose file lists are written through the channels an opener gives them
+     *
+     * @param dataStorageType  the data storage type
+     * @param channels  opens the channels file lists are written through
+     * @return the registry
+     * @throws ToDoListAccessException  if the registry cannot be created
+     */
+    private ToDoListRegistry createRegistry(String dataStorageType, ChannelOpener channels)
+                    throws ToDoListAccessException {
+        HashMap<String, Object> values = new HashMap<String, Object>();
+        values.put("name", LIST_NAME);
+        values.put("dataStorageType", dataStorageType);
+        values.put("fileDurability", "sync");
+        values.put("embeddedDatabaseUrl", "jdbc:h2:mem:group-commit-test;DB_CLOSE_DELAY=-1");
+        return new ToDoListRegistry(ConfigFactory.parseMap(values), channels);
+    }
+
+    /**
+     * Get the items of the list, without any lines that are not items
+     *
+     * @param registry  the registry of the list
+     * @return the items
+     */
+    private ArrayList<String> getItems(ToDoListRegistry registry) throws ToDoListAccessException {
+        ArrayList<String> lines;
+        Lock lock = registry.getLock(LIST_NAME).readLock();
+        lock.lock();
+        try {
+            lines = registry.getManager(LIST_NAME).getAllText();
+        } finally {
+            lock.unlock();
+        }
+        ArrayList<String> items = new ArrayList<String>();
+        for (String line : lines) {
+            if (line.contains("),")) {
+                items.add(line);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Add a bad item among good ones while the list is locked, so they are written in one
+     * batch, and check that the batch fails, the good items are then written once each and
+     * in order, and only the bad one fails. The writer may take the first item on its own
+     * before it blocks on the lock, so another good item comes before the bad one.
+     *
+     * @param registry  the registry of the list
+     * @param badItem  an item the storage type rejects, or null to add only good items
+     */
+    private void retryAroundBadItem(ToDoListRegistry registry, String badItem) throws Exception {
+        GroupCommitWriter writer = new GroupCommitWriter(registry, 100);
+        String[] goodItems = {"first item", "second item", "third item"};
+        ArrayList<CompletableFuture<String>> results = new ArrayList<CompletableFuture<String>>();
+        CompletableFuture<String> badResult = null;
+        Lock lock = registry.getLock(LIST_NAME).writeLock();
+        lock.lock();
+        try {
+            results.add(writer.addItem(LIST_NAME, goodItems[0]));
+            results.add(writer.addItem(LIST_NAME, goodItems[1]));
+            if (badItem != null) {
+                badResult = writer.addItem(LIST_NAME, badItem);
+            }
+            results.add(writer.addItem(LIST_NAME, goodItems[2]));
+        } finally {
+            lock.unlock();
+        }
+
+        for (int n = 0; n < goodItems.length; n++) {
+            assertEquals(goodItems[n], results.get(n).get());
+        }
+        if (badResult != null) {
+            try {
+                badResult.get();
+                assertTrue(false);
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() != null);
+            }
+        }
+        writer.close();
+
+        ArrayList<String> items = getItems(registry);
+        assertEquals(goodItems.length, items.size());
+        for (int n = 0; n < goodItems.length; n++) {
+            assertTrue(items.get(n).startsWith((n + 1) + "),"));
+            assertTrue(items.get(n).endsWith("," + goodItems[n]));
+        }
+        assertEquals(goodItems.length, writer.getAddCount());
+    }
+
+    /**
+     * Remove every item of the list, so a database list starts empty in the next test
+     *
+     * @param registry  the registry of the list
+     */
+    private void removeAll(ToDoListRegistry registry) throws ToDoListAccessException {
+        Lock lock = registry.getLock(LIST_NAME).writeLock();
+        lock.lock();
+        try {
+            ToDoListManager manager = registry.getManager(LIST_NAME);
+            while (manager.removeItem(1) != null) {
+                continue;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Add items from many threads at once and check every one is in the list, numbered in order
+     *
+     * @param registry  the registry of the list
+     * @param writer  the writer to add through
+     */
+    private void addConcurrently(ToDoListRegistry registry, final GroupCommitWriter writer) throws Exception {
+        final int clients = 16;
+        final int itemsPerClient = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        ArrayList<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        for (int c = 0; c < clients; c++) {
+            final int client = c;
+            results.add(executor.submit(new Callable<Boolean>() {
+                public Boolean call() throws Exception {
+                    for (int n = 0; n < itemsPerClient; n++) {
+                        String item = "client " + client + " item " + n;
+                        if (!writer.addItem(LIST_NAME, item).get().equals(item)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+            }));
+        }
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get());
+        }
+        executor.shutdown();
+
+        ArrayList<String> items = getItems(registry);
+        assertEquals(clients * itemsPerClient, items.size());
+        HashSet<String> tasks = new HashSet<String>();
+        for (int n = 0; n < items.size(); n++) {
+            assertTrue(items.get(n).startsWith((n + 1) + "),"));
+            tasks.add(items.get(n).substring(items.get(n).indexOf("client")));
+        }
+        assertEquals(clients * itemsPerClient, tasks.size());
+        assertEquals(clients * itemsPerClient, writer.getAddCount());
+        assertTrue(writer.getBatchCount() <= writer.getAddCount());
+    }
+
+    @Test
+    public void testConcurrentFileAdds() throws Exception {
+        ToDoListRegistry registry = createRegistry("file");
+        GroupCommitWriter writer = new GroupCommitWriter(registry, 100);
+        addConcurrently(registry, writer);
+        writer.close();
+        registry.close();
+    }
+
+    @Test
+    public void testConcurrentDatabaseAdds() throws Exception {
+        ToDoListRegistry registry = createRegistry("database");
+        GroupCommitWriter writer = new GroupCommitWriter(registry, 100);
+        addConcurrently(registry, writer);
+
+        Lock lock = registry.getLock(LIST_NAME).writeLock();
+        lock.lock();
+        try {
+            registry.getManager(LIST_NAME).runBatch(new ToDoListBatch() {
+                public void run(ToDoListManager batchManager) throws ToDoListAccessException {
+                    while (batchManager.removeItem(1) != null) {
+                        continue;
+                    }
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+        writer.close();
+        registry.close();
+    }
+
+    @Test
+    public void testAddsWaitForTheirBatch() throws Exception {
+        ToDoListRegistry registry = createRegistry("file");
+        GroupCommitWriter writer = new GroupCommitWriter(registry, 2);
+        ArrayList<CompletableFuture<String>> results = new ArrayList<CompletableFuture<String>>();
+        Lock lock = registry.getLock(LIST_NAME).writeLock();
+        lock.lock();
+        try {
+            for (int n = 0; n < 5; n++) {
+                results.add(writer.addItem(LIST_NAME, "waiting item " + n));
+            }
+            Thread.sleep(50);
+            for (CompletableFuture<String> result : results) {
+                assertTrue(!result.isDone());
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (int n = 0; n < 5; n++) {
+            assertEquals("waiting item " + n, results.get(n).get());
+        }
+        assertTrue(writer.getBatchCount() >= 3);
+        assertTrue(new FileManager(LIST_NAME).getItem(5).contains("waiting item 4"));
+
+        writer.close();
+        try {
+            writer.addItem(LIST_NAME, "too late").get();
+            assertTrue(false);
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ToDoListAccessException);
+        }
+        registry.close();
+    }
+
+    @Test
+    public void testFailedFileBatchIsRetried() throws Exception {
+        FailingChannelOpener channels = new FailingChannelOpener();
+        ToDoListRegistry registry = createRegistry("file", channels);
+        // long enough for one line, too short for the lines of a batch
+        channels.failWritesAfter(50);
+        retryAroundBadItem(registry, null);
+        registry.close();
+    }
+
+    @Test
+    public void testFailedBinaryBatchIsRetried() throws Exception {
+        ToDoListRegistry registry = createRegistry("binary");
+        StringBuilder tooLong = new StringBuilder();
+        while (tooLong.length() <= 300) {
+            tooLong.append("too long ");
+        }
+        retryAroundBadItem(registry, tooLong.toString());
+        registry.close();
+    }
+
+    @Test
+    public void testFailedJournalBatchIsRetried() throws Exception {
+        ToDoListRegistry registry = createRegistry("journal");
+        retryAroundBadItem(registry, "two\nlines");
+        registry.close();
+    }
+
+    @Test
+    public void testFailedDatabaseBatchIsRetried() throws Exception {
+        ToDoListRegistry registry = createRegistry("database");
+        try {
+            retryAroundBadItem(registry, TOO_LONG_FOR_DATABASE);
+        } finally {
+            removeAll(registry);
+            registry.close();
+        }
+    }
+
+    @Test
+    public void testFailedEmbeddedBatchIsRetried() throws Exception {
+        ToDoListRegistry registry = createRegistry("embedded");
+        try {
+            retryAroundBadItem(registry, TOO_LONG_FOR_DATABASE);
+        } finally {
+            removeAll(registry);
+            registry.close();
+        }
+    }
+
+    @Test
+    public void testFailedMemoryBatchIsRetried() throws Exception {
+        ToDoListRegistry registry = createRegistry("memory");
+        retryAroundBadItem(registry, "two\nlines");
+        registry.close();
+    }
+}
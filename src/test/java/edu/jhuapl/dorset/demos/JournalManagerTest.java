@@ -0,0 +1,376 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JournalManagerTest {
+
+    private static final String LIST_NAME = "JournalTest";
+
+    @Before
+    public void setUp() {
+        new File("./" + LIST_NAME + ".journal").delete();
+    }
+
+    @After
+    public void tearDown() {
+        new File("./" + LIST_NAME + ".journal").delete();
+    }
+
+    @Test
+    public void testAddAndGet() {
+        try {
+            JournalManager manager = new JournalManager(LIST_NAME);
+            manager.addItem("Buy supplies");
+            manager.addItem("Call home");
+
+            assertTrue(manager.getItem(2).startsWith("2),"));
+            assertTrue(manager.getItem(2).contains("Call home"));
+            assertTrue(manager.getItem("supplies").startsWith("1),"));
+            assertTrue(manager.getItem(3) == null);
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testRemoveRenumbers() {
+        try {
+            JournalManager manager = new JournalManager(LIST_NAME);
+            manager.addItem("first");
+            manager.addItem("second");
+            manager.addItem("third");
+
+            String response = manager.removeItem(1);
+            assertTrue(response.contains("first"));
+
+            ArrayList<String> text = manager.getAllText();
+            assertEquals(2, text.size());
+            assertTrue(text.get(0).startsWith("1),") && text.get(0).contains("second"));
+            assertTrue(text.get(1).startsWith("2),") && text.get(1).contains("third"));
+            StringBuilder appended = new StringBuilder();
+            assertEquals(2, manager.appendAllText(appended));
+            assertEquals(text.get(0) + "\n" + text.get(1) + "\n", appended.toString());
+            assertTrue(manager.removeItem("non-existent item") == null);
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testReplayAfterReopen() {
+        try {
+            JournalManager manager = new JournalManager(LIST_NAME);
+            manager.addItem("keep me");
+            manager.addItem("remove me");
+            manager.removeItem("remove me");
+            manager.close();
+
+            manager = new JournalManager(LIST_NAME);
+            ArrayList<String> text = manager.getAllText();
+            assertEquals(1, text.size());
+            assertTrue(text.get(0).contains("keep me"));
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testTornRecordIsDropped() {
+        try {
+            JournalManager manager = new JournalManager(LIST_NAME);
+            manager.addItem("written in full");
+            manager.close();
+
+            try (FileOutputStream out = new FileOutputStream("./" + LIST_NAME + ".journal", true)) {
+                out.write("1a2b3c,A,2,01/01/2017,1:00 PM,cut off".getBytes("UTF-8"));
+            }
+
+            manager = new JournalManager(LIST_NAME);
+            assertEquals(1, manager.getAllText().size());
+            manager.addItem("after the crash");
+            manager.close();
+
+            manager = new JournalManager(LIST_NAME);
+            assertEquals(2, manager.getAllText().size());
+            assertTrue(manager.getItem(2).contains("after the crash"));
+            manager.close();
+        } catch (ToDoListAccessException | IOException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testFailedWriteIsCutBack() {
+        try {
+            FailingChannelOpener channels = new FailingChannelOpener();
+            JournalManager manager = new JournalManager(LIST_NAME, 0.5, FileManager.Durability.SYNC,
+                            channels);
+            manager.addItem("first");
+            channels.failWritesAfter(10);
+            try {
+                manager.addItem("torn");
+                assertTrue(false);
+            } catch (ToDoListAccessException e) {
+                assertTrue(e.getMessage().contains("torn"));
+            }
+            channels.failWritesAfter(-1);
+            manager.addItem("after the failure");
+            assertEquals(2, manager.getAllText().size());
+            manager.close();
+
+            manager = new JournalManager(LIST_NAME);
+            ArrayList<String> text = manager.getAllText();
+            assertEquals(2, text.size());
+            assertTrue(text.get(1).startsWith("2),") && text.get(1).endsWith(",after the failure"));
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testLineBreakIsRejected() {
+        try {
+            JournalManager manager = new JournalManager(LIST_NAME);
+            try {
+                manager.addItem("two\nlines");
+                assertTrue(false);
+            } catch (ToDoListAccessException e) {
+                assertTrue(e.getMessage().contains("line break"));
+            }
+            manager.addItem("one line");
+            manager.close();
+
+            manager = new JournalManager(LIST_NAME);
+            assertEquals(1, manager.getAllText().size());
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testCorruptRecordInTheMiddleIsReported() throws IOException {
+        File journal = new File("./" + LIST_NAME + ".journal");
+        try {
+            JournalManager manager = new JournalManager(LIST_NAME);
+            manager.addItem("before");
+            manager.addItem("after");
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+        ArrayList<String> records = new ArrayList<String>();
+        try (BufferedReader bufferedReader = new BufferedReader(new FileReader(journal))) {
+            String record;
+            while ((record = bufferedReader.readLine()) != null) {
+                records.add(record);
+            }
+        }
+        try (FileOutputStream out = new FileOutputStream(journal)) {
+            out.write((records.get(0) + "\n1a2b3c,A,9,01/01/2017,1:00 PM,corrupt\n" + records.get(1) + "\n")
+                            .getBytes("UTF-8"));
+        }
+
+        long length = journal.length();
+        try {
+            new JournalManager(LIST_NAME);
+            assertTrue(false);
+        } catch (ToDoListAccessException e) {
+            assertTrue(e.getMessage().contains("corrupt"));
+        }
+        assertEquals(length, journal.length());
+    }
+
+    @Test
+    public void testCompaction() {
+        try {
+            JournalManager manager = new JournalManager(LIST_NAME, 0.5);
+            for (int n = 0; n < 100; n++) {
+                manager.addItem("item " + n);
+            }
+            for (int n = 0; n < 90; n++) {
+                manager.removeItem(1);
+            }
+            manager.close();
+
+            manager = new JournalManager(LIST_NAME);
+            ArrayList<String> text = manager.getAllText();
+            assertEquals(10, text.size());
+            assertTrue(text.get(0).contains("item 90"));
+            manager.close();
+
+            int recordCount = 0;
+            try (BufferedReader bufferedReader = new BufferedReader(new FileReader("./" + LIST_NAME + ".journal"))) {
+                while (bufferedReader.readLine() != null) {
+                    recordCount++;
+                }
+            }
+            assertTrue(recordCount < 190);
+        } catch (ToDoListAccessException | IOException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testGetAllItemsCreatedBetween() {
+        try {
+            JournalManager manager = new JournalManager(LIST_NAME);
+            manager.addItem("first");
+            manager.addItem("second");
+            manager.addItem("third");
+            long today = DateIndex.parseDay(new SimpleDateFormat("MM/dd/yyyy").format(new Date()));
+
+            assertEquals(3, manager.getAllItemsCreatedBetween(today, DateIndex.nextDay(today)).size());
+            manager.removeItem(1);
+            ArrayList<String> text = manager.getAllItemsCreatedBetween(today, DateIndex.nextDay(today));
+            assertEquals(2, text.size());
+            assertTrue(text.get(0).startsWith("1),") && text.get(0).contains("second"));
+            assertTrue(manager.getAllItemsCreatedBetween(0, today).isEmpty());
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testRunBatch() {
+        try {
+            JournalManager manager = new JournalManager(LIST_NAME);
+            manager.runBatch(new ToDoListBatch() {
+                public void run(ToDoListManager batchManager) throws ToDoListAccessException {
+                    batchManager.addItem("first");
+                    batchManager.addItem("second");
+                    batchManager.removeItem(1);
+                }
+            });
+            manager.close();
+
+            manager = new JournalManager(LIST_NAME);
+            ArrayList<String> text = manager.getAllText();
+            assertEquals(1, text.size());
+            assertTrue(text.get(0).startsWith("1),") && text.get(0).contains("second"));
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testFailedBatchIsUndone() {
+        try {
+            JournalManager manager = new JournalManager(LIST_NAME);
+            manager.addItem("first");
+            manager.addItem("second");
+            manager.addItem("third");
+            try {
+                manager.runBatch(new ToDoListBatch() {
+                    public void run(ToDoListManager batchManager) throws ToDoListAccessException {
+                        batchManager.removeItem(1);
+                        batchManager.addItem("fourth");
+                        batchManager.removeItem(1);
+                        throw new ToDoListAccessException("Batch failed on purpose");
+                    }
+                });
+                assertTrue(false);
+            } catch (ToDoListAccessException e) {
+                assertEquals("Batch failed on purpose", e.getMessage());
+            }
+            manager.addItem("fifth");
+
+            ArrayList<String> text = manager.getAllText();
+            assertEquals(4, text.size());
+            assertTrue(text.get(0).startsWith("1),") && text.get(0).endsWith(",first"));
+            assertTrue(text.get(2).startsWith("3),") && text.get(2).endsWith(",third"));
+            assertTrue(text.get(3).startsWith("4),") && text.get(3).endsWith(",fifth"));
+            manager.close();
+
+            manager = new JournalManager(LIST_NAME);
+            assertEquals(text, manager.getAllText());
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testGetAllItemsWithKeywordPage() {
+        try {
+            JournalManager manager = new JournalManager(LIST_NAME);
+            manager.addItem("Buy bread");
+            manager.addItem("Call home");
+            manager.addItem("Buy milk");
+            manager.addItem("Buy eggs");
+            manager.removeItem(1);
+
+            ArrayList<String> page = manager.getAllItemsWithKeyword("buy", 1, 1);
+            assertEquals(1, page.size());
+            assertTrue(page.get(0).startsWith("3),") && page.get(0).endsWith(",Buy eggs"));
+            assertEquals(manager.getAllItemsWithKeyword("buy"),
+                            manager.getAllItemsWithKeyword("buy", 0, 5));
+            assertTrue(manager.getAllItemsWithKeyword("buy", 2, 5).isEmpty());
+            // too short for the keyword index, so the live items are walked in order
+            page = manager.getAllItemsWithKeyword("uy", 1, 5);
+            assertEquals(1, page.size());
+            assertTrue(page.get(0).startsWith("3),"));
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testGetAllTextPage() {
+        try {
+            JournalManager manager = new JournalManager(LIST_NAME);
+            manager.addItem("first");
+            manager.addItem("second");
+            manager.addItem("third");
+            manager.addItem("fourth");
+            manager.removeItem(2);
+
+            ArrayList<String> page = manager.getAllText(1, 5);
+            assertEquals(2, page.size());
+            assertTrue(page.get(0).startsWith("2),") && page.get(0).contains("third"));
+            assertTrue(page.get(1).startsWith("3),") && page.get(1).contains("fourth"));
+            assertEquals(manager.getAllText().subList(0, 2), manager.getAllText(0, 2));
+            assertTrue(manager.getAllText(3, 5).isEmpty());
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+}
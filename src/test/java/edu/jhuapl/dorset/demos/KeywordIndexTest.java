@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class KeywordIndexTest {
+
+    private static final String[] WORDS = {"Buy", "milk", "call", "Home", "dentist", "pay", "bills", "buying",
+        "MILKSHAKE", "homework", "re-call", "a,b", "pay/bills"};
+
+    @Test
+    public void testCandidatesCoverEveryMatch() {
+        Random random = new Random(7);
+        ArrayList<String> lines = new ArrayList<String>();
+        KeywordIndex index = new KeywordIndex();
+        for (int n = 0; n < 500; n++) {
+            String task = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+            String line = (n + 1) + "),0" + (1 + random.nextInt(9)) + "/15/2017,1:0" + random.nextInt(10) + " PM,"
+                            + task;
+            lines.add(line);
+            index.add(n, KeywordIndex.withoutNumber(line));
+        }
+        for (int n = 0; n < 500; n += 3) {
+            index.remove(n, KeywordIndex.withoutNumber(lines.get(n)));
+        }
+
+        String[] keywords = {"milk", "MILK", "ilk", "buy milk", "y mil", "call", "re-c", "a,b pay", "s/15/", "02/15/2017",
+            "pm,buy", "work", "dentist home", "nothing like it"};
+        for (String keyword : keywords) {
+            BitSet candidates = index.candidates(keyword);
+            assertTrue(candidates != null);
+            int matches = 0;
+            int found = 0;
+            for (int n = 0; n < lines.size(); n++) {
+                if (n % 3 != 0 && lines.get(n).toLowerCase().contains(keyword.toLowerCase())) {
+                    matches++;
+                    assertTrue(candidates.get(n));
+                }
+                if (candidates.get(n) && lines.get(n).toLowerCase().contains(keyword.toLowerCase())) {
+                    found++;
+                }
+            }
+            assertEquals(matches, found);
+        }
+    }
+
+    @Test
+    public void testKeywordsThatNeedAScan() {
+        KeywordIndex index = new KeywordIndex();
+        index.add(0, KeywordIndex.withoutNumber("12),01/01/2017,1:00 PM,Buy milk"));
+        assertTrue(index.candidates("12)") == null);
+        assertTrue(index.candidates("2017") == null);
+        assertTrue(index.candidates("mi") == null);
+        assertTrue(index.candidates("  ") == null);
+        assertTrue(index.candidates("buy mi").get(0));
+    }
+
+    @Test
+    public void testWithoutNumber() {
+        assertEquals("01/01/2017,1:00 PM,task", KeywordIndex.withoutNumber("7),01/01/2017,1:00 PM,task"));
+        assertEquals("x),task", KeywordIndex.withoutNumber("x),task"));
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedFileManagerTest {
+
+    private static final String LIST_NAME = "MappedTest";
+
+    @Before
+    public void setUp() {
+        tearDown();
+    }
+
+    @After
+    public void tearDown() {
+        new File("./" + LIST_NAME + ".todo").delete();
+        new File("./" + LIST_NAME + ".csv").delete();
+    }
+
+    @Test
+    public void testAddGetRemove() {
+        try {
+            MappedFileManager manager = new MappedFileManager(LIST_NAME);
+            manager.addItem("Buy supplies");
+            manager.addItem("Call home");
+            manager.addItem("Pay bills");
+
+            assertTrue(manager.getItem(2).startsWith("2),"));
+            assertTrue(manager.getItem(2).endsWith(",Call home"));
+            assertTrue(manager.getItem("bills").startsWith("3),"));
+
+            String response = manager.removeItem(1);
+            assertTrue(response.contains("Buy supplies"));
+            assertTrue(manager.getItem(1).contains("Call home"));
+            assertTrue(manager.getItem(3) == null);
+            assertTrue(manager.removeItem("non-existent item") == null);
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testGrowAndReopen() {
+        try {
+            MappedFileManager manager = new MappedFileManager(LIST_NAME);
+            for (int n = 1; n <= 3000; n++) {
+                manager.addItem("item " + n);
+            }
+            manager.removeItem(1);
+            manager.addItem("reuses a freed slot");
+            manager.close();
+
+            manager = new MappedFileManager(LIST_NAME);
+            ArrayList<String> text = manager.getAllText();
+            assertEquals(3000, text.size());
+            assertTrue(text.get(0).startsWith("1),") && text.get(0).endsWith(",item 2"));
+            assertTrue(text.get(2999).endsWith(",reuses a freed slot"));
+            assertEquals(1, manager.getAllItemsWithKeyword("item 2999").size());
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testGrowReplacesTheFile() {
+        try {
+            MappedFileManager manager = new MappedFileManager(LIST_NAME);
+            for (int n = 1; n <= 1500; n++) {
+                manager.addItem("item " + n);
+            }
+            assertTrue(!new File("./" + LIST_NAME + ".todo.tmp").exists());
+
+            MappedFileManager reader = new MappedFileManager(LIST_NAME);
+            assertEquals(1500, reader.getAllText().size());
+            assertTrue(reader.getItem(1500).endsWith(",item 1500"));
+            reader.close();
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testItemTooLong() {
+        try {
+            MappedFileManager manager = new MappedFileManager(LIST_NAME);
+            StringBuilder item = new StringBuilder();
+            for (int n = 0; n <= MappedFileManager.MAX_TASK_BYTES; n++) {
+                item.append('x');
+            }
+            try {
+                manager.addItem(item.toString());
+                assertTrue(false);
+            } catch (ToDoListAccessException e) {
+                assertTrue(e.getMessage().contains("longer than"));
+            }
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testConvertCsv() {
+        try {
+            try (BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter("./" + LIST_NAME + ".csv"))) {
+                bufferedWriter.write(LIST_NAME + " TODO List");
+                bufferedWriter.write("\n1),01/01/2017,1:00 PM,first, with a comma");
+                bufferedWriter.write("\n2),01/02/2017,2:00 PM,second");
+            }
+
+            assertEquals(2, CsvListConverter.convert(LIST_NAME));
+
+            MappedFileManager manager = new MappedFileManager(LIST_NAME);
+            assertEquals("1),01/01/2017,1:00 PM,first, with a comma", manager.getItem(1));
+            assertEquals("2),01/02/2017,2:00 PM,second", manager.getItem(2));
+            manager.close();
+        } catch (ToDoListAccessException | IOException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testGetAllItemsCreatedBetween() {
+        try {
+            try (BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter("./" + LIST_NAME + ".csv"))) {
+                bufferedWriter.write(LIST_NAME + " TODO List");
+                bufferedWriter.write("\n1),12/31/2016,1:00 PM,old");
+                bufferedWriter.write("\n2),01/01/2017,1:00 PM,first");
+                bufferedWriter.write("\n3),01/31/2017,2:00 PM,last");
+                bufferedWriter.write("\n4),02/01/2017,2:00 PM,later");
+            }
+            CsvListConverter.convert(LIST_NAME);
+
+            MappedFileManager manager = new MappedFileManager(LIST_NAME);
+            ArrayList<String> text = manager.getAllItemsCreatedBetween(DateIndex.parseDay("01/01/2017"),
+                            DateIndex.nextDay(DateIndex.parseDay("01/31/2017")));
+            assertEquals(2, text.size());
+            assertEquals("2),01/01/2017,1:00 PM,first", text.get(0));
+            assertEquals("3),01/31/2017,2:00 PM,last", text.get(1));
+
+            // the index follows removes, which renumber, and adds that reuse a freed slot
+            manager.removeItem(1);
+            manager.addItem("reuses a slot");
+            manager.removeItem("first");
+            text = manager.getAllItemsCreatedBetween(DateIndex.parseDay("01/01/2017"),
+                            DateIndex.nextDay(DateIndex.parseDay("01/31/2017")));
+            assertEquals(1, text.size());
+            assertEquals("1),01/31/2017,2:00 PM,last", text.get(0));
+            long today = DateIndex.parseDay(new SimpleDateFormat("MM/dd/yyyy").format(new Date()));
+            text = manager.getAllItemsCreatedBetween(today, DateIndex.nextDay(today));
+            assertEquals(1, text.size());
+            assertTrue(text.get(0).startsWith("3),") && text.get(0).endsWith(",reuses a slot"));
+            manager.close();
+        } catch (ToDoListAccessException | IOException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testFailedBatchIsUndone() {
+        try {
+            MappedFileManager manager = new MappedFileManager(LIST_NAME);
+            manager.addItem("first");
+            manager.addItem("second");
+            manager.addItem("third");
+            try {
+                manager.runBatch(new ToDoListBatch() {
+                    public void run(ToDoListManager batchManager) throws ToDoListAccessException {
+                        batchManager.removeItem(1);
+                        batchManager.addItem("fourth");
+                        batchManager.removeItem(1);
+                        throw new ToDoListAccessException("Batch failed on purpose");
+                    }
+                });
+                assertTrue(false);
+            } catch (ToDoListAccessException e) {
+                assertEquals("Batch failed on purpose", e.getMessage());
+            }
+            manager.addItem("fifth");
+
+            ArrayList<String> text = manager.getAllText();
+            assertEquals(4, text.size());
+            assertTrue(text.get(0).startsWith("1),") && text.get(0).endsWith(",first"));
+            assertTrue(text.get(2).startsWith("3),") && text.get(2).endsWith(",third"));
+            assertTrue(text.get(3).startsWith("4),") && text.get(3).endsWith(",fifth"));
+            manager.close();
+
+            manager = new MappedFileManager(LIST_NAME);
+            assertEquals(text, manager.getAllText());
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testGetAllItemsWithKeywordPage() {
+        try {
+            MappedFileManager manager = new MappedFileManager(LIST_NAME);
+            manager.addItem("Buy bread");
+            manager.addItem("Call home");
+            manager.addItem("Buy milk");
+            manager.addItem("Buy eggs");
+
+            ArrayList<String> page = manager.getAllItemsWithKeyword("buy", 1, 1);
+            assertEquals(1, page.size());
+            assertTrue(page.get(0).startsWith("3),") && page.get(0).endsWith(",Buy milk"));
+            assertEquals(manager.getAllItemsWithKeyword("buy").subList(1, 3),
+                            manager.getAllItemsWithKeyword("buy", 1, 10));
+            assertTrue(manager.getAllItemsWithKeyword("buy", 3, 10).isEmpty());
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testGetAllTextPage() {
+        try {
+            MappedFileManager manager = new MappedFileManager(LIST_NAME);
+            manager.addItem("first");
+            manager.addItem("second");
+            manager.addItem("third");
+
+            ArrayList<String> page = manager.getAllText(1, 1);
+            assertEquals(1, page.size());
+            assertTrue(page.get(0).startsWith("2),") && page.get(0).contains("second"));
+            assertEquals(manager.getAllText().subList(1, 3), manager.getAllText(1, 10));
+            assertTrue(manager.getAllText(3, 10).isEmpty());
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+}
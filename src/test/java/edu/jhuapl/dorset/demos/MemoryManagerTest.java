@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+public class MemoryManagerTest {
+
+    @Test
+    public void testAddGetAndRemove() {
+        try {
+            MemoryManager manager = new MemoryManager(new CompactItemStore());
+            manager.addItem("Buy supplies");
+            manager.addItem("Call home");
+            manager.addItem("Buy stamps");
+
+            assertTrue(manager.getItem(2).startsWith("2),") && manager.getItem(2).endsWith(",Call home"));
+            assertTrue(manager.getItem("BUY").contains("supplies"));
+            assertTrue(manager.getItem(4) == null);
+            assertEquals(2, manager.getAllItemsWithKeyword("buy").size());
+
+            assertTrue(manager.removeItem("supplies").contains("Buy supplies"));
+            ArrayList<String> text = manager.getAllText();
+            assertEquals(2, text.size());
+            assertTrue(text.get(0).startsWith("1),") && text.get(0).contains("Call home"));
+            assertTrue(manager.getAllText(1, 5).get(0).contains("Buy stamps"));
+            StringBuilder appended = new StringBuilder();
+            assertEquals(2, manager.appendAllText(appended));
+            assertEquals(text.get(0) + "\n" + text.get(1) + "\n", appended.toString());
+            assertTrue(manager.removeItem("non-existent item") == null);
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testGetAllItemsWithKeywordPage() {
+        MemoryManager manager = new MemoryManager(new CompactItemStore());
+        try {
+            manager.addItem("Buy bread");
+            manager.addItem("Call home");
+            manager.addItem("Buy milk");
+            manager.addItem("Buy eggs");
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+
+        ArrayList<String> page = manager.getAllItemsWithKeyword("BUY", 1, 1);
+        assertEquals(1, page.size());
+        assertTrue(page.get(0).startsWith("3),") && page.get(0).endsWith(",Buy milk"));
+        assertEquals(manager.getAllItemsWithKeyword("buy").subList(1, 3),
+                        manager.getAllItemsWithKeyword("buy", 1, 5));
+        assertTrue(manager.getAllItemsWithKeyword("buy", 3, 5).isEmpty());
+        assertTrue(manager.getAllItemsWithKeyword("buy", 0, 0).isEmpty());
+    }
+
+    @Test
+    public void testItemsOutliveTheManager() {
+        try {
+            CompactItemStore store = new CompactItemStore();
+            MemoryManager manager = new MemoryManager(store);
+            manager.addItem("Kept item");
+            manager.close();
+
+            assertTrue(new MemoryManager(store).getItem(1).contains("Kept item"));
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testLineBreakIsRejected() {
+        MemoryManager manager = new MemoryManager(new CompactItemStore());
+        try {
+            manager.addItem("two\nlines");
+            assertTrue(false);
+        } catch (ToDoListAccessException e) {
+            assertTrue(e.getMessage().contains("line break"));
+        }
+        assertTrue(manager.getAllText().isEmpty());
+    }
+
+    @Test
+    public void testFailedBatchIsUndone() {
+        MemoryManager manager = new MemoryManager(new CompactItemStore());
+        try {
+            manager.addItem("first");
+            manager.addItem("second");
+            manager.runBatch(new ToDoListBatch() {
+                public void run(ToDoListManager batchManager) throws ToDoListAccessException {
+                    batchManager.addItem("third");
+                    batchManager.removeItem(1);
+                    throw new ToDoListAccessException("Batch failed on purpose");
+                }
+            });
+            assertTrue(false);
+        } catch (ToDoListAccessException e) {
+            assertEquals("Batch failed on purpose", e.getMessage());
+        }
+
+        ArrayList<String> text = manager.getAllText();
+        assertEquals(2, text.size());
+        assertTrue(text.get(0).endsWith(",first") && text.get(1).endsWith(",second"));
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RankIndexTest {
+
+    @Test
+    public void testSelectAndRank() {
+        RankIndex index = new RankIndex();
+        for (int n = 0; n < 5; n++) {
+            index.add();
+        }
+        index.remove(1);
+        index.remove(3);
+
+        assertEquals(3, index.size());
+        assertEquals(0, index.select(1));
+        assertEquals(2, index.select(2));
+        assertEquals(4, index.select(3));
+        assertEquals(-1, index.select(4));
+        assertEquals(2, index.rank(2));
+        assertEquals(3, index.rank(4));
+    }
+
+    @Test
+    public void testMatchesList() {
+        RankIndex index = new RankIndex();
+        ArrayList<Integer> slots = new ArrayList<Integer>();
+        Random random = new Random(7);
+
+        for (int n = 0; n < 20000; n++) {
+            if (slots.isEmpty() || random.nextInt(3) > 0) {
+                slots.add(index.add());
+            } else {
+                int rank = 1 + random.nextInt(slots.size());
+                int slot = index.select(rank);
+                assertEquals((int) slots.get(rank - 1), slot);
+                assertEquals(rank, index.rank(slot));
+                index.remove(slots.remove(rank - 1));
+            }
+        }
+        assertEquals(slots.size(), index.size());
+        for (int n = 0; n < slots.size(); n++) {
+            assertEquals((int) slots.get(n), index.select(n + 1));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import edu.jhuapl.dorset.demos.ToDoCommand.Action;
+
+public class ToDoCommandTest {
+
+    @Test
+    public void testActions() {
+        ToDoCommand command = ToDoCommand.parse("ADD Buy supplies, paper");
+        assertEquals(Action.ADD, command.getAction());
+        assertEquals("Buy supplies, paper", command.getText());
+        assertTrue(command.changesList());
+
+        command = ToDoCommand.parse("please remove 12");
+        assertEquals(Action.REMOVE, command.getAction());
+        assertTrue(command.hasItemNumber());
+        assertEquals(12, command.getItemNumber());
+
+        command = ToDoCommand.parse("GET");
+        assertEquals(Action.GET, command.getAction());
+        assertEquals("", command.getText());
+        assertFalse(command.changesList());
+
+        command = ToDoCommand.parse("hello there");
+        assertEquals(Action.UNKNOWN, command.getAction());
+        assertEquals("hello there", command.getText());
+    }
+
+    @Test
+    public void testAddComesFirst() {
+        ToDoCommand command = ToDoCommand.parse("REMOVE the ADDress label");
+        assertEquals(Action.ADD, command.getAction());
+        assertEquals("ess label", command.getText());
+    }
+
+    @Test
+    public void testGetParts() {
+        ToDoCommand command = ToDoCommand.parse("GET ALL  pay 3 bills ");
+        assertTrue(command.isAll());
+        assertFalse(command.hasItemNumber());
+        assertEquals("pay bills", command.getKeyword());
+        assertEquals("", command.getDate());
+
+        command = ToDoCommand.parse("GET all small 01/02/2017");
+        assertTrue(command.isAll());
+        assertEquals("01/02/2017", command.getDate());
+        assertEquals("01/02/2017", command.getKeyword());
+
+        command = ToDoCommand.parse("GET ALL 01/01/2017-01/31/2017");
+        assertEquals("01/01/2017-01/31/2017", command.getDateRange());
+        assertEquals("", command.getDate());
+
+        command = ToDoCommand.parse("GET 123");
+        assertFalse(command.hasItemNumber());
+        assertEquals("123", command.getKeyword());
+
+        command = ToDoCommand.parse("GET 7");
+        assertTrue(command.hasItemNumber());
+        assertEquals(7, command.getItemNumber());
+        assertEquals("", command.getKeyword());
+    }
+
+    @Test
+    public void testGetPage() {
+        ToDoCommand command = ToDoCommand.parse("GET ALL page 3");
+        assertTrue(command.isAll());
+        assertTrue(command.isPaged());
+        assertEquals(3, command.getPage());
+        assertEquals("", command.getKeyword());
+
+        command = ToDoCommand.parse("GET ALL groceries LIMIT 10 OFFSET 40");
+        assertEquals(-1, command.getPage());
+        assertEquals(10, command.getLimit());
+        assertEquals(40, command.getOffset());
+        assertEquals("groceries", command.getKeyword());
+
+        command = ToDoCommand.parse("GET ALL page turner");
+        assertFalse(command.isPaged());
+        assertEquals("page turner", command.getKeyword());
+    }
+}
@@ -16,10 +16,24 @@
  */
 package edu.jhuapl.dorset.demos;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.lang.management.ManagementFactory;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
 
 import org.junit.Test;
 
@@ -30,6 +44,8 @@ import edu.jhuapl.dorset.Application;
 import edu.jhuapl.dorset.Request;
 import edu.jhuapl.dorset.Response;
 import edu.jhuapl.dorset.agents.Agent;
+import edu.jhuapl.dorset.agents.AgentRequest;
+import edu.jhuapl.dorset.agents.AgentResponse;
 import edu.jhuapl.dorset.routing.Router;
 import edu.jhuapl.dorset.routing.SingleAgentRouter;
 
@@ -146,6 +162,25 @@ public class ToDoListAgentTest {
         setOrCleanUp(app, "REMOVE Today's new item");
     }
 
+    @Test
+    public void testGetAllItemsWithDateIgnoresDatesInTheTask() {
+        Application app = setUpApp();
+
+        setOrCleanUp(app, "ADD Pay the invoice due 02/03/2016");
+
+        Response response = makeRequest(app, "GET ALL 02/03/2016");
+
+        assertFalse(response.getText() != null && response.getText().contains("invoice due"));
+        assertTrue(response.getStatus().getMessage().contains("Error:"));
+
+        String today = new SimpleDateFormat("MM/dd/yyyy").format(new Date());
+        response = makeRequest(app, "GET ALL " + today);
+
+        assertTrue(response.getText().contains("Pay the invoice due 02/03/2016"));
+
+        setOrCleanUp(app, "REMOVE invoice due");
+    }
+
     @Test
     public void testGetAllItemsWithDateBad() {
         Application app = setUpApp();
@@ -195,6 +230,44 @@ public class ToDoListAgentTest {
         assertTrue(response.getStatus().getMessage().contains("Error:"));
     }
     
+    @Test
+    public void testMultiLineRequest() {
+        Application app = setUpApp();
+
+        Response response = makeRequest(app, "ADD first batch line\nADD second batch line\n\nGET ALL batch line");
+
+        String[] lines = response.getText().split("\n");
+        assertEquals(4, lines.length);
+        assertTrue(lines[0].equals("Item added: first batch line"));
+        assertTrue(lines[1].equals("Item added: second batch line"));
+        assertTrue(lines[2].contains("first batch line"));
+        assertTrue(lines[3].contains("second batch line"));
+
+        setOrCleanUp(app, "REMOVE first batch line\nREMOVE second batch line");
+        response = makeRequest(app, "GET ALL batch line");
+        assertTrue(response.getStatus().getMessage().contains("Error:"));
+    }
+
+    @Test
+    public void testGetAllPage() {
+        Application app = setUpApp();
+        int itemCount = makeRequest(app, "GET ALL").getText().split("\n").length - 1;
+        setOrCleanUp(app, "ADD first paged line\nADD second paged line");
+
+        Response response = makeRequest(app, "GET ALL LIMIT 1 OFFSET " + (itemCount + 1));
+        String[] lines = response.getText().split("\n");
+        assertEquals(1, lines.length);
+        assertTrue(lines[0].startsWith((itemCount + 2) + "),") && lines[0].contains("second paged line"));
+
+        response = makeRequest(app, "GET ALL paged line PAGE 1");
+        assertEquals(2, response.getText().split("\n").length);
+
+        response = makeRequest(app, "GET ALL PAGE 100000");
+        assertTrue(response.getStatus().getMessage().contains("no items on that page"));
+
+        setOrCleanUp(app, "REMOVE first paged line\nREMOVE second paged line");
+    }
+
     @Test 
     public void testBadConfig() {
         Config config = ConfigFactory.load("sample");
@@ -206,4 +279,129 @@ public class ToDoListAgentTest {
         
         assertTrue(response.getStatus().getMessage().contains("Agent could not set up"));
     }
+
+    @Test
+    public void testConcurrentClientsKeepNumbersDense() throws Exception {
+        final int clients = 64;
+        final int itemsPerClient = 10;
+        new File("./ConcurrencyTest.csv").delete();
+        HashMap<String, Object> values = new HashMap<String, Object>();
+        values.put("name", "ConcurrencyTest");
+        values.put("dataStorageType", "file");
+        final Agent agent = new ToDoListAgent(ConfigFactory.parseMap(values));
+
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        ArrayList<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        for (int c = 0; c < clients; c++) {
+            final int client = c;
+            results.add(executor.submit(new Callable<Boolean>() {
+                public Boolean call() {
+                    boolean succeeded = true;
+                    for (int n = 0; n < itemsPerClient; n++) {
+                        AgentResponse response = agent.process(new AgentRequest("ADD client " + client + " item " + n));
+                        succeeded &= response.getText() != null && response.getText().startsWith("Item added: ");
+                        agent.process(new AgentRequest("GET ALL client " + client));
+                    }
+                    AgentResponse response = agent.process(new AgentRequest("REMOVE client " + client + " item 0"));
+                    succeeded &= response.getText() != null && response.getText().startsWith("Item removed: ");
+                    return succeeded;
+                }
+            }));
+        }
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get());
+        }
+        executor.shutdown();
+
+        String[] lines = agent.process(new AgentRequest("GET ALL")).getText().split("\n");
+        new File("./ConcurrencyTest.csv").delete();
+        assertEquals(clients * (itemsPerClient - 1) + 1, lines.length);
+        HashSet<String> tasks = new HashSet<String>();
+        for (int n = 1; n < lines.length; n++) {
+            assertTrue(lines[n].startsWith(n + "),"));
+            assertTrue(tasks.add(lines[n].substring(lines[n].lastIndexOf(',') + 1)));
+        }
+    }
+
+    @Test
+    public void testMetricsCountRequests() throws Exception {
+        new File("./MetricsTest.csv").delete();
+        HashMap<String, Object> values = new HashMap<String, Object>();
+        values.put("name", "MetricsTest");
+        values.put("dataStorageType", "file");
+        values.put("metrics", true);
+        ToDoListAgent agent = new ToDoListAgent(ConfigFactory.parseMap(values));
+
+        agent.process(new AgentRequest("ADD first metered item"));
+        agent.process(new AgentRequest("ADD second metered item"));
+        agent.process(new AgentRequest("GET ALL"));
+        agent.process(new AgentRequest("GET missing item"));
+        agent.process(new AgentRequest("REMOVE first metered\nREMOVE second metered"));
+        agent.process(new AgentRequest("nothing to do"));
+
+        ToDoListMetrics metrics = agent.getMetrics();
+        assertEquals(2, metrics.getCount("add"));
+        assertEquals(2, metrics.getCount("get"));
+        assertEquals(1, metrics.getErrorCount("get"));
+        assertEquals(0, metrics.getCount("remove"));
+        assertEquals(1, metrics.getCount("batch"));
+        assertEquals(1, metrics.getCount("unknown"));
+        assertEquals(6, metrics.getPhase("parse").getCount());
+        assertTrue(metrics.getPhase("manager").getMax() > 0);
+        assertEquals(Long.valueOf(1), metrics.snapshot().get("lists.open"));
+
+        ObjectName name = new ObjectName(
+                        "edu.jhuapl.dorset.demos:type=ToDoListMetrics,name=\"MetricsTest\"");
+        assertEquals(2L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "add.count"));
+        try {
+            ManagementFactory.getPlatformMBeanServer().invoke(name, "reset", new Object[0], new String[0]);
+            assertTrue(false);
+        } catch (ReflectionException e) {
+            assertTrue(e.getTargetException() instanceof NoSuchMethodException);
+        }
+        new File("./MetricsTest.csv").delete();
+    }
+
+    @Test
+    public void testMetricsAreOffByDefault() {
+        Config config = ConfigFactory.load();
+        ToDoListAgent agent = new ToDoListAgent(config);
+        assertTrue(agent.getMetrics() == null);
+    }
+
+    @Test
+    public void testStartupTimes() {
+        new File("./StartupTest.csv").delete();
+        HashMap<String, Object> values = new HashMap<String, Object>();
+        values.put("name", "StartupTest");
+        values.put("dataStorageType", "file");
+        values.put("startup", "lazy");
+        ToDoListAgent agent = new ToDoListAgent(ConfigFactory.parseMap(values));
+        assertEquals(ToDoListAgent.STARTUP_PHASES.length, agent.getStartupTimes().size());
+        assertTrue(agent.getStartupTimes().get("total") > 0);
+        assertEquals(-1L, (long) agent.getStartupTimes().get("defaultList"));
+        assertTrue(!new File("./StartupTest.csv").exists());
+
+        AgentResponse response = agent.process(new AgentRequest("ADD Started lazily"));
+        assertTrue(response.getStatus().isSuccess());
+        assertTrue(new File("./StartupTest.csv").exists());
+        new File("./StartupTest.csv").delete();
+    }
+
+    @Test
+    public void testGroupCommit() {
+        new File("./GroupCommitAgentTest.csv").delete();
+        HashMap<String, Object> values = new HashMap<String, Object>();
+        values.put("name", "GroupCommitAgentTest");
+        values.put("dataStorageType", "file");
+        values.put("groupCommit", true);
+        values.put("metrics", true);
+        ToDoListAgent agent = new ToDoListAgent(ConfigFactory.parseMap(values));
+
+        AgentResponse response = agent.process(new AgentRequest("ADD Committed in a group"));
+        assertTrue(response.getStatus().isSuccess() && response.getText().contains("Committed in a group"));
+        assertTrue(agent.process(new AgentRequest("GET 1")).getText().contains("Committed in a group"));
+        assertEquals(1L, (long) agent.getMetrics().snapshot().get("groupCommit.adds"));
+        new File("./GroupCommitAgentTest.csv").delete();
+    }
 }
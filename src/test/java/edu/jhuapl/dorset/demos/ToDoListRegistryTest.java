@@ -0,0 +1,308 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.typesafe.config.ConfigFactory;
+
+public class ToDoListRegistryTest {
+
+    private static final String LIST_NAME = "RegistryTest";
+    private static final String[] LIST_NAMES = {LIST_NAME, "RegistryTest-a", "RegistryTest-b", "RegistryTest-c"};
+
+    @Before
+    public void setUp() {
+        deleteLists();
+    }
+
+    @After
+    public void tearDown() {
+        deleteLists();
+    }
+
+    private void deleteLists() {
+        for (String listName : LIST_NAMES) {
+            new File("./" + listName + ".journal").delete();
+        }
+    }
+
+    private ToDoListRegistry createRegistry(int maxOpenLists) throws ToDoListAccessException {
+        HashMap<String, Object> values = new HashMap<String, Object>();
+        values.put("name", LIST_NAME);
+        values.put("dataStorageType", "journal");
+        values.put("maxOpenLists", maxOpenLists);
+        return new ToDoListRegistry(ConfigFactory.parseMap(values));
+    }
+
+    @Test
+    public void testListsAreSeparate() {
+        try {
+            ToDoListRegistry registry = createRegistry(10);
+            registry.getManager("RegistryTest-a").addItem("Item for a");
+            registry.getManager("RegistryTest-b").addItem("Item for b");
+
+            assertEquals(1, registry.getManager("RegistryTest-a").getAllText().size());
+            assertTrue(registry.getManager("RegistryTest-b").getItem(1).contains("Item for b"));
+            assertTrue(registry.getManager(LIST_NAME).getAllText().isEmpty());
+            registry.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedListIsClosed() {
+        try {
+            ToDoListRegistry registry = createRegistry(2);
+            ToDoListManager first = registry.getManager("RegistryTest-a");
+            first.addItem("Survives closing");
+            assertSame(first, registry.getManager("RegistryTest-a"));
+
+            registry.getManager("RegistryTest-b");
+            registry.getManager("RegistryTest-c");
+            assertEquals(2, registry.getOpenListCount());
+
+            ToDoListManager reopened = registry.getManager("RegistryTest-a");
+            assertFalse(reopened == first);
+            assertSame(reopened, registry.getManager("RegistryTest-a"));
+            assertTrue(reopened.getItem(1).contains("Survives closing"));
+            registry.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testListInUseIsClosedByALaterOpen() throws Exception {
+        final ToDoListRegistry registry = createRegistry(1);
+        final ToDoListManager first = registry.getManager("RegistryTest-a");
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                Lock lock = registry.getLock("RegistryTest-a").readLock();
+                lock.lock();
+                try {
+                    locked.countDown();
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        });
+        reader.start();
+        locked.await();
+
+        registry.getManager("RegistryTest-b");
+        assertEquals(2, registry.getOpenListCount());
+        first.addItem("Still open");
+
+        release.countDown();
+        reader.join();
+        registry.getManager("RegistryTest-c");
+        assertEquals(1, registry.getOpenListCount());
+        ToDoListManager reopened = registry.getManager("RegistryTest-a");
+        assertFalse(reopened == first);
+        assertTrue(reopened.getItem(1).contains("Still open"));
+        registry.close();
+    }
+
+    @Test
+    public void testEncodedUserNames() {
+        assertEquals("alice", ToDoListRegistry.encode("alice"));
+        assertFalse(ToDoListRegistry.encode("a b").equals(ToDoListRegistry.encode("a_b")));
+        assertFalse(ToDoListRegistry.encode("../etc").contains("/"));
+        assertFalse(ToDoListRegistry.encode("../etc").contains("."));
+    }
+
+    @Test
+    public void testCacheSizeWrapsLists() {
+        try {
+            HashMap<String, Object> values = new HashMap<String, Object>();
+            values.put("name", LIST_NAME);
+            values.put("dataStorageType", "journal");
+            values.put("cacheSize", 10);
+            ToDoListRegistry registry = new ToDoListRegistry(ConfigFactory.parseMap(values));
+            ToDoListManager manager = registry.getManager("RegistryTest-a");
+            assertTrue(manager instanceof CachingManager);
+
+            manager.addItem("Cached item");
+            manager.getItem(1);
+            manager.getItem(1);
+            assertEquals(1, ((CachingManager) manager).getHitCount());
+            registry.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testEmbeddedStorageType() {
+        try {
+            HashMap<String, Object> values = new HashMap<String, Object>();
+            values.put("name", LIST_NAME);
+            values.put("dataStorageType", "embedded");
+            values.put("embeddedDatabaseUrl", "jdbc:h2:mem:registry-test;DB_CLOSE_DELAY=-1");
+            ToDoListRegistry registry = new ToDoListRegistry(ConfigFactory.parseMap(values));
+            ToDoListManager manager = registry.getManager("RegistryTest-a");
+            assertTrue(manager instanceof DatabaseManager);
+
+            manager.addItem("Embedded item");
+            assertTrue(registry.getManager("RegistryTest-a").getItem(1).contains("Embedded item"));
+            assertTrue(registry.getManager("RegistryTest-b").getAllText().isEmpty());
+            manager.removeItem(1);
+            registry.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testMemoryStorageType() {
+        try {
+            HashMap<String, Object> values = new HashMap<String, Object>();
+            values.put("name", LIST_NAME);
+            values.put("dataStorageType", "memory");
+            values.put("maxOpenLists", 1);
+            ToDoListRegistry registry = new ToDoListRegistry(ConfigFactory.parseMap(values));
+            ToDoListManager manager = registry.getManager("RegistryTest-a");
+            assertTrue(manager instanceof MemoryManager);
+            manager.addItem("Memory item");
+
+            assertTrue(registry.getManager("RegistryTest-b").getAllText().isEmpty());
+            assertEquals(1, registry.getOpenListCount());
+            assertTrue(registry.getManager("RegistryTest-a").getItem(1).contains("Memory item"));
+            registry.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testLazyStartup() {
+        try {
+            HashMap<String, Object> values = new HashMap<String, Object>();
+            values.put("name", LIST_NAME);
+            values.put("dataStorageType", "journal");
+            values.put("startup", "lazy");
+            ToDoListRegistry registry = new ToDoListRegistry(ConfigFactory.parseMap(values));
+            assertEquals(0, registry.getOpenListCount());
+            assertFalse(new File("./" + LIST_NAME + ".journal").exists());
+            assertEquals(-1, registry.getDefaultListOpenNanos());
+
+            registry.getManager(LIST_NAME).addItem("Lazy item");
+            assertEquals(1, registry.getOpenListCount());
+            registry.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testWarmUpStartup() throws InterruptedException {
+        try {
+            HashMap<String, Object> values = new HashMap<String, Object>();
+            values.put("name", LIST_NAME);
+            values.put("dataStorageType", "journal");
+            values.put("startup", "Warm-Up");
+            ToDoListRegistry registry = new ToDoListRegistry(ConfigFactory.parseMap(values));
+            for (int n = 0; n < 500 && registry.getDefaultListOpenNanos() < 0; n++) {
+                Thread.sleep(10);
+            }
+            assertTrue(registry.getDefaultListOpenNanos() >= 0);
+            assertEquals(1, registry.getOpenListCount());
+            registry.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testListIsOpenedOnceForConcurrentCallers() throws Exception {
+        HashMap<String, Object> values = new HashMap<String, Object>();
+        values.put("name", LIST_NAME);
+        values.put("dataStorageType", "journal");
+        values.put("startup", "lazy");
+        final ToDoListRegistry registry = new ToDoListRegistry(ConfigFactory.parseMap(values));
+        final int callers = 16;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        ArrayList<Future<ToDoListManager>> managers = new ArrayList<Future<ToDoListManager>>();
+        for (int n = 0; n < callers; n++) {
+            final String listName = n % 2 == 0 ? "RegistryTest-a" : "RegistryTest-b";
+            managers.add(executor.submit(new Callable<ToDoListManager>() {
+                public ToDoListManager call() throws Exception {
+                    start.await();
+                    Lock lock = registry.getLock(listName).readLock();
+                    lock.lock();
+                    try {
+                        return registry.getManager(listName);
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }));
+        }
+        start.countDown();
+        for (int n = 2; n < callers; n++) {
+            assertSame(managers.get(n % 2).get(), managers.get(n).get());
+        }
+        executor.shutdown();
+        assertEquals(2, registry.getOpenListCount());
+        registry.close();
+    }
+
+    @Test
+    public void testLazyStartupChecksTheConfiguration() {
+        HashMap<String, Object> values = new HashMap<String, Object>();
+        values.put("name", LIST_NAME);
+        values.put("dataStorageType", "tape");
+        values.put("startup", "lazy");
+        try {
+            new ToDoListRegistry(ConfigFactory.parseMap(values));
+            assertTrue(false);
+        } catch (ToDoListAccessException e) {
+            assertTrue(e.getMessage().contains("tape"));
+        }
+        try {
+            ToDoListRegistry.parseStartup("later");
+            assertTrue(false);
+        } catch (ToDoListAccessException e) {
+            assertTrue(e.getMessage().contains("later"));
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2017 The Johns Hopkins University Applied Physics Laboratory LLC
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.jhuapl.dorset.demos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import edu.jhuapl.dorset.demos.WriteBehindManager.Durability;
+
+public class WriteBehindManagerTest {
+
+    private static final long NEVER = 60000;
+
+    /**
+     * Wait for the database to hold a number of items
+     *
+     * @param database  the manager of the list
+     * @param itemCount  the number of items
+     * @return whether the list had that many items within five seconds
+     */
+    private static boolean waitForItems(DatabaseManager database, int itemCount) throws InterruptedException {
+        for (int n = 0; n < 500; n++) {
+            if (database.getItemCount() == itemCount) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+
+    @Test
+    public void testReadsSeeBufferedItems() {
+        try {
+            DatabaseManager database = new DatabaseManager("write-behind-reads", true);
+            database.addItem("Stored item");
+            WriteBehindManager manager = new WriteBehindManager(database, Durability.GROUP_COMMIT, 100, NEVER);
+
+            assertEquals("Buffered first", manager.addItem("Buffered first"));
+            manager.addItem("Buffered second");
+            assertEquals(1, database.getItemCount());
+
+            ArrayList<String> text = manager.getAllText();
+            assertEquals(3, text.size());
+            assertTrue(text.get(2).startsWith("3),") && text.get(2).contains("Buffered second"));
+            assertEquals(text.subList(1, 3), manager.getAllText(1, 5));
+            StringBuilder appended = new StringBuilder();
+            assertEquals(3, manager.appendAllText(appended));
+            assertEquals(text.get(0) + "\n" + text.get(1) + "\n" + text.get(2) + "\n",
+                            appended.toString());
+            assertTrue(manager.getItem(2).contains("Buffered first"));
+            assertTrue(manager.getItem("second").startsWith("3),"));
+            assertEquals(2, manager.getAllItemsWithKeyword("Buffered").size());
+            assertTrue(manager.getItem(4) == null);
+
+            manager.flush();
+            assertEquals(3, database.getItemCount());
+            assertEquals(text, database.getAllText());
+
+            manager.removeItem(3);
+            manager.removeItem(2);
+            manager.removeItem(1);
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testKeywordPagesSpanStoredAndBufferedItems() {
+        try {
+            DatabaseManager database = new DatabaseManager("write-behind-keyword-pages", true);
+            database.addItem("Stored buy one");
+            database.addItem("Stored buy two");
+            WriteBehindManager manager =
+                            new WriteBehindManager(database, Durability.GROUP_COMMIT, 100, NEVER);
+            manager.addItem("Buffered buy three");
+            manager.addItem("Buffered call");
+            manager.addItem("Buffered buy four");
+
+            ArrayList<String> all = manager.getAllItemsWithKeyword("buy");
+            assertEquals(4, all.size());
+            assertEquals(all.subList(1, 3), manager.getAllItemsWithKeyword("buy", 1, 2));
+            assertEquals(all.subList(3, 4), manager.getAllItemsWithKeyword("buy", 3, 5));
+            assertTrue(manager.getAllItemsWithKeyword("buy", 4, 5).isEmpty());
+            assertTrue(all.get(3).startsWith("5),"));
+
+            manager.flush();
+            while (manager.removeItem(1) != null) {
+                continue;
+            }
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testRemoveBufferedItemIsNeverWritten() {
+        try {
+            DatabaseManager database = new DatabaseManager("write-behind-coalesce", true);
+            WriteBehindManager manager = new WriteBehindManager(database, Durability.GROUP_COMMIT, 100, NEVER);
+            manager.addItem("Added then removed");
+            manager.addItem("Kept");
+
+            assertTrue(manager.removeItem("then removed").startsWith("1),"));
+            assertTrue(manager.getItem(1).contains("Kept"));
+            long queriesBefore = database.getQueryCount();
+            assertTrue(manager.removeItem(1).contains("Kept"));
+            assertEquals(0, database.getQueryCount() - queriesBefore);
+
+            manager.close();
+            assertEquals(0, database.getItemCount());
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testFlushOnSize() {
+        try {
+            DatabaseManager database = new DatabaseManager("write-behind-size", true);
+            WriteBehindManager manager = new WriteBehindManager(database, Durability.GROUP_COMMIT, 2, NEVER);
+            manager.addItem("Size first");
+            assertEquals(0, database.getItemCount());
+            manager.addItem("Size second");
+            assertTrue(waitForItems(database, 2));
+
+            manager.removeItem(1);
+            manager.removeItem(1);
+            manager.close();
+        } catch (ToDoListAccessException | InterruptedException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testFlushOnTime() {
+        try {
+            DatabaseManager database = new DatabaseManager("write-behind-time", true);
+            WriteBehindManager manager = new WriteBehindManager(database, Durability.ASYNC, 100, 20);
+            manager.addItem("Written soon");
+            assertTrue(waitForItems(database, 1));
+
+            manager.removeItem(1);
+            manager.close();
+        } catch (ToDoListAccessException | InterruptedException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testFlushOnClose() {
+        try {
+            DatabaseManager database = new DatabaseManager("write-behind-close", true);
+            WriteBehindManager manager = new WriteBehindManager(database, Durability.ASYNC, 100, NEVER);
+            manager.addItem("Written on close");
+            assertEquals(0, database.getItemCount());
+            manager.close();
+            assertTrue(database.getItem(1).contains("Written on close"));
+
+            database.removeItem(1);
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testSyncWritesEveryAdd() {
+        try {
+            DatabaseManager database = new DatabaseManager("write-behind-sync", true);
+            WriteBehindManager manager = new WriteBehindManager(database, Durability.SYNC, 100, NEVER);
+            manager.addItem("Written at once");
+            assertEquals(1, database.getItemCount());
+
+            manager.removeItem(1);
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testRunBatchWritesBufferFirst() {
+        try {
+            DatabaseManager database = new DatabaseManager("write-behind-batch", true);
+            WriteBehindManager manager = new WriteBehindManager(database, Durability.GROUP_COMMIT, 100, NEVER);
+            manager.addItem("Buffered before the batch");
+            manager.runBatch(new ToDoListBatch() {
+                public void run(ToDoListManager batchManager) throws ToDoListAccessException {
+                    assertTrue(batchManager.removeItem(1).contains("before the batch"));
+                    batchManager.addItem("Added in the batch");
+                }
+            });
+            assertEquals(1, database.getItemCount());
+            assertTrue(manager.getItem(1).contains("Added in the batch"));
+
+            manager.removeItem(1);
+            manager.close();
+        } catch (ToDoListAccessException e) {
+            assertTrue(false);
+        }
+    }
+
+    @Test
+    public void testParseDurability() {
+        try {
+            assertEquals(Durability.GROUP_COMMIT, ToDoListRegistry.parseDurability("group-commit"));
+            assertEquals(Durability.ASYNC, ToDoListRegistry.parseDurability("Async"));
+            ToDoListRegistry.parseDurability("eventually");
+            assertTrue(false);
+        } catch (ToDoListAccessException e) {
+            assertTrue(e.getMessage().contains("eventually"));
+        }
+    }
+}